@@ -0,0 +1,78 @@
+package cws.core.algorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cws.core.bench.BenchmarkFixtures;
+import cws.core.cloudsim.CloudSimWrapper;
+import cws.core.dag.DAG;
+import cws.core.dag.DAGParser;
+import cws.core.dag.Task;
+import cws.core.dag.algorithms.TopologicalOrder;
+import cws.core.engine.Environment;
+
+/**
+ * Distribution of a workflow budget over all of its tasks with the strategies used by EBPSM and MSLBL. The budget is
+ * set halfway between the cost of running every task on the cheapest and on the fastest VM type.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BudgetDistributionBenchmark {
+    @Param({ "TopDownCheapest", "TopDownFastest", "MSLBL" })
+    public String strategy;
+
+    @Param({ "MONTAGE.n.100.0.dag", "MONTAGE.n.1000.0.dag", "CYBERSHAKE.n.1000.0.dag" })
+    public String workflow;
+
+    private List<Task> order;
+    private double budget;
+    private Environment environment;
+    private CloudSimWrapper cloudsim;
+
+    @Setup
+    public void setUp() {
+        DAG dag = DAGParser.parseDAG(BenchmarkFixtures.workloadFile(workflow));
+        cloudsim = BenchmarkFixtures.initCloudSim();
+        environment = BenchmarkFixtures.createEnvironment(cloudsim, BenchmarkFixtures.loadVMTypes());
+        order = new ArrayList<Task>();
+        double minCost = 0.0;
+        double maxCost = 0.0;
+        for (Task task : new TopologicalOrder(dag)) {
+            order.add(task);
+            minCost += environment.getCost(environment.getPredictedRuntime(environment.getCheapestVM(), task),
+                    environment.getCheapestVM());
+            maxCost += environment.getCost(environment.getPredictedRuntime(environment.getFastestVM(), task),
+                    environment.getFastestVM());
+        }
+        budget = (minCost + maxCost) / 2.0;
+    }
+
+    @Benchmark
+    public Map<Task, Double> distributeBudget() {
+        if ("TopDownCheapest".equals(strategy)) {
+            return BudgetDistribution.getBudgetDistributionTopDownCheapest(order, budget, environment, cloudsim);
+        } else if ("TopDownFastest".equals(strategy)) {
+            return BudgetDistribution.getBudgetDistributionTopDownFastest(order, budget, environment, cloudsim);
+        } else {
+            return BudgetDistribution.getBudgetDistributionMSLBL(order, budget, environment, cloudsim);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package cws.core.algorithms;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cws.core.VM;
+import cws.core.WorkflowEngine;
+import cws.core.bench.BenchmarkFixtures;
+import cws.core.cloudsim.CloudSimWrapper;
+import cws.core.core.VMType;
+import cws.core.dag.DAG;
+import cws.core.dag.DAGJob;
+import cws.core.dag.DAGParser;
+import cws.core.dag.Task;
+import cws.core.engine.Environment;
+import cws.core.jobs.Job;
+import cws.core.provisioner.VMFactory;
+
+/**
+ * A single EBPSM scheduling pass over a queue holding one job per task of a workflow, with a synthetic fleet of
+ * already running free VMs. With an empty fleet every job provisions a new VM. The whole engine is rebuilt before each
+ * invocation since a pass consumes the queue and the free VMs.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+public class EBPSMSchedulingBenchmark {
+    @Param({ "0", "16", "256" })
+    public int fleet;
+
+    @Param({ "MONTAGE.n.100.0.dag", "MONTAGE.n.1000.0.dag" })
+    public String workflow;
+
+    private List<VMType> vmTypes;
+    private DAG dag;
+    private PrintStream stdout;
+
+    private EBPSM ebpsm;
+
+    @Setup
+    public void setUp() {
+        vmTypes = BenchmarkFixtures.loadVMTypes();
+        dag = DAGParser.parseDAG(BenchmarkFixtures.workloadFile(workflow));
+        dag.setId("0");
+        dag.setName(workflow);
+        dag.setDeadline(Double.MAX_VALUE);
+        dag.setBudget(Double.MAX_VALUE);
+        // EBPSM reports every scheduling decision on stdout
+        stdout = System.out;
+        System.setOut(BenchmarkFixtures.nullPrintStream());
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareSchedulingPass() {
+        CloudSimWrapper cloudsim = BenchmarkFixtures.initCloudSim();
+        Environment environment = BenchmarkFixtures.createEnvironment(cloudsim, vmTypes);
+        List<DAG> dags = Collections.singletonList(dag);
+        ebpsm = new EBPSM(0.0, 0.0, dags, new AlgorithmStatistics(dags, cloudsim, environment), cloudsim, false);
+        ebpsm.setEnvironment(environment);
+        ebpsm.prepareEnvironment();
+
+        WorkflowEngine engine = ebpsm.getWorkflowEngine();
+        for (int i = 0; i < fleet; i++) {
+            VM vm = VMFactory.createVM(vmTypes.get(i % vmTypes.size()), cloudsim);
+            engine.getFreeVMs().add(vm);
+        }
+
+        DAGJob dagJob = new DAGJob(dag, ebpsm.getEnsembleManager().getId(), 0.0);
+        ebpsm.DAGSubmit(dagJob);
+        for (String taskId : dag.getTasks()) {
+            Task task = dag.getTaskById(taskId);
+            engine.getQueuedJobs().add(new Job(dagJob, task, engine.getId(), cloudsim));
+        }
+    }
+
+    @Benchmark
+    public void scheduleQueueJobs() {
+        ebpsm.scheduleQueueJobs();
+    }
+}
@@ -0,0 +1,140 @@
+package cws.core.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.apache.commons.io.IOUtils;
+
+import cws.core.cloudsim.CloudSimWrapper;
+import cws.core.config.GlobalStorageParamsLoader;
+import cws.core.core.VMType;
+import cws.core.core.VMTypeLoader;
+import cws.core.dag.DAG;
+import cws.core.dag.DAGFile;
+import cws.core.dag.Task;
+import cws.core.engine.Environment;
+import cws.core.engine.EnvironmentFactory;
+import cws.core.simulation.StorageCacheType;
+import cws.core.simulation.StorageSimulationParams;
+import cws.core.simulation.StorageType;
+
+/**
+ * Shared set-up code for the benchmarks. Paths are resolved relatively to the working directory, which the "bench"
+ * Ant target sets to the project root, so the bundled workload/, HeteroVMs/ and gs/ directories are used.
+ */
+public class BenchmarkFixtures {
+    public static final String WORKLOAD_DIR = "workload";
+    public static final String VM_DIR = "HeteroVMs";
+
+    public static File workloadFile(String name) {
+        return new File(WORKLOAD_DIR, name);
+    }
+
+    /**
+     * @return Command line equivalent to the default simulation config, i.e. VM types from {@link #VM_DIR} and the
+     *         default global storage.
+     */
+    public static CommandLine defaultArgs() {
+        Options options = new Options();
+        VMTypeLoader.buildCliOptions(options);
+        GlobalStorageParamsLoader.buildCliOptions(options);
+        try {
+            return new PosixParser().parse(options, new String[] { "--vm-directory", VM_DIR });
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static List<VMType> loadVMTypes() {
+        return new VMTypeLoader().determineVMType(defaultArgs());
+    }
+
+    /**
+     * Creates a storage aware environment backed by the global storage with a FIFO cache. The given cloudsim has to
+     * be initialized already, since the storage manager is a simulation entity.
+     */
+    public static Environment createEnvironment(CloudSimWrapper cloudsim, List<VMType> vmTypes) {
+        StorageSimulationParams simulationParams = new StorageSimulationParams();
+        simulationParams.setStorageType(StorageType.GLOBAL);
+        simulationParams.setStorageCacheType(StorageCacheType.FIFO);
+        simulationParams.setStorageParams(new GlobalStorageParamsLoader().determineGlobalStorageParams(defaultArgs()));
+        return EnvironmentFactory.createEnvironment(cloudsim, simulationParams, vmTypes, true);
+    }
+
+    /**
+     * @return Initialized cloudsim with logging disabled.
+     */
+    public static CloudSimWrapper initCloudSim() {
+        CloudSimWrapper cloudsim = new CloudSimWrapper();
+        cloudsim.setLogsEnabled(false);
+        cloudsim.init();
+        return cloudsim;
+    }
+
+    /**
+     * Writes the given DAG in the DAX-like format read by {@link cws.core.dag.DAGParser#parseDAX(File)}.
+     */
+    public static void writeDAX(DAG dag, File daxfile) {
+        PrintStream out = null;
+        try {
+            out = new PrintStream(daxfile, "UTF-8");
+            out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            out.println("<adag name=\"" + daxfile.getName() + "\">");
+            for (String id : dag.getTasks()) {
+                Task task = dag.getTaskById(id);
+                // Transformations read from .dag files are namespace::name:version
+                String transformation = task.getTransformation();
+                int nsEnd = transformation.indexOf("::");
+                int nameEnd = transformation.lastIndexOf(':');
+                out.printf("  <job id=\"%s\" namespace=\"%s\" name=\"%s\" version=\"%s\" runtime=\"%s\">%n", id,
+                        transformation.substring(0, nsEnd), transformation.substring(nsEnd + 2, nameEnd),
+                        transformation.substring(nameEnd + 1), task.getSize());
+                for (DAGFile file : task.getInputFiles()) {
+                    out.printf("    <uses file=\"%s\" link=\"input\" size=\"%d\"/>%n", file.getName(), file.getSize());
+                }
+                for (DAGFile file : task.getOutputFiles()) {
+                    out.printf("    <uses file=\"%s\" link=\"output\" size=\"%d\"/>%n", file.getName(), file.getSize());
+                }
+                out.println("  </job>");
+            }
+            for (String id : dag.getTasks()) {
+                Task task = dag.getTaskById(id);
+                if (task.getParents().isEmpty()) {
+                    continue;
+                }
+                out.printf("  <child ref=\"%s\">%n", id);
+                for (Task parent : task.getParents()) {
+                    out.printf("    <parent ref=\"%s\"/>%n", parent.getId());
+                }
+                out.println("  </child>");
+            }
+            out.println("</adag>");
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write DAX: " + daxfile, e);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * @return Stream which discards everything. Used to silence the algorithms' console output.
+     */
+    public static PrintStream nullPrintStream() {
+        return new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+}
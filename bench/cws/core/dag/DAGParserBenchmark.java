@@ -0,0 +1,61 @@
+package cws.core.dag;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cws.core.bench.BenchmarkFixtures;
+
+/**
+ * Parsing of the bundled workload files. The DAX variant parses the same workflow converted to the DAX-like format,
+ * since the workload directory only ships .dag files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DAGParserBenchmark {
+    @Param({ "MONTAGE.n.100.0.dag", "CYBERSHAKE.n.1000.0.dag", "GENOME.n.1000.0.dag", "LIGO.n.1000.0.dag",
+            "SIPHT.n.1000.0.dag" })
+    public String workflow;
+
+    private File dagFile;
+    private File daxFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        dagFile = BenchmarkFixtures.workloadFile(workflow);
+        daxFile = File.createTempFile(workflow, ".dax");
+        BenchmarkFixtures.writeDAX(DAGParser.parseDAG(dagFile), daxFile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        daxFile.delete();
+    }
+
+    @Benchmark
+    public DAG parseDAG() {
+        return DAGParser.parseDAG(dagFile);
+    }
+
+    @Benchmark
+    public DAG parseDAX() {
+        return DAGParser.parseDAX(daxFile);
+    }
+}
@@ -0,0 +1,70 @@
+package cws.core.dag.algorithms;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cws.core.bench.BenchmarkFixtures;
+import cws.core.core.VMType;
+import cws.core.dag.DAG;
+import cws.core.dag.DAGParser;
+import cws.core.dag.Task;
+import cws.core.engine.Environment;
+
+/**
+ * Topological ordering and critical path computation, which every dynamic algorithm runs on DAG submission.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DAGAlgorithmsBenchmark {
+    @Param({ "MONTAGE.n.100.0.dag", "MONTAGE.n.1000.0.dag", "CYBERSHAKE.n.1000.0.dag", "LIGO.n.1000.0.dag" })
+    public String workflow;
+
+    private DAG dag;
+    private TopologicalOrder order;
+    private Environment environment;
+    private VMType vmType;
+
+    @Setup
+    public void setUp() {
+        dag = DAGParser.parseDAG(BenchmarkFixtures.workloadFile(workflow));
+        order = new TopologicalOrder(dag);
+        environment = BenchmarkFixtures.createEnvironment(BenchmarkFixtures.initCloudSim(),
+                BenchmarkFixtures.loadVMTypes());
+        vmType = environment.getFastestVM();
+    }
+
+    @Benchmark
+    public void topologicalOrder(Blackhole bh) {
+        for (Task task : new TopologicalOrder(dag)) {
+            bh.consume(task);
+        }
+    }
+
+    @Benchmark
+    public void topologicalOrderReverse(Blackhole bh) {
+        for (Task task : new TopologicalOrderReverse(dag)) {
+            bh.consume(task);
+        }
+    }
+
+    @Benchmark
+    public double criticalPath() {
+        return new CriticalPath(order, null, environment, vmType).getCriticalPathLength();
+    }
+}
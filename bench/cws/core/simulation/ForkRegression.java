@@ -0,0 +1,159 @@
+package cws.core.simulation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+import cws.core.bench.BenchmarkFixtures;
+
+/**
+ * Regression run of forked simulations. Runs every algorithm of {@link SimulationMultipleWorkflow} over a reference
+ * ensemble with every storage manager, takes a snapshot of each run and continues it unchanged, with VM failures and
+ * with runtime variance and failures together.
+ * <p>
+ * Usage: ForkRegression [-ensemble NAME] [-snapshot-time SECONDS]
+ * <p>
+ * The unchanged fork has to reproduce the results of its run, apart from the wall time, and every other variant has to
+ * finish all the workflows with its failure rate. The exit status is 1 otherwise, or if a fork fails.
+ */
+public class ForkRegression {
+    private static final String REFERENCE_DIR = "bench/reference";
+    private static final String DEFAULT_ENSEMBLE = "reference-n50";
+    private static final String[] ALGORITHMS = { "EBPSM", "MSLBL" };
+    private static final String[] STORAGE_MANAGERS = { "global", "vm2vm" };
+    private static final long SEED = 7;
+    private static final String DEFAULT_SNAPSHOT_TIME = "100";
+
+    /** The unchanged variant first, the others as option=value overrides */
+    private static final String[] VARIANTS = { "", "failure-rate=0.1", "runtime-variance=0.2,failure-rate=0.05" };
+    private static final String[] FAILURE_RATES = { "0.000000", "0.100000", "0.050000" };
+
+    /** Columns of the general results which may differ between a run and its unchanged fork */
+    private static final List<String> MACHINE_DEPENDENT_COLUMNS = Arrays.asList("Algorithm", "Simulation Time");
+
+    public static void main(String[] args) throws IOException {
+        String ensemble = DEFAULT_ENSEMBLE;
+        String snapshotTime = DEFAULT_SNAPSHOT_TIME;
+        for (int i = 0; i < args.length; i++) {
+            if ("-ensemble".equals(args[i])) {
+                ensemble = args[++i];
+            } else if ("-snapshot-time".equals(args[i])) {
+                snapshotTime = args[++i];
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        boolean ok = true;
+        for (String storageManager : STORAGE_MANAGERS) {
+            Map<String, String[]> rows;
+            String[] header;
+            File outputDir = File.createTempFile("fork", "");
+            outputDir.delete();
+            outputDir.mkdirs();
+            try {
+                File outputfile = new File(outputDir, ensemble);
+                run(new File(REFERENCE_DIR, ensemble + ".csv"), outputfile, storageManager, snapshotTime);
+                rows = readGeneralResults(new File(outputfile + "_general.csv"));
+                header = rows.remove("Algorithm");
+            } finally {
+                for (File file : outputDir.listFiles()) {
+                    file.delete();
+                }
+                outputDir.delete();
+            }
+            double time = Double.parseDouble(snapshotTime);
+            for (String algorithm : ALGORITHMS) {
+                String[] run = rows.get(algorithm);
+                for (int v = 0; v < VARIANTS.length; v++) {
+                    String label = String.format("%s[%s@%s]", algorithm, VARIANTS[v].replace(',', ' '), time);
+                    String error = check(header, run, rows.get(label), FAILURE_RATES[v], v == 0);
+                    System.out.println(String.format("%-6s %s %s%s", error == null ? "OK" : "FAILED", storageManager,
+                            label, error == null ? "" : ": " + error));
+                    ok &= error == null;
+                }
+            }
+        }
+
+        if (!ok) {
+            System.exit(1);
+        }
+        System.out.println("Forks match their runs");
+    }
+
+    /**
+     * @return What is wrong with the results of a fork, null if nothing.
+     */
+    private static String check(String[] header, String[] run, String[] fork, String failureRate, boolean unchanged) {
+        if (run == null || fork == null) {
+            return "no results, the run finished before the snapshot or a fork failed";
+        }
+        for (int i = 0; i < header.length; i++) {
+            String column = header[i];
+            if (MACHINE_DEPENDENT_COLUMNS.contains(column)) {
+                continue;
+            }
+            if (column.equals("Failure Rate")) {
+                if (!fork[i].equals(failureRate)) {
+                    return "failure rate " + fork[i] + " instead of " + failureRate;
+                }
+            } else if ((unchanged || column.equals("Num. Workflows")) && !fork[i].equals(run[i])) {
+                return column + " " + fork[i] + " instead of " + run[i];
+            }
+        }
+        return null;
+    }
+
+    private static void run(File workloadFile, File outputfile, String storageManager, String snapshotTime) {
+        String[] args = { "--input-dir", BenchmarkFixtures.WORKLOAD_DIR, "--output-file", outputfile.getPath(),
+                "--storage-manager", storageManager, "--storage-cache", "fifo", "--seed", String.valueOf(SEED),
+                "--enable-logging", "false", "--vm-directory", BenchmarkFixtures.VM_DIR, "--runtime-variance", "0.0",
+                "--failure-rate", "0.0", "--snapshot-time", snapshotTime, "--fork-variants",
+                String.join(";", VARIANTS) };
+        CommandLine cmd;
+        try {
+            cmd = new PosixParser().parse(SimulationMultipleWorkflow.buildOptions(), args);
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+
+        // The algorithms are chatty on stdout
+        PrintStream stdout = System.out;
+        System.setOut(BenchmarkFixtures.nullPrintStream());
+        try {
+            new SimulationMultipleWorkflow().run(cmd, outputfile, workloadFile, false, Arrays.asList(ALGORITHMS));
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    /**
+     * @return The columns of every row by the name of its algorithm, the header's under "Algorithm".
+     */
+    private static Map<String, String[]> readGeneralResults(File file) throws IOException {
+        Map<String, String[]> rows = new LinkedHashMap<String, String[]>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] columns = line.split(",");
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = columns[i].trim();
+                }
+                rows.put(columns[0], columns);
+            }
+        } finally {
+            reader.close();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,325 @@
+package cws.core.simulation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.apache.commons.io.IOUtils;
+
+import cws.core.bench.BenchmarkFixtures;
+
+/**
+ * End-to-end benchmark of whole simulation runs. Runs every algorithm of {@link SimulationMultipleWorkflow} over a
+ * fixed set of reference ensembles with fixed seed and storage settings, records wall time, processed events,
+ * events/sec, peak heap and allocation rate of each run and compares them with a stored baseline.
+ * <p>
+ * Wall times depend on the machine, so they are stored normalized: divided by the time the same JVM takes to run a
+ * fixed calibration kernel, which is independent of the simulator. Allocations are stored per processed event. The
+ * baseline committed with the sources can then be compared with runs on other machines; absolute wall times and
+ * events/sec are only printed.
+ * <p>
+ * Usage: MacroBenchmark [-baseline FILE] [-threshold FRACTION] [-result FILE] [-update-baseline] [-repeat N]
+ * <p>
+ * The exit status is 1 if any run got slower (normalized time) or allocated more per event than the baseline by more
+ * than the threshold, or if it processed a different number of events, which means the simulation itself changed.
+ */
+public class MacroBenchmark {
+    private static final String REFERENCE_DIR = "bench/reference";
+    private static final String[] REFERENCE_ENSEMBLES = { "reference-n50", "reference-n100", "reference-n1000" };
+    private static final String[] ALGORITHMS = { "EBPSM", "MSLBL" };
+    private static final long SEED = 7;
+    private static final String STORAGE_MANAGER = "global";
+    private static final String STORAGE_CACHE = "fifo";
+
+    private static final String DEFAULT_BASELINE = "bench/macro-baseline.csv";
+    private static final String DEFAULT_RESULT = "macro-result.csv";
+    private static final double DEFAULT_THRESHOLD = 0.10;
+
+    private static final String HEADER = "Ensemble, Algorithm, Events, Normalized Time, Allocation Bytes/event, "
+            + "Peak Heap MB";
+
+    /** Runs of the calibration kernel, the fastest one is the time unit */
+    private static final int CALIBRATION_RUNS = 10;
+    private static final int CALIBRATION_SIZE = 1 << 20;
+
+    /** Measurements of a single run */
+    static class RunResult {
+        String ensemble;
+        String algorithm;
+        long events;
+        /** Wall time in calibration units */
+        double normalizedTime;
+        double allocationPerEvent;
+        double peakHeapMB;
+        // Machine dependent, printed but not stored
+        double wallTime;
+        double eventsPerSecond;
+
+        String getKey() {
+            return ensemble + "/" + algorithm;
+        }
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%s, %s, %d, %f, %f, %f", ensemble, algorithm, events, normalizedTime,
+                    allocationPerEvent, peakHeapMB);
+        }
+
+        static RunResult fromCsv(String line) {
+            String[] rec = line.split(",");
+            RunResult result = new RunResult();
+            result.ensemble = rec[0].trim();
+            result.algorithm = rec[1].trim();
+            result.events = Long.parseLong(rec[2].trim());
+            result.normalizedTime = Double.parseDouble(rec[3].trim());
+            result.allocationPerEvent = Double.parseDouble(rec[4].trim());
+            result.peakHeapMB = Double.parseDouble(rec[5].trim());
+            return result;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        File baselineFile = new File(DEFAULT_BASELINE);
+        File resultFile = new File(DEFAULT_RESULT);
+        double threshold = DEFAULT_THRESHOLD;
+        boolean updateBaseline = false;
+        int repeat = 3;
+        for (int i = 0; i < args.length; i++) {
+            if ("-baseline".equals(args[i])) {
+                baselineFile = new File(args[++i]);
+            } else if ("-result".equals(args[i])) {
+                resultFile = new File(args[++i]);
+            } else if ("-threshold".equals(args[i])) {
+                threshold = Double.parseDouble(args[++i]);
+            } else if ("-repeat".equals(args[i])) {
+                repeat = Integer.parseInt(args[++i]);
+            } else if ("-update-baseline".equals(args[i])) {
+                updateBaseline = true;
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        double timeUnit = calibrate();
+        System.out.println(String.format(Locale.ROOT, "Calibration time unit: %f s", timeUnit));
+        List<RunResult> results = new ArrayList<RunResult>();
+        for (String ensemble : REFERENCE_ENSEMBLES) {
+            for (String algorithm : ALGORITHMS) {
+                RunResult result = runBest(ensemble, algorithm, repeat);
+                result.normalizedTime = result.wallTime / timeUnit;
+                System.out.println(HEADER);
+                System.out.println(result.toCsv());
+                System.out.println(String.format(Locale.ROOT, "  wall time %f s, %f events/sec", result.wallTime,
+                        result.eventsPerSecond));
+                results.add(result);
+            }
+        }
+
+        writeResults(results, resultFile);
+        if (updateBaseline) {
+            writeResults(results, baselineFile);
+            System.out.println("Baseline written to " + baselineFile);
+            return;
+        }
+        if (!baselineFile.exists()) {
+            System.out.println("No baseline found at " + baselineFile + ", run with -update-baseline to create one");
+            return;
+        }
+        if (!compareWithBaseline(results, readResults(baselineFile), threshold)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Times a fixed kernel which does what the simulator mostly does, i.e. chases pointers through a heap of small
+     * objects, compares doubles and allocates short-lived objects, but none of its code.
+     *
+     * @return Time of the fastest of the kernel's runs in seconds, the unit of the normalized wall times.
+     */
+    static double calibrate() {
+        double best = Double.MAX_VALUE;
+        long checksum = 0;
+        for (int i = 0; i < CALIBRATION_RUNS; i++) {
+            long start = System.nanoTime();
+            checksum += calibrationKernel();
+            best = Math.min(best, (System.nanoTime() - start) / 1.0e9);
+        }
+        // Keep the JIT from removing the kernel
+        if (checksum == 42) {
+            System.out.println();
+        }
+        return best;
+    }
+
+    private static long calibrationKernel() {
+        PriorityQueue<Double> queue = new PriorityQueue<Double>();
+        HashMap<Integer, Double> map = new HashMap<Integer, Double>();
+        long state = 7;
+        long checksum = 0;
+        for (int i = 0; i < CALIBRATION_SIZE; i++) {
+            state = state * 6364136223846793005L + 1442695040888963407L;
+            double value = (state >>> 11) * 0x1.0p-53;
+            queue.add(value);
+            map.put((int) (state >>> 44), value);
+            if (queue.size() > 1024) {
+                checksum += Double.doubleToLongBits(queue.poll());
+            }
+        }
+        return checksum + map.size();
+    }
+
+    /**
+     * Runs the simulation the given number of times and returns the fastest run, which is the least disturbed one.
+     */
+    private static RunResult runBest(String ensemble, String algorithm, int repeat) throws IOException {
+        RunResult best = null;
+        for (int i = 0; i < repeat; i++) {
+            RunResult result = run(ensemble, algorithm);
+            if (best == null || result.wallTime < best.wallTime) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    private static RunResult run(String ensemble, String algorithm) throws IOException {
+        File workloadFile = new File(REFERENCE_DIR, ensemble + ".csv");
+        File outputDir = File.createTempFile("macro", "");
+        outputDir.delete();
+        outputDir.mkdirs();
+        File outputfile = new File(outputDir, ensemble);
+
+        CommandLine cmd = buildArgs(outputfile);
+        SimulationMultipleWorkflow sim = new SimulationMultipleWorkflow();
+
+        List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // The algorithms are chatty on stdout, keep the console out of the measurement
+        PrintStream stdout = System.out;
+        System.setOut(BenchmarkFixtures.nullPrintStream());
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        try {
+            sim.run(cmd, outputfile, workloadFile, false, Arrays.asList(algorithm));
+        } finally {
+            System.setOut(stdout);
+        }
+        long wallNanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        for (File file : outputDir.listFiles()) {
+            file.delete();
+        }
+        outputDir.delete();
+
+        RunResult result = new RunResult();
+        result.ensemble = ensemble;
+        result.algorithm = algorithm;
+        result.wallTime = wallNanos / 1.0e9;
+        result.events = sim.getProcessedEvents();
+        result.eventsPerSecond = result.events / (sim.getSimulationWallTime() / 1.0e9);
+        result.peakHeapMB = peakHeap / (1024.0 * 1024.0);
+        result.allocationPerEvent = (double) allocated / result.events;
+        return result;
+    }
+
+    private static CommandLine buildArgs(File outputfile) {
+        String[] args = { "--input-dir", BenchmarkFixtures.WORKLOAD_DIR, "--output-file", outputfile.getPath(),
+                "--storage-manager", STORAGE_MANAGER, "--storage-cache", STORAGE_CACHE, "--seed", String.valueOf(SEED),
+                "--enable-logging", "false", "--vm-directory", BenchmarkFixtures.VM_DIR, "--runtime-variance", "0.2",
+                "--failure-rate", "0.0" };
+        try {
+            return new PosixParser().parse(SimulationMultipleWorkflow.buildOptions(), args);
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean compareWithBaseline(List<RunResult> results, Map<String, RunResult> baseline,
+            double threshold) {
+        boolean ok = true;
+        for (RunResult result : results) {
+            RunResult base = baseline.get(result.getKey());
+            if (base == null) {
+                System.out.println("NEW " + result.getKey() + ": not in baseline");
+                continue;
+            }
+            double timeChange = result.normalizedTime / base.normalizedTime - 1.0;
+            double allocationChange = result.allocationPerEvent / base.allocationPerEvent - 1.0;
+            String status = "OK";
+            if (result.events != base.events) {
+                status = "CHANGED";
+                ok = false;
+            } else if (timeChange > threshold || allocationChange > threshold) {
+                status = "REGRESSION";
+                ok = false;
+            }
+            System.out.println(String.format(Locale.ROOT,
+                    "%-10s %s: normalized time %+.1f%%, allocation/event %+.1f%%, events %d (baseline %d)", status,
+                    result.getKey(), timeChange * 100, allocationChange * 100, result.events, base.events));
+        }
+        return ok;
+    }
+
+    private static void writeResults(List<RunResult> results, File file) {
+        PrintStream out = null;
+        try {
+            out = new PrintStream(new FileOutputStream(file));
+            out.println(HEADER);
+            for (RunResult result : results) {
+                out.println(result.toCsv());
+            }
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    private static Map<String, RunResult> readResults(File file) throws IOException {
+        Map<String, RunResult> results = new LinkedHashMap<String, RunResult>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            reader.readLine(); // header
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.trim().length() > 0) {
+                    RunResult result = RunResult.fromCsv(line);
+                    results.put(result.getKey(), result);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return results;
+    }
+}
@@ -0,0 +1,105 @@
+package cws.core.storage.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cws.core.VM;
+import cws.core.bench.BenchmarkFixtures;
+import cws.core.cloudsim.CloudSimWrapper;
+import cws.core.core.VMType;
+import cws.core.dag.DAG;
+import cws.core.dag.DAGFile;
+import cws.core.dag.DAGJob;
+import cws.core.dag.DAGParser;
+import cws.core.dag.Task;
+import cws.core.dag.algorithms.TopologicalOrder;
+import cws.core.jobs.Job;
+import cws.core.provisioner.VMFactory;
+
+/**
+ * Replays the file accesses of a whole workflow against a cache manager: tasks are assigned round-robin to a fleet of
+ * VMs in topological order, each input is looked up in the cache and each output is put into it. The cache managers
+ * are recreated on every invocation so that every replay starts from cold caches; since they are simulation entities
+ * the simulation is reinitialized every iteration to drop them again.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CacheManagerBenchmark {
+    @Param({ "fifo", "unlimited" })
+    public String cache;
+
+    @Param({ "MONTAGE.n.1000.0.dag", "GENOME.n.1000.0.dag" })
+    public String workflow;
+
+    @Param({ "16" })
+    public int vms;
+
+    private CloudSimWrapper cloudsim;
+    private List<Job> jobs;
+
+    @Setup
+    public void setUp() {
+        cloudsim = BenchmarkFixtures.initCloudSim();
+        List<VMType> vmTypes = BenchmarkFixtures.loadVMTypes();
+        List<VM> fleet = new ArrayList<VM>();
+        for (int i = 0; i < vms; i++) {
+            fleet.add(VMFactory.createVM(vmTypes.get(i % vmTypes.size()), cloudsim));
+        }
+        DAG dag = DAGParser.parseDAG(BenchmarkFixtures.workloadFile(workflow));
+        DAGJob dagJob = new DAGJob(dag, 0, 0.0);
+        jobs = new ArrayList<Job>();
+        for (Task task : new TopologicalOrder(dag)) {
+            Job job = new Job(dagJob, task, 0, cloudsim);
+            job.setVM(fleet.get(jobs.size() % fleet.size()));
+            jobs.add(job);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetSimulation() {
+        cloudsim.init();
+    }
+
+    private VMCacheManager createCacheManager() {
+        if ("fifo".equals(cache)) {
+            return new FIFOCacheManager(cloudsim);
+        } else {
+            return new UnlimitedCacheManager(cloudsim);
+        }
+    }
+
+    @Benchmark
+    public int replayWorkflow() {
+        VMCacheManager cacheManager = createCacheManager();
+        int hits = 0;
+        for (Job job : jobs) {
+            for (DAGFile file : job.getTask().getInputFiles()) {
+                if (cacheManager.getFileFromCache(file, job)) {
+                    hits++;
+                }
+            }
+            for (DAGFile file : job.getTask().getOutputFiles()) {
+                cacheManager.putFileToCache(file, job);
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,61 @@
+package cws.core.transfer;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cws.core.cloudsim.CloudSimWrapper;
+
+/**
+ * Max-min fair bandwidth allocation over a random set of flows. Every flow connects two of the shared ports over one
+ * of the shared links, so ports and links are contended by roughly four and eight flows respectively.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AllocateBandwidthBenchmark {
+    @Param({ "10", "100", "1000" })
+    public int flows;
+
+    private Transfer[] transfers;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        CloudSimWrapper cloudsim = new CloudSimWrapper();
+        Port[] ports = new Port[Math.max(2, flows / 2)];
+        for (int i = 0; i < ports.length; i++) {
+            ports[i] = new Port(100 + random.nextInt(900));
+        }
+        Link[] links = new Link[Math.max(1, flows / 8)];
+        for (int i = 0; i < links.length; i++) {
+            links[i] = new Link(1000 + random.nextInt(9000), TransferManager.DEFAULT_RTT);
+        }
+        transfers = new Transfer[flows];
+        for (int i = 0; i < flows; i++) {
+            Port src = ports[random.nextInt(ports.length)];
+            Port dest = ports[random.nextInt(ports.length)];
+            Link link = links[random.nextInt(links.length)];
+            transfers[i] = new Transfer(src, dest, link, 1000000L + random.nextInt(100000000), 0, cloudsim, null, null);
+        }
+    }
+
+    @Benchmark
+    public double[] allocateBandwidth() {
+        return TransferManager.allocateBandwidth(transfers);
+    }
+}
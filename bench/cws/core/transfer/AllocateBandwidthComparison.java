@@ -0,0 +1,265 @@
+package cws.core.transfer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import cws.core.cloudsim.CloudSimWrapper;
+
+/**
+ * Compares {@link TransferManager#allocateBandwidth(Transfer[])} with the plain progressive filling algorithm it
+ * replaced, on random scenarios. The reference algorithm is kept here: every port and every link of the transfers is a
+ * node, whether it is shared or not and whatever its bandwidth, so it is the max-min fair allocation by definition.
+ * <p>
+ * Scenarios place VMs with interfaces of the bundled VM types on racks and zones and connect them by paths shaped like
+ * those of {@link NetworkTopology}: an unlimited switch link within a rack, the rack links within a zone and the zone
+ * links and the core between zones. Some transfers stay within their VM. All the random numbers come from the seed, so
+ * a run can be reproduced exactly.
+ * <p>
+ * Usage: AllocateBandwidthComparison [-seed N] [-scenarios N] [-tolerance FRACTION]
+ * <p>
+ * For every number of transfers, prints the largest relative difference between the allocations and the best time of
+ * both algorithms. The exit status is 1 if any allocation differs by more than the tolerance.
+ */
+public class AllocateBandwidthComparison {
+    private static final int[] TRANSFERS = { 1, 2, 5, 10, 50, 100, 500, 1000 };
+    private static final double[] INTERFACE_BANDWIDTHS = { 500.0, 750.0, 1000.0, 2000.0 };
+    private static final double[] RACK_BANDWIDTHS = { 1000.0, 10000.0 };
+    private static final double[] ZONE_BANDWIDTHS = { 4000.0, 40000.0 };
+    private static final double[] CORE_BANDWIDTHS = { 10000.0, 100000.0 };
+
+    private static final long DEFAULT_SEED = 7;
+    private static final int DEFAULT_SCENARIOS = 200;
+    private static final double DEFAULT_TOLERANCE = 1e-9;
+
+    /** Timed runs of each algorithm per scenario, the fastest one is kept */
+    private static final int TIMED_RUNS = 5;
+    /** Scenarios run before timing, so both algorithms are compiled */
+    private static final int WARMUP_SCENARIOS = 200;
+
+    private static final String HEADER = "Transfers, Scenarios, Max Relative Difference, Reference us, Current us";
+
+    public static void main(String[] args) {
+        long seed = DEFAULT_SEED;
+        int scenarios = DEFAULT_SCENARIOS;
+        double tolerance = DEFAULT_TOLERANCE;
+        for (int i = 0; i < args.length; i++) {
+            if ("-seed".equals(args[i])) {
+                seed = Long.parseLong(args[++i]);
+            } else if ("-scenarios".equals(args[i])) {
+                scenarios = Integer.parseInt(args[++i]);
+            } else if ("-tolerance".equals(args[i])) {
+                tolerance = Double.parseDouble(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        CloudSimWrapper cloudsim = new CloudSimWrapper();
+        // A separate stream, so the compared scenarios only depend on the seed
+        Random warmup = new Random(seed + 1);
+        for (int s = 0; s < WARMUP_SCENARIOS; s++) {
+            Transfer[] scenario = newScenario(warmup, TRANSFERS[s % TRANSFERS.length], cloudsim);
+            allocateReference(scenario);
+            TransferManager.allocateBandwidth(scenario);
+        }
+
+        Random random = new Random(seed);
+        boolean identical = true;
+        System.out.println(HEADER);
+        for (int transfers : TRANSFERS) {
+            double maxDifference = 0.0;
+            double referenceTime = 0.0;
+            double currentTime = 0.0;
+            for (int s = 0; s < scenarios; s++) {
+                Transfer[] scenario = newScenario(random, transfers, cloudsim);
+                double[] expected = allocateReference(scenario);
+                double[] actual = TransferManager.allocateBandwidth(scenario);
+                for (int i = 0; i < scenario.length; i++) {
+                    double difference = Math.abs(actual[i] - expected[i]) / expected[i];
+                    if (difference > tolerance) {
+                        System.out.println(String.format(Locale.ROOT,
+                                "Scenario %d with %d transfers: transfer %d got %f Mbps instead of %f", s, transfers,
+                                i, actual[i], expected[i]));
+                        identical = false;
+                    }
+                    maxDifference = Math.max(maxDifference, difference);
+                }
+                referenceTime += timeReference(scenario);
+                currentTime += timeCurrent(scenario);
+            }
+            System.out.println(String.format(Locale.ROOT, "%d, %d, %e, %f, %f", transfers, scenarios, maxDifference,
+                    referenceTime / scenarios * 1e6, currentTime / scenarios * 1e6));
+        }
+
+        if (!identical) {
+            System.out.println("Allocations differ from the reference algorithm");
+            System.exit(1);
+        }
+        System.out.println("Allocations match the reference algorithm");
+    }
+
+    /**
+     * @return Transfers between random VMs of a random topology. There are about half as many VMs as transfers, so
+     *         their interfaces are contended, and so are the rack and zone links when there are several racks.
+     */
+    static Transfer[] newScenario(Random random, int transfers, CloudSimWrapper cloudsim) {
+        int vms = 2 + random.nextInt(Math.max(1, transfers));
+        int vmsPerRack = 1 + random.nextInt(vms);
+        int racks = (vms + vmsPerRack - 1) / vmsPerRack;
+        int racksPerZone = 1 + random.nextInt(racks);
+        double rackBandwidth = RACK_BANDWIDTHS[random.nextInt(RACK_BANDWIDTHS.length)];
+        double zoneBandwidth = ZONE_BANDWIDTHS[random.nextInt(ZONE_BANDWIDTHS.length)];
+        Link core = new Link(CORE_BANDWIDTHS[random.nextInt(CORE_BANDWIDTHS.length)], 10.0);
+
+        Port[] inputs = new Port[vms];
+        Port[] outputs = new Port[vms];
+        for (int i = 0; i < vms; i++) {
+            double bandwidth = INTERFACE_BANDWIDTHS[random.nextInt(INTERFACE_BANDWIDTHS.length)];
+            inputs[i] = new Port(bandwidth);
+            outputs[i] = new Port(bandwidth);
+        }
+        Link loopback = new Link(NetworkTopology.UNLIMITED_BANDWIDTH, 0.0);
+        Link[] switches = new Link[racks];
+        Link[] rackUplinks = new Link[racks];
+        Link[] rackDownlinks = new Link[racks];
+        for (int r = 0; r < racks; r++) {
+            switches[r] = new Link(NetworkTopology.UNLIMITED_BANDWIDTH, TransferManager.DEFAULT_RTT);
+            rackUplinks[r] = new Link(rackBandwidth, 5.0);
+            rackDownlinks[r] = new Link(rackBandwidth, 5.0);
+        }
+        int zones = (racks + racksPerZone - 1) / racksPerZone;
+        Link[] zoneUplinks = new Link[zones];
+        Link[] zoneDownlinks = new Link[zones];
+        for (int z = 0; z < zones; z++) {
+            zoneUplinks[z] = new Link(zoneBandwidth, 0.0);
+            zoneDownlinks[z] = new Link(zoneBandwidth, 0.0);
+        }
+
+        Transfer[] scenario = new Transfer[transfers];
+        for (int i = 0; i < transfers; i++) {
+            int from = random.nextInt(vms);
+            // One transfer in ten stays within its VM
+            int to = random.nextInt(10) == 0 ? from : random.nextInt(vms);
+            int fromRack = from / vmsPerRack;
+            int toRack = to / vmsPerRack;
+            Link[] path;
+            if (from == to) {
+                path = new Link[] { loopback };
+            } else if (fromRack == toRack) {
+                path = new Link[] { switches[fromRack] };
+            } else if (fromRack / racksPerZone == toRack / racksPerZone) {
+                path = new Link[] { rackUplinks[fromRack], rackDownlinks[toRack] };
+            } else {
+                path = new Link[] { rackUplinks[fromRack], zoneUplinks[fromRack / racksPerZone], core,
+                        zoneDownlinks[toRack / racksPerZone], rackDownlinks[toRack] };
+            }
+            scenario[i] = new Transfer(outputs[from], inputs[to], path, 1000000L + random.nextInt(100000000), 0,
+                    cloudsim, null, null);
+        }
+        return scenario;
+    }
+
+    private static double timeReference(Transfer[] scenario) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < TIMED_RUNS; run++) {
+            long start = System.nanoTime();
+            allocateReference(scenario);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e9;
+    }
+
+    private static double timeCurrent(Transfer[] scenario) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < TIMED_RUNS; run++) {
+            long start = System.nanoTime();
+            TransferManager.allocateBandwidth(scenario);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e9;
+    }
+
+    /** A network element with a bandwidth capacity */
+    private static class Node {
+        HashSet<Flow> flows = new HashSet<Flow>();
+        double capacity = 0.0;
+    }
+
+    /** The bandwidth allocated to a transfer */
+    private static class Flow {
+        List<Node> path = new ArrayList<Node>();
+        double allocation = 0.0;
+    }
+
+    /**
+     * The progressive filling algorithm over all the ports and links of the transfers.
+     */
+    static double[] allocateReference(Transfer[] transfers) {
+        Flow[] flows = new Flow[transfers.length];
+        List<Node> nodes = new ArrayList<Node>();
+        HashMap<Object, Node> elements = new HashMap<Object, Node>();
+
+        for (int i = 0; i < transfers.length; i++) {
+            Transfer t = transfers[i];
+            Flow f = flows[i] = new Flow();
+            List<Object> path = new ArrayList<Object>();
+            path.add(t.getSourcePort());
+            path.add(t.getDestinationPort());
+            for (Link link : t.getPath()) {
+                path.add(link);
+            }
+            for (Object element : path) {
+                Node n = elements.get(element);
+                if (n == null) {
+                    n = new Node();
+                    n.capacity = element instanceof Port ? ((Port) element).getBandwidth()
+                            : ((Link) element).getBandwidth();
+                    elements.put(element, n);
+                    nodes.add(n);
+                }
+                n.flows.add(f);
+                f.path.add(n);
+            }
+        }
+
+        // As long as there are nodes remaining that have flows
+        while (!nodes.isEmpty()) {
+            // Find the node with the smallest remaining fair share
+            Node minNode = null;
+            double minShare = Double.MAX_VALUE;
+            for (Node n : nodes) {
+                double share = n.capacity / n.flows.size();
+                if (share <= minShare) {
+                    minShare = share;
+                    minNode = n;
+                }
+            }
+
+            // Allocate the min share to each flow that uses the min node
+            for (Flow f : minNode.flows.toArray(new Flow[0])) {
+                f.allocation += minShare;
+                for (Node n : f.path) {
+                    n.capacity -= minShare;
+                    n.flows.remove(f);
+                }
+            }
+
+            // Remove all nodes with no remaining flows
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                if (nodes.get(i).flows.isEmpty()) {
+                    nodes.remove(i);
+                }
+            }
+        }
+
+        double[] allocations = new double[transfers.length];
+        for (int i = 0; i < transfers.length; i++) {
+            allocations[i] = flows[i].allocation;
+        }
+        return allocations;
+    }
+}
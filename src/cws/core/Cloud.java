@@ -6,6 +6,7 @@ import cws.core.cloudsim.CWSSimEntity;
 import cws.core.cloudsim.CWSSimEvent;
 import cws.core.cloudsim.CloudSimWrapper;
 import cws.core.exception.UnknownWorkflowEventException;
+import cws.core.jfr.VMLifecycleEvent;
 
 /**
  * A Cloud is an entity that handles the provisioning and deprovisioning
@@ -20,6 +21,10 @@ public class Cloud extends CWSSimEntity {
 
     private HashSet<VMListener> vmListeners = new HashSet<VMListener>();
 
+    /** For snapshots */
+    private Cloud() {
+    }
+
     public Cloud(CloudSimWrapper cloudsim) {
         super("Cloud", cloudsim);
     }
@@ -53,6 +58,9 @@ public class Cloud extends CWSSimEntity {
     }
 
     private void launchVM(int owner, VM vm) {
+        VMLifecycleEvent event = new VMLifecycleEvent();
+        event.begin();
+
         vm.setOwner(owner);
         vm.setCloud(getId());
         vm.setLaunchTime(getCloudsim().clock());
@@ -62,7 +70,10 @@ public class Cloud extends CWSSimEntity {
         getCloudsim().sendNow(this.getId(), vm.getId(), WorkflowEvent.VM_LAUNCH, null);
 
         // But it isn't ready until after the delay
-        getCloudsim().send(getId(), getId(), vm.getProvisioningDelay(), WorkflowEvent.VM_LAUNCHED, vm);
+        double delay = vm.sampleProvisioningDelay();
+        getCloudsim().send(getId(), getId(), delay, WorkflowEvent.VM_LAUNCHED, vm);
+
+        commitLifecycleEvent(event, vm, VMLifecycleEvent.LAUNCH, delay);
     }
 
     private void vmLaunched(VM vm) {
@@ -85,12 +96,31 @@ public class Cloud extends CWSSimEntity {
         if (!vms.contains(vm)) {
             throw new RuntimeException("Unknown VM");
         }
+        VMLifecycleEvent event = new VMLifecycleEvent();
+        event.begin();
 
         // We terminate the VM now...
         getCloudsim().sendNow(this.getId(), vm.getId(), WorkflowEvent.VM_TERMINATE, null);
 
         // But it isn't gone until after the delay
-        getCloudsim().send(getId(), getId(), vm.getDeprovisioningDelay(), WorkflowEvent.VM_TERMINATED, vm);
+        double delay = vm.sampleDeprovisioningDelay();
+        getCloudsim().send(getId(), getId(), delay, WorkflowEvent.VM_TERMINATED, vm);
+
+        commitLifecycleEvent(event, vm, VMLifecycleEvent.TERMINATE, delay);
+    }
+
+    private void commitLifecycleEvent(VMLifecycleEvent event, VM vm, String action, double delay) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.simTime = getCloudsim().clock();
+            event.cloudId = getId();
+            event.vmId = vm.getId();
+            event.vmType = vm.getVmType().getName();
+            event.action = action;
+            event.delay = delay;
+            event.activeVMs = vms.size();
+            event.commit();
+        }
     }
 
     private void vmTerminated(VM vm) {
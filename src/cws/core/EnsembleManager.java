@@ -1,12 +1,14 @@
 package cws.core;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
 
 import cws.core.cloudsim.CWSSimEntity;
 import cws.core.cloudsim.CWSSimEvent;
 import cws.core.cloudsim.CloudSimWrapper;
 import cws.core.dag.DAG;
+import cws.core.dag.DAGArrival;
 import cws.core.dag.DAGJob;
 import cws.core.dag.DAGJobListener;
 
@@ -14,6 +16,11 @@ import cws.core.dag.DAGJobListener;
  * This class manages a collection of DAGs and submits them to a WorkflowEngine
  * for execution in priority order according to a scheduling algorithm.
  * 
+ * The DAGs can also be streamed from a sequence of arrivals. Then only a small
+ * look-ahead window of upcoming DAGs is materialized and waiting for its submit
+ * time; the next arrival is read whenever one of them starts, so memory depends
+ * on the number of concurrent workflows rather than on the workload length.
+ * 
  * @author Gideon Juve <juve@usc.edu>
  */
 public class EnsembleManager extends CWSSimEntity {
@@ -26,6 +33,22 @@ public class EnsembleManager extends CWSSimEntity {
     /** Workflow engine that will receive DAGs for execution */
     private WorkflowEngine engine = null;
 
+    /** Arrivals not read yet when streaming, null otherwise */
+    private Iterator<DAGArrival> arrivals;
+
+    /** Maximum number of materialized DAGs waiting for their submit time when streaming */
+    private int lookAhead;
+
+    /** Number of materialized DAGs submitted but not started yet when streaming */
+    private int pendingSubmits;
+
+    /** Priority of the next DAG, i.e. its position in the ensemble or in the arrivals */
+    private int nextPriority;
+
+    /** For snapshots */
+    private EnsembleManager() {
+    }
+
     public EnsembleManager(Collection<DAG> dags, WorkflowEngine engine, CloudSimWrapper cloudsim) {
         super("EnsembleManager", cloudsim);
         this.engine = engine;
@@ -38,14 +61,28 @@ public class EnsembleManager extends CWSSimEntity {
         this(null, engine, cloudsim);
     }
 
+    /**
+     * Streams DAGs from the given arrivals, which should be in submit time order.
+     * 
+     * @param lookAhead - how many materialized DAGs may wait for their submit time at once, at least 1.
+     */
+    public EnsembleManager(Iterator<DAGArrival> arrivals, int lookAhead, WorkflowEngine engine,
+            CloudSimWrapper cloudsim) {
+        this(null, engine, cloudsim);
+        if (lookAhead < 1) {
+            throw new IllegalArgumentException("Look-ahead must be at least 1, " + lookAhead + " is not allowed");
+        }
+        this.arrivals = arrivals;
+        this.lookAhead = lookAhead;
+    }
+
     private void processDAGs(Collection<DAG> dags) {
         if (dags == null)
             return;
         
-        // no priority
         for (DAG d : dags) {
             DAGJob dj = new DAGJob(d, getId(), d.getSubmitTime());
-            //dj.setPriority(priority);
+            dj.setPriority(nextPriority++);
             this.dags.add(dj);
         }
     }
@@ -64,6 +101,24 @@ public class EnsembleManager extends CWSSimEntity {
         while (!dags.isEmpty()) {
             submitDAG(dags.pop());
         }
+        submitArrivals();
+    }
+
+    /**
+     * Materializes and submits arrivals until the look-ahead window is full.
+     */
+    private void submitArrivals() {
+        if (arrivals == null) {
+            return;
+        }
+        while (pendingSubmits < lookAhead && arrivals.hasNext()) {
+            DAG dag = arrivals.next().materialize();
+            DAGJob dagJob = new DAGJob(dag, getId(), dag.getSubmitTime());
+            dagJob.setPriority(nextPriority++);
+            this.dags.add(dagJob);
+            pendingSubmits++;
+            submitDAG(dagJob);
+        }
     }
 
     @Override
@@ -87,7 +142,8 @@ public class EnsembleManager extends CWSSimEntity {
 
     public void submitDAG(DAGJob dagJob) { 
     	//Submit the dag to the workflow engine
-    	getCloudsim().send(getId(), engine.getId(), dagJob.getStartTime(), WorkflowEvent.DAG_SUBMIT, dagJob);
+    	double delay = Math.max(0.0, dagJob.getStartTime() - getCloudsim().clock());
+    	getCloudsim().send(getId(), engine.getId(), delay, WorkflowEvent.DAG_SUBMIT, dagJob);
     }
     
     private void dagStarted(DAGJob dag) {
@@ -95,6 +151,10 @@ public class EnsembleManager extends CWSSimEntity {
         for (DAGJobListener l : listeners) {
             l.dagStarted(dag);
         }
+        if (arrivals != null) {
+            pendingSubmits--;
+            submitArrivals();
+        }
     }
 
     private void dagFinished(DAGJob dag) {
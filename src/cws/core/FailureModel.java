@@ -1,7 +1,5 @@
 package cws.core;
 
-import java.util.Random;
-
 /**
  * This is a uniform failure distribution with a fixed failure rate.
  * 
@@ -9,17 +7,29 @@ import java.util.Random;
  */
 public class FailureModel {
 
-    private Random random;
+    private RandomStream random;
 
     private double failureRate;
 
+    /** For snapshots */
+    private FailureModel() {
+    }
+
     /**
      * @param seed Seed for random number generator
      * @param failureRate Failure rate between 0 and 1 representing percentage
      *            failures. A failure rate of 0 means that no failures occur.
      */
     public FailureModel(long seed, double failureRate) {
-        this.random = new Random(seed);
+        this(new RandomStream(seed), failureRate);
+    }
+
+    /**
+     * @param random Stream to draw failures from
+     * @param failureRate Failure rate between 0 and 1
+     */
+    public FailureModel(RandomStream random, double failureRate) {
+        this.random = random;
         this.failureRate = failureRate;
 
         if (failureRate < 0 || failureRate > 1) {
@@ -52,4 +62,11 @@ public class FailureModel {
         double fraction = this.random.nextDouble();
         return predictedRuntime * fraction;
     }
+
+    /**
+     * Returns a failure model with the same rate which draws from the given stream.
+     */
+    public FailureModel withStream(RandomStream random) {
+        return new FailureModel(random, failureRate);
+    }
 }
@@ -8,4 +8,9 @@ public class IdentityPerformanceVariationDistribution implements PerformanceVari
 		return 1.0;
 	}
 
+	@Override
+	public PerformanceVariationDistribution withStream(RandomStream random) {
+		return this;
+	}
+
 }
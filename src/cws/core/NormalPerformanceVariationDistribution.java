@@ -1,16 +1,22 @@
 package cws.core;
 
-import java.util.Random;
-
 public class NormalPerformanceVariationDistribution implements PerformanceVariationDistribution {
 
-	private Random random;
+	private RandomStream random;
 	private double average;
 	private double stddev;
 	private double maxVar;
 	
+	/** For snapshots */
+	private NormalPerformanceVariationDistribution() {
+	}
+
 	public NormalPerformanceVariationDistribution(long seed, double average, double stddev, double maxVar) {
-		this.random = new Random(seed);
+		this(new RandomStream(seed), average, stddev, maxVar);
+	}
+	
+	public NormalPerformanceVariationDistribution(RandomStream random, double average, double stddev, double maxVar) {
+		this.random = random;
 		this.average = average;
 		this.stddev = stddev;
 		this.maxVar = maxVar;
@@ -31,4 +37,8 @@ public class NormalPerformanceVariationDistribution implements PerformanceVariat
 		return 1.0 - performanceLoss;
 	}
 
+	@Override
+	public PerformanceVariationDistribution withStream(RandomStream random) {
+		return new NormalPerformanceVariationDistribution(random, average, stddev, maxVar);
+	}
 }
@@ -7,4 +7,9 @@ public interface PerformanceVariationDistribution {
 	 * 1.0 means the whole capacity.
 	 */
 	public double getPerformanceVariation();
+
+	/*
+	 * Returns a distribution with the same parameters which draws from the given stream.
+	 */
+	public PerformanceVariationDistribution withStream(RandomStream random);
 }
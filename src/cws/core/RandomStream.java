@@ -0,0 +1,39 @@
+package cws.core;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * One stream of {@link RandomStreams}. It draws exactly the numbers {@link java.util.SplittableRandom} draws from the
+ * same seed, using the same SplitMix64 generator, but keeps its state in plain fields so simulation snapshots can copy
+ * it, see {@link cws.core.snapshot.SimulationSnapshot}.
+ */
+public class RandomStream implements RandomGenerator {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+
+    public RandomStream(long seed) {
+        this.seed = seed;
+    }
+
+    /** For snapshots */
+    private RandomStream() {
+    }
+
+    @Override
+    public long nextLong() {
+        seed += GOLDEN_GAMMA;
+        long z = seed;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public int nextInt() {
+        seed += GOLDEN_GAMMA;
+        long z = seed;
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+}
@@ -0,0 +1,69 @@
+package cws.core;
+
+/**
+ * Source of randomness of a simulation run, see {@link cws.core.cloudsim.CloudSimWrapper#getRandomStreams()}. Every
+ * entity or sampler asks for its own named stream, which is derived deterministically from the run seed and the stream
+ * name (and optionally an index such as an entity id). Two runs with the same seed therefore draw exactly the same
+ * numbers in every stream, regardless of how sampling in other streams is interleaved, and independent runs of a sweep
+ * only need different seeds.
+ *
+ * Instances are immutable, so simulations running in the same JVM, each with its own instance, do not affect each
+ * other.
+ */
+public class RandomStreams {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long seed;
+
+    /** For snapshots */
+    private RandomStreams() {
+        this(0);
+    }
+
+    public RandomStreams(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return A new stream for the given name. Repeated calls with the same name return equal, independent copies.
+     */
+    public RandomStream stream(String name) {
+        return new RandomStream(seedFor(name));
+    }
+
+    /**
+     * @return A new stream for the index-th member of a family of streams, e.g. one per VM.
+     */
+    public RandomStream stream(String name, long index) {
+        return new RandomStream(seedFor(name, index));
+    }
+
+    /**
+     * @return The seed of the named stream, for samplers which need a plain long seed.
+     */
+    public long seedFor(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix64(seed + GOLDEN_GAMMA * mix64(hash));
+    }
+
+    public long seedFor(String name, long index) {
+        return mix64(seedFor(name) + GOLDEN_GAMMA * (index + 1));
+    }
+
+    /**
+     * The SplitMix64 finalizer, spreads every input bit over the whole output.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
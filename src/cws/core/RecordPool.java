@@ -0,0 +1,61 @@
+package cws.core;
+
+import java.util.ArrayDeque;
+
+/**
+ * Free list of simulation records, such as transfers, which are reinitialized when done instead of being allocated
+ * again. Large ensembles create millions of them. A pool belongs to the entity which creates and finishes the records,
+ * so it lives as long as one simulation run.
+ *
+ * Records are released once the last listener is done with them. With -Dcws.pool.debug=true released records are
+ * never handed out again and using one throws, which finds records released while still referenced.
+ */
+public class RecordPool<T extends RecordPool.Record> {
+    public static final boolean DEBUG = Boolean.getBoolean("cws.pool.debug");
+
+    /**
+     * A record which can be pooled. Subclasses check {@link #checkLive()} in their accessors.
+     */
+    public static abstract class Record {
+        boolean released;
+
+        /**
+         * @throws IllegalStateException In debug mode, if the record has been released.
+         */
+        protected final void checkLive() {
+            if (DEBUG && released) {
+                throw new IllegalStateException("Use of released " + this);
+            }
+        }
+    }
+
+    private final ArrayDeque<T> free = new ArrayDeque<T>();
+
+    /**
+     * @return A released record, which the caller reinitializes, or null if there is none and the caller allocates one.
+     */
+    public T acquire() {
+        T record = free.pollLast();
+        if (record != null) {
+            record.released = false;
+        }
+        return record;
+    }
+
+    public void release(T record) {
+        if (record.released) {
+            throw new IllegalStateException("Released twice: " + record);
+        }
+        record.released = true;
+        if (!DEBUG) {
+            free.addLast(record);
+        }
+    }
+
+    /**
+     * @return Number of records ready to be reused.
+     */
+    public int size() {
+        return free.size();
+    }
+}
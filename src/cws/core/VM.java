@@ -6,15 +6,19 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+import org.cloudbus.cloudsim.distributions.ContinuousDistribution;
+
 import cws.core.cloudsim.CWSSimEntity;
 import cws.core.cloudsim.CWSSimEvent;
 import cws.core.cloudsim.CloudSimWrapper;
+import cws.core.core.EstimableDistribution;
 import cws.core.core.VMType;
 import cws.core.dag.Task;
 import cws.core.exception.UnknownWorkflowEventException;
 import cws.core.jobs.IdentityRuntimeDistribution;
 import cws.core.jobs.Job;
 import cws.core.jobs.RuntimeDistribution;
+import cws.core.storage.StorageManager;
 import cws.core.transfer.Port;
 
 /**
@@ -28,7 +32,13 @@ import cws.core.transfer.Port;
  * bandwidth.
  * 
  * Jobs can be queued and are executed in FIFO order. The scheduling is
- * space shared.
+ * space shared: every running job occupies one core, so up to cores jobs
+ * run at the same time and CPU seconds are accounted per core.
+ * 
+ * The owner reserves a core slot for every job it schedules on the VM,
+ * before the job is submitted, and gives it back when the job finishes.
+ * This lets schedulers pack several jobs onto one VM without overbooking
+ * its cores while submissions are still in flight.
  * 
  * It has a price per billing unit. The cost of a VM is computed by multiplying the
  * runtime in billing units by the billing unit price. The runtime is rounded up to the
@@ -43,9 +53,9 @@ import cws.core.transfer.Port;
 public class VM extends CWSSimEntity {
 
     private static int nextId = 0;
-    
-    /** */
-    private int idleTime;
+
+    private static final String PROVISIONING_DELAY_STREAM = "vm-provisioning-delay";
+    private static final String DEPROVISIONING_DELAY_STREAM = "vm-deprovisioning-delay";
     
     /** Contains VM parameters like cores number, price for billing unit **/
     private VMType vmType;
@@ -59,6 +69,9 @@ public class VM extends CWSSimEntity {
     /** Current idle cores */
     private int idleCores;
 
+    /** Number of cores reserved by the owner for jobs scheduled on this VM which have not finished yet */
+    private int reservedCoreSlots;
+
     /** Queue of jobs submitted to this VM */
     private LinkedList<Job> jobs;
 
@@ -83,6 +96,16 @@ public class VM extends CWSSimEntity {
     /** Number of CPU seconds consumed by jobs on this VM */
     private double cpuSecondsConsumed;
 
+    /** Provisioning delay of this VM, expected until it is sampled at launch */
+    private double provisioningDelay;
+
+    /** Deprovisioning delay of this VM, expected until it is sampled at termination */
+    private double deprovisioningDelay;
+
+    /** Copies of the type's delay distributions drawing from this VM's own streams */
+    private ContinuousDistribution provisioningDelayDistribution;
+    private ContinuousDistribution deprovisioningDelayDistribution;
+
     /** Varies the actual runtime of tasks according to the specified distribution */
     private RuntimeDistribution runtimeDistribution = new IdentityRuntimeDistribution();
 
@@ -97,13 +120,27 @@ public class VM extends CWSSimEntity {
     
     /** Output port used to trasnfer data out of the VM */
     private Port outputPort;
-    
-    /** Available bandwidth 1 Gbps (in Mbps). Temporary hack, should be moved to config file */
-    private static double BANDWIDTH = 1000.0;
+
+    /** Id of the storage manager of the simulation, looked up on its first use, negative until then */
+    private int storageManagerId = -1;
+
+    /** Whether the storage manager is told about the jobs placed on the VM and its termination */
+    private boolean storageManagerWantsPlacementEvents;
+
+    /** For snapshots */
+    private VM() {
+    }
+
+    /**
+     * Restarts the VM ids at 0. The random streams of a VM are keyed by its id, so runs which start from the same
+     * ids draw the same numbers.
+     */
+    public static void resetStaticCounters() {
+        nextId = 0;
+    }
 
     public VM(VMType vmType, CloudSimWrapper cloudsim) {
         super("VM" + (nextId++), cloudsim);
-        this.idleTime = 0;
         this.vmType = vmType;
         this.jobs = new LinkedList<Job>();
         this.runningJobs = new HashSet<Job>();
@@ -112,10 +149,16 @@ public class VM extends CWSSimEntity {
         this.launchTime = -1.0;
         this.terminateTime = -1.0;
         this.cpuSecondsConsumed = 0.0;
+        this.provisioningDelay = vmType.getExpectedProvisioningDelay();
+        this.deprovisioningDelay = vmType.getExpectedDeprovisioningDelay();
+        this.provisioningDelayDistribution = withStream(vmType.getProvisioningDelay(), cloudsim.getRandomStreams()
+                .stream(PROVISIONING_DELAY_STREAM, getId()));
+        this.deprovisioningDelayDistribution = withStream(vmType.getDeprovisioningDelay(), cloudsim
+                .getRandomStreams().stream(DEPROVISIONING_DELAY_STREAM, getId()));
         this.isTerminated = false;
         this.isLaunched = false;
-        this.inputPort = new Port(BANDWIDTH);
-        this.outputPort = new Port(BANDWIDTH);
+        this.inputPort = new Port(vmType.getBandwidth());
+        this.outputPort = new Port(vmType.getBandwidth());
     }
 
     /**
@@ -223,6 +266,11 @@ public class VM extends CWSSimEntity {
         jobs.clear();
         idleCores = vmType.getCores();
         getCloudsim().log(String.format("VM %d terminated", getId()));
+
+        // The files kept on the VM are lost
+        if (getStorageManagerId() >= 0 && storageManagerWantsPlacementEvents) {
+            getCloudsim().send(getId(), storageManagerId, 0.0, WorkflowEvent.STORAGE_VM_TERMINATED, this);
+        }
     }
 
     public void removeJobsFromQueue(List<Job> jobsToRemove) {
@@ -273,6 +321,11 @@ public class VM extends CWSSimEntity {
         // Queue the job
         jobs.add(job);
 
+        // The storage manager may start getting the job's inputs while it is queued
+        if (getStorageManagerId() >= 0 && storageManagerWantsPlacementEvents) {
+            getCloudsim().send(getId(), storageManagerId, 0.0, WorkflowEvent.STORAGE_JOB_PLACED, job);
+        }
+
         // This shouldn't do anything if the VM is busy
         startJobs();
     }
@@ -347,10 +400,8 @@ public class VM extends CWSSimEntity {
     private void jobStart(Job job) {
         if (job.getState() != Job.State.IDLE) {
             throw new IllegalStateException("Attempted to start non-idle job:" + job.getID());
-        } else if (idleCores != 1) {
-            // NOTE(bryk): Here we assume that VMs always have only one core. It should be changed once we enable more
-            // cores in VMs.
-            throw new IllegalStateException("Number of idle cores is not 1, actual number:" + idleCores);
+        } else if (idleCores < 1) {
+            throw new IllegalStateException("No idle core to start job:" + job.getID());
         }
         getCloudsim().log("Starting " + job.toString() + " on VM " + job.getVM().getId());
         // The job is now running
@@ -361,8 +412,7 @@ public class VM extends CWSSimEntity {
         // Tell the owner
         getCloudsim().send(getId(), job.getOwner(), 0.0, WorkflowEvent.JOB_STARTED, job);
 
-        getCloudsim().send(getId(), getCloudsim().getEntityId("StorageManager"), 0.0,
-                WorkflowEvent.STORAGE_BEFORE_TASK_START, job);
+        getCloudsim().send(getId(), getStorageManagerId(), 0.0, WorkflowEvent.STORAGE_BEFORE_TASK_START, job);
 
         // One core is now busy running the job
         idleCores--;
@@ -378,8 +428,23 @@ public class VM extends CWSSimEntity {
                 job.getDAGJob().getDAG().getId(), job.isRetry(), job.getVM().getId());
         getCloudsim().log(msg);
 
-        getCloudsim().send(getId(), getCloudsim().getEntityId("StorageManager"), 0.0,
-                WorkflowEvent.STORAGE_AFTER_TASK_COMPLETED, job);
+        getCloudsim().send(getId(), getStorageManagerId(), 0.0, WorkflowEvent.STORAGE_AFTER_TASK_COMPLETED, job);
+    }
+
+    /**
+     * Looks the storage manager up once, it lives as long as the simulation.
+     *
+     * @return Its id, negative if the simulation has none.
+     */
+    private int getStorageManagerId() {
+        if (storageManagerId < 0) {
+            StorageManager storageManager = (StorageManager) getCloudsim().getEntityByName("StorageManager");
+            if (storageManager != null) {
+                storageManagerId = storageManager.getId();
+                storageManagerWantsPlacementEvents = storageManager.wantsPlacementEvents();
+            }
+        }
+        return storageManagerId;
     }
 
     private void startJobs() {
@@ -410,6 +475,45 @@ public class VM extends CWSSimEntity {
         return idleCores;
     }
 
+    /**
+     * @return Whether fewer jobs have been started on this VM than it has cores, i.e. whether the VM itself could
+     *         start one more job right away.
+     */
+    public boolean hasIdleCore() {
+        return runningJobs.size() + waitingInputJobs.size() < vmType.getCores();
+    }
+
+    /**
+     * Reserves a core for a job the owner is about to schedule on this VM.
+     */
+    public void reserveCoreSlot() {
+        if (getFreeCoreSlots() <= 0) {
+            throw new IllegalStateException("All " + vmType.getCores() + " cores of VM " + getId() + " are reserved");
+        }
+        reservedCoreSlots++;
+    }
+
+    /**
+     * Gives back the core of a job scheduled on this VM which has finished, failed or was cancelled.
+     */
+    public void releaseCoreSlot() {
+        if (reservedCoreSlots <= 0) {
+            throw new IllegalStateException("No core of VM " + getId() + " is reserved");
+        }
+        reservedCoreSlots--;
+    }
+
+    public int getReservedCoreSlots() {
+        return reservedCoreSlots;
+    }
+
+    /**
+     * @return The number of cores of this VM the owner can still schedule jobs on.
+     */
+    public int getFreeCoreSlots() {
+        return vmType.getCores() - reservedCoreSlots;
+    }
+
     public Task[] getQueuedJobs() {
         return jobs.toArray(new Task[0]);
     }
@@ -430,14 +534,6 @@ public class VM extends CWSSimEntity {
         return launchTime;
     }
     
-    public void setIdleTime(int idleTime){
-    	this.idleTime = idleTime;
-    }
-    
-    public int getIdleTime(){
-    	return idleTime;
-    }
-    
     public void setTerminateTime(double terminateTime) {
         this.terminateTime = terminateTime;
     }
@@ -475,11 +571,39 @@ public class VM extends CWSSimEntity {
     }
 
     public double getProvisioningDelay() {
-        return vmType.getProvisioningDelay().sample();
+        return provisioningDelay;
     }
 
     public double getDeprovisioningDelay() {
-        return vmType.getDeprovisioningDelay().sample();
+        return deprovisioningDelay;
+    }
+
+    /**
+     * Draws the actual provisioning delay of this VM from its type's distribution. Should be called only by the cloud,
+     * when the VM is launched.
+     */
+    public double sampleProvisioningDelay() {
+        provisioningDelay = provisioningDelayDistribution.sample();
+        return provisioningDelay;
+    }
+
+    /**
+     * Draws the actual deprovisioning delay of this VM. Should be called only by the cloud, when the VM is terminated.
+     */
+    public double sampleDeprovisioningDelay() {
+        deprovisioningDelay = deprovisioningDelayDistribution.sample();
+        return deprovisioningDelay;
+    }
+
+    /**
+     * @return A copy of the distribution drawing from the given stream, or the distribution itself if it cannot be
+     *         copied, in which case the VMs of the type share its samples.
+     */
+    private static ContinuousDistribution withStream(ContinuousDistribution distribution, RandomStream random) {
+        if (distribution instanceof EstimableDistribution) {
+            return ((EstimableDistribution) distribution).withStream(random);
+        }
+        return distribution;
     }
 
     public Port getInputPort() {
@@ -490,8 +614,11 @@ public class VM extends CWSSimEntity {
 		return outputPort;
 	}
     
+	/**
+	 * @return Bandwidth of the VM's network interface in Mbps, in each direction.
+	 */
 	public double getBandwidth() {
-		return BANDWIDTH;
+		return vmType.getBandwidth();
 	}
 
 	public PerformanceVariationDistribution getPvDistribution() {
@@ -0,0 +1,147 @@
+package cws.core;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of VMs backed by an array and indexed by entity id, used by the workflow engines to track their VMs and which of
+ * them are free or busy. Adding, removing and looking up a VM are O(1) without hashing, and iteration visits the VMs in
+ * the order they were (last) added, e.g. the free set hands out the VM that has been idle the longest first.
+ *
+ * Removed VMs leave a cleared slot behind, which is reclaimed when the array fills up.
+ */
+public class VMSet extends AbstractSet<VM> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private VM[] vms = new VM[INITIAL_CAPACITY];
+
+    /** The slot of every member plus one, indexed by entity id, 0 for VMs which are not members */
+    private int[] slotOf = new int[INITIAL_CAPACITY];
+
+    /** Slots in [0, tail) may hold VMs, cleared slots are null */
+    private int tail = 0;
+
+    private int size = 0;
+
+    @Override
+    public boolean add(VM vm) {
+        if (contains(vm)) {
+            return false;
+        }
+        int id = vm.getId();
+        if (id >= slotOf.length) {
+            slotOf = Arrays.copyOf(slotOf, Math.max(id + 1, slotOf.length * 2));
+        }
+        if (tail == vms.length) {
+            makeRoom();
+        }
+        slotOf[id] = tail + 1;
+        vms[tail++] = vm;
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!contains(o)) {
+            return false;
+        }
+        removeAt(slotOf[((VM) o).getId()] - 1);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof VM)) {
+            return false;
+        }
+        int id = ((VM) o).getId();
+        return id >= 0 && id < slotOf.length && slotOf[id] > 0 && vms[slotOf[id] - 1] == o;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < tail; i++) {
+            if (vms[i] != null) {
+                slotOf[vms[i].getId()] = 0;
+                vms[i] = null;
+            }
+        }
+        tail = size = 0;
+    }
+
+    @Override
+    public Iterator<VM> iterator() {
+        return new Iterator<VM>() {
+            private int next = advance(0);
+            private int last = -1;
+
+            private int advance(int from) {
+                while (from < tail && vms[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < tail;
+            }
+
+            @Override
+            public VM next() {
+                if (next >= tail) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = advance(next + 1);
+                return vms[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0 || vms[last] == null) {
+                    throw new IllegalStateException();
+                }
+                removeAt(last);
+                last = -1;
+            }
+        };
+    }
+
+    private void removeAt(int slot) {
+        slotOf[vms[slot].getId()] = 0;
+        vms[slot] = null;
+        size--;
+        if (size == 0) {
+            tail = 0;
+        }
+    }
+
+    /**
+     * Called when the tail reaches the end of the array: compacts the members to the front when at least half of the
+     * slots are cleared, and doubles the array otherwise.
+     */
+    private void makeRoom() {
+        if (size > vms.length / 2) {
+            vms = Arrays.copyOf(vms, vms.length * 2);
+        }
+        int to = 0;
+        for (int from = 0; from < tail; from++) {
+            VM vm = vms[from];
+            if (vm != null) {
+                vms[from] = null;
+                slotOf[vm.getId()] = to + 1;
+                vms[to++] = vm;
+            }
+        }
+        tail = to;
+    }
+}
@@ -1,13 +1,12 @@
 package cws.core;
 
 import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
 import java.util.Set;
 
 import cws.core.dag.DAGJob;
 import cws.core.jobs.Job;
 import cws.core.jobs.JobListener;
+import cws.core.jobs.JobQueue;
 
 /**
  * The workflow engine is an entity that executes workflows by scheduling their
@@ -28,9 +27,13 @@ public interface WorkflowEngine {
 
     public void setQueueLength(int queueLength);
     
-    public Queue<Job> getQueuedJobs();
+    /**
+     * @return The ready jobs which have not been matched to a VM yet, in release order. Schedulers remove the jobs they
+     *         place, or take them all at once with {@link JobQueue#drainTo}.
+     */
+    public JobQueue getQueuedJobs();
 
-    public List<VM> getAvailableVMs();
+    public Set<VM> getAvailableVMs();
 
     public Set<VM> getFreeVMs();
 
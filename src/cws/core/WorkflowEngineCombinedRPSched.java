@@ -2,8 +2,6 @@ package cws.core;
 
 import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
 import java.util.Set;
 
 import cws.core.algorithms.CombinedDynamicAlgorithm;
@@ -14,6 +12,7 @@ import cws.core.dag.DAGJob;
 import cws.core.dag.Task;
 import cws.core.jobs.Job;
 import cws.core.jobs.JobListener;
+import cws.core.jobs.JobQueue;
 
 /**
  * The workflow engine is an entity that executes workflows by scheduling their
@@ -33,16 +32,16 @@ public class WorkflowEngineCombinedRPSched extends CWSSimEntity implements Workf
     private CombinedDynamicAlgorithm algorithm;
 
     /** The current VMs */
-    private LinkedList<VM> vms = new LinkedList<VM>();
+    private VMSet vms = new VMSet();
 
-    /** The set of free VMs, i.e. the ones which are not executing any jobs (idle) */
-    protected Set<VM> freeVMs = new HashSet<VM>();
+    /** The set of free VMs, i.e. the ones which have cores left for more jobs */
+    protected Set<VM> freeVMs = new VMSet();
 
-    /** The set of busy VMs, i.e. the ones which execute jobs */
-    private Set<VM> busyVMs = new HashSet<VM>();
+    /** The set of busy VMs, i.e. the ones whose cores are all reserved by jobs */
+    private Set<VM> busyVMs = new VMSet();
 
-    /** The list of unmatched ready jobs */
-    private LinkedList<Job> queue = new LinkedList<Job>();
+    /** The unmatched ready jobs, ordered the way the algorithm wants to schedule them */
+    private JobQueue queue;
 
     /** The value that is used by provisioner to estimate system load */
     private int queueLength = 0;
@@ -55,10 +54,31 @@ public class WorkflowEngineCombinedRPSched extends CWSSimEntity implements Workf
     
     private boolean provisioningRequestSend = false;
 
+    /** Whether a scheduling pass is waiting for the events of the current simulated time to be delivered */
+    private boolean schedulingRequested = false;
+
+    /** The number of scheduling passes requested so far */
+    private long schedulingRequests = 0;
+
+    /** The number of scheduling passes run so far */
+    private long schedulingPasses = 0;
+
+    /** For snapshots */
+    private WorkflowEngineCombinedRPSched() {
+    }
+
+    /**
+     * Restarts the engine names at WorkflowEngine0.
+     */
+    public static void resetStaticCounters() {
+        next_id = 0;
+    }
+
     public WorkflowEngineCombinedRPSched(CombinedDynamicAlgorithm algorithm, double budget, double deadline,
             CloudSimWrapper cloudsim) {
         super("WorkflowEngine" + (next_id++), cloudsim);
         this.algorithm = algorithm;
+        this.queue = algorithm.createJobQueue();
         this.budget = budget;
         this.deadline = deadline;
     }
@@ -94,7 +114,7 @@ public class WorkflowEngineCombinedRPSched extends CWSSimEntity implements Workf
         	jobFinished((Job) ev.getData());
         	break;*/
         case WorkflowEvent.SCHEDULING_REQUEST:
-        	algorithm.scheduleQueueJobs();
+        	schedulingRequest();
         	break;
         case WorkflowEvent.PROVISIONING_REQUEST:
         	
@@ -125,11 +145,12 @@ public class WorkflowEngineCombinedRPSched extends CWSSimEntity implements Workf
     @Override
     public void shutdownEntity() {
         getCloudsim().log("Total cost: " + getCost() + ", time: " + getCloudsim().clock());
+        getCloudsim().log("Scheduling passes: " + schedulingPasses + ", requests: " + schedulingRequests);
     }
 
     private void vmLaunched(VM vm) {
         vms.add(vm);
-        freeVMs.add(vm);
+        vmIdle(vm);
         getCloudsim().log(String.format("VM %d started", vm.getId()));
         //algorithm.scheduleQueueJobs();
         algorithm.vmLaunched(vm);
@@ -145,6 +166,26 @@ public class WorkflowEngineCombinedRPSched extends CWSSimEntity implements Workf
         algorithm.vmTerminated(vm);
     }
 
+    /**
+     * Adds the VM to the free set and tells the algorithm, so its provisioner can track how long the VM stays idle.
+     */
+    private void vmIdle(VM vm) {
+        freeVMs.add(vm);
+        algorithm.vmIdle(vm);
+    }
+
+    /**
+     * Gives back the core a finished job held on the given VM. A busy VM becomes free again, and a free VM which holds
+     * no more jobs is idle.
+     */
+    private void coreSlotReleased(VM vm) {
+        vm.releaseCoreSlot();
+        if (busyVMs.remove(vm))
+            freeVMs.add(vm);
+        if (vm.getReservedCoreSlots() == 0 && freeVMs.contains(vm))
+            vmIdle(vm);
+    }
+
     private void dagSubmit(DAGJob dj) {
         dags.add(dj);
 
@@ -181,7 +222,7 @@ public class WorkflowEngineCombinedRPSched extends CWSSimEntity implements Workf
             jl.jobStarted(j);
         }
         VM vm = j.getVM();
-        if (freeVMs.remove(vm))
+        if (vm.getFreeCoreSlots() == 0 && freeVMs.remove(vm))
             busyVMs.add(vm);
                 
     }
@@ -216,8 +257,7 @@ public class WorkflowEngineCombinedRPSched extends CWSSimEntity implements Workf
                 //Notify the algorithm the job finished succesfully
                 algorithm.jobFinished(job);
 
-                if (busyVMs.remove(vm))
-                    freeVMs.add(vm);
+                coreSlotReleased(vm);
                 
                 // If the workflow is complete, send it back
                 if (dagJob.isFinished()) {
@@ -256,9 +296,7 @@ public class WorkflowEngineCombinedRPSched extends CWSSimEntity implements Workf
             Job retry = new Job(dagJob, t, getId(), getCloudsim());
             retry.setRetry(true);
             VM vm = job.getVM();
-            // add to free if contained in busy set
-            if (busyVMs.remove(vm))
-                freeVMs.add(vm);
+            coreSlotReleased(vm);
             jobReleased(retry);
             
             /*
@@ -279,6 +317,8 @@ public class WorkflowEngineCombinedRPSched extends CWSSimEntity implements Workf
                             job.getVM().getId()));
         	
         	Job retry = new Job(dagJob, t, getId(), getCloudsim());
+        	retry.setRetry(true);
+        	coreSlotReleased(job.getVM());
         	jobReleased(retry);
             
         } else {
@@ -307,8 +347,7 @@ public class WorkflowEngineCombinedRPSched extends CWSSimEntity implements Workf
                     sendNow(dagJob.getOwner(), WorkflowEvent.DAG_FINISHED, dagJob);
                 }
                 
-                if (busyVMs.remove(job.getVM()))
-                    freeVMs.add(job.getVM());
+                coreSlotReleased(job.getVM());
             }
 
            /* getCloudsim().log(job.toString() + " finished on VM " + job.getVM().getId());
@@ -321,9 +360,44 @@ public class WorkflowEngineCombinedRPSched extends CWSSimEntity implements Workf
         }
 
         //scheduler.scheduleJobs(this);
+        requestScheduling();
+    }
+
+    /**
+     * Asks for a scheduling pass of the algorithm. Requests raised at the same simulated time are collapsed into a
+     * single pass, e.g. when many jobs finish at once the queue is scheduled once instead of once per job. The first
+     * request sends the engine a SCHEDULING_REQUEST with no delay, which CloudSim delivers after the events already
+     * queued for that time, i.e. the other jobs finishing then.
+     */
+    public void requestScheduling() {
+        schedulingRequests++;
+        if (!schedulingRequested) {
+            schedulingRequested = true;
+            sendNow(getId(), WorkflowEvent.SCHEDULING_REQUEST);
+        }
+    }
+
+    private void schedulingRequest() {
+        schedulingRequested = false;
+        schedulingPasses++;
         algorithm.scheduleQueueJobs();
     }
 
+    public long getSchedulingRequests() {
+        return schedulingRequests;
+    }
+
+    public long getSchedulingPasses() {
+        return schedulingPasses;
+    }
+
+    /**
+     * @return The number of scheduling passes saved by coalescing requests raised at the same simulated time.
+     */
+    public long getCoalescedSchedulingRequests() {
+        return schedulingRequests - schedulingPasses;
+    }
+
     public double getDeadline() {
         return deadline;
     }
@@ -340,11 +414,11 @@ public class WorkflowEngineCombinedRPSched extends CWSSimEntity implements Workf
         this.queueLength = queueLength;
     }
 
-    public Queue<Job> getQueuedJobs() {
+    public JobQueue getQueuedJobs() {
         return queue;
     }
 
-    public List<VM> getAvailableVMs() {
+    public Set<VM> getAvailableVMs() {
         return vms;
     }
 
@@ -2,8 +2,6 @@ package cws.core;
 
 import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
 import java.util.Set;
 
 import cws.core.cloudsim.CWSSimEntity;
@@ -11,8 +9,10 @@ import cws.core.cloudsim.CWSSimEvent;
 import cws.core.cloudsim.CloudSimWrapper;
 import cws.core.dag.DAGJob;
 import cws.core.dag.Task;
+import cws.core.jobs.FIFOJobQueue;
 import cws.core.jobs.Job;
 import cws.core.jobs.JobListener;
+import cws.core.jobs.JobQueue;
 
 /**
  * The workflow engine is an entity that executes workflows by scheduling their
@@ -35,16 +35,16 @@ public class WorkflowEngineSeparateRPSched extends CWSSimEntity implements Workf
     private Scheduler scheduler;
 
     /** The current VMs */
-    private LinkedList<VM> vms = new LinkedList<VM>();
+    private VMSet vms = new VMSet();
 
     /** The set of free VMs, i.e. the ones which are not executing any jobs (idle) */
-    protected Set<VM> freeVMs = new HashSet<VM>();
+    protected Set<VM> freeVMs = new VMSet();
 
     /** The set of busy VMs, i.e. the ones which execute jobs */
-    private Set<VM> busyVMs = new HashSet<VM>();
+    private Set<VM> busyVMs = new VMSet();
 
     /** The list of unmatched ready jobs */
-    private LinkedList<Job> queue = new LinkedList<Job>();
+    private JobQueue queue = new FIFOJobQueue();
 
     /** The value that is used by provisioner to estimate system load */
     private int queueLength = 0;
@@ -57,6 +57,17 @@ public class WorkflowEngineSeparateRPSched extends CWSSimEntity implements Workf
 
     private boolean provisioningRequestSend = false;
 
+    /** For snapshots */
+    private WorkflowEngineSeparateRPSched() {
+    }
+
+    /**
+     * Restarts the engine names at WorkflowEngine0.
+     */
+    public static void resetStaticCounters() {
+        next_id = 0;
+    }
+
     public WorkflowEngineSeparateRPSched(Provisioner provisioner, Scheduler scheduler, double budget, double deadline,
             CloudSimWrapper cloudsim) {
         super("WorkflowEngine" + (next_id++), cloudsim);
@@ -292,11 +303,11 @@ public class WorkflowEngineSeparateRPSched extends CWSSimEntity implements Workf
         this.queueLength = queueLength;
     }
 
-    public Queue<Job> getQueuedJobs() {
+    public JobQueue getQueuedJobs() {
         return queue;
     }
 
-    public List<VM> getAvailableVMs() {
+    public Set<VM> getAvailableVMs() {
         return vms;
     }
 
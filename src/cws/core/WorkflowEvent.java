@@ -99,6 +99,9 @@ public interface WorkflowEvent {
     /** Sent just after the finish of a task. Output files should be then transferred */
     int STORAGE_AFTER_TASK_COMPLETED = 30;
 
+    /** Sent when a job is submitted to a VM. Its input files may then be prepared while it is queued */
+    int STORAGE_JOB_PLACED = 31;
+
     /** Sent after all input files have been transferred to a task */
     int STORAGE_ALL_BEFORE_TRANSFERS_COMPLETED = 32;
 
@@ -116,17 +119,18 @@ public interface WorkflowEvent {
 
     /** Event indicating the progress of a global storage write */
     int GLOBAL_STORAGE_WRITE_PROGRESS = 37;
+
+    /** Sent when a VM is terminated. The files kept on it are then lost */
+    int STORAGE_VM_TERMINATED = 38;
     
     // ///////////////////////////////////////////////////////
     // DATA TRANSFERRING EVENTS
     // ///////////////////////////////////////////////////////
     
-	public static final int VM2VM_BEFORE_TASK_START = 38;
-	public static final int VM2VM_AFTER_TASK_COMPLETED = 39;
+	// VM to VM transfers use the transfer events above, see VM2VMTransferManager
 
-	int VM2VM_INPUT_TRANSFERS_COMPLETED = 40;
-	int VM2VM_OUTPUT_TRANSFERS_COMPLETED = 41;
-	public static final int VM2VM_OUTPUT_TRANSFERS_WAITING = 42;
+	/** Sent after a read of a file which was being saved to the global storage, see VM2VMTransferManager */
+	public static final int PEER_FILE_FETCHED = 39;
 
 	public static final int JOB_WAITING_OUTPUT_TRANSFER = 43;
 }
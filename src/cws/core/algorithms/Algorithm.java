@@ -1,5 +1,6 @@
 package cws.core.algorithms;
 
+import java.util.Iterator;
 import java.util.List;
 
 import cws.core.Cloud;
@@ -8,6 +9,7 @@ import cws.core.WorkflowEngine;
 import cws.core.cloudsim.CWSSimEntity;
 import cws.core.cloudsim.CloudSimWrapper;
 import cws.core.dag.DAG;
+import cws.core.dag.DAGArrival;
 import cws.core.engine.Environment;
 import cws.core.log.WorkflowLog;
 
@@ -42,6 +44,16 @@ public abstract class Algorithm extends CWSSimEntity {
     /** All simulation's DAGs */
     protected List<DAG> dags;
 
+    /** Streamed DAG arrivals, used instead of the DAG list when set */
+    private Iterator<DAGArrival> arrivals;
+
+    /** Look-ahead window of the streamed arrivals */
+    private int arrivalsLookAhead;
+
+    /** For snapshots */
+    protected Algorithm() {
+    }
+
     public Algorithm(double budget, double deadline, List<DAG> dags, AlgorithmStatistics algorithmStatistics,
             CloudSimWrapper cloudsim) {
         super("Algorithm", cloudsim);
@@ -59,6 +71,20 @@ public abstract class Algorithm extends CWSSimEntity {
 
     public void simulate() {
         simulateInternal();
+        afterSimulation();
+    }
+
+    /**
+     * Continues a simulation restored from a snapshot taken while this algorithm was simulating.
+     * 
+     * @see cws.core.snapshot.SimulationSnapshot
+     */
+    public void resume() {
+        getCloudsim().startSimulation();
+        afterSimulation();
+    }
+
+    private void afterSimulation() {
         if (shouldGenerateWorkflowLogs) {
             printWorkflowLogs();
         }
@@ -88,6 +114,27 @@ public abstract class Algorithm extends CWSSimEntity {
         this.environment = environment;
     }
 
+    /**
+     * Makes the ensemble manager stream the DAGs from the given arrivals instead of submitting the DAG list. Only
+     * algorithms which do not plan over the whole ensemble up front support this.
+     * 
+     * @see EnsembleManager#EnsembleManager(Iterator, int, WorkflowEngine, CloudSimWrapper)
+     */
+    public void setWorkloadArrivals(Iterator<DAGArrival> arrivals, int lookAhead) {
+        this.arrivals = arrivals;
+        this.arrivalsLookAhead = lookAhead;
+    }
+
+    /**
+     * @return A new ensemble manager submitting either the streamed arrivals or all the DAGs to the engine.
+     */
+    protected EnsembleManager createEnsembleManager() {
+        if (arrivals != null) {
+            return new EnsembleManager(arrivals, arrivalsLookAhead, getWorkflowEngine(), getCloudsim());
+        }
+        return new EnsembleManager(getAllDags(), getWorkflowEngine(), getCloudsim());
+    }
+
     public void setEnsembleManager(EnsembleManager ensembleManager) {
         this.manager = ensembleManager;
         this.manager.addDAGJobListener(algorithmStatistics);
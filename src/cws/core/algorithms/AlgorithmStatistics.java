@@ -2,8 +2,9 @@ package cws.core.algorithms;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.SortedMap;
@@ -23,20 +24,23 @@ import cws.core.engine.Environment;
 import cws.core.jobs.Job;
 import cws.core.jobs.Job.Result;
 import cws.core.jobs.JobListener;
+import cws.core.storage.DAGStorageStatistics;
 
 public class AlgorithmStatistics extends CWSSimEntity implements DAGJobListener, VMListener, JobListener {
+    private static final VMTypeMipsComparator MIPS_COMPARATOR = new VMTypeMipsComparator();
+    
     private List<DAG> allDags;
     private Environment env;
     
+    /** For snapshots */
+    private AlgorithmStatistics() {
+    }
+
     public AlgorithmStatistics(List<DAG> allDags, CloudSimWrapper cloudsim) {
         super("AlgorithmStatistics", cloudsim);
         this.allDags = allDags;
         
-        List<VMType> vmTypes = null;
-        vmTypes = env.getVmTypes();
-    	for (VMType vmType : vmTypes){
-    		numVmsPerType.put(vmType, 0);
-    	}
+        initVmTypes();
     }
     
     public AlgorithmStatistics(List<DAG> allDags, CloudSimWrapper cloudsim, Environment env) {
@@ -44,17 +48,26 @@ public class AlgorithmStatistics extends CWSSimEntity implements DAGJobListener,
         this.allDags = allDags;
         this.env = env;
         
-        List<VMType> vmTypes = null;
-        vmTypes = env.getVmTypes();
-    	for (VMType vmType : vmTypes){
-    		numVmsPerType.put(vmType, 0);
-    	}
+        initVmTypes();
+    }
+    
+    /**
+     * Sorts the VM types like the CSV columns. Types with equal MIPS share a counter.
+     */
+    private void initVmTypes() {
+        SortedMap<VMType, Integer> types = new TreeMap<VMType, Integer>(new VMTypeMipsComparator());
+        for (VMType vmType : env.getVmTypes()) {
+            types.put(vmType, 0);
+        }
+        vmTypes = types.keySet().toArray(new VMType[types.size()]);
+        numVmsPerType = new int[vmTypes.length];
     }
 
     private double actualJobFinishTime = 0.0;
     private double actualVmFinishTime = 0.0;
     private double actualDagFinishTime = 0.0;
-    private List<DAG> finishedDags = new ArrayList<DAG>();
+    private List<Integer> finishedDagPriorities = new ArrayList<Integer>();
+    private int finishedTasks = 0;
     private double cost = 0.0;
     private int numVms = 0;
     private double totalJobRuntime = 0.0;
@@ -64,21 +77,41 @@ public class AlgorithmStatistics extends CWSSimEntity implements DAGJobListener,
     
     private double dagJobCompletionTime = 0.0;
     private double dagJobCost = 0.0;
-    private double eachVmCost = 0.0;
-    private double eachVmRuntime = 0.0;
     private double jobRuntime = 0.0;
     
-    private HashMap<DAGJob, Double> dagJobCompletionTimes = new HashMap<DAGJob, Double>();
-    private HashMap<DAGJob, Double> dagJobCosts = new HashMap<DAGJob, Double>();
-    private HashMap<VM, Double> eachVmCosts = new HashMap<VM, Double>();
-    private HashMap<VM, Double> eachVmRuntimes = new HashMap<VM, Double>();
-    private HashMap<Task, Double> jobRuntimes = new HashMap<Task, Double>();
-    private HashMap<Task, VM> jobVms = new HashMap<Task, VM>();
-    private HashMap<VM, Double> vmRuntimes = new HashMap<VM, Double>();
-    private SortedMap<VMType, Integer> numVmsPerType = new TreeMap<VMType, Integer>(new VMTypeMipsComparator());
-    private HashMap<DAGJob, SortedMap<VMType, Integer>> dagNumVmsPerTypeOuter = new HashMap<DAGJob, SortedMap<VMType, Integer>>();
-    private SortedMap<VMType, Integer> dagNumVmsPerTypeInner = new TreeMap<VMType, Integer>(new VMTypeMipsComparator());
-    private HashMap<DAGJob, Integer> dagVmsUsed = new HashMap<DAGJob, Integer>();
+    private List<DAGResult> dagResults = new ArrayList<DAGResult>();
+    
+    /** Records of the tasks of the running DAGs, dropped when the DAG finishes */
+    private IdentityHashMap<DAGJob, TaskRecords> taskRecords = new IdentityHashMap<DAGJob, TaskRecords>();
+    
+    /** Runtimes on each VM of the tasks of the finishing DAG, indexed by VM id, reset after each DAG */
+    private double[] dagVmRuntimes = new double[64];
+    private VM[] dagVms = new VM[64];
+    /** Ids of the VMs the finishing DAG used, the first numDagVms are valid */
+    private int[] dagVmIds = new int[64];
+    
+    /** The VM types, sorted by MIPS, and the number of VMs launched of each of them */
+    private VMType[] vmTypes;
+    private int[] numVmsPerType;
+    
+    /**
+     * Runtime (the sum of all the jobs of the task, if it was re-scheduled) and VM of the last job of each task of a
+     * DAG, indexed by {@link Task#getIndex()}.
+     */
+    private static class TaskRecords {
+        final double[] runtimes;
+        final VM[] vms;
+        
+        /** For snapshots */
+        private TaskRecords() {
+            this(0);
+        }
+
+        TaskRecords(int numTasks) {
+            runtimes = new double[numTasks];
+            vms = new VM[numTasks];
+        }
+    }
     
     @Override
     public void shutdownEntity() {
@@ -89,13 +122,7 @@ public class AlgorithmStatistics extends CWSSimEntity implements DAGJobListener,
     }
 
     public List<Integer> getFinishedDAGPriorities() {
-        List<Integer> priorities = new LinkedList<Integer>();
-        for (DAG dag : getFinishedDags()) {
-            int index = allDags.indexOf(dag);
-            int priority = index;
-            priorities.add(priority);
-        }
-        return priorities;
+        return new LinkedList<Integer>(finishedDagPriorities);
     }
 
     public String getFinishedDAGPriorityString() {
@@ -168,16 +195,12 @@ public class AlgorithmStatistics extends CWSSimEntity implements DAGJobListener,
         return actualVmFinishTime;
     };
 
-    public List<DAG> getFinishedDags() {
-        return finishedDags;
+    public int getNumFinishedDags() {
+        return dagResults.size();
     };
     
     public int getFinishedTasks(){
-    	int length = 0;
-    	for (DAG dag : finishedDags){
-    		length += dag.getTasks().length;
-    	}
-    	return length;
+    	return finishedTasks;
     }
     
     @Override
@@ -194,14 +217,16 @@ public class AlgorithmStatistics extends CWSSimEntity implements DAGJobListener,
         totalJobRuntime += job.getDuration();
         
         //storing runtime for each task (if the task is re-scheduled runtime is sum of all the job runtime)
-        if (jobRuntimes.containsKey(job.getTask())){
-        	jobRuntimes.put(job.getTask(), jobRuntimes.get(job.getTask()) + jobRuntime);
-        } else {
-        	jobRuntimes.put(job.getTask(), jobRuntime);
+        TaskRecords records = taskRecords.get(job.getDAGJob());
+        if (records == null) {
+        	records = new TaskRecords(job.getDAGJob().getDAG().numTasks());
+        	taskRecords.put(job.getDAGJob(), records);
         }
+        int index = job.getTask().getIndex();
+        records.runtimes[index] += jobRuntime;
         
         //storing VM for each task
-        jobVms.put(job.getTask(), job.getVM());
+        records.vms[index] = job.getVM();
     }
 
     @Override
@@ -210,17 +235,34 @@ public class AlgorithmStatistics extends CWSSimEntity implements DAGJobListener,
     	numVms++;
     	
     	//number of VMs for each type
-    	if(numVmsPerType.containsKey(vm.getVmType())){
-    		numVmsPerType.put(vm.getVmType(), numVmsPerType.get(vm.getVmType()) + 1);
+    	int type = indexOfVmType(vm.getVmType());
+    	if (type >= 0) {
+    		numVmsPerType[type]++;
     	}
     }
+    
+    /**
+     * @return Index of the given type in vmTypes, -1 if it is not one of them.
+     */
+    private int indexOfVmType(VMType vmType) {
+    	for (int i = 0; i < vmTypes.length; i++) {
+    		if (MIPS_COMPARATOR.compare(vmTypes[i], vmType) == 0) {
+    			return i;
+    		}
+    	}
+    	return -1;
+    }
 
     public int getNumVms() {
     	return numVms;
     }
     
     public SortedMap<VMType, Integer> getNumVmsPerType(){
-    	return numVmsPerType;
+    	SortedMap<VMType, Integer> vmsPerType = new TreeMap<VMType, Integer>(new VMTypeMipsComparator());
+    	for (int i = 0; i < vmTypes.length; i++) {
+    		vmsPerType.put(vmTypes[i], numVmsPerType[i]);
+    	}
+    	return vmsPerType;
     }
     
     public double getAverageVMUtilization() {
@@ -240,17 +282,9 @@ public class AlgorithmStatistics extends CWSSimEntity implements DAGJobListener,
         //total vm cost
     	cost += vm.getCost();
         
-    	//total VMs runtime
-        totalVMRuntime += vm.getRuntime();
+    	//total VMs runtime, per core like the jobs' runtime
+        totalVMRuntime += vm.getRuntime() * vm.getVmType().getCores();
     	
-    	//vm cost
-    	eachVmCost = vm.getCost();
-        eachVmCosts.put(vm, eachVmCost);
-        
-        //vm runtime
-        eachVmRuntime = vm.getRuntime();
-        eachVmRuntimes.put(vm, eachVmRuntime);
-        
         //actual vm finish time
         actualVmFinishTime = Math.max(actualVmFinishTime, getCloudsim().clock());
         
@@ -268,67 +302,70 @@ public class AlgorithmStatistics extends CWSSimEntity implements DAGJobListener,
     @Override
     public void dagFinished(DAGJob dagJob) {
         actualDagFinishTime = Math.max(actualDagFinishTime, getCloudsim().clock());
-        finishedDags.add(dagJob.getDAG());
+        DAG dag = dagJob.getDAG();
+        finishedDagPriorities.add(dagJob.getPriority());
+        finishedTasks += dag.numTasks();
         
-        List<VMType> vmTypes = null;
-        vmTypes = env.getVmTypes();
+        SortedMap<VMType, Integer> dagNumVmsPerType = new TreeMap<VMType, Integer>(new VMTypeMipsComparator());
     	for (VMType vmType : vmTypes){
-    		dagNumVmsPerTypeInner.put(vmType, 0);
+    		dagNumVmsPerType.put(vmType, 0);
     	}
         
     	
     	//dag finish time
         dagJobCompletionTime = getCloudsim().clock();
-        dagJobCompletionTimes.put(dagJob, dagJobCompletionTime);
         
-        vmRuntimes.clear();
         dagJobCost = 0.0;
         
-        //storing task runtime on each VM
-        for (String tid : dagJob.getDAG().getTasks()){
-        	Task t = dagJob.getDAG().getTaskById(tid);
-        	double taskRuntime = jobRuntimes.get(t);
-        	VM vm = jobVms.get(t);
-        	if(vmRuntimes.containsKey(vm)){
-        		vmRuntimes.put(vm, vmRuntimes.get(vm) + taskRuntime);
-        	} else {
-        		vmRuntimes.put(vm, taskRuntime);
+        //storing task runtime on each VM, the per task records are not needed after that
+        TaskRecords records = taskRecords.remove(dagJob);
+        int numDagVms = 0;
+        for (int i = 0; records != null && i < records.vms.length; i++) {
+        	VM vm = records.vms[i];
+        	int id = vm.getId();
+        	if (id >= dagVms.length) {
+        		int capacity = Math.max(id + 1, dagVms.length * 2);
+        		dagVms = Arrays.copyOf(dagVms, capacity);
+        		dagVmRuntimes = Arrays.copyOf(dagVmRuntimes, capacity);
+        		dagVmIds = Arrays.copyOf(dagVmIds, capacity);
+        	}
+        	if (dagVms[id] == null) {
+        		dagVms[id] = vm;
+        		dagVmIds[numDagVms++] = id;
         	}
+        	dagVmRuntimes[id] += records.runtimes[i];
         }
+        Arrays.sort(dagVmIds, 0, numDagVms);
         
         //calculating cost for a dag
-        for (VM vm : vmRuntimes.keySet()){
-        	double vmRuntime = vmRuntimes.get(vm);
+        for (int j = 0; j < numDagVms; j++){
+        	int id = dagVmIds[j];
+        	VM vm = dagVms[id];
+        	double vmRuntime = dagVmRuntimes[id];
+        	dagVms[id] = null;
+        	dagVmRuntimes[id] = 0.0;
         	double vmPrice = vm.getVmType().getPriceForBillingUnit();
         	double vmBillingUnit = vm.getVmType().getBillingTimeInSeconds();
         	
         	dagJobCost += Math.ceil(vmRuntime/vmBillingUnit)*vmPrice;
         	
-        	if (dagNumVmsPerTypeInner.containsKey(vm.getVmType())){
-        		dagNumVmsPerTypeInner.put(vm.getVmType(), dagNumVmsPerTypeInner.get(vm.getVmType()) + 1);
+        	if (dagNumVmsPerType.containsKey(vm.getVmType())){
+        		dagNumVmsPerType.put(vm.getVmType(), dagNumVmsPerType.get(vm.getVmType()) + 1);
         	}
         }
         
-        dagJobCosts.put(dagJob, dagJobCost);
-        dagVmsUsed.put(dagJob, vmRuntimes.keySet().size());
-        dagNumVmsPerTypeOuter.put(dagJob, dagNumVmsPerTypeInner);
+        //the DAG's transfers are all done, its jobs finish after their outputs are written
+        DAGStorageStatistics storageStatistics = env.getStorageManagerStatistics().removeDAGStatistics(dagJob);
         
+        dagResults.add(new DAGResult(dagJob, dagJobCompletionTime, dagJobCost, numDagVms, dagNumVmsPerType,
+                storageStatistics));
     }
 
-    public HashMap<DAGJob, Double> getDagJobCompletionTimes(){
-    	return dagJobCompletionTimes;
-    }
-    
-    public HashMap<DAGJob, Double> getDagJobCosts(){
-    	return dagJobCosts;
-    }
-    
-    public HashMap<DAGJob, Integer> getDagVmsUsed(){
-    	return dagVmsUsed;
-    }
-    
-    public SortedMap<VMType, Integer> getDagNumVmsPerType(DAGJob dagJob){
-    	return dagNumVmsPerTypeOuter.get(dagJob);
+    /**
+     * @return Results of the finished DAGs, in the order they finished.
+     */
+    public List<DAGResult> getDagResults(){
+    	return dagResults;
     }
     
     @Override
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import cws.core.cloudsim.CloudSimWrapper;
 import cws.core.core.VMType;
 import cws.core.core.VMTypeCostComparator;
 import cws.core.core.VMTypeCostComparatorDescending;
@@ -12,6 +13,7 @@ import cws.core.dag.DAG;
 import cws.core.dag.Task;
 import cws.core.dag.algorithms.TopologicalOrder;
 import cws.core.engine.Environment;
+import cws.core.jfr.BudgetDistributionEvent;
 
 public class BudgetDistribution {
 
@@ -19,7 +21,10 @@ public class BudgetDistribution {
 	 * Assign budgets to each task in the DAG
 	 */
 	
-	public static Map<Task, Double> getBudgetDistributionTopDownCheapest(List<Task> order, Double dagBudget, Environment environment) {
+	public static Map<Task, Double> getBudgetDistributionTopDownCheapest(List<Task> order, Double dagBudget, Environment environment,
+			CloudSimWrapper cloudsim) {
+		BudgetDistributionEvent event = new BudgetDistributionEvent();
+		event.begin();
 		
 		Map<Task, Double> budgets = new HashMap<Task, Double>();
 		List<VMType> vmTypes = environment.getVmTypes();
@@ -57,7 +62,7 @@ public class BudgetDistribution {
     			for (Task t : order){
     				if (levels.get(t) == i){
     					double taskRuntime = environment.getPredictedRuntime(vmType, t);
-            			taskRuntime += vmType.getProvisioningDelay().sample();
+            			taskRuntime += vmType.getExpectedProvisioningDelay();
             			double taskCost = environment.getCost(taskRuntime, vmType);
             			assignedBudget = (assignedBudget - budgets.get(t)) + taskCost;
             			if (assignedBudget <= budget){
@@ -70,10 +75,14 @@ public class BudgetDistribution {
     		}
     	}
     	    	
+    	commitEvent(event, "TopDownCheapest", order.size(), dagBudget, environment, cloudsim);
     	return budgets;
 	}
 		
-	public static Map<Task, Double> getBudgetDistributionTopDownFastest(List<Task> order, Double dagBudget, Environment environment) {
+	public static Map<Task, Double> getBudgetDistributionTopDownFastest(List<Task> order, Double dagBudget, Environment environment,
+			CloudSimWrapper cloudsim) {
+		BudgetDistributionEvent event = new BudgetDistributionEvent();
+		event.begin();
 		
 		HashMap<Task, Double> budgets = new HashMap<Task, Double>();
 		
@@ -110,7 +119,7 @@ public class BudgetDistribution {
     			if (levels.get(t) == i){
     				for (VMType vmType : vmTypes){
             			double taskRuntime = environment.getPredictedRuntimeWithDegradation(vmType, t);
-            			taskRuntime += vmType.getProvisioningDelay().sample();
+            			taskRuntime += vmType.getExpectedProvisioningDelay();
             			double taskCost = environment.getCost(taskRuntime, vmType);
             			//separate new code here
             			if(budget > taskCost){
@@ -127,11 +136,14 @@ public class BudgetDistribution {
         	}
     	}
     	    	
+    	commitEvent(event, "TopDownFastest", order.size(), dagBudget, environment, cloudsim);
     	return budgets;
 	}
 	
 	public static HashMap<Task, Double> getBudgetDistributionLevelCheapest(Double alpha, TopologicalOrder order, DAG dag,
-			HashMap<Task, Double> runtimes, Environment environment) {
+			HashMap<Task, Double> runtimes, Environment environment, CloudSimWrapper cloudsim) {
+		BudgetDistributionEvent event = new BudgetDistributionEvent();
+		event.begin();
 		
 		HashMap<Task, Double> budgets = new HashMap<Task, Double>();
 		
@@ -230,11 +242,14 @@ public class BudgetDistribution {
    	    	}
    		}
    		
+		commitEvent(event, "LevelCheapest", budgets.size(), dag.getBudget(), environment, cloudsim);
 		return budgets;
 	}
 	
 	public static HashMap<Task, Double> getBudgetDistributionLevelFastest(Double alpha, TopologicalOrder order, DAG dag,
-			HashMap<Task, Double> runtimes, Environment environment) {
+			HashMap<Task, Double> runtimes, Environment environment, CloudSimWrapper cloudsim) {
+		BudgetDistributionEvent event = new BudgetDistributionEvent();
+		event.begin();
 		
 		HashMap<Task, Double> budgets = new HashMap<Task, Double>();
 		
@@ -333,10 +348,14 @@ public class BudgetDistribution {
    			}
    		}
    		
+		commitEvent(event, "LevelFastest", budgets.size(), dag.getBudget(), environment, cloudsim);
 		return budgets;
 	}
 	
-	public static Map<Task, Double> getBudgetDistributionMSLBL(List<Task> order, Double dagBudget, Environment environment){
+	public static Map<Task, Double> getBudgetDistributionMSLBL(List<Task> order, Double dagBudget, Environment environment,
+			CloudSimWrapper cloudsim) {
+		BudgetDistributionEvent event = new BudgetDistributionEvent();
+		event.begin();
 		Map<Task, Double> preBudgets = new HashMap<Task, Double>();
 		VMType fastestVmType = environment.getFastestVM();
 		VMType slowestVmType = environment.getCheapestVM();
@@ -366,7 +385,20 @@ public class BudgetDistribution {
 			preBudgets.put(t, costBudgetLevel);
 		}
 		
+		commitEvent(event, "MSLBL", order.size(), dagBudget, environment, cloudsim);
 		return preBudgets;
 	}
 	
+	private static void commitEvent(BudgetDistributionEvent event, String strategy, int tasks, double budget,
+			Environment environment, CloudSimWrapper cloudsim) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.simTime = cloudsim.clock();
+			event.strategy = strategy;
+			event.tasks = tasks;
+			event.vmTypes = environment.getVmTypes().size();
+			event.budget = budget;
+			event.commit();
+		}
+	}
 }
\ No newline at end of file
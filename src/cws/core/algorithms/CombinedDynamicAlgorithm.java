@@ -1,15 +1,17 @@
 package cws.core.algorithms;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import cws.core.Cloud;
-import cws.core.EnsembleManager;
 import cws.core.VM;
 import cws.core.WorkflowEngineCombinedRPSched;
 import cws.core.cloudsim.CloudSimWrapper;
 import cws.core.dag.DAG;
 import cws.core.dag.DAGJob;
+import cws.core.jobs.FIFOJobQueue;
 import cws.core.jobs.Job;
+import cws.core.jobs.JobQueue;
 import cws.core.provisioner.CloudProvisioner;
 import cws.core.scheduler.CloudScheduler;
 
@@ -26,7 +28,13 @@ public abstract class CombinedDynamicAlgorithm extends Algorithm {
 	protected CloudScheduler scheduler;
     protected CloudProvisioner provisioner;
     protected boolean saveRuntimeData;
+    
+    private WorkflowEngineCombinedRPSched engine;
 	
+	/** For snapshots */
+	protected CombinedDynamicAlgorithm() {
+	}
+
 	public CombinedDynamicAlgorithm(double budget, double deadline,
 			List<DAG> dags, CloudScheduler scheduler,
 			CloudProvisioner provisioner,
@@ -42,19 +50,60 @@ public abstract class CombinedDynamicAlgorithm extends Algorithm {
         getCloudsim().startSimulation();
 	}
 	
-	private void prepareEnvironment() {
+	void prepareEnvironment() {
         provisioner.setEnvironment(environment);
         scheduler.setEnvironment(environment);
 
         setCloud(new Cloud(getCloudsim()));
         provisioner.setCloud(getCloud());
         
-        setWorkflowEngine(new WorkflowEngineCombinedRPSched(this, getBudget(), getDeadline(), getCloudsim()));
+        engine = new WorkflowEngineCombinedRPSched(this, getBudget(), getDeadline(), getCloudsim());
+        setWorkflowEngine(engine);
 
         //The ensemble manager submits the dags to the wf engine for execution
-        setEnsembleManager(new EnsembleManager(getAllDags(), getWorkflowEngine(), getCloudsim()));
+        setEnsembleManager(createEnsembleManager());
     }
 	
+	/**
+	 * Asks the engine for a scheduling pass, which is coalesced with the other requests raised at the current
+	 * simulated time. Prefer this to calling {@link #scheduleQueueJobs()} directly.
+	 */
+	protected void requestScheduling() {
+		engine.requestScheduling();
+	}
+
+	/**
+	 * Called by the engine when a VM becomes free. Lets the provisioner track idle VMs without sweeping them.
+	 */
+	public void vmIdle(VM vm) {
+		provisioner.vmIdle(vm, getWorkflowEngine());
+	}
+
+	/**
+	 * Creates the ready queue of the workflow engine. Algorithms which schedule jobs in a priority order override
+	 * this to return a {@link cws.core.jobs.PriorityJobQueue}, so they can poll jobs from the engine in that order.
+	 */
+	public JobQueue createJobQueue() {
+		return new FIFOJobQueue();
+	}
+
+	/**
+	 * Recomputes the queue priorities of the queued jobs of the given DAG, e.g. after the algorithm has ranked the
+	 * tasks of a DAG whose first jobs were released before the ranking.
+	 */
+	protected void updateQueuedJobPriorities(DAGJob dagJob) {
+		JobQueue queue = getWorkflowEngine().getQueuedJobs();
+		List<Job> jobs = new ArrayList<Job>();
+		for (Job job : queue) {
+			if (job.getDAGJob() == dagJob) {
+				jobs.add(job);
+			}
+		}
+		for (Job job : jobs) {
+			queue.updatePriority(job);
+		}
+	}
+
 	@Override
 	public long getPlanningnWallTime() {
 		return 0;
@@ -0,0 +1,113 @@
+package cws.core.algorithms;
+
+import java.util.SortedMap;
+
+import cws.core.core.VMType;
+import cws.core.dag.DAG;
+import cws.core.dag.DAGJob;
+import cws.core.storage.DAGStorageStatistics;
+
+/**
+ * Outcome of one finished DAG. It copies what the reports need, so that the DAG itself can be released once it is
+ * finished.
+ */
+public class DAGResult {
+    private final String id;
+    private final String name;
+    private final int numTasks;
+    private final double submitTime;
+    private final double startTime;
+    private final double deadline;
+    private final double budget;
+    private final double finishTime;
+    private final double cost;
+    private final int vmsUsed;
+    private final SortedMap<VMType, Integer> numVmsPerType;
+    private final DAGStorageStatistics storageStatistics;
+
+    /** For snapshots */
+    private DAGResult() {
+        this.id = null;
+        this.name = null;
+        this.numTasks = 0;
+        this.submitTime = 0.0;
+        this.startTime = 0.0;
+        this.deadline = 0.0;
+        this.budget = 0.0;
+        this.finishTime = 0.0;
+        this.cost = 0.0;
+        this.vmsUsed = 0;
+        this.numVmsPerType = null;
+        this.storageStatistics = null;
+    }
+
+    public DAGResult(DAGJob dagJob, double finishTime, double cost, int vmsUsed,
+            SortedMap<VMType, Integer> numVmsPerType, DAGStorageStatistics storageStatistics) {
+        DAG dag = dagJob.getDAG();
+        this.id = dag.getId();
+        this.name = dag.getName();
+        this.numTasks = dag.numTasks();
+        this.submitTime = dag.getSubmitTime();
+        this.startTime = dagJob.getStartTime();
+        this.deadline = dag.getDeadline();
+        this.budget = dag.getBudget();
+        this.finishTime = finishTime;
+        this.cost = cost;
+        this.vmsUsed = vmsUsed;
+        this.numVmsPerType = numVmsPerType;
+        this.storageStatistics = storageStatistics;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNumTasks() {
+        return numTasks;
+    }
+
+    public double getSubmitTime() {
+        return submitTime;
+    }
+
+    public double getStartTime() {
+        return startTime;
+    }
+
+    public double getDeadline() {
+        return deadline;
+    }
+
+    public double getBudget() {
+        return budget;
+    }
+
+    public double getFinishTime() {
+        return finishTime;
+    }
+
+    /** Time from the DAG's start time until its last task finished */
+    public double getMakespan() {
+        return finishTime - startTime;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    public int getVmsUsed() {
+        return vmsUsed;
+    }
+
+    public SortedMap<VMType, Integer> getNumVmsPerType() {
+        return numVmsPerType;
+    }
+
+    public DAGStorageStatistics getStorageStatistics() {
+        return storageStatistics;
+    }
+}
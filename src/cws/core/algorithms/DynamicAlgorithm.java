@@ -4,7 +4,6 @@ import java.util.HashSet;
 import java.util.List;
 
 import cws.core.Cloud;
-import cws.core.EnsembleManager;
 import cws.core.Scheduler;
 import cws.core.VM;
 import cws.core.WorkflowEngine;
@@ -19,6 +18,10 @@ public class DynamicAlgorithm extends Algorithm {
     private Scheduler scheduler;
     private CloudAwareProvisioner provisioner;
 
+    /** For snapshots */
+    private DynamicAlgorithm() {
+    }
+
     public DynamicAlgorithm(double budget, double deadline, List<DAG> dags, Scheduler scheduler,
             CloudAwareProvisioner provisioner, AlgorithmStatistics ensembleStatistics, CloudSimWrapper cloudsim) {
         super(budget, deadline, dags, ensembleStatistics, cloudsim);
@@ -41,7 +44,7 @@ public class DynamicAlgorithm extends Algorithm {
 
         setWorkflowEngine(new WorkflowEngineSeparateRPSched (provisioner, scheduler, getBudget(), getDeadline(), getCloudsim()));
 
-        setEnsembleManager(new EnsembleManager(getAllDags(), getWorkflowEngine(), getCloudsim()));
+        setEnsembleManager(createEnsembleManager());
 
         int estimatedNumVMs = estimateVMsNumber();
 
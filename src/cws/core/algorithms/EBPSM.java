@@ -4,11 +4,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 
 import org.cloudbus.cloudsim.core.CloudSim;
@@ -23,7 +21,11 @@ import cws.core.dag.DAGJob;
 import cws.core.dag.Task;
 import cws.core.dag.algorithms.TopologicalOrder;
 import cws.core.dag.algorithms.TopologicalOrderReverse;
+import cws.core.jfr.SchedulingPassEvent;
 import cws.core.jobs.Job;
+import cws.core.jobs.JobPriority;
+import cws.core.jobs.JobQueue;
+import cws.core.jobs.PriorityJobQueue;
 import cws.core.provisioner.EBPSMProvisioner;
 import cws.core.scheduler.CloudScheduler;
 
@@ -49,12 +51,13 @@ public class EBPSM extends CombinedDynamicAlgorithm {
 	/** Tracking VM of each DAG **/
 	private Map<VM, String> wfVms;
 	
-	/** Job Execution Tracking Queue **/
-	private PriorityQueue<Job> prioritizedJobs = new PriorityQueue<Job>(64, new JobComparator());
-	
 	/** Job Execution Tracking Queue **/
 	private PriorityQueue<Task> prioritizedTasks = new PriorityQueue<Task>(64, new TaskComparator());
 
+	/** For snapshots */
+	private EBPSM() {
+	}
+
 	public EBPSM(double budget, double deadline, List<DAG> dags, AlgorithmStatistics ensembleStatistics,
 			CloudSimWrapper cloudsim, boolean saveRuntimeData) {
 		super(budget, deadline, dags, new CloudScheduler(cloudsim), new EBPSMProvisioner(cloudsim),
@@ -68,29 +71,33 @@ public class EBPSM extends CombinedDynamicAlgorithm {
 		wfVms = new HashMap<VM, String>();
 	}
     
-	protected class JobComparator implements Comparator<Job> {
+	protected static class EarliestFinishTimePriority implements JobPriority {
 
         @Override
-        public int compare(Job j1, Job j2) {
-        	return Double.compare(j1.getTask().getEarliestFinishTime(), j2.getTask().getEarliestFinishTime());
+        public double getPriority(Job job) {
+        	return job.getTask().getEarliestFinishTime();
         }
     }
 	
-	private void moveAllJobsToPriorityQueue(Queue<Job> jobs) {
-        prioritizedJobs.addAll(jobs);
-        jobs.clear();
-    }
+	@Override
+	public JobQueue createJobQueue() {
+		return new PriorityJobQueue(new EarliestFinishTimePriority());
+	}
 	
 	@Override
 	public void scheduleQueueJobs() {
+		SchedulingPassEvent event = new SchedulingPassEvent();
+		event.begin();
+		int queuedJobs = getWorkflowEngine().getQueuedJobs().size();
+		int freeVMs = getWorkflowEngine().getFreeVMs().size();
+		int scheduledOnFreeVMs = 0;
+		int provisionedVMs = 0;
 		
-		Queue<Job> queue = new LinkedList<Job>(getWorkflowEngine().getQueuedJobs());
-		
-		moveAllJobsToPriorityQueue(queue);
+		JobQueue queue = getWorkflowEngine().getQueuedJobs();
 		
 		//Scheduling the tasks
-		while (!prioritizedJobs.isEmpty()) {
-			Job job = prioritizedJobs.poll();
+		while (!queue.isEmpty()) {
+			Job job = queue.poll();
 			Task task = job.getTask();
 			DAG dag = job.getDAGJob().getDAG();
 			double taskBudget = 0.0;
@@ -108,7 +115,9 @@ public class EBPSM extends CombinedDynamicAlgorithm {
 			
 			Map<Task, Double> budgetDistribution = new HashMap<Task, Double>();
 			budgetDistribution = dagUnscheduledBudget.get(dag);
-			taskBudget = budgetDistribution.get(task);
+			// A retried task was scheduled before, so it keeps the budget it was scheduled with
+			Double unscheduledBudget = budgetDistribution.get(task);
+			taskBudget = unscheduledBudget != null ? unscheduledBudget : dagBudget.get(dag).get(task);
 						
 			System.out.println("******************");
 			System.out.println("Scheduling task dag" + dag.getId() + "." + task.getId() + ", budget: "
@@ -141,6 +150,7 @@ public class EBPSM extends CombinedDynamicAlgorithm {
 				if (vm != null) { // If the vm is still null at this point then
 									// we didn't find a free vm
 					foundFreeVm = true;
+					scheduledOnFreeVMs++;
 					scheduleJob(job, vm, contDelay, true);
 					unscheduledTask.remove(task);
 					wfVms.put(vm, dag.getName().substring(0,2));
@@ -154,6 +164,7 @@ public class EBPSM extends CombinedDynamicAlgorithm {
 
 				// Provision a new vm of the chosen type
 				VM vm = provisioner.provisionResource(vmType, getWorkflowEngine());
+				provisionedVMs++;
 				contDelay = 10.0;
 				scheduleJob(job, vm, contDelay, false);
 				unscheduledTask.remove(task);
@@ -162,6 +173,18 @@ public class EBPSM extends CombinedDynamicAlgorithm {
 			unscheduledTasks.put(dag, unscheduledTask);
 		}
 		
+		event.end();
+		if (event.shouldCommit()) {
+			event.simTime = getCloudsim().clock();
+			event.engineId = getWorkflowEngine().getId();
+			event.algorithm = "EBPSM";
+			event.queuedJobs = queuedJobs;
+			event.freeVMs = freeVMs;
+			event.scheduledOnFreeVMs = scheduledOnFreeVMs;
+			event.provisionedVMs = provisionedVMs;
+			event.commit();
+		}
+		
 		
 		//This is the scheduling cycle
 		//The algorithm will call this method either when a new workflow is arrived,
@@ -249,10 +272,12 @@ public class EBPSM extends CombinedDynamicAlgorithm {
 		unscheduledTasks.put(dag, unscheduledTask);
 		unfinishedTasks.put(dag, unfinishedTask);
 		
-		scheduleQueueJobs();
+		// The entry jobs of the DAG were queued before its tasks were ranked
+		updateQueuedJobPriorities(dagJob);
+		requestScheduling();
 	}
 
-	protected class TaskComparator implements Comparator<Task> {
+	protected static class TaskComparator implements Comparator<Task> {
 
         @Override
         public int compare(Task t1, Task t2) {
@@ -275,7 +300,8 @@ public class EBPSM extends CombinedDynamicAlgorithm {
     		unscheduledTask.add(prioritizedTasks.poll());
     	}
     	
-    	budgets = BudgetDistribution.getBudgetDistributionTopDownCheapest(unscheduledTask, budget, environment);
+    	budgets = BudgetDistribution.getBudgetDistributionTopDownCheapest(unscheduledTask, budget, environment,
+    		getCloudsim());
     	
     	return budgets;
     }
@@ -351,6 +377,13 @@ public class EBPSM extends CombinedDynamicAlgorithm {
 		System.out.println("Total DAG Finished: " + dagFinished);
 		System.out.println("******************");
 
+		// The per task state of a finished DAG is not needed anymore
+		DAG dag = dagJob.getDAG();
+		dagBudget.remove(dag);
+		dagUnscheduledBudget.remove(dag);
+		unscheduledTasks.remove(dag);
+		unfinishedTasks.remove(dag);
+
 		// Deprovision resources if there are no more DAGs to run
 		if (getWorkflowEngine().getDags().isEmpty()) {
 			provisioner.deprovisionResources(getWorkflowEngine());
@@ -398,7 +431,7 @@ public class EBPSM extends CombinedDynamicAlgorithm {
 		
 		for (VMType vmType : vmTypes) {
 			double runtime = environment.getPredictedRuntime(vmType, task);
-			runtime += vmType.getProvisioningDelay().sample();
+			runtime += vmType.getExpectedProvisioningDelay();
 			double cost = environment.getCost(runtime, vmType);
 			if (cost >= largestCost) {
 				largestCost = cost;
@@ -477,9 +510,9 @@ public class EBPSM extends CombinedDynamicAlgorithm {
 		Set<VM> vms = getWorkflowEngine().getFreeVMs();
 		List<VM> freeVms = new ArrayList<VM>();
 		for (VM vm : vms) {
-			// make sure the VM is really free...sometimes the vm list in the
+			// make sure the VM really has an idle core...sometimes the vm list in the
 			// engine is not updated on time
-			if (vm.getRunningJobs().isEmpty() && vm.getWaitingInputJobs().isEmpty()) {
+			if (vm.hasIdleCore()) {
 				if (wfVms.containsKey(vm)) {
 					if (wfVms.get(vm).equals(dag.getName().substring(0,2))) {
 						freeVms.add(vm);
@@ -494,9 +527,9 @@ public class EBPSM extends CombinedDynamicAlgorithm {
 		Set<VM> vms = getWorkflowEngine().getFreeVMs();
 		List<VM> freeVms = new ArrayList<VM>();
 		for (VM vm : vms) {
-			// make sure the VM is really free...sometimes the vm list in the
+			// make sure the VM really has an idle core...sometimes the vm list in the
 			// engine is not updated on time
-			if (vm.getRunningJobs().isEmpty() && vm.getWaitingInputJobs().isEmpty()) {
+			if (vm.hasIdleCore()) {
 				freeVms.add(vm);
 			}
 		}
@@ -508,9 +541,9 @@ public class EBPSM extends CombinedDynamicAlgorithm {
 		List<VM> inputDataVms = new ArrayList<VM>();
 		for (VM vm : vms) {
 
-			// make sure the VM is really free...sometimes the vm list in the
+			// make sure the VM really has an idle core...sometimes the vm list in the
 			// engine is not updated on time
-			if (vm.getRunningJobs().isEmpty() && vm.getWaitingInputJobs().isEmpty()) {
+			if (vm.hasIdleCore()) {
 				for (DAGFile file : task.getInputFiles()) {
 					if (environment.isFileCached(vm, file)) {
 						inputDataVms.add(vm);
@@ -522,7 +555,6 @@ public class EBPSM extends CombinedDynamicAlgorithm {
 	}
 	
 	private void scheduleJob(Job job, VM vm, Double delay, boolean submit) {
-		getWorkflowEngine().getQueuedJobs().remove(job);
 		// Submit is true when the VM is already up and running
 		if (submit) {
 			double predictedRuntime = environment.getPredictedRuntimeOnVM(vm, job.getTask());
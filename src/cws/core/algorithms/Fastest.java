@@ -22,6 +22,10 @@ public class Fastest extends CombinedDynamicAlgorithm {
 	private VMType vmType = null;
 	
 	
+	/** For snapshots */
+	private Fastest() {
+	}
+
 	public Fastest(double budget, double deadline, List<DAG> dags, AlgorithmStatistics ensembleStatistics, CloudSimWrapper cloudsim, boolean saveRuntimeData) {
 		super(budget, deadline, dags, new CloudScheduler(cloudsim), new OneTaskOneVMProvisioner(cloudsim), ensembleStatistics, cloudsim);
 		// TODO Auto-generated constructor stub
@@ -52,7 +56,7 @@ public class Fastest extends CombinedDynamicAlgorithm {
 	@Override
 	public void DAGSubmit(DAGJob dagJob) {
 		// TODO Auto-generated method stub
-		scheduleQueueJobs();
+		requestScheduling();
 	}
 
 	@Override
@@ -86,7 +90,7 @@ public class Fastest extends CombinedDynamicAlgorithm {
 		Job job = jobsScheduled.get(vm);
 		jobs.remove(job);
 		scheduler.scheduleJob(job, vm, delay, engine);
-		scheduleQueueJobs();
+		requestScheduling();
 	}
 
 	@Override
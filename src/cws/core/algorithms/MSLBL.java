@@ -4,11 +4,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 
 import org.cloudbus.cloudsim.core.CloudSim;
@@ -23,6 +21,9 @@ import cws.core.dag.Task;
 import cws.core.dag.algorithms.TopologicalOrder;
 import cws.core.dag.algorithms.TopologicalOrderReverse;
 import cws.core.jobs.Job;
+import cws.core.jobs.JobPriority;
+import cws.core.jobs.JobQueue;
+import cws.core.jobs.PriorityJobQueue;
 import cws.core.provisioner.GeneralPurposeProvisioner;
 import cws.core.scheduler.CloudScheduler;
 
@@ -45,12 +46,13 @@ public class MSLBL extends CombinedDynamicAlgorithm {
 	/** Tracking the unfinished task**/
 	private Map<DAG, List<Task>> unfinishedTasks;
 		
-	/** Job Execution Tracking Queue **/
-	private PriorityQueue<Job> prioritizedJobs = new PriorityQueue<Job>(64, new JobComparator());
-	
 	/** Job Execution Tracking Queue **/
 	private PriorityQueue<Task> prioritizedTasks = new PriorityQueue<Task>(64, new TaskComparator());
 
+	/** For snapshots */
+	private MSLBL() {
+	}
+
 	public MSLBL(double budget, double deadline, List<DAG> dags, AlgorithmStatistics ensembleStatistics,
 			CloudSimWrapper cloudsim, boolean saveRuntimeData) {
 		super(budget, deadline, dags, new CloudScheduler(cloudsim), new GeneralPurposeProvisioner(cloudsim),
@@ -63,29 +65,27 @@ public class MSLBL extends CombinedDynamicAlgorithm {
 		unfinishedTasks = new HashMap<DAG, List<Task>>();
 	}
     
-	protected class JobComparator implements Comparator<Job> {
+	protected static class EarliestStartTimePriority implements JobPriority {
 
         @Override
-        public int compare(Job j1, Job j2) {
-        	return Double.compare(j1.getTask().getEarliestStartTime(), j2.getTask().getEarliestStartTime());
+        public double getPriority(Job job) {
+        	return job.getTask().getEarliestStartTime();
         }
     }
 	
-	private void moveAllJobsToPriorityQueue(Queue<Job> jobs) {
-        prioritizedJobs.addAll(jobs);
-        jobs.clear();
-    }
+	@Override
+	public JobQueue createJobQueue() {
+		return new PriorityJobQueue(new EarliestStartTimePriority());
+	}
 	
 	@Override
 	public void scheduleQueueJobs() {
 		
-		Queue<Job> queue = new LinkedList<Job>(getWorkflowEngine().getQueuedJobs());
-		
-		moveAllJobsToPriorityQueue(queue);
+		JobQueue queue = getWorkflowEngine().getQueuedJobs();
 		
 		//Scheduling the tasks
-		while (!prioritizedJobs.isEmpty()) {
-			Job job = prioritizedJobs.poll();
+		while (!queue.isEmpty()) {
+			Job job = queue.poll();
 			Task task = job.getTask();
 			DAG dag = job.getDAGJob().getDAG();
 			double taskBudget = 0.0;
@@ -103,7 +103,9 @@ public class MSLBL extends CombinedDynamicAlgorithm {
 			
 			Map<Task, Double> budgetDistribution = new HashMap<Task, Double>();
 			budgetDistribution = dagUnscheduledBudget.get(dag);
-			taskBudget = budgetDistribution.get(task);
+			// A retried task was scheduled before, so it keeps the budget it was scheduled with
+			Double unscheduledBudget = budgetDistribution.get(task);
+			taskBudget = unscheduledBudget != null ? unscheduledBudget : dagBudget.get(dag).get(task);
 						
 			System.out.println("******************");
 			System.out.println("Scheduling task dag" + dag.getId() + "." + task.getId() + ", budget: "
@@ -226,10 +228,12 @@ public class MSLBL extends CombinedDynamicAlgorithm {
 		unscheduledTasks.put(dag, unscheduledTask);
 		unfinishedTasks.put(dag, unfinishedTask);
 		
-		scheduleQueueJobs();
+		// The entry jobs of the DAG were queued before its tasks were ranked
+		updateQueuedJobPriorities(dagJob);
+		requestScheduling();
 	}
 
-	protected class TaskComparator implements Comparator<Task> {
+	protected static class TaskComparator implements Comparator<Task> {
 
         @Override
         public int compare(Task t1, Task t2) {
@@ -252,7 +256,7 @@ public class MSLBL extends CombinedDynamicAlgorithm {
     		unscheduledTask.add(prioritizedTasks.poll());
     	}
     	
-    	budgets = BudgetDistribution.getBudgetDistributionMSLBL(unscheduledTask, budget, environment);
+    	budgets = BudgetDistribution.getBudgetDistributionMSLBL(unscheduledTask, budget, environment, getCloudsim());
     	
     	return budgets;
     }
@@ -271,6 +275,13 @@ public class MSLBL extends CombinedDynamicAlgorithm {
 		System.out.println("Total DAG Finished: " + dagFinished);
 		System.out.println("******************");
 
+		// The per task state of a finished DAG is not needed anymore
+		DAG dag = dagJob.getDAG();
+		dagBudget.remove(dag);
+		dagUnscheduledBudget.remove(dag);
+		unscheduledTasks.remove(dag);
+		unfinishedTasks.remove(dag);
+
 		// Deprovision resources if there are no more DAGs to run
 		if (getWorkflowEngine().getDags().isEmpty()) {
 			provisioner.deprovisionResources(getWorkflowEngine());
@@ -318,7 +329,7 @@ public class MSLBL extends CombinedDynamicAlgorithm {
 		
 		for (VMType vmType : vmTypes) {
 			double runtime = environment.getPredictedRuntime(vmType, task);
-			runtime += vmType.getProvisioningDelay().sample();
+			runtime += vmType.getExpectedProvisioningDelay();
 			double cost = environment.getCost(runtime, vmType);
 			if (cost >= largestCost) {
 				largestCost = cost;
@@ -376,9 +387,9 @@ public class MSLBL extends CombinedDynamicAlgorithm {
 		Set<VM> vms = getWorkflowEngine().getFreeVMs();
 		List<VM> freeVms = new ArrayList<VM>();
 		for (VM vm : vms) {
-			// make sure the VM is really free...sometimes the vm list in the
+			// make sure the VM really has an idle core...sometimes the vm list in the
 			// engine is not updated on time
-			if (vm.getRunningJobs().isEmpty() && vm.getWaitingInputJobs().isEmpty()) {
+			if (vm.hasIdleCore()) {
 				freeVms.add(vm);
 			}
 		}
@@ -386,7 +397,6 @@ public class MSLBL extends CombinedDynamicAlgorithm {
 	}
 	
 	private void scheduleJob(Job job, VM vm, Double delay, boolean submit) {
-		getWorkflowEngine().getQueuedJobs().remove(job);
 		// Submit is true when the VM is already up and running
 		if (submit) {
 			double predictedRuntime = environment.getPredictedRuntimeOnVM(vm, job.getTask());
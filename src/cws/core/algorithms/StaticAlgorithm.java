@@ -389,11 +389,15 @@ public abstract class StaticAlgorithm extends Algorithm implements Provisioner,
         return order;
     }
 
-    class Slot {
+    static class Slot {
         Task task;
         double start;
         double duration;
 
+        /** For snapshots */
+        private Slot() {
+        }
+
         public Slot(Task task, double start, double duration) {
             this.task = task;
             this.start = start;
@@ -403,11 +407,22 @@ public abstract class StaticAlgorithm extends Algorithm implements Provisioner,
 
     private static int nextresourceid = 0;
 
-    class Resource {
+    /**
+     * Restarts the ids of the planned resources at 0.
+     */
+    public static void resetStaticCounters() {
+        nextresourceid = 0;
+    }
+
+    static class Resource {
         int id = nextresourceid++;
         Environment environment;
         TreeMap<Double, Slot> schedule;
 
+        /** For snapshots */
+        private Resource() {
+        }
+
         public Resource(Resource other) {
             this(other.environment);
             for (Double s : other.schedule.navigableKeySet()) {
@@ -468,12 +483,16 @@ public abstract class StaticAlgorithm extends Algorithm implements Provisioner,
         }
     }
 
-    class Solution {
+    static class Solution {
         double cost;
         Resource resource;
         Slot slot;
         boolean newresource;
 
+        /** For snapshots */
+        private Solution() {
+        }
+
         public Solution(Resource resource, Slot slot, double cost, boolean newresource) {
             this.resource = resource;
             this.slot = slot;
@@ -520,7 +539,7 @@ public abstract class StaticAlgorithm extends Algorithm implements Provisioner,
         }
     }
 
-    class Plan {
+    static class Plan {
         LinkedHashSet<Resource> resources;
 
         public Plan() {
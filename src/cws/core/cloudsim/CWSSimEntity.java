@@ -12,6 +12,11 @@ public abstract class CWSSimEntity extends SimEntity {
         this.cloudsim = cloudsim;
     }
 
+    /** For snapshots, the copy gets its name and id from the snapshot */
+    protected CWSSimEntity() {
+        super("Snapshot");
+    }
+
     public CloudSimWrapper getCloudsim() {
         return cloudsim;
     }
@@ -50,9 +55,19 @@ public abstract class CWSSimEntity extends SimEntity {
     @Deprecated
     @Override
     public final void processEvent(SimEvent ev) {
+        cloudsim.eventProcessed();
         processEvent(new CWSSimEvent(ev));
     }
 
+    /**
+     * Entity ids are assigned in creation order, so hashing on them (instead of on identity) keeps the iteration order
+     * of hashed collections of entities, e.g. the engine's VM sets, the same in every run.
+     */
+    @Override
+    public int hashCode() {
+        return getId();
+    }
+
     /**
      * This is overridden and does nothing by default, because almost everywhere we do nothing in this method.
      * @see SimEntity#startEntity()
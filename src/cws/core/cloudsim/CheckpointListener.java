@@ -0,0 +1,13 @@
+package cws.core.cloudsim;
+
+/**
+ * Called by {@link CloudSimWrapper} when a simulation reaches the checkpoint time set with
+ * {@link CloudSimWrapper#setCheckpoint(double, CheckpointListener)}.
+ */
+public interface CheckpointListener {
+    /**
+     * Called between two instants of simulated time: all the events up to the checkpoint time have been delivered and
+     * none of the later ones. The simulation continues when this returns.
+     */
+    void checkpointReached(CloudSimWrapper cloudsim);
+}
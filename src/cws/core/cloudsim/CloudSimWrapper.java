@@ -3,10 +3,14 @@ package cws.core.cloudsim;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.Calendar;
+import java.util.List;
 
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.predicates.Predicate;
 
+import cws.core.RandomStreams;
+
 /**
  * Wrapper for CloudSim class. Why did we need this class? Because CloudSim has only static methods and we wanted to
  * make code more testable, hence we have created this class.
@@ -24,6 +28,18 @@ public class CloudSimWrapper {
     /** Whether logging is enabled. Defaults to true. */
     private boolean logsEnabled = true;
 
+    /** Number of events processed by the simulation's entities */
+    private long processedEvents;
+
+    /** Simulated time after which the checkpoint listener is called, if one is set */
+    private double checkpointTime;
+
+    /** Not part of the simulation's state, so snapshots taken by the listener do not include it */
+    private transient CheckpointListener checkpointListener;
+
+    /** Random streams of the simulation's entities, seeded with 0 unless set */
+    private RandomStreams randomStreams = new RandomStreams(0L);
+
     /**
      * Creates CloudSimWrapper which prints logs to stdout.
      */
@@ -62,14 +78,61 @@ public class CloudSimWrapper {
     }
 
     /**
+     * Runs the simulation until there are no more events. When a checkpoint is set, the simulation first runs until
+     * the checkpoint time, then calls the checkpoint listener and continues. A simulation restored from a snapshot taken
+     * at a checkpoint continues from it when started.
+     * 
      * @see CloudSim#startSimulation()
      */
     public void startSimulation() {
         simulationStartWallTime = System.nanoTime();
+        if (checkpointListener != null) {
+            if (runUntil(checkpointTime)) {
+                checkpointListener.checkpointReached(this);
+            } else {
+                // The simulation ended before the checkpoint
+                CloudSim.finishSimulation();
+                simulationFinishWallTime = System.nanoTime();
+                return;
+            }
+        }
         CloudSim.startSimulation();
         simulationFinishWallTime = System.nanoTime();
     }
 
+    /**
+     * Delivers all the events up to the given time, CloudSim's next tick then starts with the first later instant.
+     * 
+     * @return False if the simulation ran out of events first.
+     */
+    private boolean runUntil(double time) {
+        if (!CloudSim.running()) {
+            CloudSim.runStart();
+        }
+        while (CloudSim.clock() <= time) {
+            if (CloudSim.runClockTick()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes the next {@link #startSimulation()} call the given listener once all the events up to the given time
+     * have been delivered. The listener is not called if the simulation ends first.
+     */
+    public void setCheckpoint(double time, CheckpointListener listener) {
+        this.checkpointTime = time;
+        this.checkpointListener = listener;
+    }
+
+    /**
+     * @see CloudSim#getEntityList()
+     */
+    public List<SimEntity> getEntityList() {
+        return CloudSim.getEntityList();
+    }
+
     /**
      * @see CloudSim#getEntityId(String)
      */
@@ -133,6 +196,35 @@ public class CloudSimWrapper {
         this.logsEnabled = logsEnabled;
     }
 
+    public boolean isLogsEnabled() {
+        return logsEnabled;
+    }
+
+    /**
+     * Called by {@link CWSSimEntity} for every event it processes.
+     */
+    void eventProcessed() {
+        processedEvents++;
+    }
+
+    public RandomStreams getRandomStreams() {
+        return randomStreams;
+    }
+
+    /**
+     * Sets the random streams of the simulation, i.e. its seed. Has to be called before the entities are created.
+     */
+    public void setRandomStreams(RandomStreams randomStreams) {
+        this.randomStreams = randomStreams;
+    }
+
+    /**
+     * @return Number of events processed by the simulation's entities so far.
+     */
+    public long getProcessedEvents() {
+        return processedEvents;
+    }
+
     /**
      * @return Simulation wall time in nanos.
      */
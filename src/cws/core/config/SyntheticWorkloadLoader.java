@@ -0,0 +1,228 @@
+package cws.core.config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import cws.core.RandomStreams;
+import cws.core.core.VMType;
+import cws.core.exception.IllegalCWSArgumentException;
+import cws.core.provisioner.VMFactory;
+import cws.core.simulation.StorageSimulationParams;
+import cws.core.workload.AnalyticBudgetEstimator;
+import cws.core.workload.ArrivalProcess;
+import cws.core.workload.BudgetRangeEstimator;
+import cws.core.workload.DiurnalArrivalProcess;
+import cws.core.workload.IsolatedBudgetEstimator;
+import cws.core.workload.MMPPArrivalProcess;
+import cws.core.workload.MemoizingBudgetEstimator;
+import cws.core.workload.PoissonArrivalProcess;
+import cws.core.workload.SyntheticWorkload;
+import cws.core.workload.TraceArrivalProcess;
+import cws.core.workload.WorkflowMix;
+
+/**
+ * Builds {@link SyntheticWorkload}s from CLI args like --arrival-process mmpp --workload-size 20000.
+ * 
+ * Every workload built for the same seed draws the same arrivals, because its random streams are created anew from
+ * {@link RandomStreams}. This lets every algorithm of an experiment run over an identical generated workload.
+ */
+public class SyntheticWorkloadLoader {
+    private static final boolean HAS_ARG = true;
+
+    static final String WORKLOAD_SIZE_OPTION_NAME = "workload-size";
+    static final String WORKLOAD_SIZE_SHORT_OPTION_NAME = "ws";
+    private static final String DEFAULT_WORKLOAD_SIZE = "10";
+    static final String ARRIVAL_PROCESS_OPTION_NAME = "arrival-process";
+    static final String ARRIVAL_PROCESS_SHORT_OPTION_NAME = "ap";
+    private static final String DEFAULT_ARRIVAL_PROCESS = "poisson";
+    static final String ARRIVAL_RATE_OPTION_NAME = "arrival-rate";
+    static final String ARRIVAL_RATE_SHORT_OPTION_NAME = "ar";
+    private static final String DEFAULT_ARRIVAL_RATE = "0.2";
+    static final String MMPP_RATES_OPTION_NAME = "mmpp-rates";
+    static final String MMPP_RATES_SHORT_OPTION_NAME = "mr";
+    private static final String DEFAULT_MMPP_RATES = "0.05,1.0";
+    static final String MMPP_SWITCH_RATES_OPTION_NAME = "mmpp-switch-rates";
+    static final String MMPP_SWITCH_RATES_SHORT_OPTION_NAME = "msr";
+    private static final String DEFAULT_MMPP_SWITCH_RATES = "0.002,0.02";
+    static final String DIURNAL_PERIOD_OPTION_NAME = "diurnal-period";
+    static final String DIURNAL_PERIOD_SHORT_OPTION_NAME = "dp";
+    private static final String DEFAULT_DIURNAL_PERIOD = "86400";
+    static final String DIURNAL_AMPLITUDE_OPTION_NAME = "diurnal-amplitude";
+    static final String DIURNAL_AMPLITUDE_SHORT_OPTION_NAME = "da";
+    private static final String DEFAULT_DIURNAL_AMPLITUDE = "0.5";
+    static final String ARRIVAL_TRACE_OPTION_NAME = "arrival-trace";
+    static final String ARRIVAL_TRACE_SHORT_OPTION_NAME = "at";
+    static final String ARRIVAL_TRACE_SCALE_OPTION_NAME = "arrival-trace-scale";
+    static final String ARRIVAL_TRACE_SCALE_SHORT_OPTION_NAME = "ats";
+    private static final String DEFAULT_ARRIVAL_TRACE_SCALE = "1.0";
+    static final String WORKFLOW_FAMILIES_OPTION_NAME = "workflow-families";
+    static final String WORKFLOW_FAMILIES_SHORT_OPTION_NAME = "wf";
+    private static final String DEFAULT_WORKFLOW_FAMILIES = "CYBERSHAKE,GENOME,LIGO,MONTAGE,SIPHT";
+    static final String WORKFLOW_SIZES_OPTION_NAME = "workflow-sizes";
+    static final String WORKFLOW_SIZES_SHORT_OPTION_NAME = "wsz";
+    private static final String DEFAULT_WORKFLOW_SIZES = "50,100,1000";
+    static final String WORKFLOW_INSTANCES_OPTION_NAME = "workflow-instances";
+    static final String WORKFLOW_INSTANCES_SHORT_OPTION_NAME = "wi";
+    private static final String DEFAULT_WORKFLOW_INSTANCES = "20";
+    static final String BUDGET_ESTIMATOR_OPTION_NAME = "budget-estimator";
+    static final String BUDGET_ESTIMATOR_SHORT_OPTION_NAME = "be";
+    private static final String DEFAULT_BUDGET_ESTIMATOR = "analytic";
+    static final String BUDGET_ESTIMATION_THREADS_OPTION_NAME = "budget-estimation-threads";
+    static final String BUDGET_ESTIMATION_THREADS_SHORT_OPTION_NAME = "bet";
+
+    public static void buildCliOptions(Options options) {
+        addOption(options, WORKLOAD_SIZE_SHORT_OPTION_NAME, WORKLOAD_SIZE_OPTION_NAME, "NUM",
+                "Number of workflows of a generated workload, defaults to " + DEFAULT_WORKLOAD_SIZE);
+        addOption(options, ARRIVAL_PROCESS_SHORT_OPTION_NAME, ARRIVAL_PROCESS_OPTION_NAME, "PROCESS",
+                "Arrival process of a generated workload: poisson, mmpp, diurnal or trace, defaults to "
+                        + DEFAULT_ARRIVAL_PROCESS);
+        addOption(options, ARRIVAL_RATE_SHORT_OPTION_NAME, ARRIVAL_RATE_OPTION_NAME, "PER_SEC",
+                "Mean arrival rate of the poisson and diurnal processes, defaults to " + DEFAULT_ARRIVAL_RATE);
+        addOption(options, MMPP_RATES_SHORT_OPTION_NAME, MMPP_RATES_OPTION_NAME, "PER_SEC,...",
+                "Arrival rate in each state of the mmpp process, defaults to " + DEFAULT_MMPP_RATES);
+        addOption(options, MMPP_SWITCH_RATES_SHORT_OPTION_NAME, MMPP_SWITCH_RATES_OPTION_NAME, "PER_SEC,...",
+                "Rate of leaving each state of the mmpp process, defaults to " + DEFAULT_MMPP_SWITCH_RATES);
+        addOption(options, DIURNAL_PERIOD_SHORT_OPTION_NAME, DIURNAL_PERIOD_OPTION_NAME, "SECONDS",
+                "Period of the diurnal process, defaults to " + DEFAULT_DIURNAL_PERIOD);
+        addOption(options, DIURNAL_AMPLITUDE_SHORT_OPTION_NAME, DIURNAL_AMPLITUDE_OPTION_NAME, "FRACTION",
+                "Relative rate swing of the diurnal process, defaults to " + DEFAULT_DIURNAL_AMPLITUDE);
+        addOption(options, ARRIVAL_TRACE_SHORT_OPTION_NAME, ARRIVAL_TRACE_OPTION_NAME, "FILE",
+                "Trace of submit times replayed by the trace process");
+        addOption(options, ARRIVAL_TRACE_SCALE_SHORT_OPTION_NAME, ARRIVAL_TRACE_SCALE_OPTION_NAME, "FACTOR",
+                "Factor applied to the times of the replayed trace, defaults to " + DEFAULT_ARRIVAL_TRACE_SCALE);
+        addOption(options, WORKFLOW_FAMILIES_SHORT_OPTION_NAME, WORKFLOW_FAMILIES_OPTION_NAME, "NAME[:WEIGHT],...",
+                "Workflow families of a generated workload, defaults to " + DEFAULT_WORKFLOW_FAMILIES);
+        addOption(options, WORKFLOW_SIZES_SHORT_OPTION_NAME, WORKFLOW_SIZES_OPTION_NAME, "SIZE[:WEIGHT],...",
+                "Workflow sizes of a generated workload, defaults to " + DEFAULT_WORKFLOW_SIZES);
+        addOption(options, WORKFLOW_INSTANCES_SHORT_OPTION_NAME, WORKFLOW_INSTANCES_OPTION_NAME, "NUM",
+                "Number of instances of each workflow family and size, defaults to " + DEFAULT_WORKFLOW_INSTANCES);
+        addOption(options, BUDGET_ESTIMATOR_SHORT_OPTION_NAME, BUDGET_ESTIMATOR_OPTION_NAME, "ESTIMATOR",
+                "How budget ranges of generated workflows are estimated: analytic or simulated, defaults to "
+                        + DEFAULT_BUDGET_ESTIMATOR);
+        addOption(options, BUDGET_ESTIMATION_THREADS_SHORT_OPTION_NAME, BUDGET_ESTIMATION_THREADS_OPTION_NAME, "NUM",
+                "Number of concurrent simulated budget estimations, defaults to the number of processors");
+    }
+
+    private static void addOption(Options options, String shortName, String name, String argName, String description) {
+        Option option = new Option(shortName, name, HAS_ARG, description);
+        option.setArgName(argName);
+        options.addOption(option);
+    }
+
+    /**
+     * @param randomStreams The random streams of the experiment, the workload draws from its own streams.
+     */
+    public SyntheticWorkload createWorkload(CommandLine args, File dagInputDir, BudgetRangeEstimator budgetEstimator,
+            RandomStreams randomStreams) {
+        int size = parseInt(args, WORKLOAD_SIZE_OPTION_NAME, DEFAULT_WORKLOAD_SIZE);
+        WorkflowMix mix = new WorkflowMix(args.getOptionValue(WORKFLOW_FAMILIES_OPTION_NAME,
+                DEFAULT_WORKFLOW_FAMILIES), args.getOptionValue(WORKFLOW_SIZES_OPTION_NAME, DEFAULT_WORKFLOW_SIZES),
+                parseInt(args, WORKFLOW_INSTANCES_OPTION_NAME, DEFAULT_WORKFLOW_INSTANCES));
+        return new SyntheticWorkload(size, determineArrivalProcess(args, randomStreams), mix, dagInputDir,
+                budgetEstimator, randomStreams.stream("workload-mix"), randomStreams.stream("workload-budget"));
+    }
+
+    /**
+     * @return The configured budget estimator, memoized per workflow file. Simulated estimations run on isolated
+     *         simulators and the workflows of the generated workload are all estimated up front, in parallel.
+     */
+    public BudgetRangeEstimator createBudgetEstimator(CommandLine args, File dagInputDir, List<VMType> vmTypes,
+            StorageSimulationParams simulationParams, RandomStreams randomStreams) {
+        String estimator = args.getOptionValue(BUDGET_ESTIMATOR_OPTION_NAME, DEFAULT_BUDGET_ESTIMATOR);
+        if ("analytic".equals(estimator)) {
+            return new MemoizingBudgetEstimator(new AnalyticBudgetEstimator(vmTypes, simulationParams,
+                    VMFactory.getAveragePerformanceVariation()));
+        } else if ("simulated".equals(estimator)) {
+            int threads = parseInt(args, BUDGET_ESTIMATION_THREADS_OPTION_NAME,
+                    Integer.toString(Runtime.getRuntime().availableProcessors()));
+            IsolatedBudgetEstimator isolated = new IsolatedBudgetEstimator(toArgs(args), randomStreams.getSeed(),
+                    threads);
+            isolated.estimateAll(getDagFiles(args, dagInputDir, randomStreams));
+            return isolated;
+        } else {
+            throw new IllegalCWSArgumentException("Wrong budget-estimator: " + estimator);
+        }
+    }
+
+    /**
+     * @return The workflow files of the generated workload, in arrival order.
+     */
+    public List<File> getDagFiles(CommandLine args, File dagInputDir, RandomStreams randomStreams) {
+        List<File> dagFiles = new ArrayList<File>();
+        SyntheticWorkload workload = createWorkload(args, dagInputDir, null, randomStreams);
+        while (workload.hasNext()) {
+            dagFiles.add(workload.next().getDagFile());
+        }
+        return dagFiles;
+    }
+
+    private static String[] toArgs(CommandLine args) {
+        List<String> result = new ArrayList<String>();
+        for (Option option : args.getOptions()) {
+            result.add("--" + option.getLongOpt());
+            if (option.hasArg()) {
+                result.add(option.getValue());
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    public ArrivalProcess determineArrivalProcess(CommandLine args, RandomStreams randomStreams) {
+        String process = args.getOptionValue(ARRIVAL_PROCESS_OPTION_NAME, DEFAULT_ARRIVAL_PROCESS);
+        if ("poisson".equals(process)) {
+            return new PoissonArrivalProcess(parseDouble(args, ARRIVAL_RATE_OPTION_NAME, DEFAULT_ARRIVAL_RATE),
+                    randomStreams.stream("workload-arrivals"));
+        } else if ("mmpp".equals(process)) {
+            return new MMPPArrivalProcess(parseDoubles(args, MMPP_RATES_OPTION_NAME, DEFAULT_MMPP_RATES),
+                    parseDoubles(args, MMPP_SWITCH_RATES_OPTION_NAME, DEFAULT_MMPP_SWITCH_RATES),
+                    randomStreams.stream("workload-arrivals"));
+        } else if ("diurnal".equals(process)) {
+            return new DiurnalArrivalProcess(parseDouble(args, ARRIVAL_RATE_OPTION_NAME, DEFAULT_ARRIVAL_RATE),
+                    parseDouble(args, DIURNAL_AMPLITUDE_OPTION_NAME, DEFAULT_DIURNAL_AMPLITUDE), parseDouble(args,
+                            DIURNAL_PERIOD_OPTION_NAME, DEFAULT_DIURNAL_PERIOD),
+                    randomStreams.stream("workload-arrivals"));
+        } else if ("trace".equals(process)) {
+            if (!args.hasOption(ARRIVAL_TRACE_OPTION_NAME)) {
+                throw new IllegalCWSArgumentException("The trace arrival process needs --" + ARRIVAL_TRACE_OPTION_NAME);
+            }
+            return new TraceArrivalProcess(new File(args.getOptionValue(ARRIVAL_TRACE_OPTION_NAME)), parseDouble(args,
+                    ARRIVAL_TRACE_SCALE_OPTION_NAME, DEFAULT_ARRIVAL_TRACE_SCALE));
+        } else {
+            throw new IllegalCWSArgumentException("Wrong arrival-process: " + process);
+        }
+    }
+
+    private static int parseInt(CommandLine args, String name, String defaultValue) {
+        try {
+            return Integer.parseInt(args.getOptionValue(name, defaultValue));
+        } catch (NumberFormatException e) {
+            throw new IllegalCWSArgumentException(name + " must be an integer");
+        }
+    }
+
+    private static double parseDouble(CommandLine args, String name, String defaultValue) {
+        try {
+            return Double.parseDouble(args.getOptionValue(name, defaultValue));
+        } catch (NumberFormatException e) {
+            throw new IllegalCWSArgumentException(name + " must be a number");
+        }
+    }
+
+    private static double[] parseDoubles(CommandLine args, String name, String defaultValue) {
+        String[] values = args.getOptionValue(name, defaultValue).split(",");
+        double[] result = new double[values.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                result[i] = Double.parseDouble(values[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalCWSArgumentException(name + " must be a list of numbers");
+        }
+        return result;
+    }
+}
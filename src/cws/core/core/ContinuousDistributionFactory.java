@@ -3,15 +3,16 @@ package cws.core.core;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.distributions.ContinuousDistribution;
-import org.cloudbus.cloudsim.distributions.UniformDistr;
 
 import cws.core.provisioner.ConstantDistribution;
+import cws.core.provisioner.UniformDistribution;
 
 /**
  * Creates a distribution from distribution config.
  * Handles two types of distribution:
  * - constant (needs `value` param)
  * - uniform (needs `minValue` and `maxValue` params)
+ * Random distributions are templates without a random stream, see {@link EstimableDistribution#withStream}.
  */
 public class ContinuousDistributionFactory {
 
@@ -86,6 +87,6 @@ public class ContinuousDistributionFactory {
     private ContinuousDistribution createUniformDistribution(Map<String, Object> distributionConfig) {
         double minValue = ((Number) distributionConfig.get("minValue")).doubleValue();
         double maxValue = ((Number) distributionConfig.get("maxValue")).doubleValue();
-        return new UniformDistr(minValue, maxValue);
+        return new UniformDistribution(minValue, maxValue);
     }
 }
@@ -0,0 +1,65 @@
+package cws.core.core;
+
+import java.util.Arrays;
+
+import org.cloudbus.cloudsim.distributions.ContinuousDistribution;
+
+/**
+ * Precomputed planning estimates (expected value and percentiles) of a delay distribution. Estimates of an
+ * {@link EstimableDistribution} are exact. Any other distribution is sampled once, up front, and the estimates are
+ * taken from the empirical distribution of those samples.
+ */
+public class DelayEstimate {
+    private static final int EMPIRICAL_SAMPLES = 1000;
+
+    private final EstimableDistribution distribution;
+
+    /**
+     * Sorted samples of a distribution without analytic estimates, null otherwise.
+     */
+    private final double[] samples;
+
+    private final double expectedValue;
+
+    /** For snapshots */
+    private DelayEstimate() {
+        this.distribution = null;
+        this.samples = null;
+        this.expectedValue = 0.0;
+    }
+
+    public DelayEstimate(ContinuousDistribution distribution) {
+        if (distribution instanceof EstimableDistribution) {
+            this.distribution = (EstimableDistribution) distribution;
+            this.samples = null;
+            this.expectedValue = this.distribution.getExpectedValue();
+        } else {
+            this.distribution = null;
+            this.samples = new double[EMPIRICAL_SAMPLES];
+            double sum = 0.0;
+            for (int i = 0; i < EMPIRICAL_SAMPLES; i++) {
+                samples[i] = distribution.sample();
+                sum += samples[i];
+            }
+            Arrays.sort(samples);
+            this.expectedValue = sum / EMPIRICAL_SAMPLES;
+        }
+    }
+
+    public double getExpectedValue() {
+        return expectedValue;
+    }
+
+    /**
+     * @param p - the percentile as a fraction in [0, 1], e.g. 0.95.
+     */
+    public double getPercentile(double p) {
+        if (p < 0.0 || p > 1.0) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1, " + p + " is not allowed");
+        }
+        if (distribution != null) {
+            return distribution.getPercentile(p);
+        }
+        return samples[(int) Math.ceil(p * (samples.length - 1))];
+    }
+}
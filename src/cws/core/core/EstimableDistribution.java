@@ -0,0 +1,24 @@
+package cws.core.core;
+
+import org.cloudbus.cloudsim.distributions.ContinuousDistribution;
+
+import cws.core.RandomStream;
+
+/**
+ * A distribution which knows its expected value and percentiles, so that planning code can estimate delays without
+ * drawing samples.
+ */
+public interface EstimableDistribution extends ContinuousDistribution {
+
+    public double getExpectedValue();
+
+    /**
+     * @param p - the percentile as a fraction in [0, 1], e.g. 0.95.
+     */
+    public double getPercentile(double p);
+
+    /**
+     * @return A copy of this distribution which draws its samples from the given stream, e.g. one per VM.
+     */
+    public EstimableDistribution withStream(RandomStream random);
+}
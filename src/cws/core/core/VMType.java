@@ -33,12 +33,27 @@ public class VMType implements Cloneable {
      */
     private final ContinuousDistribution deprovisioningDelay;
 
+    /**
+     * Planning estimates of the provisioning delay, so that estimation code does not sample the distribution
+     */
+    private final DelayEstimate provisioningDelayEstimate;
+
+    /**
+     * Planning estimates of the deprovisioning delay
+     */
+    private final DelayEstimate deprovisioningDelayEstimate;
+
     /**
      * The number of bytes on internal disk that can be used as a cache
      * @see {@link cws.core.storage.cache.VMCacheManager}
      */
     private final long cacheSize;
 
+    /**
+     * Bandwidth of the network interface in Mbps, available in each direction
+     */
+    private final double bandwidth;
+
     /**
      * The amount of memory available
      */
@@ -73,10 +88,37 @@ public class VMType implements Cloneable {
         return deprovisioningDelay;
     }
 
+    /**
+     * Expected provisioning delay, to be used for planning. Only actual launches should sample
+     * {@link #getProvisioningDelay()}.
+     */
+    public double getExpectedProvisioningDelay() {
+        return provisioningDelayEstimate.getExpectedValue();
+    }
+
+    public double getExpectedDeprovisioningDelay() {
+        return deprovisioningDelayEstimate.getExpectedValue();
+    }
+
+    /**
+     * @param p - the percentile as a fraction in [0, 1], e.g. 0.95 for a pessimistic estimate.
+     */
+    public double getProvisioningDelayPercentile(double p) {
+        return provisioningDelayEstimate.getPercentile(p);
+    }
+
+    public double getDeprovisioningDelayPercentile(double p) {
+        return deprovisioningDelayEstimate.getPercentile(p);
+    }
+
     public long getCacheSize() {
         return cacheSize;
     }
 
+    public double getBandwidth() {
+        return bandwidth;
+    }
+
     public double getMemory() {
     	return memory;
     }
@@ -85,16 +127,35 @@ public class VMType implements Cloneable {
     	return name;
     }
     
+    /** For snapshots */
+    private VMType() {
+        this.mips = 0;
+        this.cores = 0;
+        this.billingUnitPrice = 0.0;
+        this.billingTimeInSeconds = 0.0;
+        this.provisioningDelay = null;
+        this.deprovisioningDelay = null;
+        this.provisioningDelayEstimate = null;
+        this.deprovisioningDelayEstimate = null;
+        this.cacheSize = 0;
+        this.bandwidth = 0.0;
+        this.memory = 0.0;
+        this.name = null;
+    }
+
     public VMType(int mips, int cores, double billingUnitPrice, double billingTimeInSeconds,
             ContinuousDistribution provisioningTime, ContinuousDistribution deprovisioningTime, long cacheSize,
-            double memory, String name) {
+            double bandwidth, double memory, String name) {
         this.mips = mips;
         this.cores = cores;
         this.billingUnitPrice = billingUnitPrice;
         this.billingTimeInSeconds = billingTimeInSeconds;
         this.provisioningDelay = provisioningTime;
         this.deprovisioningDelay = deprovisioningTime;
+        this.provisioningDelayEstimate = new DelayEstimate(provisioningTime);
+        this.deprovisioningDelayEstimate = new DelayEstimate(deprovisioningTime);
         this.cacheSize = cacheSize;
+        this.bandwidth = bandwidth;
         this.memory = memory;
         this.name = name;
     }
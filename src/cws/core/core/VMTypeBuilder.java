@@ -7,6 +7,8 @@ import cws.core.provisioner.ConstantDistribution;
 public class VMTypeBuilder {
     private static final double DEFAULT_BILLING_TIME = 3600;
     private static final long DEFAULT_CACHE_SIZE = 100000000;
+    /** 1 Gbps, in Mbps */
+    public static final double DEFAULT_BANDWIDTH = 1000.0;
 
     private static final ContinuousDistribution DEFAULT_PROVISIONING_DELAY = new ConstantDistribution(0.0);
     private static final ContinuousDistribution DEFAULT_DEPROVISIONING_DELAY = new ConstantDistribution(10.0);
@@ -44,6 +46,8 @@ public class VMTypeBuilder {
 
         OptionalsStep cacheSize(long cacheSize);
 
+        OptionalsStep bandwidth(double bandwidth);
+
         VMType build();
     }
 
@@ -58,6 +62,7 @@ public class VMTypeBuilder {
         private ContinuousDistribution provisioningTime = DEFAULT_PROVISIONING_DELAY;
         private ContinuousDistribution deprovisioningTime = DEFAULT_DEPROVISIONING_DELAY;
         private long cacheSize = DEFAULT_CACHE_SIZE;
+        private double bandwidth = DEFAULT_BANDWIDTH;
 
         @Override
         public CoresStep mips(int mips) {
@@ -114,9 +119,16 @@ public class VMTypeBuilder {
             return this;
         }
 
+        @Override
+        public OptionalsStep bandwidth(double bandwidth) {
+            this.bandwidth = bandwidth;
+            return this;
+        }
+
         @Override
         public VMType build() {
-            return new VMType(mips, cores, price, billingTimeInSeconds, provisioningTime, deprovisioningTime, cacheSize, memory, name);
+            return new VMType(mips, cores, price, billingTimeInSeconds, provisioningTime, deprovisioningTime, cacheSize,
+                    bandwidth, memory, name);
         }
     }
 }
@@ -46,6 +46,10 @@ public class VMTypeLoader {
     static final String VM_CACHE_SIZE_SHORT_OPTION_NAME = "vcs";
     static final String VM_CACHE_SIZE_OPTION_NAME = "vm-cache-size";
 
+    static final String VM_BANDWIDTH_CONFIG_ENTRY = "bandwidth";
+    static final String VM_BANDWIDTH_SHORT_OPTION_NAME = "vbw";
+    static final String VM_BANDWIDTH_OPTION_NAME = "vm-bandwidth";
+
     static final String VM_MIPS_CONFIG_ENTRY = "mips";
     static final String VM_MIPS_SHORT_OPTION_NAME = "vmi";
     static final String VM_MIPS_OPTION_NAME = "vm-mips";
@@ -117,6 +121,14 @@ public class VMTypeLoader {
         long cacheSize = ((Number) config.get(VM_CACHE_SIZE_CONFIG_ENTRY)).longValue();
         double memory = ((Number) config.get(VM_MEMORY_CONFIG_ENTRY)).doubleValue();
         String name = (String)config.get(VM_NAME_CONFIG_ENTRY);
+        // Optional, older VM files do not have it
+        double bandwidth = VMTypeBuilder.DEFAULT_BANDWIDTH;
+        if (config.containsKey(VM_BANDWIDTH_CONFIG_ENTRY)) {
+            bandwidth = ((Number) config.get(VM_BANDWIDTH_CONFIG_ENTRY)).doubleValue();
+            if (bandwidth <= 0.0) {
+                throw new IllegalCWSArgumentException("bandwidth configuration is not greater than zero in VM config file");
+            }
+        }
 
         ContinuousDistributionFactory factory = new ContinuousDistributionFactory();
 
@@ -127,7 +139,7 @@ public class VMTypeLoader {
         ContinuousDistribution deprovisioningDelay = loadDistribution(factory, deprovisioningConfig);
 
         return VMTypeBuilder.newBuilder().mips(mips).cores(cores).price(unitPrice).memory(memory).name(name).cacheSize(cacheSize)
-                .billingTimeInSeconds(unitTime).provisioningTime(provisioningDelay)
+                .bandwidth(bandwidth).billingTimeInSeconds(unitTime).provisioningTime(provisioningDelay)
                 .deprovisioningTime(deprovisioningDelay).build();
     }
 
@@ -162,6 +174,12 @@ public class VMTypeLoader {
         cacheSize.setArgName("SIZE");
         options.addOption(cacheSize);
 
+        Option bandwidth = new Option(VM_BANDWIDTH_SHORT_OPTION_NAME, VM_BANDWIDTH_OPTION_NAME, HAS_ARG, String.format(
+                "Overrides VM network bandwidth in Mbps, defaults to %s when the VM config file has none",
+                VMTypeBuilder.DEFAULT_BANDWIDTH));
+        bandwidth.setArgName("MBPS");
+        options.addOption(bandwidth);
+
         Option mips = new Option(VM_MIPS_SHORT_OPTION_NAME, VM_MIPS_OPTION_NAME, HAS_ARG,
                 "Overrides VM computational efficiency in mips units");
         mips.setArgName("NUMBER");
@@ -212,6 +230,11 @@ public class VMTypeLoader {
         List<Map<String, Object>> vmConfigs = tryLoadVMFromConfigFile(args);
         if(vmConfigs.size() == 1) { //if there is a single type of vm
             overrideConfigFromFileWithCliArgs(vmConfigs.get(0), args);
+        } else {
+            // The other overrides are specific to a type, the number of cores applies to all of them
+            for (Map<String, Object> config : vmConfigs) {
+                overrideCoresWithCliArgs(config, args);
+            }
         }
         for (Map<String, Object> config : vmConfigs) {
 			VMType type = loadVM(config);
@@ -228,22 +251,31 @@ public class VMTypeLoader {
         }
     }
 
+    private void overrideCoresWithCliArgs(Map<String, Object> vmConfig, CommandLine args) {
+        if (args.hasOption(VM_CORES_OPTION_NAME)) {
+            Integer cores = Integer.parseInt(args.getOptionValue(VM_CORES_OPTION_NAME));
+            vmConfig.put(VM_CORES_CONFIG_ENTRY, cores);
+        }
+    }
+
     void overrideConfigFromFileWithCliArgs(Map<String, Object> vmConfig, CommandLine args) {
         if (args.hasOption(VM_MIPS_OPTION_NAME)) {
             Integer mips = Integer.parseInt(args.getOptionValue(VM_MIPS_OPTION_NAME));
             vmConfig.put(VM_MIPS_CONFIG_ENTRY, mips);
         }
 
-        if (args.hasOption(VM_CORES_OPTION_NAME)) {
-            Integer cores = Integer.parseInt(args.getOptionValue(VM_CORES_OPTION_NAME));
-            vmConfig.put(VM_CORES_CONFIG_ENTRY, cores);
-        }
+        overrideCoresWithCliArgs(vmConfig, args);
 
         if (args.hasOption(VM_CACHE_SIZE_OPTION_NAME)) {
             Long cacheSize = Long.parseLong(args.getOptionValue(VM_CACHE_SIZE_OPTION_NAME));
             vmConfig.put(VM_CACHE_SIZE_CONFIG_ENTRY, cacheSize);
         }
 
+        if (args.hasOption(VM_BANDWIDTH_OPTION_NAME)) {
+            Double bandwidth = Double.parseDouble(args.getOptionValue(VM_BANDWIDTH_OPTION_NAME));
+            vmConfig.put(VM_BANDWIDTH_CONFIG_ENTRY, bandwidth);
+        }
+
         if (args.hasOption(VM_BILLING_PRICE_OPTION_NAME)) {
             Double billingPrice = Double.parseDouble(args.getOptionValue(VM_BILLING_PRICE_OPTION_NAME));
             Map<String, Object> billingConfig = getBillingSection(vmConfig);
@@ -1,5 +1,6 @@
 package cws.core.dag;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -11,6 +12,8 @@ import cws.core.dag.exception.DAGFileNotFoundException;
 public class DAG {
     private HashMap<String, Long> files = new HashMap<String, Long>();
     private HashMap<String, Task> tasks = new HashMap<String, Task>();
+    private List<Task> taskList = new ArrayList<Task>();
+    private HashMap<DAGFile, Task> producers = new HashMap<DAGFile, Task>();
 
     private String id; // for logging purposes
     private double deadline; // deadline of each dag
@@ -22,7 +25,9 @@ public class DAG {
         if (tasks.containsKey(t.getId())) {
             throw new RuntimeException("Task already exists: " + t.getId());
         }
+        t.setIndex(taskList.size());
         tasks.put(t.getId(), t);
+        taskList.add(t);
     }
     
     public void addFile(String name, long size) {
@@ -53,6 +58,19 @@ public class DAG {
     public void setOutputs(String task, List<DAGFile> outputs) {
         Task t = getTaskById(task);
         t.addOutputFiles(outputs);
+        for (DAGFile output : outputs) {
+            if (!producers.containsKey(output)) {
+                producers.put(output, t);
+            }
+        }
+    }
+
+    /**
+     * @return The task which produces the given file, or null if the file is an input of the whole workflow. If more
+     *         than one task lists the file as an output, the first one is returned.
+     */
+    public Task getProducer(DAGFile file) {
+        return producers.get(file);
     }
 
     public int numTasks() {
@@ -70,6 +88,13 @@ public class DAG {
         return tasks.get(id);
     }
 
+    /**
+     * @see Task#getIndex()
+     */
+    public Task getTaskByIndex(int index) {
+        return taskList.get(index);
+    }
+
     public long getFileSize(String name) {
         if (!files.containsKey(name)) {
             throw new DAGFileNotFoundException(name);
@@ -126,4 +151,14 @@ public class DAG {
 		// TODO Auto-generated method stub
 		this.budget = budget;
 	}
+	
+	/**
+	 * Clears what an algorithm computed for the tasks. A parsed workload is shared by the experiments of all the
+	 * algorithms, so each one starts from the tasks as they were read.
+	 */
+	public void resetSchedulingState() {
+		for (Task task : taskList) {
+			task.resetSchedulingState();
+		}
+	}
 }
@@ -0,0 +1,75 @@
+package cws.core.dag;
+
+import java.io.File;
+
+/**
+ * One workflow arrival of a workload: everything needed to build the DAG, without parsing its DAG file yet. This lets
+ * an ensemble be streamed, materializing each DAG only shortly before it is submitted.
+ */
+public class DAGArrival {
+    private final String id;
+    private final String name;
+    private final File dagFile;
+    private final double budget;
+    private final double deadline;
+    private final double submitTime;
+
+    /** For snapshots */
+    private DAGArrival() {
+        this.id = null;
+        this.name = null;
+        this.dagFile = null;
+        this.budget = 0.0;
+        this.deadline = 0.0;
+        this.submitTime = 0.0;
+    }
+
+    /**
+     * @param deadline - absolute deadline, i.e. already shifted by the submit time.
+     */
+    public DAGArrival(String id, String name, File dagFile, double budget, double deadline, double submitTime) {
+        this.id = id;
+        this.name = name;
+        this.dagFile = dagFile;
+        this.budget = budget;
+        this.deadline = deadline;
+        this.submitTime = submitTime;
+    }
+
+    /**
+     * Parses the DAG file and returns a new DAG carrying this arrival's id, name, budget, deadline and submit time.
+     */
+    public DAG materialize() {
+        DAG dag = DAGParser.parseDAG(dagFile);
+        dag.setId(id);
+        dag.setName(name);
+        dag.setBudget(budget);
+        dag.setDeadline(deadline);
+        dag.setSubmitTime(submitTime);
+        return dag;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public File getDagFile() {
+        return dagFile;
+    }
+
+    public double getBudget() {
+        return budget;
+    }
+
+    public double getDeadline() {
+        return deadline;
+    }
+
+    public double getSubmitTime() {
+        return submitTime;
+    }
+}
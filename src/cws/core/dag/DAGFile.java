@@ -7,6 +7,10 @@ public class DAGFile {
     private String name;
     private long size;
 
+    /** For snapshots */
+    private DAGFile() {
+    }
+
     public DAGFile(String name, long size) {
         this.name = name;
         this.size = size;
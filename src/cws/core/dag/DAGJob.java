@@ -1,7 +1,8 @@
 package cws.core.dag;
 
+import java.util.ArrayDeque;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 import cws.core.jobs.Job;
@@ -20,17 +21,27 @@ public class DAGJob {
     /** The DAG being executed */
     private DAG dag;
 
-    /** Set of tasks that have been released */
-    private Set<Task> releasedTasks;
+    /** Which tasks have been released, indexed by {@link Task#getIndex()} */
+    private boolean[] releasedTasks;
 
-    /** Set of tasks that are finished */
-    private Set<Task> completedTasks;
+    /** Which tasks are finished, indexed by {@link Task#getIndex()} */
+    private boolean[] completedTasks;
+
+    /** Number of parents of each task that are not finished yet, indexed by {@link Task#getIndex()} */
+    private int[] remainingParents;
+
+    private int numReleasedTasks;
+
+    private int numCompletedTasks;
     
     /** Maria: Set of jobs that finished, to keep track of the VM where they ran */
     private Set<Job> completedJobs;
 
+    /** The last recorded job of each task, indexed by {@link Task#getIndex()} */
+    private Job[] jobsByTask;
+
     /** List of all tasks that are ready but have not been claimed */
-    private LinkedList<Task> queue;
+    private ArrayDeque<Task> queue;
 
     /** Workflow priority */
     private int priority;
@@ -41,18 +52,26 @@ public class DAGJob {
     /** Workflow SpareBudget */
     private double dagSpareBudget;
 
+    /** For snapshots */
+    private DAGJob() {
+    }
+
     public DAGJob(DAG dag, int owner, double startTime) {
         this.dag = dag;
         this.owner = owner;
-        this.queue = new LinkedList<Task>();
-        this.releasedTasks = new HashSet<Task>();
-        this.completedTasks = new HashSet<Task>();
+        this.queue = new ArrayDeque<Task>();
+        int numTasks = dag.numTasks();
+        this.releasedTasks = new boolean[numTasks];
+        this.completedTasks = new boolean[numTasks];
+        this.remainingParents = new int[numTasks];
+        this.jobsByTask = new Job[numTasks];
         this.completedJobs = new HashSet<Job>();
         this.startTime = startTime;
 
         // Release all root tasks
         for (String tid : dag.getTasks()) {
             Task t = dag.getTaskById(tid);
+            remainingParents[t.getIndex()] = t.getParents().size();
             if (t.getParents().size() == 0 || (t.getParents().size() == 1 && t.getParents().get(0).getId().equals("ENTRY"))) {
                 releaseTask(t);
             }
@@ -85,44 +104,59 @@ public class DAGJob {
 
     /** Check to see if a task has been released */
     public boolean isReleased(Job t) {
-        return releasedTasks.contains(t);
+        Task task = t.getTask();
+        return isOwnTask(task) && releasedTasks[task.getIndex()];
     }
 
     /** Check to see if a task has been completed */
     public boolean isComplete(Task t) {
-        return completedTasks.contains(t);
+        return isOwnTask(t) && completedTasks[t.getIndex()];
+    }
+
+    /** Tasks of other DAGs (even of other copies of the same DAG file) are never released or completed here */
+    private boolean isOwnTask(Task t) {
+        int index = t.getIndex();
+        return index >= 0 && index < completedTasks.length && dag.getTaskByIndex(index) == t;
     }
 
     /** Return true if the workflow is finished */
     public boolean isFinished() {
         // The workflow must be finished if all the tasks that
         // have been released have been completed
-        return releasedTasks.size() == completedTasks.size();
+        return numReleasedTasks == numCompletedTasks;
     }
 
     private void releaseTask(Task t) {
     	//Change by maria, only release a task if 
-        releasedTasks.add(t);
+        releasedTasks[t.getIndex()] = true;
+        numReleasedTasks++;
         queue.add(t);
     }
 
     /** Mark a task as completed */
     public void completeTask(Task t) {
         // Sanity check
-        if (!releasedTasks.contains(t)) {
+        if (!isOwnTask(t) || !releasedTasks[t.getIndex()]) {
             throw new RuntimeException("Task has not been released: " + t);
         }
+        if (completedTasks[t.getIndex()]) {
+            return;
+        }
 
         // Add it to the list of completed tasks
-        completedTasks.add(t);
-
-        // Release all ready children
-        for (Task c : t.getChildren()) {
+        completedTasks[t.getIndex()] = true;
+        numCompletedTasks++;
+
+        // Count down the children first, so that a child listed more than once is still released at its first
+        // position, and then release all ready children in order
+        List<Task> children = t.getChildren();
+        for (Task c : children) {
+            remainingParents[c.getIndex()]--;
+        }
+        for (Task c : children) {
 			if (!c.getId().equals("EXIT")) {
-				if (!releasedTasks.contains(c)) {
-					if (completedTasks.containsAll(c.getParents())) {
-						releaseTask(c);
-					}
+				if (!releasedTasks[c.getIndex()] && remainingParents[c.getIndex()] == 0) {
+					releaseTask(c);
 				}
 			}
 		}
@@ -130,6 +164,10 @@ public class DAGJob {
 
     public void recordJobExecution(Job job) {
     	completedJobs.add(job);
+    	Task task = job.getTask();
+    	if (isOwnTask(task)) {
+    		jobsByTask[task.getIndex()] = job;
+    	}
     }
     
 
@@ -145,13 +183,12 @@ public class DAGJob {
         return queue.size();
     }
 
+	/** Return the recorded job which executed the task, or null if it has not been recorded */
 	public Job getJob(Task task) {
-		for (Job job : completedJobs) {
-			if(job.getTask().equals(task)) {
-				return job;
-			}
+		if (!isOwnTask(task)) {
+			return null;
 		}
-		return null;
+		return jobsByTask[task.getIndex()];
 	}
 	
 	public double getStartTime() {
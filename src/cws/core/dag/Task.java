@@ -44,6 +44,13 @@ public class Task {
     
     private double rank;//task rank
 
+    /** Position of the task in its DAG, assigned when it is added to the DAG */
+    private int index = -1;
+
+    /** For snapshots */
+    private Task() {
+    }
+
     public Task(String id, String transformation, double size, double memoryRequirement) {
         this.id = id;
         this.transformation = transformation;
@@ -91,6 +98,17 @@ public class Task {
         size *= scalingFactor;
     }
 
+    /**
+     * @return Dense index of this task in its DAG (0 to numTasks - 1), usable to keep per-task state in arrays.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
     public double getSize() {
         return size;
     }
@@ -182,4 +200,15 @@ public class Task {
 	public double getRank(){
 		return rank;
 	}
+	
+	/**
+	 * Clears what the algorithms computed for the task, i.e. its deadline, budget, EST, EFT and rank.
+	 */
+	void resetSchedulingState() {
+		deadline = 0.0;
+		budget = 0.0;
+		earliestStartTime = 0.0;
+		earliestFinishTime = 0.0;
+		rank = 0.0;
+	}
 }
@@ -25,6 +25,10 @@ public class Environment {
      */
     private PredictionStrategy predictionStrategy;
 
+    /** For snapshots */
+    private Environment() {
+    }
+
     public Environment(List<VMType> vmTypes, StorageManager storageManager, PredictionStrategy predictionStrategy) {//, VM2VMTransferManager transferManager) {
         this.vmTypes = vmTypes;
         this.storageManager = storageManager;
@@ -130,27 +134,27 @@ public class Environment {
     }
 
     public double getVMProvisioningOverallDelayEstimation() {
-        return vmType.getProvisioningDelay().sample() + vmType.getDeprovisioningDelay().sample();
+        return vmType.getExpectedProvisioningDelay() + vmType.getExpectedDeprovisioningDelay();
     }
 
     public double getProvisioningDelayEstimation() {
-        return vmType.getProvisioningDelay().sample();
+        return vmType.getExpectedProvisioningDelay();
     }
     
     public double getDeprovisioningDelayEstimation() {
-        return vmType.getDeprovisioningDelay().sample();
+        return vmType.getExpectedDeprovisioningDelay();
     }
     
     public double getVMProvisioningOverallDelayEstimation(VMType vmType) {
-        return vmType.getProvisioningDelay().sample() + vmType.getDeprovisioningDelay().sample();
+        return vmType.getExpectedProvisioningDelay() + vmType.getExpectedDeprovisioningDelay();
     }
     
     public double getVMProvisioningDelayEstimation(VMType vmType) {
-        return vmType.getProvisioningDelay().sample();
+        return vmType.getExpectedProvisioningDelay();
     }
     
     public double getVMDeprovisioningDelayEstimation(VMType vmType) {
-        return vmType.getDeprovisioningDelay().sample();
+        return vmType.getExpectedDeprovisioningDelay();
     }
     
     public List<VMType> getVmTypes() {
@@ -25,7 +25,7 @@ public class EnvironmentFactory {
             List<VMType> vmTypes, boolean isStorageAware) {
         StorageManager storageManager = StorageManagerFactory.createStorage(simulationParams, cloudsim);
         if (isStorageAware) {
-            return new Environment(vmTypes, storageManager, new StorageAwarePredictionStrategy());
+            return new Environment(vmTypes, storageManager, new StorageAwarePredictionStrategy(cloudsim.getRandomStreams()));
         } else {
             return new Environment(vmTypes, storageManager, new StorageUnawarePredictionStrategy());
         }
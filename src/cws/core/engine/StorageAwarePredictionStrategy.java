@@ -1,7 +1,7 @@
 package cws.core.engine;
 
-import java.util.Random;
-
+import cws.core.RandomStream;
+import cws.core.RandomStreams;
 import cws.core.core.VMType;
 
 import cws.core.dag.Task;
@@ -12,6 +12,22 @@ import cws.core.storage.StorageManager;
  */
 public class StorageAwarePredictionStrategy implements PredictionStrategy {
 
+    private static final String PERFORMANCE_VARIATION_STREAM = "prediction-performance-variation";
+
+    private final RandomStream random;
+
+    /** For snapshots */
+    private StorageAwarePredictionStrategy() {
+        this.random = null;
+    }
+
+    /**
+     * @param randomStreams The random streams of the simulation, to draw the predicted performance variation from.
+     */
+    public StorageAwarePredictionStrategy(RandomStreams randomStreams) {
+        this.random = randomStreams.stream(PERFORMANCE_VARIATION_STREAM);
+    }
+
     /**
      * Storage aware version of runtime prediction. It takes file transfers into account.
      * 
@@ -19,7 +35,7 @@ public class StorageAwarePredictionStrategy implements PredictionStrategy {
      */
     @Override
     public double getPredictedRuntime(Task task, VMType vmType, StorageManager storageManager) {
-        return task.getSize() / vmType.getMips() + storageManager.getTransferTimeEstimation(task);
+        return task.getSize() / vmType.getMips() + storageManager.getTransferTimeEstimation(task, vmType);
     }
     
     @Override
@@ -31,7 +47,7 @@ public class StorageAwarePredictionStrategy implements PredictionStrategy {
 	public double getPredictedRuntimeWithDegradation(Task task,
 			VMType vmType, StorageManager storageManager) {
 		double var = getPerformanceVariation();
-		return (task.getSize() /(vmType.getMips()*var)) + storageManager.getTransferTimeEstimationWithDegradation(task);
+		return (task.getSize() /(vmType.getMips()*var)) + storageManager.getTransferTimeEstimationWithDegradation(task, vmType);
 	}
 	
 	/**Performance loss
@@ -41,7 +57,6 @@ public class StorageAwarePredictionStrategy implements PredictionStrategy {
 		/*Jackson experienced up to 30% variability.
 		 * So, we will use 15% in average, 10% stddev
 		 */
-		Random random = new Random();
 		double performanceLoss = (random.nextGaussian()*0.10) + 0.15;
 		if(performanceLoss > 0.30) performanceLoss = 0.30;
 		else if (performanceLoss < 0.0) performanceLoss = 0.0;
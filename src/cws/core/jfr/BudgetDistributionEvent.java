@@ -0,0 +1,34 @@
+package cws.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted each time a workflow budget is distributed over its tasks.
+ */
+@Name("cws.BudgetDistribution")
+@Label("Budget Distribution")
+@Category({ "CloudWorkflowSimulator", "Scheduling" })
+@Description("Distribution of a workflow budget over its (unscheduled) tasks")
+@StackTrace(false)
+public class BudgetDistributionEvent extends Event {
+    @Label("Simulation Time")
+    @Description("Simulated clock in seconds")
+    public double simTime;
+
+    @Label("Strategy")
+    public String strategy;
+
+    @Label("Tasks")
+    public int tasks;
+
+    @Label("VM Types")
+    public int vmTypes;
+
+    @Label("Budget")
+    public double budget;
+}
@@ -0,0 +1,56 @@
+package cws.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for every chunk a global storage transfer progresses by.
+ */
+@Name("cws.GlobalStorageTransfer")
+@Label("Global Storage Transfer Chunk")
+@Category({ "CloudWorkflowSimulator", "Storage" })
+@Description("A chunk of a read or write between a VM and the global storage")
+@StackTrace(false)
+public class GlobalStorageTransferEvent extends Event {
+    @Label("Simulation Time")
+    @Description("Simulated clock in seconds")
+    public double simTime;
+
+    @Label("Storage Manager Id")
+    public int storageId;
+
+    @Label("Transfer Id")
+    public int transferId;
+
+    @Label("VM Id")
+    public int vmId;
+
+    @Label("Direction")
+    @Description("Either \"read\" or \"write\"")
+    public String direction;
+
+    @Label("File Size")
+    @DataAmount
+    public long fileSize;
+
+    @Label("Chunk Bytes")
+    @DataAmount
+    public long chunkBytes;
+
+    @Label("Remaining Bytes")
+    @DataAmount
+    public long remainingBytes;
+
+    @Label("Chunk Duration")
+    @Description("Simulated duration of the chunk in seconds")
+    public double chunkDuration;
+
+    @Label("Concurrent Transfers")
+    @Description("Number of concurrent transfers in the same direction")
+    public int concurrentTransfers;
+}
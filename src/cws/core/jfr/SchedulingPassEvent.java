@@ -0,0 +1,43 @@
+package cws.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted once per scheduling pass over the engine's queue of ready jobs.
+ */
+@Name("cws.SchedulingPass")
+@Label("Scheduling Pass")
+@Category({ "CloudWorkflowSimulator", "Scheduling" })
+@Description("A pass of the algorithm's scheduler over the queued jobs")
+@StackTrace(false)
+public class SchedulingPassEvent extends Event {
+    @Label("Simulation Time")
+    @Description("Simulated clock in seconds")
+    public double simTime;
+
+    @Label("Engine Id")
+    public int engineId;
+
+    @Label("Algorithm")
+    public String algorithm;
+
+    @Label("Queued Jobs")
+    @Description("Number of jobs waiting in the engine queue when the pass started")
+    public int queuedJobs;
+
+    @Label("Free VMs")
+    @Description("Number of free VMs when the pass started")
+    public int freeVMs;
+
+    @Label("Scheduled On Free VMs")
+    public int scheduledOnFreeVMs;
+
+    @Label("Provisioned VMs")
+    @Description("Number of VMs provisioned during the pass")
+    public int provisionedVMs;
+}
@@ -0,0 +1,41 @@
+package cws.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted each time the transfer manager updates the progress and bandwidth allocation of its active transfers.
+ */
+@Name("cws.TransferProgress")
+@Label("Transfer Progress Update")
+@Category({ "CloudWorkflowSimulator", "Network" })
+@Description("Progress update and max-min bandwidth reallocation over active transfers")
+@StackTrace(false)
+public class TransferProgressEvent extends Event {
+    @Label("Simulation Time")
+    @Description("Simulated clock in seconds")
+    public double simTime;
+
+    @Label("Transfer Manager Id")
+    public int managerId;
+
+    @Label("Active Transfers")
+    @Description("Number of transfers still active after the update")
+    public int activeTransfers;
+
+    @Label("Completed Transfers")
+    public int completedTransfers;
+
+    @Label("Bandwidth Changes")
+    @Description("Number of transfers whose allocated bandwidth changed")
+    public int bandwidthChanges;
+
+    @Label("Remaining Bytes")
+    @DataAmount
+    public long remainingBytes;
+}
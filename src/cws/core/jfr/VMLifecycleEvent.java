@@ -0,0 +1,45 @@
+package cws.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted when the cloud launches or terminates a VM.
+ */
+@Name("cws.VMLifecycle")
+@Label("VM Lifecycle")
+@Category({ "CloudWorkflowSimulator", "Cloud" })
+@Description("Launch or termination of a VM by the cloud")
+@StackTrace(false)
+public class VMLifecycleEvent extends Event {
+    public static final String LAUNCH = "launch";
+    public static final String TERMINATE = "terminate";
+
+    @Label("Simulation Time")
+    @Description("Simulated clock in seconds")
+    public double simTime;
+
+    @Label("Cloud Id")
+    public int cloudId;
+
+    @Label("VM Id")
+    public int vmId;
+
+    @Label("VM Type")
+    public String vmType;
+
+    @Label("Action")
+    public String action;
+
+    @Label("Delay")
+    @Description("Simulated (de)provisioning delay in seconds")
+    public double delay;
+
+    @Label("Active VMs")
+    @Description("Number of VMs known to the cloud after the action")
+    public int activeVMs;
+}
@@ -0,0 +1,185 @@
+package cws.core.jobs;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * FIFO queue of ready jobs backed by an array. Every queued job remembers its slot, so removing an arbitrary job (which
+ * schedulers do for each job they place) is O(1): the slot is cleared and skipped later instead of shifting the rest
+ * of the queue. Cleared slots are reclaimed when the array fills up, which keeps the release order of the remaining
+ * jobs.
+ */
+public class FIFOJobQueue extends JobQueue {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Job[] jobs = new Job[INITIAL_CAPACITY];
+
+    /** Slots in [head, tail) may hold jobs, cleared slots are null */
+    private int head = 0;
+    private int tail = 0;
+
+    private int size = 0;
+
+    @Override
+    public boolean offer(Job job) {
+        if (job.queueSlot >= 0) {
+            throw new IllegalStateException("Job " + job.getID() + " is already queued");
+        }
+        if (tail == jobs.length) {
+            makeRoom();
+        }
+        job.queueSlot = tail;
+        jobs[tail++] = job;
+        size++;
+        return true;
+    }
+
+    @Override
+    public Job poll() {
+        if (size == 0) {
+            return null;
+        }
+        skipClearedHead();
+        return removeAt(head);
+    }
+
+    @Override
+    public Job peek() {
+        if (size == 0) {
+            return null;
+        }
+        skipClearedHead();
+        return jobs[head];
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!contains(o)) {
+            return false;
+        }
+        removeAt(((Job) o).queueSlot);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Job)) {
+            return false;
+        }
+        int slot = ((Job) o).queueSlot;
+        return slot >= head && slot < tail && jobs[slot] == o;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = head; i < tail; i++) {
+            if (jobs[i] != null) {
+                jobs[i].queueSlot = -1;
+                jobs[i] = null;
+            }
+        }
+        head = tail = size = 0;
+    }
+
+    @Override
+    public int drainTo(Collection<? super Job> target) {
+        int drained = size;
+        for (int i = head; i < tail; i++) {
+            Job job = jobs[i];
+            if (job != null) {
+                job.queueSlot = -1;
+                jobs[i] = null;
+                target.add(job);
+            }
+        }
+        head = tail = size = 0;
+        return drained;
+    }
+
+    @Override
+    public Iterator<Job> iterator() {
+        return new Iterator<Job>() {
+            private int next = advance(head);
+            private int last = -1;
+
+            private int advance(int from) {
+                while (from < tail && jobs[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < tail;
+            }
+
+            @Override
+            public Job next() {
+                if (next >= tail) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = advance(next + 1);
+                return jobs[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0 || jobs[last] == null) {
+                    throw new IllegalStateException();
+                }
+                removeAt(last);
+                last = -1;
+            }
+        };
+    }
+
+    private Job removeAt(int slot) {
+        Job job = jobs[slot];
+        jobs[slot] = null;
+        job.queueSlot = -1;
+        size--;
+        if (size == 0) {
+            head = tail = 0;
+        } else if (slot == head) {
+            head++;
+        }
+        return job;
+    }
+
+    private void skipClearedHead() {
+        while (jobs[head] == null) {
+            head++;
+        }
+    }
+
+    /**
+     * Called when the tail reaches the end of the array: compacts the live jobs to the front when at least half of the
+     * slots are cleared, and doubles the array otherwise. Either way the cost is amortized over the offers that filled
+     * the array.
+     */
+    private void makeRoom() {
+        if (size > jobs.length / 2) {
+            jobs = Arrays.copyOf(jobs, jobs.length * 2);
+        }
+        int to = 0;
+        for (int from = head; from < tail; from++) {
+            Job job = jobs[from];
+            if (job != null) {
+                jobs[from] = null;
+                job.queueSlot = to;
+                jobs[to++] = job;
+            }
+        }
+        head = 0;
+        tail = to;
+    }
+}
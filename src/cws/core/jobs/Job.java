@@ -62,6 +62,20 @@ public class Job {
     /** If this job is a retry of the task */
     private boolean isRetry = false;
 
+    /** The slot of this job in the {@link JobQueue} holding it, or -1 when it is not queued */
+    int queueSlot = -1;
+
+    /** For snapshots */
+    private Job() {
+    }
+
+    /**
+     * Restarts the job ids at 0, e.g. before another simulation in the same JVM.
+     */
+    public static void resetStaticCounters() {
+        next_id = 0;
+    }
+
     public Job(DAGJob dagJob, Task task, int owner, CloudSimWrapper cloudsim) {
         this.id = next_id++;
         this.releaseTime = cloudsim.clock();
@@ -0,0 +1,8 @@
+package cws.core.jobs;
+
+/**
+ * Ordering of the ready jobs in a {@link PriorityJobQueue}: jobs with a lower priority value are polled first.
+ */
+public interface JobPriority {
+    public double getPriority(Job job);
+}
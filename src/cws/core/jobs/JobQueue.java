@@ -0,0 +1,28 @@
+package cws.core.jobs;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+
+/**
+ * The queue of ready jobs a workflow engine keeps until its scheduler matches them to VMs. Implementations decide the
+ * order in which jobs are polled, see {@link FIFOJobQueue} and {@link PriorityJobQueue}. Every queued job remembers
+ * its slot in the queue, so removing an arbitrary job is cheap, and a job can be held by at most one queue at a time.
+ */
+public abstract class JobQueue extends AbstractQueue<Job> {
+
+    /**
+     * Moves all queued jobs, in the order they would be polled, to the given collection and leaves this queue empty.
+     * Schedulers use it to take a whole scheduling pass worth of jobs without copying the queue first.
+     *
+     * @return The number of jobs moved.
+     */
+    public abstract int drainTo(Collection<? super Job> target);
+
+    /**
+     * Tells the queue that whatever it orders the given queued job by has changed. Does nothing for queues whose order
+     * does not depend on the jobs.
+     */
+    public void updatePriority(Job job) {
+        // Release order does not change
+    }
+}
@@ -0,0 +1,193 @@
+package cws.core.jobs;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Binary heap of ready jobs ordered by a {@link JobPriority}. The priority of a job is computed once, when it is
+ * queued, and kept in a primitive array next to the heap, so comparisons never call back into the jobs or their tasks.
+ * When the value a priority is derived from changes while the job is queued, {@link #updatePriority(Job)} recomputes
+ * it and restores the heap in O(log n). Jobs with equal priorities are polled in the order they were created.
+ *
+ * The iterator visits the jobs in heap order and does not support removal; use {@link #remove(Object)} instead.
+ */
+public class PriorityJobQueue extends JobQueue {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final JobPriority priority;
+
+    private Job[] heap = new Job[INITIAL_CAPACITY];
+    private double[] keys = new double[INITIAL_CAPACITY];
+
+    private int size = 0;
+
+    /** For snapshots */
+    private PriorityJobQueue() {
+        this.priority = null;
+    }
+
+    public PriorityJobQueue(JobPriority priority) {
+        this.priority = priority;
+    }
+
+    @Override
+    public boolean offer(Job job) {
+        if (job.queueSlot >= 0) {
+            throw new IllegalStateException("Job " + job.getID() + " is already queued");
+        }
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        siftUp(size++, job, priority.getPriority(job));
+        return true;
+    }
+
+    @Override
+    public Job poll() {
+        if (size == 0) {
+            return null;
+        }
+        return removeAt(0);
+    }
+
+    @Override
+    public Job peek() {
+        return size == 0 ? null : heap[0];
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!contains(o)) {
+            return false;
+        }
+        removeAt(((Job) o).queueSlot);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Job)) {
+            return false;
+        }
+        int slot = ((Job) o).queueSlot;
+        return slot >= 0 && slot < size && heap[slot] == o;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            heap[i].queueSlot = -1;
+            heap[i] = null;
+        }
+        size = 0;
+    }
+
+    @Override
+    public void updatePriority(Job job) {
+        if (!contains(job)) {
+            return;
+        }
+        int slot = job.queueSlot;
+        double key = priority.getPriority(job);
+        if (slot > 0 && before(key, job, keys[(slot - 1) >>> 1], heap[(slot - 1) >>> 1])) {
+            siftUp(slot, job, key);
+        } else {
+            siftDown(slot, job, key);
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Job> target) {
+        int drained = size;
+        while (size > 0) {
+            target.add(removeAt(0));
+        }
+        return drained;
+    }
+
+    @Override
+    public Iterator<Job> iterator() {
+        return new Iterator<Job>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Job next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return heap[next++];
+            }
+        };
+    }
+
+    private Job removeAt(int slot) {
+        Job job = heap[slot];
+        job.queueSlot = -1;
+        size--;
+        if (slot != size) {
+            Job last = heap[size];
+            double lastKey = keys[size];
+            heap[size] = null;
+            siftDown(slot, last, lastKey);
+            if (heap[slot] == last) {
+                siftUp(slot, last, lastKey);
+            }
+        } else {
+            heap[size] = null;
+        }
+        return job;
+    }
+
+    private void siftUp(int slot, Job job, double key) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (!before(key, job, keys[parent], heap[parent])) {
+                break;
+            }
+            place(slot, heap[parent], keys[parent]);
+            slot = parent;
+        }
+        place(slot, job, key);
+    }
+
+    private void siftDown(int slot, Job job, double key) {
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            int right = child + 1;
+            if (right < size && before(keys[right], heap[right], keys[child], heap[child])) {
+                child = right;
+            }
+            if (!before(keys[child], heap[child], key, job)) {
+                break;
+            }
+            place(slot, heap[child], keys[child]);
+            slot = child;
+        }
+        place(slot, job, key);
+    }
+
+    private void place(int slot, Job job, double key) {
+        heap[slot] = job;
+        keys[slot] = key;
+        job.queueSlot = slot;
+    }
+
+    private static boolean before(double key, Job job, double otherKey, Job other) {
+        int c = Double.compare(key, otherKey);
+        return c < 0 || (c == 0 && job.getID() < other.getID());
+    }
+}
@@ -1,5 +1,13 @@
 package cws.core.jobs;
 
+import cws.core.RandomStream;
+
 public interface RuntimeDistribution {
     public double getActualRuntime(double runtime);
+
+    /**
+     * Returns a distribution with the same parameters which draws from the given stream, so that every VM can sample
+     * independently of the others.
+     */
+    public RuntimeDistribution withStream(RandomStream random);
 }
@@ -1,6 +1,6 @@
 package cws.core.jobs;
 
-import java.util.Random;
+import cws.core.RandomStream;
 
 /**
  * Returns 'runtime' +/- 'variance' percent of 'runtime', where the actual
@@ -10,11 +10,19 @@ import java.util.Random;
  * @author Gideon Juve <juve@usc.edu>
  */
 public class UniformRuntimeDistribution implements RuntimeDistribution {
-    private Random random;
+    private RandomStream random;
     private double variance;
 
+    /** For snapshots */
+    private UniformRuntimeDistribution() {
+    }
+
     public UniformRuntimeDistribution(long seed, double variance) {
-        this.random = new Random(seed);
+        this(new RandomStream(seed), variance);
+    }
+
+    public UniformRuntimeDistribution(RandomStream random, double variance) {
+        this.random = random;
         this.variance = variance;
     }
 
@@ -25,6 +33,11 @@ public class UniformRuntimeDistribution implements RuntimeDistribution {
         return runtime + (plusorminus * variance * runtime);
     }
 
+    @Override
+    public RuntimeDistribution withStream(RandomStream random) {
+        return new UniformRuntimeDistribution(random, variance);
+    }
+
     public static void main(String[] args) {
         RuntimeDistribution d = new UniformRuntimeDistribution(0, 0.20);
 
@@ -15,7 +15,8 @@ import cws.core.jobs.Job;
 import cws.core.jobs.JobListener;
 
 /**
- * Gathers and logs information about jobs, VMs and DAGs running/completed during a simulation.
+ * Gathers and logs information about jobs, VMs and DAGs running/completed during a simulation. Nothing is gathered
+ * when logs are disabled, so long simulations do not keep every finished job alive.
  */
 public class WorkflowLog implements JobListener, VMListener, DAGJobListener {
     private Set<Job> jobs = new LinkedHashSet<Job>();
@@ -23,6 +24,10 @@ public class WorkflowLog implements JobListener, VMListener, DAGJobListener {
     private Set<DAGJob> djs = new LinkedHashSet<DAGJob>();
     private CloudSimWrapper cloudsim;
 
+    /** For snapshots */
+    private WorkflowLog() {
+    }
+
     public WorkflowLog(CloudSimWrapper cloudsim) {
         this.cloudsim = cloudsim;
     }
@@ -128,12 +133,14 @@ public class WorkflowLog implements JobListener, VMListener, DAGJobListener {
 
     @Override
     public void jobFinished(Job job) {
-        jobs.add(job);
+        if (cloudsim.isLogsEnabled())
+            jobs.add(job);
     }
 
     @Override
     public void vmLaunched(VM vm) {
-        vms.add(vm);
+        if (cloudsim.isLogsEnabled())
+            vms.add(vm);
     }
 
     @Override
@@ -146,6 +153,7 @@ public class WorkflowLog implements JobListener, VMListener, DAGJobListener {
 
     @Override
     public void dagFinished(DAGJob dagJob) {
-        djs.add(dagJob);
+        if (cloudsim.isLogsEnabled())
+            djs.add(dagJob);
     }
 }
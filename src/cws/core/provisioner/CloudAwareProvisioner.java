@@ -16,6 +16,10 @@ public abstract class CloudAwareProvisioner extends CWSSimEntity implements Prov
     // maximum autoscaling factor over initial number of provisioned VMs
     protected double maxScaling;
 
+    /** For snapshots */
+    protected CloudAwareProvisioner() {
+    }
+
     public CloudAwareProvisioner(CloudSimWrapper cloudsim) {
         this(DEFAULT_AUTOSCALING_FACTOR, cloudsim);
     }
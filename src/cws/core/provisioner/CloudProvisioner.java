@@ -18,6 +18,10 @@ public abstract class CloudProvisioner extends CWSSimEntity implements Provision
     protected Environment environment;
 
 
+    /** For snapshots */
+    protected CloudProvisioner() {
+    }
+
     public CloudProvisioner(CloudSimWrapper cloudsim) {
     	super("CloudAwareProvisioner", cloudsim);
     }
@@ -34,6 +38,14 @@ public abstract class CloudProvisioner extends CWSSimEntity implements Provision
         return cloud;
     }
     
+    /**
+     * Called by the engine when the given VM becomes free, i.e. it has just launched or finished its job. Does nothing
+     * by default.
+     */
+    public void vmIdle(VM vm, WorkflowEngine engine) {
+        // Nothing by default
+    }
+
     public abstract void provisionResources(WorkflowEngine engine);
     public abstract void deprovisionResources(WorkflowEngine engine);
     public abstract VM provisionResource(Job job, WorkflowEngine engine);
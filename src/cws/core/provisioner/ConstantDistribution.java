@@ -2,12 +2,19 @@ package cws.core.provisioner;
 
 import org.cloudbus.cloudsim.distributions.ContinuousDistribution;
 
+import cws.core.RandomStream;
+import cws.core.core.EstimableDistribution;
+
 /**
  * @see ContinuousDistribution
  */
-public class ConstantDistribution implements ContinuousDistribution {
+public class ConstantDistribution implements EstimableDistribution {
     private double delay;
 
+    /** For snapshots */
+    private ConstantDistribution() {
+    }
+
     public ConstantDistribution(double delay) {
         this.delay = delay;
     }
@@ -17,6 +24,21 @@ public class ConstantDistribution implements ContinuousDistribution {
         return this.delay;
     }
 
+    @Override
+    public double getExpectedValue() {
+        return this.delay;
+    }
+
+    @Override
+    public double getPercentile(double p) {
+        return this.delay;
+    }
+
+    @Override
+    public EstimableDistribution withStream(RandomStream random) {
+        return this;
+    }
+
     public String toString() {
         return "constant distribution, value = " + delay;
     }
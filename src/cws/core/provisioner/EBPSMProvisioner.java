@@ -1,8 +1,6 @@
 package cws.core.provisioner;
 
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.List;
 
 import cws.core.VM;
 import cws.core.WorkflowEngine;
@@ -11,7 +9,7 @@ import cws.core.cloudsim.CloudSimWrapper;
 import cws.core.core.VMType;
 import cws.core.jobs.Job;
 
-public class EBPSMProvisioner extends CloudProvisioner {
+public class EBPSMProvisioner extends IdleDeadlineProvisioner {
 
     // below this utilization threshold we start deprovisioning vms
     private static final double LOWER_THRESHOLD = 100;
@@ -19,74 +17,67 @@ public class EBPSMProvisioner extends CloudProvisioner {
     // higher that this threshold we terminate vms
     private static final int IDLE_THRESHOLD = 20;
 	
+	/** For snapshots */
+	private EBPSMProvisioner() {
+	}
+
 	public EBPSMProvisioner(CloudSimWrapper cloudsim) {
 		super(cloudsim);
 	}
 
 	@Override
-	public void provisionResources(WorkflowEngine engine) {
-		//If the provisioner works separately from the scheduler then include provisioning logic here, this is called
-		//every provisioning cycle. If not, then include provisioning logic in the actual algorithm.
-		
-		//TODO check here which free vms are approaching their billing cycle and need to be
-		//deprovisioned
-		
-		// running vms are free + busy
-        Set<VM> runningVMs = new HashSet<VM>(engine.getFreeVMs());
-        runningVMs.addAll(engine.getBusyVMs());
+	protected long getIdleDeadline(VM vm) {
+		// terminate the vm once it has been idle for IDLE_THRESHOLD provisioning cycles
+		return tickAtOrAfter(getCloudsim().clock()) + IDLE_THRESHOLD;
+	}
 
-        int numVMsRunning = runningVMs.size();
-		
-		// find free VMs that will complete their billing unit during the next provisioning cycle
-        Set<VM> completingVMs = new HashSet<VM>();
-      
-        for (VM vm : engine.getFreeVMs()) {
-            int idleTime = vm.getIdleTime();
-            if(idleTime >= IDLE_THRESHOLD){
-            	completingVMs.add(vm);
-            } else {
-            	idleTime++;
-            	vm.setIdleTime(idleTime);
-            }
-        }
-        
-        int numVMsCompleting = completingVMs.size();
-        
-        if (engine.getFreeVMs().size() + engine.getBusyVMs().size() > 0){
-        	// compute utilization
-            double numFreeVMS = engine.getFreeVMs().size();
-            double numBusyVMs = engine.getBusyVMs().size();
-            double utilization = numBusyVMs / (numFreeVMS + numBusyVMs);
-
-            if (!(utilization >= 0.0)) {
-                throw new RuntimeException("Utilization is not >= 0.0");
-            }
-
-            getCloudsim().log(
-                    "Provisioner: utilization: " + utilization + " number of instances: "
-                            + numVMsRunning + ", number of instances completing: " + numVMsCompleting);
-                        
-            //if utilization is lower than threshold, terminate all of free && completingVMs
-            if (utilization < LOWER_THRESHOLD) {
-                // select VMs to terminate from CompletingVMs
-                Set<VM> toTerminate = new HashSet<VM>();
-                for (VM vm : completingVMs){
-                  	if(vm.getQueueLength() > 0 || vm.getRunningJobs().size() > 0){
-                   		//still have jobs queued and running, do nothing
-                   	} else {
-                   		toTerminate.add(vm);
-                   	}
-                }
-                Set<VM> terminated = terminateInstances(engine, toTerminate);
-                completingVMs.removeAll(terminated);
-            }
-        }
-
-        // some instances may be still running so we want to be invoked again to stop them
-        //before they reach full billing unit
-        getCloudsim().send(engine.getId(), engine.getId(), PROVISIONER_INTERVAL,
-                    WorkflowEvent.PROVISIONING_REQUEST, null);
-   }
+	@Override
+	protected void deadlinesReached(List<VM> vms, WorkflowEngine engine) {
+		// running vms are free + busy, the utilization is the share of their cores reserved by jobs
+		double numFreeVMS = engine.getFreeVMs().size();
+		double numBusyVMs = engine.getBusyVMs().size();
+		if (numFreeVMS + numBusyVMs == 0) {
+			return;
+		}
+		double cores = 0;
+		double reservedCores = 0;
+		for (VM vm : engine.getFreeVMs()) {
+			cores += vm.getVmType().getCores();
+			reservedCores += vm.getReservedCoreSlots();
+		}
+		for (VM vm : engine.getBusyVMs()) {
+			cores += vm.getVmType().getCores();
+			reservedCores += vm.getReservedCoreSlots();
+		}
+		double utilization = reservedCores / cores;
+
+		if (!(utilization >= 0.0)) {
+			throw new RuntimeException("Utilization is not >= 0.0");
+		}
+
+		getCloudsim().log(
+				"Provisioner: utilization: " + utilization + " number of instances: "
+						+ (int) (numFreeVMS + numBusyVMs) + ", number of instances completing: " + vms.size());
+
+		//if utilization is lower than threshold, terminate all of free && completingVMs
+		if (utilization < LOWER_THRESHOLD) {
+			super.deadlinesReached(vms, engine);
+		} else {
+			for (VM vm : vms) {
+				postpone(vm);
+			}
+		}
+	}
+
+	@Override
+	protected boolean idleDeadlineReached(VM vm, WorkflowEngine engine) {
+		if (vm.getQueueLength() > 0 || vm.getRunningJobs().size() > 0) {
+			//still have jobs queued and running, check again in the next cycle
+			return false;
+		}
+		deprovisionResource(vm, engine);
+		return true;
+	}
 
 	@Override
 	public void deprovisionResources(WorkflowEngine engine) {
@@ -123,28 +114,4 @@ public class EBPSMProvisioner extends CloudProvisioner {
 	}
 	
 
-    /**
-     * This method terminates instances but only the ones
-     * that are close to the full billing unit of operation.
-     * Thus this method has to be invoked several times
-     * to effectively terminate all the instances.
-     * The method modifies the given vmSet by removing the terminated Vms.
-     * 
-     * @param engine
-     * @param vmSet
-     * @return set of VMs that were terminated
-     */
-    private Set<VM> terminateInstances(WorkflowEngine engine, Set<VM> vmSet) {
-        Set<VM> removed = new HashSet<VM>();
-        Iterator<VM> vmIt = vmSet.iterator();
-
-        while (vmIt.hasNext()) {
-            VM vm = vmIt.next();
-            vmIt.remove();
-            removed.add(vm);
-            getCloudsim().log("Terminating VM: " + vm.getId());
-            getCloudsim().send(engine.getId(), getCloud().getId(), 0.0, WorkflowEvent.VM_TERMINATE, vm);
-        }
-        return removed;
-    }
 }
\ No newline at end of file
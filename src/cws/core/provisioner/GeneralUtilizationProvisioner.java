@@ -16,6 +16,10 @@ public class GeneralUtilizationProvisioner extends CloudProvisioner {
     // below this utilization threshold we start deprovisioning vms
     private static final double LOWER_THRESHOLD = 0.85;
 	
+	/** For snapshots */
+	private GeneralUtilizationProvisioner() {
+	}
+
 	public GeneralUtilizationProvisioner(CloudSimWrapper cloudsim) {
 		super(cloudsim);
 	}
@@ -0,0 +1,152 @@
+package cws.core.provisioner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cws.core.VM;
+import cws.core.WorkflowEngine;
+import cws.core.WorkflowEvent;
+import cws.core.cloudsim.CloudSimWrapper;
+
+/**
+ * Base class for provisioners which deprovision idle VMs once a per-VM deadline passes, e.g. the next billing boundary
+ * or an idle timeout. Instead of sweeping all the free VMs every {@link #PROVISIONER_INTERVAL}, every VM which becomes
+ * idle, i.e. holds no more jobs on any of its cores, gets one deadline in a {@link TimingWheel} with one tick per provisioning interval, and the provisioner only
+ * wakes up at the ticks where some deadline is due.
+ *
+ * A deadline is stale when its VM was given a job after becoming idle, such deadlines are dropped when they expire.
+ */
+public abstract class IdleDeadlineProvisioner extends CloudProvisioner {
+
+    /** The deadline of every idle VM, in provisioning interval ticks */
+    private TimingWheel<VM> deadlines;
+
+    /** The deadline tick of every VM since it last became idle */
+    private Map<VM, Long> deadlineTicks = new HashMap<VM, Long>();
+
+    /** The tick of the earliest provisioning request sent and not yet received */
+    private long wakeUpTick = Long.MAX_VALUE;
+
+    /** The time of tick 0: the first provisioning request, as the engine sends it when the first DAG arrives */
+    private double origin = Double.NaN;
+
+    /** For snapshots */
+    protected IdleDeadlineProvisioner() {
+    }
+
+    public IdleDeadlineProvisioner(CloudSimWrapper cloudsim) {
+        super(cloudsim);
+    }
+
+    /**
+     * @return The tick at which the given VM, which has just become idle, should be considered for deprovisioning.
+     */
+    protected abstract long getIdleDeadline(VM vm);
+
+    /**
+     * Called at the deadline of a VM which is still idle since the deadline was set.
+     *
+     * @return Whether the VM was deprovisioned. If not, the VM gets another deadline at the next tick.
+     */
+    protected abstract boolean idleDeadlineReached(VM vm, WorkflowEngine engine);
+
+    @Override
+    public void vmIdle(VM vm, WorkflowEngine engine) {
+        long tick = Math.max(getIdleDeadline(vm), currentTick());
+        schedule(vm, tick);
+        requestWakeUp(engine, tick);
+    }
+
+    @Override
+    public void provisionResources(WorkflowEngine engine) {
+        if (Double.isNaN(origin)) {
+            origin = getCloudsim().clock();
+        }
+        long now = currentTick();
+        if (now >= wakeUpTick) {
+            wakeUpTick = Long.MAX_VALUE;
+        }
+        if (deadlines != null) {
+            List<VM> due = new ArrayList<VM>();
+            deadlines.expire(now, due);
+            List<VM> expired = new ArrayList<VM>(due.size());
+            for (VM vm : due) {
+                Long tick = deadlineTicks.get(vm);
+                if (tick == null || tick > now) {
+                    // Stale, the VM has a later deadline
+                    continue;
+                }
+                deadlineTicks.remove(vm);
+                if (engine.getFreeVMs().contains(vm) && vm.getReservedCoreSlots() == 0 && !vm.isTerminated()) {
+                    expired.add(vm);
+                }
+            }
+            deadlinesReached(expired, engine);
+            requestWakeUp(engine, deadlines.nextTick());
+        }
+    }
+
+    /**
+     * Handles the VMs whose deadline is due at the current tick. Calls {@link #idleDeadlineReached(VM, WorkflowEngine)}
+     * for every VM by default.
+     */
+    protected void deadlinesReached(List<VM> vms, WorkflowEngine engine) {
+        for (VM vm : vms) {
+            if (!idleDeadlineReached(vm, engine)) {
+                postpone(vm);
+            }
+        }
+    }
+
+    /**
+     * Gives a VM whose deadline is due another deadline at the next tick.
+     */
+    protected void postpone(VM vm) {
+        schedule(vm, currentTick() + 1);
+    }
+
+    /**
+     * @return The provisioning interval tick of the given time, i.e. the last tick at or before it.
+     */
+    protected long tickAtOrBefore(double time) {
+        return (long) Math.floor((time - getOrigin()) / PROVISIONER_INTERVAL + 1e-9);
+    }
+
+    /**
+     * @return The first provisioning interval tick at or after the given time.
+     */
+    protected long tickAtOrAfter(double time) {
+        return (long) Math.ceil((time - getOrigin()) / PROVISIONER_INTERVAL - 1e-9);
+    }
+
+    private double getOrigin() {
+        return Double.isNaN(origin) ? 0.0 : origin;
+    }
+
+    protected long currentTick() {
+        return tickAtOrBefore(getCloudsim().clock());
+    }
+
+    private void schedule(VM vm, long tick) {
+        if (deadlines == null) {
+            deadlines = new TimingWheel<VM>(currentTick());
+        }
+        deadlineTicks.put(vm, tick);
+        deadlines.schedule(vm, tick);
+    }
+
+    private void requestWakeUp(WorkflowEngine engine, long tick) {
+        if (tick == Long.MAX_VALUE) {
+            return;
+        }
+        // A past wake-up may have been dropped by the engine, e.g. when it had no DAGs at that time
+        if (tick >= wakeUpTick && wakeUpTick > currentTick()) {
+            return;
+        }
+        wakeUpTick = tick;
+        double delay = Math.max(0.0, getOrigin() + tick * PROVISIONER_INTERVAL - getCloudsim().clock());
+        getCloudsim().send(engine.getId(), engine.getId(), delay, WorkflowEvent.PROVISIONING_REQUEST, null);
+    }
+}
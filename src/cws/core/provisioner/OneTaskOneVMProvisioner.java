@@ -9,6 +9,10 @@ import cws.core.jobs.Job;
 
 public class OneTaskOneVMProvisioner extends CloudProvisioner {
 
+	/** For snapshots */
+	private OneTaskOneVMProvisioner() {
+	}
+
 	public OneTaskOneVMProvisioner(CloudSimWrapper cloudsim) {
 		super(cloudsim);
 		// TODO Auto-generated constructor stub
@@ -12,6 +12,10 @@ import cws.core.core.VMType;
 
 public class SimpleQueueBasedProvisioner extends CloudAwareProvisioner implements Provisioner {
 
+    /** For snapshots */
+    private SimpleQueueBasedProvisioner() {
+    }
+
     public SimpleQueueBasedProvisioner(CloudSimWrapper cloudsim) {
         super(cloudsim);
     }
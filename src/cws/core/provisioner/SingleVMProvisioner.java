@@ -15,6 +15,10 @@ public class SingleVMProvisioner extends CloudProvisioner {
 
 	private boolean provisionedVM = false;
 	    
+	/** For snapshots */
+	private SingleVMProvisioner() {
+	}
+
 	public SingleVMProvisioner(CloudSimWrapper cloudsim) {
 		super(cloudsim);
 	}
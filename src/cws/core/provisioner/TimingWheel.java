@@ -0,0 +1,208 @@
+package cws.core.provisioner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel of items due at integer ticks, used by provisioners to keep the deprovisioning deadlines of
+ * their VMs. Level 0 has one slot per tick for the next {@value #SLOTS} ticks, every further level has slots
+ * {@value #SLOTS} times as wide, and items beyond the last level wait in an overflow list. Scheduling an item is O(1),
+ * and advancing the wheel only touches the slots of the ticks passed and the items due in them; items in the upper
+ * levels are moved down once per level as their tick approaches.
+ *
+ * Items cannot be cancelled, callers are expected to ignore the items which became stale when they expire.
+ */
+public class TimingWheel<T> {
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private static class Entry<T> {
+        final T item;
+        final long tick;
+
+        /** For snapshots */
+        private Entry() {
+            this(null, 0);
+        }
+
+        Entry(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+
+    /** wheel[level][slot], slots are created on first use */
+    private final List<List<Entry<T>>> wheel = new ArrayList<List<Entry<T>>>(LEVELS * SLOTS);
+
+    /** Number of items in each level */
+    private final int[] counts = new int[LEVELS];
+
+    private final List<Entry<T>> overflow = new ArrayList<Entry<T>>();
+
+    /** The next tick to expire, all the items due before it have been expired */
+    private long now;
+
+    private int size = 0;
+
+    /** For snapshots */
+    private TimingWheel() {
+    }
+
+    /**
+     * @param start The first tick of the wheel.
+     */
+    public TimingWheel(long start) {
+        this.now = start;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            wheel.add(null);
+        }
+    }
+
+    /**
+     * Schedules the item at the given tick. Items due at already expired ticks are due at the next tick to expire.
+     */
+    public void schedule(T item, long tick) {
+        place(new Entry<T>(item, Math.max(tick, now)));
+        size++;
+    }
+
+    /**
+     * Expires all the ticks up to and including the given one.
+     *
+     * @param out Collects the items which were due, in tick order.
+     */
+    public void expire(long upTo, Collection<? super T> out) {
+        while (now <= upTo && size > 0) {
+            cascade();
+            List<Entry<T>> slot = wheel.get(index(0, (int) (now & MASK)));
+            if (slot != null && !slot.isEmpty()) {
+                for (Entry<T> entry : slot) {
+                    out.add(entry.item);
+                }
+                counts[0] -= slot.size();
+                size -= slot.size();
+                slot.clear();
+            }
+            now = Math.min(nextBusyTick(), upTo + 1);
+        }
+        if (now <= upTo) {
+            now = upTo + 1;
+        }
+        // Keep the upper level slots at the digits of now empty, nextTick() relies on it
+        cascade();
+    }
+
+    /**
+     * @return The tick of the earliest item, or Long.MAX_VALUE when the wheel is empty.
+     */
+    public long nextTick() {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            if (counts[level] == 0) {
+                continue;
+            }
+            // Upper level slots at or before the digit of now are empty, they were moved down
+            int first = level == 0 ? digit(now, 0) : digit(now, level) + 1;
+            for (int d = first; d < SLOTS; d++) {
+                List<Entry<T>> slot = wheel.get(index(level, d));
+                if (slot != null && !slot.isEmpty()) {
+                    return minTick(slot);
+                }
+            }
+        }
+        return minTick(overflow);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The next tick which may have items due or items to move down: the next one while level 0 has items,
+     *         otherwise the beginning of the next slot of the lowest level which has items.
+     */
+    private long nextBusyTick() {
+        int level = 0;
+        while (level < LEVELS && counts[level] == 0) {
+            level++;
+        }
+        if (level == 0) {
+            return now + 1;
+        }
+        return (now | ((1L << (BITS * level)) - 1)) + 1;
+    }
+
+    /**
+     * Moves the items of the upper level slots which begin at the current tick down to the levels below.
+     */
+    private void cascade() {
+        if ((now & ((1L << (BITS * LEVELS)) - 1)) == 0 && !overflow.isEmpty()) {
+            List<Entry<T>> entries = new ArrayList<Entry<T>>(overflow);
+            overflow.clear();
+            for (Entry<T> entry : entries) {
+                place(entry);
+            }
+        }
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((now & ((1L << (BITS * level)) - 1)) != 0) {
+                continue;
+            }
+            List<Entry<T>> slot = wheel.get(index(level, digit(now, level)));
+            if (slot == null || slot.isEmpty()) {
+                continue;
+            }
+            List<Entry<T>> entries = new ArrayList<Entry<T>>(slot);
+            counts[level] -= slot.size();
+            slot.clear();
+            for (Entry<T> entry : entries) {
+                place(entry);
+            }
+        }
+    }
+
+    /**
+     * Puts the entry in the lowest level whose slots can tell its tick apart from now, i.e. the one below the lowest
+     * level at which both agree on all the higher digits.
+     */
+    private void place(Entry<T> entry) {
+        for (int level = 0; level < LEVELS; level++) {
+            if ((entry.tick >>> (BITS * (level + 1))) == (now >>> (BITS * (level + 1)))) {
+                int i = index(level, digit(entry.tick, level));
+                List<Entry<T>> slot = wheel.get(i);
+                if (slot == null) {
+                    slot = new ArrayList<Entry<T>>();
+                    wheel.set(i, slot);
+                }
+                slot.add(entry);
+                counts[level]++;
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    private static int digit(long tick, int level) {
+        return (int) ((tick >>> (BITS * level)) & MASK);
+    }
+
+    private static int index(int level, int digit) {
+        return level * SLOTS + digit;
+    }
+
+    private static <T> long minTick(List<Entry<T>> entries) {
+        long min = Long.MAX_VALUE;
+        for (Entry<T> entry : entries) {
+            min = Math.min(min, entry.tick);
+        }
+        return min;
+    }
+}
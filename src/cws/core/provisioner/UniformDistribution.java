@@ -0,0 +1,62 @@
+package cws.core.provisioner;
+
+import org.cloudbus.cloudsim.distributions.ContinuousDistribution;
+
+import cws.core.RandomStream;
+import cws.core.core.EstimableDistribution;
+
+/**
+ * Uniform distribution over [min, max) drawing from its own random stream. A distribution created without a stream is
+ * a template, e.g. of a VM type, which is only estimated; its copies {@link #withStream(RandomStream)} are sampled.
+ * 
+ * @see ContinuousDistribution
+ */
+public class UniformDistribution implements EstimableDistribution {
+    private RandomStream random;
+    private double min;
+    private double max;
+
+    /** For snapshots */
+    private UniformDistribution() {
+    }
+
+    public UniformDistribution(double min, double max) {
+        this(min, max, null);
+    }
+
+    public UniformDistribution(double min, double max, RandomStream random) {
+        if (min > max) {
+            throw new IllegalArgumentException("Minimum must not be greater than maximum");
+        }
+        this.min = min;
+        this.max = max;
+        this.random = random;
+    }
+
+    @Override
+    public double sample() {
+        if (random == null) {
+            throw new IllegalStateException("Template distribution, sample a copy with its own stream");
+        }
+        return min + (max - min) * random.nextDouble();
+    }
+
+    @Override
+    public double getExpectedValue() {
+        return (min + max) / 2.0;
+    }
+
+    @Override
+    public double getPercentile(double p) {
+        return min + (max - min) * p;
+    }
+
+    @Override
+    public EstimableDistribution withStream(RandomStream random) {
+        return new UniformDistribution(min, max, random);
+    }
+
+    public String toString() {
+        return "uniform distribution, min = " + min + ", max = " + max;
+    }
+}
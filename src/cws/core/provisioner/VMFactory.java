@@ -5,6 +5,7 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 
 import cws.core.FailureModel;
+import cws.core.RandomStreams;
 import cws.core.VM;
 import cws.core.cloudsim.CloudSimWrapper;
 import cws.core.core.VMType;
@@ -21,6 +22,9 @@ public class VMFactory {
     private static final double DEFAULT_AVG_PERFORMANCE_VAR = 0.0;
     private static final double DEFAULT_MAX_PERFORMANCE_VAR = 0.0;
     private static final double DEFAULT_STDDEV_PERFORMANCE_VAR = 0.0;
+    private static final String RUNTIME_STREAM = "vm-runtime";
+    private static final String FAILURE_STREAM = "vm-failure";
+    private static final String PERFORMANCE_VARIATION_STREAM = "vm-performance-variation";
 
     private static RuntimeDistribution runtimeDistribution = new IdentityRuntimeDistribution();
     private static PerformanceVariationDistribution pvDistribution = new IdentityPerformanceVariationDistribution();
@@ -58,14 +62,18 @@ public class VMFactory {
     }
     
     /**
+     * Each VM gets copies of the configured distributions drawing from its own random streams (keyed by the VM id), so
+     * its samples do not depend on what the other VMs do.
+     * 
      * @param cloudSimWrapper - initialized CloudSimWrapper instance. It needs to be inited, because we're creting
      *            storage manager here.
      */
     public static VM createVM(VMType vmType, CloudSimWrapper cloudSimWrapper) {
         VM vm = new VM(vmType, cloudSimWrapper);
-        vm.setRuntimeDistribution(runtimeDistribution);
-        vm.setFailureModel(failureModel);
-        vm.setPvDistribution(pvDistribution);
+        RandomStreams streams = cloudSimWrapper.getRandomStreams();
+        vm.setRuntimeDistribution(runtimeDistribution.withStream(streams.stream(RUNTIME_STREAM, vm.getId())));
+        vm.setFailureModel(failureModel.withStream(streams.stream(FAILURE_STREAM, vm.getId())));
+        vm.setPvDistribution(pvDistribution.withStream(streams.stream(PERFORMANCE_VARIATION_STREAM, vm.getId())));
         return vm;
     }
 
@@ -107,16 +115,43 @@ public class VMFactory {
         System.out.printf("failureRate = %f\n", failureRate);
         System.out.printf("performanceVariation = %f avg, %f max, %f stddev\n", avgPerformanceVar, maxPerformanceVar, stddevPerformanceVar);
 
+        // Options may be read again, e.g. for every variant of a forked simulation, so reset what is not set
         if (runtimeVariance > 0.0) {
             VMFactory.setRuntimeDistribution(new UniformRuntimeDistribution(seed, runtimeVariance));
+        } else {
+            VMFactory.setRuntimeDistribution(new IdentityRuntimeDistribution());
         }
 
         if (failureRate > 0.0) {
             VMFactory.setFailureModel(new FailureModel(seed, failureRate));
+        } else {
+            VMFactory.setFailureModel(new FailureModel(0, 0.0));
         }
         
         if(avgPerformanceVar > 0.0) {
         	VMFactory.setPerformanceVariationDistribution(new NormalPerformanceVariationDistribution(seed, avgPerformanceVar, stddevPerformanceVar, maxPerformanceVar));
+        } else {
+            VMFactory.setPerformanceVariationDistribution(new IdentityPerformanceVariationDistribution());
+        }
+    }
+
+    /**
+     * Gives every VM of the simulation copies of the currently configured distributions, e.g. after restoring a
+     * snapshot to continue it with other parameters. The copies draw from streams named after the variant, so the
+     * variants of one snapshot draw different numbers from each other and from the original simulation.
+     */
+    public static void reconfigureVMs(CloudSimWrapper cloudSimWrapper, String variant) {
+        RandomStreams streams = cloudSimWrapper.getRandomStreams();
+        for (Object entity : cloudSimWrapper.getEntityList()) {
+            if (entity instanceof VM) {
+                VM vm = (VM) entity;
+                vm.setRuntimeDistribution(runtimeDistribution.withStream(streams.stream(RUNTIME_STREAM + "/"
+                        + variant, vm.getId())));
+                vm.setFailureModel(failureModel.withStream(streams.stream(FAILURE_STREAM + "/" + variant,
+                        vm.getId())));
+                vm.setPvDistribution(pvDistribution.withStream(streams.stream(PERFORMANCE_VARIATION_STREAM
+                        + "/" + variant, vm.getId())));
+            }
         }
     }
 
@@ -127,4 +162,8 @@ public class VMFactory {
     public static double getFailureRate() {
         return failureRate;
     }
+
+    public static double getAveragePerformanceVariation() {
+        return avgPerformanceVar;
+    }
 }
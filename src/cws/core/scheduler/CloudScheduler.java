@@ -13,6 +13,10 @@ public class CloudScheduler extends CWSSimEntity implements Scheduler {
 	
 	private Environment environment;
 
+	/** For snapshots */
+	private CloudScheduler() {
+	}
+
 	public CloudScheduler(CloudSimWrapper cloudsim) {
 		super("CloudScheduler", cloudsim);
 	}
@@ -32,18 +36,17 @@ public class CloudScheduler extends CWSSimEntity implements Scheduler {
 	//Hilman: edit here for container provisioning delay
 	public void scheduleJob(Job job, VM vm, Double delay, WorkflowEngine engine) {
 		
-		markVMAsBusy(engine, vm);
+		reserveCoreSlot(engine, vm);
 
 		job.setVM(vm);
 
 		sendJobToVM(engine, vm, delay, job);
 	}
 	
-	private void markVMAsBusy(WorkflowEngine engine, VM vm) {
-		//this is done in the engine when a job starts too...
-		int idleTime = 0;
-		vm.setIdleTime(idleTime);
-        if(engine.getFreeVMs().remove(vm)) {
+	private void reserveCoreSlot(WorkflowEngine engine, VM vm) {
+		vm.reserveCoreSlot();
+		// the vm stays free while it has cores left for more jobs
+        if(vm.getFreeCoreSlots() == 0 && engine.getFreeVMs().remove(vm)) {
         	engine.getBusyVMs().add(vm);
         }
     }
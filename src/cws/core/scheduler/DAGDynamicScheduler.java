@@ -21,6 +21,10 @@ import cws.core.jobs.Job;
 public class DAGDynamicScheduler extends CWSSimEntity implements Scheduler {
     protected Environment environment;
 
+    /** For snapshots */
+    protected DAGDynamicScheduler() {
+    }
+
     public DAGDynamicScheduler(CloudSimWrapper cloudsim) {
         super("DAGDynamicScheduler", cloudsim);
     }
@@ -1,7 +1,7 @@
 package cws.core.scheduler;
 
+import java.util.Collection;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Queue;
 
 import cws.core.Scheduler;
@@ -19,11 +19,15 @@ import cws.core.jobs.Job;
  */
 public class DAGSchedulerFCFS implements Scheduler {
 
-    private List<VM> vms;
+    private Collection<VM> vms;
 
     private CloudSimWrapper cloudsim;
     protected Environment environment;
 
+    /** For snapshots */
+    private DAGSchedulerFCFS() {
+    }
+
     public DAGSchedulerFCFS(CloudSimWrapper cloudsim) {
         this.cloudsim = cloudsim;
     }
@@ -16,6 +16,10 @@ import cws.core.jobs.Job;
  */
 public class EnsembleDynamicScheduler extends DAGDynamicScheduler {
 
+    /** For snapshots */
+    protected EnsembleDynamicScheduler() {
+    }
+
     public EnsembleDynamicScheduler(CloudSimWrapper cloudsim) {
         super(cloudsim);
     }
@@ -23,7 +27,7 @@ public class EnsembleDynamicScheduler extends DAGDynamicScheduler {
     /**
      * Compares jobs based on their priority
      */
-    protected class JobComparator implements Comparator<Job> {
+    protected static class JobComparator implements Comparator<Job> {
 
         @Override
         public int compare(Job j1, Job j2) {
@@ -21,6 +21,10 @@ import cws.core.jobs.Job;
  * @author malawski
  */
 public class WorkflowAwareEnsembleScheduler extends EnsembleDynamicScheduler {
+    /** For snapshots */
+    private WorkflowAwareEnsembleScheduler() {
+    }
+
     public WorkflowAwareEnsembleScheduler(CloudSimWrapper cloudsim) {
         super(cloudsim);
     }
@@ -1,15 +1,19 @@
 package cws.core.simulation;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -23,29 +27,46 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
 import org.cloudbus.cloudsim.Log;
 import org.yaml.snakeyaml.Yaml;
 
+import cws.core.RandomStreams;
+import cws.core.VM;
+import cws.core.WorkflowEngineCombinedRPSched;
+import cws.core.WorkflowEngineSeparateRPSched;
 import cws.core.algorithms.Algorithm;
 import cws.core.algorithms.AlgorithmStatistics;
+import cws.core.algorithms.DAGResult;
 import cws.core.algorithms.EBPSM;
 import cws.core.algorithms.MSLBL;
+import cws.core.algorithms.StaticAlgorithm;
+import cws.core.cloudsim.CheckpointListener;
 import cws.core.cloudsim.CloudSimWrapper;
 import cws.core.config.GlobalStorageParamsLoader;
+import cws.core.config.SyntheticWorkloadLoader;
 import cws.core.core.VMType;
 import cws.core.core.VMTypeLoader;
 import cws.core.core.VMTypeMipsComparator;
 import cws.core.dag.DAG;
-import cws.core.dag.DAGJob;
+import cws.core.dag.DAGArrival;
 import cws.core.engine.Environment;
 import cws.core.engine.EnvironmentFactory;
 import cws.core.exception.IllegalCWSArgumentException;
+import cws.core.jobs.Job;
 import cws.core.provisioner.VMFactory;
 import cws.core.simulation.StorageCacheType;
+import cws.core.snapshot.SimulationSnapshot;
+import cws.core.storage.DAGStorageStatistics;
 import cws.core.simulation.StorageSimulationParams;
 import cws.core.simulation.StorageType;
-import cws.core.storage.StorageManagerStatistics;
 import cws.core.storage.global.GlobalStorageParams;
+import cws.core.storage.global.GlobalStorageTransfer;
+import cws.core.transfer.Link;
+import cws.core.transfer.NetworkTopology;
+import cws.core.transfer.Port;
+import cws.core.transfer.Transfer;
+import cws.core.workload.BudgetRangeEstimator;
 
 public class SimulationMultipleWorkflow {
 	
@@ -53,6 +74,10 @@ public class SimulationMultipleWorkflow {
 	private static final String DEFAULT_ENABLE_LOGGING = "true";
 	private static final String DEFAULT_IS_STORAGE_AWARE = "true";
 	private static final String DEFAULT_SAVE_RUNTIME_DATA = "false";
+	private static final String DEFAULT_STREAM_WORKLOAD = "false";
+	private static final String DEFAULT_WORKLOAD_LOOKAHEAD = "16";
+	private static final List<String> FORK_VARIANT_OPTIONS = Arrays.asList("runtime-variance", "failure-rate",
+			"average-performance-variation", "max-performance-variation", "stddev-performance-variation");
 	private static final String WORKLOAD_FILE = "workload/test.csv";//change this for every workload
 	private static final int NUMBER_OF_RUNS = 1;
 	private static final String CONFIG_FILE = "configMultiple.yaml";
@@ -65,10 +90,22 @@ public class SimulationMultipleWorkflow {
 	
 	private VMTypeLoader vmTypeLoader;
 	private GlobalStorageParamsLoader globalStorageParamsLoader;
+	private SyntheticWorkloadLoader syntheticWorkloadLoader;
+
+	/** Random streams of the current experiment, every run of it draws the same numbers */
+	private RandomStreams randomStreams;
+
+	/** Number of simulation events processed by all the experiments run so far */
+	private long processedEvents = 0;
+
+	/** Wall time in nanos spent in the simulation loop by all the experiments run so far */
+	private double simulationWallTime = 0.0;
+
 
 	public SimulationMultipleWorkflow() {
 		this.vmTypeLoader = new VMTypeLoader();
 		this.globalStorageParamsLoader = new GlobalStorageParamsLoader();
+		this.syntheticWorkloadLoader = new SyntheticWorkloadLoader();
 	}
 
 	public static void main(String[] args) {
@@ -79,58 +116,92 @@ public class SimulationMultipleWorkflow {
 		String configFilename = CONFIG_FILE;
 		String configDirectory = CONFIG_DIR;
 		
+		List<String> argsList = new ArrayList<String>();
+		for (Map.Entry<String, String> option : readConfig(new File(configDirectory, configFilename)).entrySet()) {
+			argsList.add("--" + option.getKey());
+			argsList.add(option.getValue());
+		}
+		String[] type = new String[argsList.size()];
+		args = argsList.toArray(type);
+
 		try {
-			InputStream input = new FileInputStream(new File(configDirectory, configFilename));
+			CommandLineParser parser = new PosixParser();
+			System.out.println(args[0]);
+			System.out.println(args[1]);
+			cmd = parser.parse(options, args);
+		} catch (ParseException exp) {
+			printUsage(options, exp.getMessage());
+		}
+		
+		SimulationMultipleWorkflow sim = new SimulationMultipleWorkflow();
+		File outputfile = new File(cmd.getOptionValue("output-file"));
+		sim.run(cmd, outputfile);
+	}
+
+	/**
+	 * Reads a config file like configMultiple.yaml.
+	 * 
+	 * @return The options which have a value, by long option name, in the order of the file.
+	 */
+	static Map<String, String> readConfig(File configFile) {
+		InputStream input = null;
+		try {
+			input = new FileInputStream(configFile);
 			Yaml yaml = new Yaml();
 			@SuppressWarnings("unchecked")
 			Map<String, Object> config = (Map<String, Object>) yaml.load(input);
-			List<String> argsList = new ArrayList<String>();
+			Map<String, String> options = new LinkedHashMap<String, String>();
 			Set<String> keys = config.keySet();
 			Iterator<String> it = keys.iterator();
 			
 			while (it.hasNext()) {
-				String argsOption = "";
 				String key = it.next();
 				String property = (String) config.get(key);
 				if (property != null) {
-					argsOption = "--" + key;
-					argsList.add(argsOption);
-					argsList.add(property);
+					options.put(key, property);
 				}
 			}
-			String[] type = new String[argsList.size()];
-			args = argsList.toArray(type);
+			return options;
 		} catch (FileNotFoundException e) {
-			throw new IllegalCWSArgumentException("Cannot load default config file: " + e.getMessage());
+			throw new IllegalCWSArgumentException("Cannot load config file: " + e.getMessage());
+		} finally {
+			IOUtils.closeQuietly(input);
 		}
+	}
 
-		try {
-			CommandLineParser parser = new PosixParser();
-			System.out.println(args[0]);
-			System.out.println(args[1]);
-			cmd = parser.parse(options, args);
-		} catch (ParseException exp) {
-			printUsage(options, exp.getMessage());
-		}
-		
-		SimulationMultipleWorkflow sim = new SimulationMultipleWorkflow();
-		File outputfile = new File(cmd.getOptionValue("output-file"));
-		sim.run(cmd, outputfile);
-		
+	/**
+	 * @return Names of the algorithms run by default.
+	 */
+	static List<String> getDefaultAlgorithms() {
+		return Collections.unmodifiableList(algs);
 	}
 
 	private void run(CommandLine args, File outputfile) {
+		run(args, outputfile, new File(WORKLOAD_FILE), true, algs);
+	}
+
+	/**
+	 * Runs the given algorithms over the ensemble described by the workload file and writes the detailed and general
+	 * result files next to the output file.
+	 * 
+	 * @param workloadFile The workload (ensemble) file to read.
+	 * @param generateWorkload Whether to first generate a new random workload into the workload file.
+	 * @param algorithms Names of the algorithms to run, each over the same ensemble.
+	 */
+	void run(CommandLine args, File outputfile, File workloadFile, boolean generateWorkload, List<String> algorithms) {
 
-		File workloadFile = new File(WORKLOAD_FILE);
 		File inputdir = new File(args.getOptionValue("input-dir"));
 		String storageManagerType = args.getOptionValue("storage-manager");
 
 		// Arguments with defaults
 		long seed = Long.parseLong(args.getOptionValue("seed", System.currentTimeMillis() + ""));
+		randomStreams = new RandomStreams(seed);
 		String storageCacheType = args.getOptionValue("storage-cache", DEFAULT_STORAGE_CACHE);
 		boolean enableLogging = Boolean.valueOf(args.getOptionValue("enable-logging", DEFAULT_ENABLE_LOGGING));
 		boolean isStorageAware = Boolean.valueOf(args.getOptionValue("storage-aware", DEFAULT_IS_STORAGE_AWARE));
 		boolean saveRuntimeData = Boolean.valueOf(args.getOptionValue("save-runtime-data", DEFAULT_SAVE_RUNTIME_DATA));
+		boolean streamWorkload = Boolean.valueOf(args.getOptionValue("stream-workload", DEFAULT_STREAM_WORKLOAD));
+		int workloadLookAhead = Integer.parseInt(args.getOptionValue("workload-lookahead", DEFAULT_WORKLOAD_LOOKAHEAD));
 
 		List<VMType> vmTypes = vmTypeLoader.determineVMType(args);
 		for (VMType vmType : vmTypes) {
@@ -140,31 +211,15 @@ public class SimulationMultipleWorkflow {
 		double avgPerformanceVar = Double.parseDouble(args.getOptionValue("average-performance-variation", "0.0"));
 
 		CloudSimWrapper cloudsim = new CloudSimWrapper();
+		cloudsim.setRandomStreams(randomStreams);
 		cloudsim.init();
 		cloudsim.setLogsEnabled(enableLogging);
 		Log.disable(); // We do not need Cloudsim's logs. We have our own.
 
-		StorageSimulationParams simulationParams = new StorageSimulationParams();
-
-		if (storageCacheType.equals("fifo")) {
-			simulationParams.setStorageCacheType(StorageCacheType.FIFO);
-		} else if (storageCacheType.equals("unlimited")) {
-			simulationParams.setStorageCacheType(StorageCacheType.UNLIMITED);
-		} else if (storageCacheType.equals("void")) {
-			simulationParams.setStorageCacheType(StorageCacheType.VOID);
-		} else {
-			throw new IllegalCWSArgumentException("Wrong storage-cache:" + storageCacheType);
-		}
-
-		if (storageManagerType.equals("global")) {
-			GlobalStorageParams globalStorageParams = globalStorageParamsLoader.determineGlobalStorageParams(args);
-			logGlobalStorageParams(globalStorageParams);
-			simulationParams.setStorageParams(globalStorageParams);
-			simulationParams.setStorageType(StorageType.GLOBAL);
-		} else if (storageManagerType.equals("void")) {
-			simulationParams.setStorageType(StorageType.VOID);
-		} else {
-			throw new IllegalCWSArgumentException("Wrong storage-manager:" + storageCacheType);
+		StorageSimulationParams simulationParams = createStorageSimulationParams(args, globalStorageParamsLoader);
+		if (simulationParams.getStorageType() == StorageType.GLOBAL
+				|| simulationParams.getStorageType() == StorageType.VM2VM) {
+			logGlobalStorageParams(simulationParams.getStorageParams());
 		}
 
 		// Echo the simulation parameters
@@ -175,12 +230,14 @@ public class SimulationMultipleWorkflow {
 		System.out.printf("storageCache = %s\n", storageCacheType);
 		System.out.printf("enableLogging = %b\n", enableLogging);
 		System.out.printf("isStorageAware = %b\n", isStorageAware);
+		System.out.printf("streamWorkload = %b\n", streamWorkload);
 
 		Environment environment = EnvironmentFactory.createEnvironment(cloudsim, simulationParams, vmTypes,
 				isStorageAware);
 
 		PrintStream fileOutDetailed = null;
 		PrintStream fileOutGeneral = null;
+		BudgetRangeEstimator budgetEstimator = null;
 		try {
 			fileOutDetailed = new PrintStream(new FileOutputStream(outputfile + "_detailed.csv"));
 			fileOutDetailed.print("Workflow, Algorithm, Tasks, Submit Time, "
@@ -192,6 +249,8 @@ public class SimulationMultipleWorkflow {
 				fileOutDetailed.print("Prov. delay " + type.getName() + ", ");
 				fileOutDetailed.print("Deprov. delay " + type.getName() + ", ");
 			}
+			fileOutDetailed.print("Bytes To Read, Bytes Read, Cache Saved Bytes, Bytes To Write, "
+					+ "Storage Transfer Time, ");
 			fileOutDetailed.println();
 			
 			fileOutGeneral = new PrintStream(new FileOutputStream(outputfile + "_general.csv"));
@@ -201,7 +260,8 @@ public class SimulationMultipleWorkflow {
 					+ "Total VMs, Avg. VM Util., Overall Util., "
 					+ "Simulation Time, Storage Manager, "
 					+ "Cache Manager, Runtime Variation, "
-					+ "Failure Rate, Performance Variation, ");
+					+ "Failure Rate, Performance Variation, "
+					+ "Coalesced Scheduling Requests, ");
 			Collections.sort(environment.getVmTypes(), new VMTypeMipsComparator());
 			for (VMType type : environment.getVmTypes()) {
 				fileOutGeneral.print("Num " + type.getName() + ", ");
@@ -211,22 +271,39 @@ public class SimulationMultipleWorkflow {
 			fileOutGeneral.println();
 			
 			VMFactory.readCliOptions(args, seed);
+			NetworkTopology.readCliOptions(args);
 			System.out.println();
 			
-			System.out.println("BEGIN GENERATING WORKLOAD");
-			
-			WorkfloadGenerator.generateWorkloadFile(workloadFile, vmTypes, inputdir, simulationParams);
+			if (generateWorkload) {
+				budgetEstimator = syntheticWorkloadLoader.createBudgetEstimator(args, inputdir, vmTypes,
+						simulationParams, randomStreams);
+				if (streamWorkload && !budgetEstimator.isUsableDuringSimulation()) {
+					throw new IllegalCWSArgumentException("Streamed workloads cannot simulate budgets");
+				}
+			}
 			
-			System.out.println("SUCCESS GENERATING WORKLOAD");
+			if (generateWorkload && !streamWorkload) {
+				System.out.println("BEGIN GENERATING WORKLOAD");
+				
+				WorkfloadGenerator.generateWorkloadFile(workloadFile, 
+						syntheticWorkloadLoader.createWorkload(args, inputdir, budgetEstimator, randomStreams));
+				
+				System.out.println("SUCCESS GENERATING WORKLOAD");
+			}
 			
-			List<DAG> dags= WorkfloadParser.parseWorkload(workloadFile);
+			// When streaming, every experiment reads or generates the workload again instead of sharing parsed DAGs
+			List<DAG> dags = streamWorkload ? new ArrayList<DAG>() : WorkfloadParser.parseWorkload(workloadFile);
 			
-			for (String algorithm : algs){
+			for (String algorithm : algorithms){
+				Iterator<DAGArrival> arrivals = null;
+				if (streamWorkload) {
+					arrivals = createWorkloadArrivals(args, workloadFile, inputdir, budgetEstimator);
+				}
 				
-				runExperiment(cloudsim, algorithm, fileOutDetailed, fileOutGeneral, 
+				runExperiment(args, cloudsim, algorithm, fileOutDetailed, fileOutGeneral, 
 						outputfile, dags, enableLogging, storageManagerType,
 						storageCacheType, simulationParams, vmTypes, isStorageAware, 
-						avgPerformanceVar, saveRuntimeData);
+						avgPerformanceVar, saveRuntimeData, arrivals, workloadLookAhead);
 			}
 			
 			fileOutDetailed.flush();
@@ -237,47 +314,48 @@ public class SimulationMultipleWorkflow {
 		} finally {
 			IOUtils.closeQuietly(fileOutDetailed);
 			IOUtils.closeQuietly(fileOutGeneral);
+			if (budgetEstimator instanceof Closeable) {
+				IOUtils.closeQuietly((Closeable) budgetEstimator);
+			}
 		}
 	
 	}
 
-	private void runExperiment(CloudSimWrapper cloudsim, String algorithmName, 
+	/**
+	 * @param budgetEstimator Estimator for generated arrivals, null to read the workload file instead.
+	 * @return Lazily read or generated arrivals of the workload.
+	 */
+	private Iterator<DAGArrival> createWorkloadArrivals(CommandLine args, File workloadFile, File inputdir,
+			BudgetRangeEstimator budgetEstimator) {
+		if (budgetEstimator != null) {
+			return syntheticWorkloadLoader.createWorkload(args, inputdir, budgetEstimator, randomStreams);
+		}
+		return new WorkloadReader(workloadFile);
+	}
+
+	private void runExperiment(CommandLine args, CloudSimWrapper cloudsim, String algorithmName, 
 			PrintStream fileOutDetailed,PrintStream fileOutGeneral,
 			File outputfile, List<DAG> dags, boolean enableLogging, 
 			String storageManagerType, String storageCacheType, 
 			StorageSimulationParams simulationParams, List<VMType> vmTypes, 
-			boolean isStorageAware, double avgPerformanceVar, boolean saveRuntimeData) {
+			boolean isStorageAware, double avgPerformanceVar, boolean saveRuntimeData,
+			Iterator<DAGArrival> arrivals, int workloadLookAhead) {
 		
-		AlgorithmStatistics algorithmStatistics = null;
-		StorageManagerStatistics stats = null;
-		
-		int tasks = 0;
-		double makespan = 0.0;
-		double simulationTime = 0.0;
-		double actualCost = 0.0;
-		int numVms = 0;
-		double avgVmUtil = 0.0;
-		double systemUtil = 0.0;
-		int numWorkflows = 0;
-		
-		//For each dag
-		double dagMakespan = 0.0;
-		double dagFinishTime = 0.0;
-		double dagDeadline = 0.0;
-		double dagCost = 0.0;
-		double dagBudget = 0.0;
-		double dagUnspentBudget = 0.0;
-		int dagVmsUsed = 0;
-		boolean metDeadline = false;
-		boolean metBudget = false;
-		int dagTasks = 0;
-		double numDeadlinesMet = 0;
-		double numBudgetsMet = 0;
+		final double snapshotTime = Double.parseDouble(args.getOptionValue("snapshot-time", "-1"));
+		final File snapshotFile = args.hasOption("snapshot-file") ? new File(args.getOptionValue("snapshot-file"))
+				: null;
 		
-		int successfulRun = 0;
-				
 		for (int i = 0; i < NUMBER_OF_RUNS; i++) {
 			try {
+				// Reset what the previous run left behind instead of rebuilding the workload, which takes about 100 ms
+				// to parse again. The id counters VM random streams are keyed by start over, so the results of a run
+				// do not depend on the runs before it. The jobs and VMs of a run are created anew rather than pooled,
+				// as they are under 1% of what a run allocates.
+				resetStaticCounters();
+				for (DAG dag : dags) {
+					dag.resetSchedulingState();
+				}
+				
 				if (enableLogging) {
 					cloudsim = new CloudSimWrapper(getLogOutputStream(
 							algorithmName,
@@ -286,6 +364,7 @@ public class SimulationMultipleWorkflow {
 				} else {
 					cloudsim = new CloudSimWrapper();
 				}
+				cloudsim.setRandomStreams(randomStreams);
 				cloudsim.init();
 				cloudsim.setLogsEnabled(enableLogging);
 
@@ -298,93 +377,39 @@ public class SimulationMultipleWorkflow {
 				double deadline = 0.0; //overriden by dag.getDeadline
 				//just to be compatible with algorithms that expect the deadline 
 				//be part of the engine
-				Algorithm algorithm = createAlgorithm(alpha, maxScaling,
+				final Algorithm algorithm = createAlgorithm(alpha, maxScaling,
 						algorithmName, cloudsim, dags, budget, deadline, saveRuntimeData, environment);
 
 				algorithm.setEnvironment(environment);
+				if (arrivals != null) {
+					// Streamed arrivals can be consumed only once, i.e. by a single run
+					algorithm.setWorkloadArrivals(arrivals, workloadLookAhead);
+				}
+				
+				final SimulationSnapshot[] snapshot = new SimulationSnapshot[1];
+				if (snapshotTime >= 0.0) {
+					cloudsim.setCheckpoint(snapshotTime, new CheckpointListener() {
+						@Override
+						public void checkpointReached(CloudSimWrapper cloudsim) {
+							snapshot[0] = takeSnapshot(algorithm, snapshotTime, snapshotFile);
+						}
+					});
+				}
 				
 				algorithm.simulate();
+				processedEvents += cloudsim.getProcessedEvents();
+				simulationWallTime += cloudsim.getSimulationWallTime();
 
-				algorithmStatistics = algorithm.getAlgorithmStatistics();
-				stats = environment.getStorageManagerStatistics();
-
-				if (!algorithmStatistics.getFinishedDags().isEmpty()) {
-					successfulRun++;
-					Set<DAGJob> completedDags = algorithmStatistics.getDagJobCompletionTimes().keySet();
-					
-					for (DAGJob dagJob : completedDags) {
-						
-						//must be changed after experiment
-						dagFinishTime = algorithmStatistics.getDagJobCompletionTimes().get(dagJob);
-						dagMakespan = algorithmStatistics.getDagJobCompletionTimes().get(dagJob) - dagJob.getStartTime();
-						dagDeadline = dagJob.getDAG().getDeadline();
-						dagCost = algorithmStatistics.getDagJobCosts().get(dagJob);
-						dagBudget = dagJob.getDAG().getBudget();
-						dagUnspentBudget = dagBudget - dagCost;
-						
-						
-						dagVmsUsed = algorithmStatistics.getDagVmsUsed().get(dagJob);
-						metDeadline = dagFinishTime <= dagDeadline ? true : false;
-						metBudget = dagCost <= dagBudget ? true :  false;
-						if(metDeadline) {
-							numDeadlinesMet++;
-						}
-						if(metBudget) {
-							numBudgetsMet++;
-						}
-						dagTasks = dagJob.getDAG().getTasks().length;
-
-						fileOutDetailed.printf("%s, %s, %d, %f, %f, %f, %f, %b, %f, %f, %f, %b, ",
-								dagJob.getDAG().getName(), algorithmName,
-								dagTasks, dagJob.getDAG().getSubmitTime(),
-								dagDeadline, dagFinishTime, dagMakespan,
-								metDeadline, dagBudget, dagCost, dagUnspentBudget, metBudget);
-
-						fileOutDetailed.printf("%d, ", dagVmsUsed);
-						
-						SortedMap<VMType, Integer> numVmsPerType = algorithmStatistics.getDagNumVmsPerType(dagJob);
-						
-						for (VMType type : numVmsPerType.keySet()) {
-							int num = numVmsPerType.get(type);
-							fileOutDetailed.printf("%d, ", num);
-							fileOutDetailed.printf("%f, ", type.getProvisioningDelay().sample());
-							fileOutDetailed.printf("%f, ", type.getDeprovisioningDelay().sample());
-						}
-						
-						fileOutDetailed.println();
-					}
-					
-					//General file
-					//Common to all dags
-					simulationTime = cloudsim.getSimulationWallTime() / 1.0e9;
-					actualCost = algorithmStatistics.getActualCost();
-					makespan = algorithmStatistics.getActualDagFinishTime();
-					numVms = algorithmStatistics.getNumVms();
-					avgVmUtil = algorithmStatistics.getAverageVMUtilization();
-					systemUtil = algorithmStatistics.getOverallSystemUtilization();
-					tasks = algorithmStatistics.getFinishedTasks();
-					numWorkflows = algorithmStatistics.getFinishedDags().size();
-					
-					fileOutGeneral.printf("%s, %d, %d, %f, %f, ", algorithmName,
-							numWorkflows, tasks, makespan, numDeadlinesMet);
-
-					fileOutGeneral.printf("%f, %f, ", actualCost, numBudgetsMet);
-					
-					fileOutGeneral.printf("%d, %f, %f, %f, ", numVms, avgVmUtil, systemUtil, simulationTime);
-					
-					fileOutGeneral.printf("%s, %s, %f, %f, %f, ", storageManagerType,
-							storageCacheType, VMFactory.getRuntimeVariance(),
-							VMFactory.getFailureRate(), avgPerformanceVar); 
-
-					SortedMap<VMType, Integer> numVmsPerType = algorithmStatistics.getNumVmsPerType();
-					for (VMType type : numVmsPerType.keySet()) {
-						int num = numVmsPerType.get(type);
-						fileOutGeneral.printf("%d, ", num);
-						fileOutGeneral.printf("%f, ", type.getProvisioningDelay().sample());
-						fileOutGeneral.printf("%f, ", type.getDeprovisioningDelay().sample());
-					}
-					
-					fileOutGeneral.println();
+				writeResults(algorithmName, algorithm, cloudsim, fileOutDetailed, fileOutGeneral,
+						storageManagerType, storageCacheType, avgPerformanceVar);
+				
+				if (snapshot[0] != null) {
+					runForks(args, algorithmName, snapshotFile != null ? null : snapshot[0], snapshotFile,
+							fileOutDetailed, fileOutGeneral, outputfile, enableLogging, storageManagerType,
+							storageCacheType);
+				} else if (snapshotTime >= 0.0) {
+					System.err.println("WARNING: " + algorithmName + " finished before the snapshot time "
+							+ snapshotTime);
 				}
 
 			} catch (Exception e) {
@@ -393,7 +418,274 @@ public class SimulationMultipleWorkflow {
 		}
 	}
 	
-	private static Options buildOptions() {
+	/**
+	 * Restarts the id counters of the simulated entities and records.
+	 */
+	private static void resetStaticCounters() {
+		Job.resetStaticCounters();
+		VM.resetStaticCounters();
+		WorkflowEngineCombinedRPSched.resetStaticCounters();
+		WorkflowEngineSeparateRPSched.resetStaticCounters();
+		StaticAlgorithm.resetStaticCounters();
+		Transfer.resetStaticCounters();
+		GlobalStorageTransfer.resetStaticCounters();
+		Link.resetStaticCounters();
+		Port.resetStaticCounters();
+	}
+	
+	/**
+	 * Takes a snapshot of the running simulation of the given algorithm and writes it to the given file, if any.
+	 */
+	private SimulationSnapshot takeSnapshot(Algorithm algorithm, double time, File snapshotFile) {
+		SimulationSnapshot snapshot = SimulationSnapshot.take(algorithm, time);
+		algorithm.getCloudsim().log("Snapshot of " + algorithm.getName() + ": " + snapshot.getSize() + " bytes");
+		if (snapshotFile != null) {
+			try {
+				snapshot.write(snapshotFile);
+			} catch (IOException e) {
+				throw new IllegalCWSArgumentException("Cannot write snapshot file: " + e.getMessage());
+			}
+		}
+		return snapshot;
+	}
+	
+	/**
+	 * Continues the simulation of a snapshot once for every variant of the fork-variants option. A variant is a
+	 * comma separated list of option=value overrides of the VM runtime, failure and performance variation options,
+	 * and the empty variant continues the simulation unchanged. The results of every variant are written as those of
+	 * an algorithm named after the algorithm, the variant and the snapshot time.
+	 * 
+	 * @param snapshot The snapshot, null to read it from the snapshot file for every variant.
+	 */
+	private void runForks(CommandLine args, String algorithmName, SimulationSnapshot snapshot,
+			File snapshotFile, PrintStream fileOutDetailed, PrintStream fileOutGeneral, File outputfile,
+			boolean enableLogging, String storageManagerType, String storageCacheType) throws IOException {
+		if (!args.hasOption("fork-variants")) {
+			return;
+		}
+		String[] variants = args.getOptionValue("fork-variants").split(";", -1);
+		for (int n = 0; n < variants.length; n++) {
+			String variant = variants[n].trim();
+			CommandLine variantArgs = createVariantArgs(args, variant);
+			SimulationSnapshot source = snapshot != null ? snapshot : SimulationSnapshot.read(snapshotFile);
+			
+			OutputStream log = enableLogging ? getLogOutputStream(algorithmName + ".fork" + n, outputfile)
+					: new NullOutputStream();
+			try {
+				Algorithm fork = (Algorithm) source.fork(log);
+				if (!variant.isEmpty()) {
+					VMFactory.readCliOptions(variantArgs, fork.getCloudsim().getRandomStreams().getSeed());
+					VMFactory.reconfigureVMs(fork.getCloudsim(), variant);
+				}
+				fork.resume();
+				
+				String label = String.format("%s[%s@%s]", algorithmName, variant.replace(',', ' '),
+						source.getTime());
+				double avgPerformanceVar = Double.parseDouble(variantArgs.getOptionValue(
+						"average-performance-variation", "0.0"));
+				writeResults(label, fork, fork.getCloudsim(), fileOutDetailed, fileOutGeneral,
+						storageManagerType, storageCacheType, avgPerformanceVar);
+			} finally {
+				IOUtils.closeQuietly(log);
+			}
+		}
+		// The variants are meant for the forks only, the next runs use the configured options again
+		VMFactory.readCliOptions(args, randomStreams.getSeed());
+	}
+	
+	/**
+	 * @return The given options with the overrides of the given fork variant.
+	 */
+	private CommandLine createVariantArgs(CommandLine args, String variant) {
+		List<String> argsList = new ArrayList<String>();
+		List<String> overridden = new ArrayList<String>();
+		if (!variant.isEmpty()) {
+			for (String override : variant.split(",")) {
+				String[] keyValue = override.split("=", 2);
+				String key = keyValue[0].trim();
+				if (keyValue.length != 2 || !FORK_VARIANT_OPTIONS.contains(key)) {
+					throw new IllegalCWSArgumentException("Wrong fork variant: " + variant
+							+ ", variants override only " + FORK_VARIANT_OPTIONS);
+				}
+				argsList.add("--" + key);
+				argsList.add(keyValue[1].trim());
+				overridden.add(key);
+			}
+		}
+		for (Option option : args.getOptions()) {
+			if (!overridden.contains(option.getLongOpt())) {
+				argsList.add("--" + option.getLongOpt());
+				argsList.add(option.getValue());
+			}
+		}
+		try {
+			return new PosixParser().parse(buildOptions(), argsList.toArray(new String[argsList.size()]));
+		} catch (ParseException e) {
+			throw new IllegalCWSArgumentException("Wrong fork variant: " + variant + ": " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Writes the results of a finished simulation to the detailed and general result files.
+	 * 
+	 * @return Whether any DAG finished, i.e. whether there were results to write.
+	 */
+	private boolean writeResults(String algorithmName, Algorithm algorithm, CloudSimWrapper cloudsim,
+			PrintStream fileOutDetailed, PrintStream fileOutGeneral, String storageManagerType,
+			String storageCacheType, double avgPerformanceVar) {
+		AlgorithmStatistics algorithmStatistics = algorithm.getAlgorithmStatistics();
+		
+		int tasks = 0;
+		double makespan = 0.0;
+		double simulationTime = 0.0;
+		double actualCost = 0.0;
+		int numVms = 0;
+		double avgVmUtil = 0.0;
+		double systemUtil = 0.0;
+		int numWorkflows = 0;
+		
+		//For each dag
+		double dagMakespan = 0.0;
+		double dagFinishTime = 0.0;
+		double dagDeadline = 0.0;
+		double dagCost = 0.0;
+		double dagBudget = 0.0;
+		double dagUnspentBudget = 0.0;
+		int dagVmsUsed = 0;
+		boolean metDeadline = false;
+		boolean metBudget = false;
+		int dagTasks = 0;
+		double numDeadlinesMet = 0;
+		double numBudgetsMet = 0;
+		
+		if (algorithmStatistics.getNumFinishedDags() > 0) {
+			
+			for (DAGResult dagResult : algorithmStatistics.getDagResults()) {
+				
+				//must be changed after experiment
+				dagFinishTime = dagResult.getFinishTime();
+				dagMakespan = dagResult.getMakespan();
+				dagDeadline = dagResult.getDeadline();
+				dagCost = dagResult.getCost();
+				dagBudget = dagResult.getBudget();
+				dagUnspentBudget = dagBudget - dagCost;
+				
+				
+				dagVmsUsed = dagResult.getVmsUsed();
+				metDeadline = dagFinishTime <= dagDeadline ? true : false;
+				metBudget = dagCost <= dagBudget ? true :  false;
+				if(metDeadline) {
+					numDeadlinesMet++;
+				}
+				if(metBudget) {
+					numBudgetsMet++;
+				}
+				dagTasks = dagResult.getNumTasks();
+
+				fileOutDetailed.printf("%s, %s, %d, %f, %f, %f, %f, %b, %f, %f, %f, %b, ",
+						dagResult.getName(), algorithmName,
+						dagTasks, dagResult.getSubmitTime(),
+						dagDeadline, dagFinishTime, dagMakespan,
+						metDeadline, dagBudget, dagCost, dagUnspentBudget, metBudget);
+
+				fileOutDetailed.printf("%d, ", dagVmsUsed);
+				
+				SortedMap<VMType, Integer> numVmsPerType = dagResult.getNumVmsPerType();
+				
+				for (VMType type : numVmsPerType.keySet()) {
+					int num = numVmsPerType.get(type);
+					fileOutDetailed.printf("%d, ", num);
+					fileOutDetailed.printf("%f, ", type.getExpectedProvisioningDelay());
+					fileOutDetailed.printf("%f, ", type.getExpectedDeprovisioningDelay());
+				}
+				
+				DAGStorageStatistics storage = dagResult.getStorageStatistics();
+				fileOutDetailed.printf("%d, %d, %d, %d, %f, ", storage.getBytesToRead(), storage.getBytesRead(),
+						storage.getCacheSavedBytes(), storage.getBytesToWrite(), storage.getTransferTime());
+				
+				fileOutDetailed.println();
+			}
+			
+			//General file
+			//Common to all dags
+			simulationTime = cloudsim.getSimulationWallTime() / 1.0e9;
+			actualCost = algorithmStatistics.getActualCost();
+			makespan = algorithmStatistics.getActualDagFinishTime();
+			numVms = algorithmStatistics.getNumVms();
+			avgVmUtil = algorithmStatistics.getAverageVMUtilization();
+			systemUtil = algorithmStatistics.getOverallSystemUtilization();
+			tasks = algorithmStatistics.getFinishedTasks();
+			numWorkflows = algorithmStatistics.getNumFinishedDags();
+			
+			fileOutGeneral.printf("%s, %d, %d, %f, %f, ", algorithmName,
+					numWorkflows, tasks, makespan, numDeadlinesMet);
+
+			fileOutGeneral.printf("%f, %f, ", actualCost, numBudgetsMet);
+			
+			fileOutGeneral.printf("%d, %f, %f, %f, ", numVms, avgVmUtil, systemUtil, simulationTime);
+			
+			fileOutGeneral.printf("%s, %s, %f, %f, %f, ", storageManagerType,
+					storageCacheType, VMFactory.getRuntimeVariance(),
+					VMFactory.getFailureRate(), avgPerformanceVar); 
+
+			long coalescedSchedulingRequests = 0;
+			if (algorithm.getWorkflowEngine() instanceof WorkflowEngineCombinedRPSched) {
+				coalescedSchedulingRequests = ((WorkflowEngineCombinedRPSched) algorithm.getWorkflowEngine())
+						.getCoalescedSchedulingRequests();
+			}
+			fileOutGeneral.printf("%d, ", coalescedSchedulingRequests);
+
+			SortedMap<VMType, Integer> numVmsPerType = algorithmStatistics.getNumVmsPerType();
+			for (VMType type : numVmsPerType.keySet()) {
+				int num = numVmsPerType.get(type);
+				fileOutGeneral.printf("%d, ", num);
+				fileOutGeneral.printf("%f, ", type.getExpectedProvisioningDelay());
+				fileOutGeneral.printf("%f, ", type.getExpectedDeprovisioningDelay());
+			}
+			
+			fileOutGeneral.println();
+		}
+
+		return algorithmStatistics.getNumFinishedDags() > 0;
+	}
+	
+	/**
+	 * Builds the storage params selected by the storage-manager and storage-cache options.
+	 */
+	public static StorageSimulationParams createStorageSimulationParams(CommandLine args,
+			GlobalStorageParamsLoader globalStorageParamsLoader) {
+		String storageManagerType = args.getOptionValue("storage-manager");
+		String storageCacheType = args.getOptionValue("storage-cache", DEFAULT_STORAGE_CACHE);
+		StorageSimulationParams simulationParams = new StorageSimulationParams();
+
+		if (storageCacheType.equals("fifo")) {
+			simulationParams.setStorageCacheType(StorageCacheType.FIFO);
+		} else if (storageCacheType.equals("unlimited")) {
+			simulationParams.setStorageCacheType(StorageCacheType.UNLIMITED);
+		} else if (storageCacheType.equals("void")) {
+			simulationParams.setStorageCacheType(StorageCacheType.VOID);
+		} else {
+			throw new IllegalCWSArgumentException("Wrong storage-cache:" + storageCacheType);
+		}
+
+		if (storageManagerType.equals("global")) {
+			GlobalStorageParams globalStorageParams = globalStorageParamsLoader.determineGlobalStorageParams(args);
+			simulationParams.setStorageParams(globalStorageParams);
+			simulationParams.setStorageType(StorageType.GLOBAL);
+		} else if (storageManagerType.equals("vm2vm")) {
+			// Workflow inputs and final outputs are still read and written on the global storage
+			GlobalStorageParams globalStorageParams = globalStorageParamsLoader.determineGlobalStorageParams(args);
+			simulationParams.setStorageParams(globalStorageParams);
+			simulationParams.setStorageType(StorageType.VM2VM);
+		} else if (storageManagerType.equals("void")) {
+			simulationParams.setStorageType(StorageType.VOID);
+		} else {
+			throw new IllegalCWSArgumentException("Wrong storage-manager:" + storageCacheType);
+		}
+		return simulationParams;
+	}
+
+	public static Options buildOptions() {
 		Options options = new Options();
 
 		Option seed = new Option("s", "seed", true, "Random number generator seed, defaults to current time in milis");
@@ -415,7 +707,7 @@ public class SimulationMultipleWorkflow {
 		storageCache.setArgName("CACHE");
 		options.addOption(storageCache);
 
-		Option storageManager = new Option("sm", "storage-manager", true, "(required) Storage manager ");
+		Option storageManager = new Option("sm", "storage-manager", true, "(required) Storage manager: global, vm2vm or void");
 		storageManager.setRequired(true);
 		storageManager.setArgName("MRG");
 		options.addOption(storageManager);
@@ -435,14 +727,58 @@ public class SimulationMultipleWorkflow {
 		saveRuntimeData.setArgName("BOOL");
 		options.addOption(saveRuntimeData);
 
+		Option streamWorkload = new Option("sw", "stream-workload", true,
+				"Whether to read or generate the workload lazily while simulating instead of up front, defaults to "
+						+ DEFAULT_STREAM_WORKLOAD);
+		streamWorkload.setArgName("BOOL");
+		options.addOption(streamWorkload);
+
+		Option workloadLookAhead = new Option("wla", "workload-lookahead", true,
+				"Number of streamed workflows read ahead of their submit time, defaults to " + DEFAULT_WORKLOAD_LOOKAHEAD);
+		workloadLookAhead.setArgName("NUM");
+		options.addOption(workloadLookAhead);
+
+		Option snapshotTime = new Option("st", "snapshot-time", true,
+				"Simulated time at which to take a snapshot of every experiment, defaults to none");
+		snapshotTime.setArgName("TIME");
+		options.addOption(snapshotTime);
+
+		Option snapshotFile = new Option("sf", "snapshot-file", true,
+				"File to write the snapshots to and to read them back from for every fork, defaults to keeping them "
+						+ "in memory");
+		snapshotFile.setArgName("FILE");
+		options.addOption(snapshotFile);
+
+		Option forkVariants = new Option("fv", "fork-variants", true,
+				"Variants to continue the snapshots with, separated by ';', each a ','-separated list of "
+						+ FORK_VARIANT_OPTIONS + " overrides as option=value, empty to continue unchanged");
+		forkVariants.setArgName("VARIANTS");
+		options.addOption(forkVariants);
+
 		VMFactory.buildCliOptions(options);
+		NetworkTopology.buildCliOptions(options);
 
 		VMTypeLoader.buildCliOptions(options);
 		GlobalStorageParamsLoader.buildCliOptions(options);
+		SyntheticWorkloadLoader.buildCliOptions(options);
 
 		return options;
 	}
 	
+	/**
+	 * @return Number of simulation events processed by all the experiments run so far.
+	 */
+	public long getProcessedEvents() {
+		return processedEvents;
+	}
+
+	/**
+	 * @return Wall time in nanos spent in the simulation loop by all the experiments run so far.
+	 */
+	public double getSimulationWallTime() {
+		return simulationWallTime;
+	}
+
 	private static void printUsage(Options options, String reason) {
 		HelpFormatter formatter = new HelpFormatter();
 		formatter.setWidth(120);
@@ -458,6 +794,7 @@ public class SimulationMultipleWorkflow {
 		System.out.printf("VM price = %f\n", vmType.getPriceForBillingUnit());
 		System.out.printf("VM unit = %f\n", vmType.getBillingTimeInSeconds());
 		System.out.printf("VM cache = %d\n", vmType.getCacheSize());
+		System.out.printf("VM bandwidth = %f\n", vmType.getBandwidth());
 		System.out.printf("VM provisioningDelay = %s\n",
 				vmType.getProvisioningDelay());
 		System.out.printf("VM deprovisioningDelay = %s\n",
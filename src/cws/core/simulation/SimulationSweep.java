@@ -0,0 +1,422 @@
+package cws.core.simulation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.cli.Options;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.yaml.snakeyaml.Yaml;
+
+import cws.core.exception.IllegalCWSArgumentException;
+import cws.core.workload.IsolatedBudgetEstimator;
+
+/**
+ * Runs an experiment for every point of a grid of parameters described by a sweep file (see config/sweep.yaml):
+ *
+ * <pre>
+ * base: configMultiple.yaml     # options of every run, relative to the sweep file
+ * output-dir: sweep             # the result store
+ * threads: 4                    # concurrent runs, defaults to the number of processors
+ * processes: 0                  # worker JVMs running the points instead of threads, see below
+ * worker-jvm-options: -Xmx2g    # JVM options of the worker processes
+ * worker-command-prefix: []     # command starting the workers on another host, e.g. [ssh, node1]
+ * retries: 1                    # times a point failed in a worker process is run again
+ * options:                      # options of every run, override the base ones
+ *   seed: "7"
+ * grid:                         # every combination of these values is one run
+ *   algorithm: [EBPSM, MSLBL]
+ *   storage-cache: [fifo, unlimited]
+ *   runtime-variance: ["0.0", "0.2"]
+ * </pre>
+ *
+ * Options and grid parameters are the options of {@link SimulationMultipleWorkflow}, plus algorithm, which defaults
+ * to all the algorithms, and workload-file, the workload to read instead of generating one for every run.
+ *
+ * The results of every run are kept in a directory of the output directory named after the hash of the run's
+ * parameters, see {@link SweepPoint}. Runs whose results exist are skipped, so growing a grid only runs the new
+ * points. A run writes into a temporary directory which is renamed when the run is complete, so a sweep which was
+ * interrupted simply runs its unfinished points again. Finally the results of all the points of the grid are gathered
+ * into sweep_detailed.csv and sweep_general.csv.
+ *
+ * The runs execute concurrently, each in a class loader of its own, see {@link SweepWorker}. With processes set, they
+ * are spread over that many worker JVMs instead, see {@link SweepCoordinator}.
+ */
+public class SimulationSweep {
+    private static final String DEFAULT_SWEEP_FILE = "config/sweep.yaml";
+    private static final String DEFAULT_OUTPUT_DIR = "sweep";
+    private static final String ALGORITHM = "algorithm";
+    private static final String WORKLOAD_FILE = "workload-file";
+    private static final String RUN_NAME = "run";
+    private static final String SPEC_FILE = "spec.yaml";
+    private static final String INCOMPLETE_SUFFIX = ".incomplete";
+    private static final String[] RESULT_FILES = { "_detailed.csv", "_general.csv" };
+    private static final int DEFAULT_RETRIES = 1;
+
+    private final File outputDir;
+    private final int threads;
+
+    /** Worker JVMs running the points, 0 to run them in this one */
+    private final int processes;
+    private final int retries;
+    private final List<String> workerJvmOptions;
+    private final List<String> workerCommandPrefix;
+
+    /** Names of the grid parameters, in the order of the grid */
+    private final List<String> gridKeys = new ArrayList<String>();
+
+    private final List<SweepPoint> points = new ArrayList<SweepPoint>();
+
+    /** Where the progress is reported, the runs themselves are silenced */
+    private final PrintStream console = System.out;
+
+    public SimulationSweep(File sweepFile) {
+        Map<String, Object> sweep = loadYaml(sweepFile);
+        File sweepDir = sweepFile.getAbsoluteFile().getParentFile();
+
+        Map<String, String> options = new LinkedHashMap<String, String>();
+        if (sweep.get("base") != null) {
+            options.putAll(SimulationMultipleWorkflow.readConfig(new File(sweepDir, (String) sweep.get("base"))));
+        }
+        options.putAll(toOptions(sweep.get("options"), "options"));
+        // Every run gets an output file of its own
+        options.remove("output-file");
+
+        Map<String, List<String>> grid = toGrid(sweep.get("grid"));
+        if (!grid.containsKey(ALGORITHM) && !options.containsKey(ALGORITHM)) {
+            grid.put(ALGORITHM, new ArrayList<String>(SimulationMultipleWorkflow.getDefaultAlgorithms()));
+        }
+        Options cliOptions = SimulationMultipleWorkflow.buildOptions();
+        for (String key : grid.keySet()) {
+            checkOption(cliOptions, key);
+            options.remove(key);
+        }
+        for (String key : options.keySet()) {
+            checkOption(cliOptions, key);
+        }
+        if (!options.containsKey("seed") && !grid.containsKey("seed")) {
+            throw new IllegalCWSArgumentException("Sweeps need a seed, runs seeded with the time cannot be reused");
+        }
+        gridKeys.addAll(grid.keySet());
+        expand(grid, 0, options, new ArrayList<String>());
+
+        this.outputDir = new File(sweep.get("output-dir") == null ? DEFAULT_OUTPUT_DIR : sweep.get("output-dir")
+                .toString());
+        this.threads = sweep.get("threads") == null ? Runtime.getRuntime().availableProcessors() : Integer
+                .parseInt(sweep.get("threads").toString());
+        if (threads < 1) {
+            throw new IllegalCWSArgumentException("At least 1 thread is needed, " + threads + " is not allowed");
+        }
+        this.processes = sweep.get("processes") == null ? 0 : Integer.parseInt(sweep.get("processes").toString());
+        this.retries = sweep.get("retries") == null ? DEFAULT_RETRIES : Integer.parseInt(sweep.get("retries")
+                .toString());
+        if (processes < 0 || retries < 0) {
+            throw new IllegalCWSArgumentException("Sweep processes and retries cannot be negative");
+        }
+        this.workerJvmOptions = toList(sweep.get("worker-jvm-options"));
+        this.workerCommandPrefix = toList(sweep.get("worker-command-prefix"));
+    }
+
+    public static void main(String[] args) {
+        File sweepFile = new File(args.length > 0 ? args[0] : DEFAULT_SWEEP_FILE);
+        if (!new SimulationSweep(sweepFile).run()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the points which have no results yet and gathers the results of all the points.
+     *
+     * @return Whether all the runs succeeded.
+     */
+    public boolean run() {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IllegalCWSArgumentException("Cannot create output dir " + outputDir);
+        }
+        // Points with equal hashes have equal results, they are run once
+        Map<String, SweepPoint> pending = new LinkedHashMap<String, SweepPoint>();
+        for (SweepPoint point : points) {
+            if (!getRunDir(point).isDirectory()) {
+                pending.put(point.getHash(), point);
+            }
+        }
+        boolean succeeded;
+        if (processes > 0) {
+            console.printf("%d points, %d to run, %d processes\n", points.size(), pending.size(), processes);
+            succeeded = pending.isEmpty()
+                    || new SweepCoordinator(outputDir, processes, retries, workerJvmOptions,
+                            new SweepCoordinator.CommandLauncher(workerCommandPrefix), console).run(pending.values());
+        } else {
+            console.printf("%d points, %d to run, %d threads\n", points.size(), pending.size(), threads);
+            succeeded = runAll(pending.values());
+        }
+        writeSummary();
+        return succeeded;
+    }
+
+    private boolean runAll(Collection<SweepPoint> pending) {
+        if (pending.isEmpty()) {
+            return true;
+        }
+        final List<SweepPoint> queue = new ArrayList<SweepPoint>(pending);
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger finished = new AtomicInteger();
+        int numWorkers = Math.min(threads, queue.size());
+        ExecutorService pool = Executors.newFixedThreadPool(numWorkers);
+        // The experiments are chatty on stdout, which all the class loaders share
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(new NullOutputStream()));
+        boolean succeeded = true;
+        try {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < numWorkers; i++) {
+                futures.add(pool.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        boolean succeeded = true;
+                        for (int j = next.getAndIncrement(); j < queue.size(); j = next.getAndIncrement()) {
+                            SweepPoint point = queue.get(j);
+                            long start = System.nanoTime();
+                            String status;
+                            try {
+                                runPoint(outputDir, point);
+                                status = String.format("done in %.1fs", (System.nanoTime() - start) / 1.0e9);
+                            } catch (Exception e) {
+                                e.printStackTrace();
+                                status = "FAILED: " + e;
+                                succeeded = false;
+                            }
+                            console.printf("[%d/%d] %s %s: %s\n", finished.incrementAndGet(), queue.size(),
+                                    point.getHash(), point.getGridValues(), status);
+                        }
+                        return succeeded;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                succeeded &= future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+            System.setOut(stdout);
+        }
+        return succeeded;
+    }
+
+    /**
+     * Runs the experiment of a point in a temporary directory, which becomes the point's run directory once all the
+     * results and the spec file are written. The experiment runs in a class loader of its own, so points run one after
+     * the other in the same JVM do not share the simulator's statics.
+     */
+    static void runPoint(File outputDir, SweepPoint point) throws IOException {
+        File incomplete = new File(outputDir, point.getHash() + INCOMPLETE_SUFFIX);
+        // Left over by an interrupted sweep
+        FileUtils.deleteDirectory(incomplete);
+        if (!incomplete.mkdirs()) {
+            throw new IOException("Cannot create " + incomplete);
+        }
+        boolean generateWorkload = point.getWorkloadFile() == null;
+        File workloadFile = generateWorkload ? new File(incomplete, "workload.csv") : point.getWorkloadFile();
+        File outputFile = new File(incomplete, RUN_NAME);
+
+        URLClassLoader loader = IsolatedBudgetEstimator.newIsolatedClassLoader();
+        try {
+            Class<?> workerClass = loader.loadClass(SweepWorker.class.getName());
+            Object worker = workerClass.getConstructor().newInstance();
+            workerClass.getMethod("run", String[].class, String.class, String.class, boolean.class, String.class)
+                    .invoke(worker, point.toArgs(outputFile), outputFile.getPath(), workloadFile.getPath(),
+                            generateWorkload, point.getAlgorithm());
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        } finally {
+            IOUtils.closeQuietly(loader);
+        }
+
+        FileUtils.writeStringToFile(new File(incomplete, SPEC_FILE), point.toYaml(), StandardCharsets.UTF_8.name());
+        File runDir = new File(outputDir, point.getHash());
+        if (!incomplete.renameTo(runDir)) {
+            throw new IOException("Cannot rename " + incomplete + " to " + runDir);
+        }
+    }
+
+    /**
+     * Gathers the results of all the points which have them, in grid order, prefixed with the point's hash and grid
+     * values. The header is the one of the first point.
+     */
+    private void writeSummary() {
+        for (String resultFile : RESULT_FILES) {
+            List<String> lines = new ArrayList<String>();
+            for (SweepPoint point : points) {
+                File results = new File(getRunDir(point), RUN_NAME + resultFile);
+                if (!results.isFile()) {
+                    continue;
+                }
+                List<String> runLines;
+                try {
+                    runLines = FileUtils.readLines(results, StandardCharsets.UTF_8.name());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                if (runLines.isEmpty()) {
+                    continue;
+                }
+                if (lines.isEmpty()) {
+                    lines.add("Run, " + join(gridKeys) + ", " + runLines.get(0));
+                }
+                String prefix = point.getHash() + ", " + join(point.getGridValues()) + ", ";
+                for (String line : runLines.subList(1, runLines.size())) {
+                    lines.add(prefix + line);
+                }
+            }
+            try {
+                FileUtils.writeLines(new File(outputDir, "sweep" + resultFile), StandardCharsets.UTF_8.name(),
+                        lines);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private File getRunDir(SweepPoint point) {
+        return new File(outputDir, point.getHash());
+    }
+
+    /**
+     * Adds a point for every combination of the values of the grid parameters from the given one on.
+     */
+    private void expand(Map<String, List<String>> grid, int key, Map<String, String> options, List<String> values) {
+        if (key == gridKeys.size()) {
+            Map<String, String> pointOptions = new LinkedHashMap<String, String>(options);
+            String algorithm = pointOptions.remove(ALGORITHM);
+            String workloadFile = pointOptions.remove(WORKLOAD_FILE);
+            points.add(new SweepPoint(pointOptions, algorithm, workloadFile == null ? null : new File(workloadFile),
+                    values));
+            return;
+        }
+        String name = gridKeys.get(key);
+        for (String value : grid.get(name)) {
+            Map<String, String> pointOptions = new LinkedHashMap<String, String>(options);
+            pointOptions.put(name, value);
+            List<String> pointValues = new ArrayList<String>(values);
+            pointValues.add(value);
+            expand(grid, key + 1, pointOptions, pointValues);
+        }
+    }
+
+    private static void checkOption(Options cliOptions, String key) {
+        if (!cliOptions.hasOption(key) && !ALGORITHM.equals(key) && !WORKLOAD_FILE.equals(key)) {
+            throw new IllegalCWSArgumentException("Unknown sweep option: " + key);
+        }
+    }
+
+    private static Map<String, String> toOptions(Object section, String name) {
+        Map<String, String> options = new LinkedHashMap<String, String>();
+        if (section == null) {
+            return options;
+        }
+        if (!(section instanceof Map)) {
+            throw new IllegalCWSArgumentException("Sweep " + name + " should be a map");
+        }
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) section).entrySet()) {
+            if (entry.getValue() != null) {
+                options.put(entry.getKey().toString(), entry.getValue().toString());
+            }
+        }
+        return options;
+    }
+
+    private static Map<String, List<String>> toGrid(Object section) {
+        Map<String, List<String>> grid = new LinkedHashMap<String, List<String>>();
+        if (section == null) {
+            return grid;
+        }
+        if (!(section instanceof Map)) {
+            throw new IllegalCWSArgumentException("Sweep grid should be a map");
+        }
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) section).entrySet()) {
+            Object value = entry.getValue();
+            List<String> values = new ArrayList<String>();
+            for (Object v : value instanceof List ? (List<?>) value : Arrays.asList(value)) {
+                if (v == null) {
+                    throw new IllegalCWSArgumentException("Empty value of grid parameter " + entry.getKey());
+                }
+                values.add(v.toString());
+            }
+            if (values.isEmpty()) {
+                throw new IllegalCWSArgumentException("Grid parameter " + entry.getKey() + " has no values");
+            }
+            grid.put(entry.getKey().toString(), values);
+        }
+        return grid;
+    }
+
+    /**
+     * @return The values of a list, or of a string split at whitespace.
+     */
+    private static List<String> toList(Object value) {
+        List<String> values = new ArrayList<String>();
+        if (value instanceof List) {
+            for (Object v : (List<?>) value) {
+                values.add(v.toString());
+            }
+        } else if (value != null && !value.toString().trim().isEmpty()) {
+            values.addAll(Arrays.asList(value.toString().trim().split("\\s+")));
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> loadYaml(File file) {
+        InputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            Object sweep = new Yaml().load(input);
+            if (!(sweep instanceof Map)) {
+                throw new IllegalCWSArgumentException("Sweep file " + file + " should be a map");
+            }
+            return (Map<String, Object>) sweep;
+        } catch (FileNotFoundException e) {
+            throw new IllegalCWSArgumentException("Cannot load sweep file: " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    private static String join(List<String> values) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) {
+                joined.append(", ");
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+}
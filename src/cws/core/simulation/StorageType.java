@@ -1,5 +1,5 @@
 package cws.core.simulation;
 
 public enum StorageType {
-    GLOBAL, VOID
+    GLOBAL, VM2VM, VOID
 }
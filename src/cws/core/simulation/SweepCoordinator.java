@@ -0,0 +1,253 @@
+package cws.core.simulation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Runs the points of a {@link SimulationSweep} on worker JVMs, see {@link SweepWorkerProcess}, so every run gets a
+ * heap and a garbage collector of its own and a sweep is not limited by the heap of a single JVM.
+ *
+ * The work queue is a directory of task files, one per point. Workers claim tasks by renaming them, which is atomic,
+ * and pull the next one as soon as they are done, so fast workers take over the tasks slow ones have not reached yet.
+ * Workers report on their stdout every task they finish or fail, and write the results into the sweep's result store,
+ * from which the coordinator merges them. Failed tasks, and the tasks of workers which died, are queued again up to the
+ * given number of retries, and dead workers are replaced.
+ *
+ * Workers are started through a {@link Launcher}, locally by default. Workers on other hosts, e.g. started through
+ * ssh, need the output directory, the workloads and the class path at the same paths as the coordinator.
+ */
+class SweepCoordinator {
+    static final String QUEUE_DIR = "queue";
+    static final String TASK_SUFFIX = ".task";
+    static final String CLAIMED_BY = ".claimed-by-";
+    static final String DONE = "DONE";
+    static final String FAILED = "FAILED";
+    private static final String EXITED = "EXITED";
+
+    /**
+     * Starts worker processes.
+     */
+    interface Launcher {
+        Process launch(List<String> command) throws IOException;
+    }
+
+    /**
+     * Starts workers on this host, or through a command prefix such as ssh HOST.
+     */
+    static class CommandLauncher implements Launcher {
+        private final List<String> prefix;
+
+        CommandLauncher(List<String> prefix) {
+            this.prefix = new ArrayList<String>(prefix);
+        }
+
+        @Override
+        public Process launch(List<String> command) throws IOException {
+            List<String> fullCommand = new ArrayList<String>(prefix);
+            fullCommand.addAll(command);
+            return new ProcessBuilder(fullCommand).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        }
+    }
+
+    private final File outputDir;
+    private final File queueDir;
+    private final int processes;
+    private final int retries;
+    private final List<String> jvmOptions;
+    private final Launcher launcher;
+    private final PrintStream console;
+
+    /** Lines reported by the workers, each prefixed with the worker's name */
+    private final BlockingQueue<String[]> events = new LinkedBlockingQueue<String[]>();
+
+    private final Map<String, Process> workers = new HashMap<String, Process>();
+    private int startedWorkers = 0;
+
+    private final Map<String, SweepPoint> points = new LinkedHashMap<String, SweepPoint>();
+    private final Map<String, Integer> attempts = new HashMap<String, Integer>();
+    private final Set<String> remaining = new HashSet<String>();
+    private boolean succeeded = true;
+
+    SweepCoordinator(File outputDir, int processes, int retries, List<String> jvmOptions, Launcher launcher,
+            PrintStream console) {
+        this.outputDir = outputDir.getAbsoluteFile();
+        this.queueDir = new File(this.outputDir, QUEUE_DIR);
+        this.processes = processes;
+        this.retries = retries;
+        this.jvmOptions = new ArrayList<String>(jvmOptions);
+        this.launcher = launcher;
+        this.console = console;
+    }
+
+    /**
+     * Runs the given points on the workers.
+     *
+     * @return Whether all the points succeeded.
+     */
+    boolean run(Collection<SweepPoint> pending) {
+        try {
+            // Tasks left over by an interrupted sweep
+            FileUtils.deleteDirectory(queueDir);
+            if (!queueDir.mkdirs()) {
+                throw new IOException("Cannot create " + queueDir);
+            }
+            for (SweepPoint point : pending) {
+                points.put(point.getHash(), point);
+                enqueue(point);
+            }
+            remaining.addAll(points.keySet());
+
+            // A worker may keep dying before claiming any task, e.g. when it cannot start, give up at some point
+            int maxWorkers = processes * (retries + 1);
+            for (int i = 0; i < Math.min(processes, remaining.size()); i++) {
+                startWorker();
+            }
+            while (!remaining.isEmpty()) {
+                String[] event = events.take();
+                String worker = event[0];
+                String[] message = event[1].split(" ", 3);
+                if (DONE.equals(message[0]) && remaining.remove(message[1])) {
+                    console.printf("[%d/%d] %s: done in %ss on %s\n", points.size() - remaining.size(),
+                            points.size(), message[1], message.length > 2 ? message[2] : "?", worker);
+                } else if (FAILED.equals(message[0]) && remaining.contains(message[1])) {
+                    failed(message[1], message.length > 2 ? message[2] : "", worker);
+                } else if (EXITED.equals(message[0])) {
+                    workers.remove(worker);
+                    requeueClaimedBy(worker, "worker exited with code " + message[1]);
+                    if (workers.size() < Math.min(processes, remaining.size()) && startedWorkers < maxWorkers) {
+                        startWorker();
+                    } else if (workers.isEmpty() && !remaining.isEmpty()) {
+                        console.printf("No workers left, %d points not run\n", remaining.size());
+                        succeeded = false;
+                        break;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            stopWorkers();
+        }
+        FileUtils.deleteQuietly(queueDir);
+        return succeeded;
+    }
+
+    private void failed(String hash, String reason, String worker) throws IOException {
+        int attempt = attempts.containsKey(hash) ? attempts.get(hash) + 1 : 1;
+        attempts.put(hash, attempt);
+        if (attempt <= retries) {
+            console.printf("%s failed on %s (%s), retrying\n", hash, worker, reason);
+            enqueue(points.get(hash));
+        } else {
+            console.printf("[%d/%d] %s: FAILED on %s: %s\n", points.size() - remaining.size() + 1, points.size(),
+                    hash, worker, reason);
+            remaining.remove(hash);
+            succeeded = false;
+        }
+    }
+
+    /**
+     * Queues the tasks a dead worker had claimed again.
+     */
+    private void requeueClaimedBy(String worker, String reason) throws IOException {
+        File[] files = queueDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(CLAIMED_BY + worker)) {
+                String hash = file.getName().substring(0, file.getName().indexOf(TASK_SUFFIX));
+                FileUtils.deleteQuietly(file);
+                if (remaining.contains(hash)) {
+                    failed(hash, reason, worker);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the task of a point. Tasks are renamed into place when complete, so workers never read partial ones.
+     */
+    private void enqueue(SweepPoint point) throws IOException {
+        File partial = new File(queueDir, point.getHash() + ".partial");
+        point.writeTask(partial);
+        File task = new File(queueDir, point.getHash() + TASK_SUFFIX);
+        if (!partial.renameTo(task)) {
+            throw new IOException("Cannot rename " + partial + " to " + task);
+        }
+    }
+
+    private void startWorker() throws IOException {
+        final String name = "worker" + startedWorkers++;
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SweepWorkerProcess.class.getName());
+        command.add(outputDir.getPath());
+        command.add(name);
+        final Process process = launcher.launch(command);
+        workers.put(name, process);
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                BufferedReader lines = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                        StandardCharsets.UTF_8));
+                try {
+                    for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+                        events.add(new String[] { name, line });
+                    }
+                    events.add(new String[] { name, EXITED + " " + process.waitFor() });
+                } catch (IOException e) {
+                    events.add(new String[] { name, EXITED + " " + e });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    IOUtils.closeQuietly(lines);
+                }
+            }
+        }, name + "-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Workers exit when their stdin is closed and there are no more tasks; those which do not are killed.
+     */
+    private void stopWorkers() {
+        for (Process process : workers.values()) {
+            IOUtils.closeQuietly(process.getOutputStream());
+        }
+        for (Process process : workers.values()) {
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.clear();
+    }
+}
@@ -0,0 +1,266 @@
+package cws.core.simulation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.CodeSource;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.IOUtils;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * One run of a {@link SimulationSweep}: the CLI options of the experiment, the algorithm and the workload. Its hash
+ * covers everything the results depend on, i.e. the options, the algorithm, the content of the workload file, the
+ * content of every file or directory an option names (VM and storage configs, DAG dirs) and the simulator's code, so
+ * points with equal hashes have equal results.
+ */
+class SweepPoint {
+    private static final String OPTION_PREFIX = "option.";
+
+    /**
+     * Config dirs the loaders read when their option is not given, see VMTypeLoader and GlobalStorageParamsLoader.
+     */
+    private static final Map<String, String> DEFAULT_DIRECTORIES = new TreeMap<String, String>();
+    static {
+        DEFAULT_DIRECTORIES.put("vm-directory", "vms/");
+        DEFAULT_DIRECTORIES.put("global-storage-directory", "gs/");
+    }
+
+    /** Content hashes by canonical path, the points of a sweep mostly name the same files */
+    private static final Map<String, String> CONTENT_HASHES = new ConcurrentHashMap<String, String>();
+
+    /** Hash of the classes running the simulations, computed on first use */
+    private static volatile String codeHash;
+
+    private final Map<String, String> options;
+    private final String algorithm;
+
+    /** The workload to read, null to generate one from the options */
+    private final File workloadFile;
+
+    /** The values of the grid parameters, in the order of the grid */
+    private final List<String> gridValues;
+
+    private final String hash;
+
+    SweepPoint(Map<String, String> options, String algorithm, File workloadFile, List<String> gridValues) {
+        this.options = Collections.unmodifiableMap(new LinkedHashMap<String, String>(options));
+        this.algorithm = algorithm;
+        this.workloadFile = workloadFile;
+        this.gridValues = Collections.unmodifiableList(new ArrayList<String>(gridValues));
+        this.hash = computeHash();
+    }
+
+    /**
+     * @return The CLI args of the run, writing its results next to the given output file.
+     */
+    String[] toArgs(File outputFile) {
+        List<String> args = new ArrayList<String>();
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            args.add("--" + option.getKey());
+            args.add(option.getValue());
+        }
+        args.add("--output-file");
+        args.add(outputFile.getPath());
+        return args.toArray(new String[args.size()]);
+    }
+
+    /**
+     * @return The description of the run, to keep next to its results.
+     */
+    String toYaml() {
+        Map<String, Object> spec = new LinkedHashMap<String, Object>();
+        spec.put("hash", hash);
+        spec.put("algorithm", algorithm);
+        spec.put("workload-file", workloadFile == null ? null : workloadFile.getPath());
+        spec.put("options", new LinkedHashMap<String, String>(options));
+        DumperOptions dumperOptions = new DumperOptions();
+        dumperOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        return new Yaml(dumperOptions).dump(spec);
+    }
+
+    /**
+     * Writes the point to a task file of a {@link SweepCoordinator} queue.
+     */
+    void writeTask(File file) throws IOException {
+        Properties task = new Properties();
+        task.setProperty("algorithm", algorithm);
+        if (workloadFile != null) {
+            task.setProperty("workload-file", workloadFile.getAbsolutePath());
+        }
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            task.setProperty(OPTION_PREFIX + option.getKey(), option.getValue());
+        }
+        OutputStream output = new FileOutputStream(file);
+        try {
+            task.store(output, hash);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Reads a point written by {@link #writeTask(File)}. Grid values are not part of tasks.
+     */
+    static SweepPoint readTask(File file) throws IOException {
+        Properties task = new Properties();
+        InputStream input = new FileInputStream(file);
+        try {
+            task.load(input);
+        } finally {
+            input.close();
+        }
+        Map<String, String> options = new TreeMap<String, String>();
+        for (String key : task.stringPropertyNames()) {
+            if (key.startsWith(OPTION_PREFIX)) {
+                options.put(key.substring(OPTION_PREFIX.length()), task.getProperty(key));
+            }
+        }
+        String workloadFile = task.getProperty("workload-file");
+        return new SweepPoint(options, task.getProperty("algorithm"), workloadFile == null ? null : new File(
+                workloadFile), Collections.<String> emptyList());
+    }
+
+    String getAlgorithm() {
+        return algorithm;
+    }
+
+    File getWorkloadFile() {
+        return workloadFile;
+    }
+
+    List<String> getGridValues() {
+        return gridValues;
+    }
+
+    String getHash() {
+        return hash;
+    }
+
+    private String computeHash() {
+        MessageDigest digest = newDigest();
+        StringBuilder spec = new StringBuilder();
+        spec.append("algorithm=").append(algorithm).append('\n');
+        // Sorted, so the order of the options in the sweep file does not matter
+        for (Map.Entry<String, String> option : new TreeMap<String, String>(options).entrySet()) {
+            spec.append(option.getKey()).append('=').append(option.getValue()).append('\n');
+            File file = new File(option.getValue());
+            if (file.exists()) {
+                spec.append(option.getKey()).append(".content=").append(hashContent(file)).append('\n');
+            }
+        }
+        for (Map.Entry<String, String> directory : DEFAULT_DIRECTORIES.entrySet()) {
+            File file = new File(directory.getValue());
+            if (!options.containsKey(directory.getKey()) && file.exists()) {
+                spec.append(directory.getKey()).append(".default=").append(hashContent(file)).append('\n');
+            }
+        }
+        spec.append("workload=").append(workloadFile == null ? "generated" : hashContent(workloadFile)).append('\n');
+        spec.append("code=").append(getCodeHash());
+        return toHex(digest.digest(spec.toString().getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+    }
+
+    /**
+     * @return The hash of the classes of the simulator, i.e. of its jar or of its classes dir, so that results of
+     *         another build are not reused.
+     */
+    private static String getCodeHash() {
+        if (codeHash == null) {
+            CodeSource source = SweepPoint.class.getProtectionDomain().getCodeSource();
+            File location;
+            try {
+                location = source == null ? null : new File(source.getLocation().toURI());
+            } catch (URISyntaxException e) {
+                location = null;
+            }
+            if (location == null || !location.exists()) {
+                throw new IllegalStateException("Cannot find the simulator's classes to hash");
+            }
+            codeHash = hashContent(location);
+        }
+        return codeHash;
+    }
+
+    /**
+     * @return The hash of the content of the file, or of the names and contents of all the files under the
+     *         directory.
+     */
+    private static String hashContent(File file) {
+        String path;
+        try {
+            path = file.getCanonicalPath();
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot resolve " + file, e);
+        }
+        String hash = CONTENT_HASHES.get(path);
+        if (hash == null) {
+            MessageDigest digest = newDigest();
+            updateDigest(digest, file, "");
+            hash = toHex(digest.digest());
+            CONTENT_HASHES.put(path, hash);
+        }
+        return hash;
+    }
+
+    private static void updateDigest(MessageDigest digest, File file, String relativePath) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) {
+                throw new RuntimeException("Cannot list " + file);
+            }
+            // Sorted, listFiles() has no defined order
+            Arrays.sort(children);
+            for (File child : children) {
+                updateDigest(digest, child, relativePath + "/" + child.getName());
+            }
+            return;
+        }
+        digest.update(relativePath.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        InputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            byte[] buffer = new byte[8192];
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read " + file, e);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
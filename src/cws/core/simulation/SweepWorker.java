@@ -0,0 +1,34 @@
+package cws.core.simulation;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+import cws.core.exception.IllegalCWSArgumentException;
+
+/**
+ * Runs one point of a {@link SimulationSweep} inside an isolated class loader, so that concurrent runs do not share
+ * the simulator's statics and every run starts from the same state whatever ran before it. It only exchanges JDK types
+ * with its creator, because no other class is shared with the creator's class loader.
+ */
+public class SweepWorker {
+
+    /**
+     * Runs the experiment with the given CLI args.
+     *
+     * @param workloadFile The workload to read, or to generate first if generateWorkload is set.
+     */
+    public void run(String[] args, String outputFile, String workloadFile, boolean generateWorkload, String algorithm) {
+        CommandLine cmd;
+        try {
+            cmd = new PosixParser().parse(SimulationMultipleWorkflow.buildOptions(), args);
+        } catch (ParseException e) {
+            throw new IllegalCWSArgumentException("Cannot parse the sweep args: " + e.getMessage());
+        }
+        new SimulationMultipleWorkflow().run(cmd, new File(outputFile), new File(workloadFile), generateWorkload,
+                Collections.singletonList(algorithm));
+    }
+}
@@ -0,0 +1,98 @@
+package cws.core.simulation;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.output.NullOutputStream;
+
+/**
+ * A worker JVM of a {@link SweepCoordinator}. Usage: SweepWorkerProcess OUTPUT_DIR NAME
+ *
+ * Claims tasks from the queue of the output directory one at a time, runs them like {@link SimulationSweep} does and
+ * reports every finished task on stdout, as "DONE HASH SECONDS" or "FAILED HASH REASON". Exits once its stdin is
+ * closed, i.e. when the coordinator is done or gone, and the queue is empty.
+ */
+public class SweepWorkerProcess {
+    private static final long POLL_INTERVAL_MILLIS = 200;
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: SweepWorkerProcess OUTPUT_DIR NAME");
+        }
+        File outputDir = new File(args[0]);
+        File queueDir = new File(outputDir, SweepCoordinator.QUEUE_DIR);
+        String name = args[1];
+
+        // The experiments are chatty on stdout, keep it for the reports
+        PrintStream reports = System.out;
+        System.setOut(new PrintStream(new NullOutputStream()));
+
+        final AtomicBoolean closing = new AtomicBoolean();
+        Thread stdinWatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (System.in.read() >= 0) {
+                        // Nothing is sent, wait for the end of the stream
+                    }
+                } catch (IOException e) {
+                    // Treated like the end of the stream
+                }
+                closing.set(true);
+            }
+        }, "stdin-watcher");
+        stdinWatcher.setDaemon(true);
+        stdinWatcher.start();
+
+        while (true) {
+            File claimed = claimTask(queueDir, name);
+            if (claimed == null) {
+                if (closing.get()) {
+                    break;
+                }
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+                continue;
+            }
+            String hash = claimed.getName().substring(0, claimed.getName().indexOf(SweepCoordinator.TASK_SUFFIX));
+            long start = System.nanoTime();
+            String report;
+            try {
+                SimulationSweep.runPoint(outputDir, SweepPoint.readTask(claimed));
+                report = String.format("%s %s %.1f", SweepCoordinator.DONE, hash, (System.nanoTime() - start) / 1.0e9);
+            } catch (Exception e) {
+                e.printStackTrace();
+                report = SweepCoordinator.FAILED + " " + hash + " " + e.toString().replace('\n', ' ');
+            }
+            claimed.delete();
+            reports.println(report);
+        }
+    }
+
+    /**
+     * @return The task renamed as claimed by this worker, null if the queue is empty.
+     */
+    private static File claimTask(File queueDir, String name) {
+        File[] tasks = queueDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(SweepCoordinator.TASK_SUFFIX);
+            }
+        });
+        if (tasks == null) {
+            return null;
+        }
+        Arrays.sort(tasks);
+        for (File task : tasks) {
+            File claimed = new File(queueDir, task.getName() + SweepCoordinator.CLAIMED_BY + name);
+            // Only one worker succeeds in renaming a task, the others try the next one
+            if (task.renameTo(claimed)) {
+                return claimed;
+            }
+        }
+        return null;
+    }
+}
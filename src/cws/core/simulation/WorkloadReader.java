@@ -0,0 +1,90 @@
+package cws.core.simulation;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.io.IOUtils;
+
+import cws.core.dag.DAGArrival;
+
+/**
+ * Reads a workload file lazily, one line (workflow) at a time. A line in the workload file should be:
+ * wfName, file, budget, deadline, submitTime. Malformed lines are reported and skipped. The file is closed once the
+ * last arrival has been read.
+ */
+public class WorkloadReader implements Iterator<DAGArrival>, Closeable {
+    private BufferedReader reader;
+    private DAGArrival next;
+    private int workflowId = 0;
+
+    public WorkloadReader(File workloadFile) {
+        try {
+            this.reader = new BufferedReader(new FileReader(workloadFile));
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        advance();
+    }
+
+    private void advance() {
+        next = null;
+        try {
+            String line = null;
+            while (next == null && (line = reader.readLine()) != null) {
+                next = parseLine(line);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (next == null) {
+            close();
+        }
+    }
+
+    private DAGArrival parseLine(String line) {
+        String[] args = line.split(",");
+        if (args.length != 5) {
+            System.err.println("Wrong workload file format");
+            return null;
+        }
+        String wfName = args[0].trim();
+        String dagFile = args[1].trim();
+        double budget = Double.parseDouble(args[2].trim());
+        double deadline = Double.parseDouble(args[3].trim());
+        double submitTime = Double.parseDouble(args[4].trim());
+        //adjust deadline according to submit time
+        deadline = deadline + submitTime;
+        return new DAGArrival(Integer.toString(workflowId++), wfName, new File(dagFile), budget, deadline, submitTime);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public DAGArrival next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        DAGArrival arrival = next;
+        advance();
+        return arrival;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(reader);
+    }
+}
@@ -0,0 +1,234 @@
+package cws.core.snapshot;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.CloudInformationService;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.CloudSimShutdown;
+
+/**
+ * Record kinds and class layouts shared by {@link ObjectGraphWriter} and {@link ObjectGraphReader}.
+ *
+ * Objects of the simulator's and CloudSim's classes are created through their no-arg constructor, which may be
+ * private, and their fields are then set through reflection. Transient fields are skipped, which lets the simulator
+ * keep references to the code driving it out of snapshots. CloudSim's own entities have no such constructor, they are
+ * created through their public one. The JDK's collections are rebuilt through their public API and other JDK objects
+ * go through their own serialization, with references to the rest of the graph replaced by {@link Ref}s.
+ */
+final class GraphFormat {
+    static final int MAGIC = 0x43575332;
+
+    static final byte END = 0;
+    static final byte PLAIN = 1;
+    static final byte ARRAY = 2;
+    static final byte STRING = 3;
+    static final byte ENUM = 4;
+    static final byte CLASS = 5;
+    static final byte MAP = 6;
+    static final byte CONSTANT = 7;
+    static final byte EXTERNAL = 8;
+    static final byte BOOLEAN = 9;
+    static final byte BYTE = 10;
+    static final byte CHARACTER = 11;
+    static final byte SHORT = 12;
+    static final byte INTEGER = 13;
+    static final byte LONG = 14;
+    static final byte FLOAT = 15;
+    static final byte DOUBLE = 16;
+    static final byte COLLECTION = 17;
+    static final byte SERIALIZED = 18;
+
+    /** External objects, i.e. output streams, are replaced by the log stream given to the reader */
+    static final int EXTERNAL_STREAM = 0;
+    static final int EXTERNAL_WRITER = 1;
+
+    /** Shared instances which are compared by identity, so they are never copied */
+    static final Object[] CONSTANTS = { System.out, System.err, CloudSim.SIM_ANY, CloudSim.SIM_NONE,
+            Collections.EMPTY_LIST, Collections.EMPTY_SET, Collections.EMPTY_MAP, Collections.reverseOrder(),
+            String.CASE_INSENSITIVE_ORDER };
+
+    /** Name of the CloudSim entities created by the reader, until their fields are set */
+    private static final String ENTITY_NAME = "Snapshot";
+
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<String, Class<?>>();
+
+    static {
+        for (Class<?> c : new Class<?>[] { boolean.class, byte.class, char.class, short.class, int.class,
+                long.class, float.class, double.class, void.class }) {
+            PRIMITIVES.put(c.getName(), c);
+        }
+    }
+
+    private static final ClassValue<Layout> LAYOUTS = new ClassValue<Layout>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+            return new Layout(type);
+        }
+    };
+
+    private GraphFormat() {
+    }
+
+    /**
+     * The copied fields of a class, superclass fields first, and the constructor its copies are created with.
+     */
+    static final class Layout {
+        final Field[] fields;
+        final char[] kinds;
+        final Constructor<?> constructor;
+
+        /** Whether a JDK superclass has fields, which cannot be copied through reflection */
+        final boolean extendsJdkState;
+
+        Layout(Class<?> type) {
+            List<Field> copied = new ArrayList<Field>();
+            List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                hierarchy.add(0, c);
+            }
+            boolean jdkState = false;
+            for (Class<?> c : hierarchy) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers)) {
+                        continue;
+                    } else if (isJdkClass(c)) {
+                        jdkState = true;
+                    } else if (!Modifier.isTransient(modifiers)) {
+                        copied.add(field);
+                    }
+                }
+            }
+            this.fields = jdkState ? new Field[0] : copied.toArray(new Field[copied.size()]);
+            this.kinds = kindsOf(fields);
+            this.constructor = jdkState ? null : findConstructor(type);
+            this.extendsJdkState = jdkState;
+        }
+
+        Layout(Class<?> type, Field[] fields) {
+            this.fields = fields;
+            this.kinds = kindsOf(fields);
+            this.constructor = findConstructor(type);
+            this.extendsJdkState = false;
+        }
+
+        private static char[] kindsOf(Field[] fields) {
+            char[] kinds = new char[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i].setAccessible(true);
+                kinds[i] = kindOf(fields[i].getType());
+            }
+            return kinds;
+        }
+
+        private static Constructor<?> findConstructor(Class<?> type) {
+            if (Modifier.isAbstract(type.getModifiers())) {
+                return null;
+            }
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return constructor;
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * A reference from a serialized JDK object to another object of the graph, by handle.
+     */
+    static final class Ref implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int handle;
+
+        Ref(int handle) {
+            this.handle = handle;
+        }
+    }
+
+    static Layout layoutOf(Class<?> type) {
+        return LAYOUTS.get(type);
+    }
+
+    /**
+     * @return Whether objects of the class can be copied, i.e. it has a no-arg constructor, or is one of CloudSim's
+     *         entities, and no JDK superclass with fields.
+     */
+    static boolean isCopyable(Class<?> type) {
+        Layout layout = layoutOf(type);
+        return !layout.extendsJdkState && (layout.constructor != null || isEntityWithoutConstructor(type));
+    }
+
+    /**
+     * Creates an object whose fields are set afterwards.
+     */
+    static Object newInstance(Class<?> type, Layout layout) throws ReflectiveOperationException {
+        if (layout.constructor != null) {
+            return layout.constructor.newInstance();
+        }
+        try {
+            if (type == CloudInformationService.class) {
+                return new CloudInformationService(ENTITY_NAME);
+            } else if (type == CloudSimShutdown.class) {
+                return new CloudSimShutdown(ENTITY_NAME, 0);
+            }
+        } catch (Exception e) {
+            throw new InvocationTargetException(e);
+        }
+        throw new InstantiationException(type.getName() + " has no no-arg constructor");
+    }
+
+    private static boolean isEntityWithoutConstructor(Class<?> type) {
+        return type == CloudInformationService.class || type == CloudSimShutdown.class;
+    }
+
+    /**
+     * @return The JVM descriptor letter of a primitive type, 'L' for references.
+     */
+    static char kindOf(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return 'L';
+        } else if (type == boolean.class) {
+            return 'Z';
+        } else if (type == long.class) {
+            return 'J';
+        }
+        return Character.toUpperCase(type.getName().charAt(0));
+    }
+
+    static boolean isJdkClass(Class<?> c) {
+        while (c.isArray()) {
+            c = c.getComponentType();
+        }
+        if (c.isPrimitive()) {
+            return true;
+        }
+        String name = c.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.")
+                || name.startsWith("sun.");
+    }
+
+    static boolean isBoxed(Class<?> c) {
+        return c == Integer.class || c == Long.class || c == Double.class || c == Boolean.class || c == Float.class
+                || c == Character.class || c == Short.class || c == Byte.class;
+    }
+
+    static Class<?> classForName(String name) throws ClassNotFoundException {
+        Class<?> primitive = PRIMITIVES.get(name);
+        if (primitive != null) {
+            return primitive;
+        }
+        return Class.forName(name, false, GraphFormat.class.getClassLoader());
+    }
+}
@@ -0,0 +1,556 @@
+package cws.core.snapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import cws.core.snapshot.GraphFormat.Layout;
+import cws.core.snapshot.GraphFormat.Ref;
+
+/**
+ * Reads a graph written by {@link ObjectGraphWriter}. Objects are created through their no-arg constructor and their
+ * primitive fields are set as soon as their record is read, while references, which may point to objects further in
+ * the stream, are set once all the objects exist. Sorted collections, which need their comparator, and serialized JDK
+ * objects are created once all the records are read, the ones deeper in the graph first. Maps and collections are
+ * filled last, when their keys are complete and hash as they did when written, and sorted ones after the others, as
+ * their comparators may look elements up in them.
+ */
+class ObjectGraphReader {
+    private final DataInputStream in;
+
+    /** The stream external objects are replaced with */
+    private final OutputStream log;
+
+    private final List<Object> objects = new ArrayList<Object>();
+
+    private final List<Class<?>> classes = new ArrayList<Class<?>>();
+    private final Map<Class<?>, Layout> layouts = new HashMap<Class<?>, Layout>();
+
+    /** Reference fields and array elements to set: the holder, the field, null for arrays, and the handle */
+    private final List<Object> fixupHolders = new ArrayList<Object>();
+    private final List<Field> fixupFields = new ArrayList<Field>();
+    private int[] fixupIndexes = new int[1024];
+    private int[] fixupHandles = new int[1024];
+
+    /** The objects created once all the records are read, by handle */
+    private final Map<Integer, Deferred> deferred = new HashMap<Integer, Deferred>();
+
+    /** The maps and collections to fill and their content, as alternating key and value handles for maps */
+    private final List<Object> containers = new ArrayList<Object>();
+    private final List<int[]> contents = new ArrayList<int[]>();
+    private final List<Boolean> sorted = new ArrayList<Boolean>();
+
+    private PrintStream externalStream;
+    private PrintWriter externalWriter;
+
+    ObjectGraphReader(DataInputStream in, OutputStream log) {
+        this.in = in;
+        this.log = log;
+    }
+
+    /**
+     * @return The root of the graph.
+     */
+    Object read() throws IOException {
+        if (in.readInt() != GraphFormat.MAGIC) {
+            throw new IOException("Not a simulation snapshot");
+        }
+        for (int type = in.readByte(); type != GraphFormat.END; type = in.readByte()) {
+            objects.add(readRecord(type));
+        }
+        if (objects.isEmpty()) {
+            throw new IOException("Empty simulation snapshot");
+        }
+        List<Integer> handles = new ArrayList<Integer>(deferred.keySet());
+        handles.sort(null);
+        for (int i = handles.size() - 1; i >= 0; i--) {
+            objectAt(handles.get(i));
+        }
+        for (int i = 0; i < fixupHolders.size(); i++) {
+            Object value = objectAt(fixupHandles[i]);
+            Field field = fixupFields.get(i);
+            if (field == null) {
+                ((Object[]) fixupHolders.get(i))[fixupIndexes[i]] = value;
+                continue;
+            }
+            try {
+                field.set(fixupHolders.get(i), value);
+            } catch (IllegalAccessException | IllegalArgumentException e) {
+                throw new IOException("Cannot set " + field.getDeclaringClass().getName() + "." + field.getName(), e);
+            }
+        }
+        // Containers found later in the stream are deeper in the graph, fill them first as outer keys may hash their
+        // content
+        fill(false);
+        fill(true);
+        if (externalStream != null) {
+            externalStream.flush();
+        }
+        return objects.get(0);
+    }
+
+    private Object readRecord(int type) throws IOException {
+        switch (type) {
+        case GraphFormat.PLAIN:
+            return readPlain();
+        case GraphFormat.ARRAY:
+            return readArray();
+        case GraphFormat.MAP:
+            return readMap();
+        case GraphFormat.COLLECTION:
+            return readCollection();
+        case GraphFormat.SERIALIZED:
+            return readSerialized();
+        case GraphFormat.STRING:
+            byte[] bytes = new byte[readVarInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        case GraphFormat.CONSTANT:
+            return GraphFormat.CONSTANTS[readVarInt()];
+        case GraphFormat.EXTERNAL:
+            return readExternal(readVarInt());
+        case GraphFormat.ENUM:
+            return readEnum();
+        case GraphFormat.CLASS:
+            return classForName(in.readUTF());
+        case GraphFormat.BOOLEAN:
+            return in.readBoolean();
+        case GraphFormat.BYTE:
+            return in.readByte();
+        case GraphFormat.CHARACTER:
+            return in.readChar();
+        case GraphFormat.SHORT:
+            return in.readShort();
+        case GraphFormat.INTEGER:
+            return in.readInt();
+        case GraphFormat.LONG:
+            return in.readLong();
+        case GraphFormat.FLOAT:
+            return in.readFloat();
+        case GraphFormat.DOUBLE:
+            return in.readDouble();
+        default:
+            throw new IOException("Unknown record type " + type + " at object " + (objects.size() + 1));
+        }
+    }
+
+    private Object readPlain() throws IOException {
+        Class<?> c = readClass();
+        Layout layout = readLayout(c);
+        Object o;
+        try {
+            o = GraphFormat.newInstance(c, layout);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Cannot create a " + c.getName(), e);
+        }
+        try {
+            for (int i = 0; i < layout.fields.length; i++) {
+                Field field = layout.fields[i];
+                switch (layout.kinds[i]) {
+                case 'Z':
+                    field.setBoolean(o, in.readBoolean());
+                    break;
+                case 'B':
+                    field.setByte(o, in.readByte());
+                    break;
+                case 'C':
+                    field.setChar(o, in.readChar());
+                    break;
+                case 'S':
+                    field.setShort(o, in.readShort());
+                    break;
+                case 'I':
+                    field.setInt(o, in.readInt());
+                    break;
+                case 'J':
+                    field.setLong(o, in.readLong());
+                    break;
+                case 'F':
+                    field.setFloat(o, in.readFloat());
+                    break;
+                case 'D':
+                    field.setDouble(o, in.readDouble());
+                    break;
+                default:
+                    fixup(o, field, 0, readVarInt());
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IOException("Cannot set the fields of a " + c.getName(), e);
+        }
+        return o;
+    }
+
+    private Object readArray() throws IOException {
+        Class<?> c = readClass();
+        Class<?> component = c.getComponentType();
+        int length = readVarInt();
+        Object array = Array.newInstance(component, length);
+        if (component == byte.class) {
+            in.readFully((byte[]) array);
+        } else if (component == boolean.class) {
+            boolean[] values = (boolean[]) array;
+            for (int i = 0; i < length; i++) {
+                values[i] = in.readBoolean();
+            }
+        } else if (component == char.class) {
+            char[] values = (char[]) array;
+            for (int i = 0; i < length; i++) {
+                values[i] = in.readChar();
+            }
+        } else if (component == short.class) {
+            short[] values = (short[]) array;
+            for (int i = 0; i < length; i++) {
+                values[i] = in.readShort();
+            }
+        } else if (component == int.class) {
+            int[] values = (int[]) array;
+            for (int i = 0; i < length; i++) {
+                values[i] = in.readInt();
+            }
+        } else if (component == long.class) {
+            long[] values = (long[]) array;
+            for (int i = 0; i < length; i++) {
+                values[i] = in.readLong();
+            }
+        } else if (component == float.class) {
+            float[] values = (float[]) array;
+            for (int i = 0; i < length; i++) {
+                values[i] = in.readFloat();
+            }
+        } else if (component == double.class) {
+            double[] values = (double[]) array;
+            for (int i = 0; i < length; i++) {
+                values[i] = in.readDouble();
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                fixup(array, null, i, readVarInt());
+            }
+        }
+        return array;
+    }
+
+    private Object readMap() throws IOException {
+        Class<?> c = readClass();
+        Map<Object, Object> map;
+        if (c == HashMap.class) {
+            map = new HashMap<Object, Object>(readVarInt());
+        } else if (c == LinkedHashMap.class) {
+            map = new LinkedHashMap<Object, Object>(16, 0.75f, in.readBoolean());
+        } else if (c == IdentityHashMap.class) {
+            map = new IdentityHashMap<Object, Object>();
+        } else if (c == TreeMap.class) {
+            final int comparator = readVarInt();
+            return defer(readContent(2), true, new Deferred() {
+                @Override
+                public Object create() throws IOException {
+                    return new TreeMap<Object, Object>(comparatorAt(comparator));
+                }
+            });
+        } else {
+            throw new IOException("Unsupported map " + c.getName());
+        }
+        addContainer(map, readContent(2), false);
+        return map;
+    }
+
+    private Object readCollection() throws IOException {
+        Class<?> c = readClass();
+        Collection<Object> collection;
+        if (c == HashSet.class) {
+            collection = new HashSet<Object>(readVarInt());
+        } else if (c == ArrayList.class || c == LinkedList.class || c == ArrayDeque.class
+                || c == LinkedHashSet.class) {
+            try {
+                @SuppressWarnings("unchecked")
+                Collection<Object> created = (Collection<Object>) c.getConstructor().newInstance();
+                collection = created;
+            } catch (ReflectiveOperationException e) {
+                throw new IOException("Cannot create a " + c.getName(), e);
+            }
+        } else if (c == TreeSet.class || c == PriorityQueue.class) {
+            final boolean tree = c == TreeSet.class;
+            final int comparator = readVarInt();
+            return defer(readContent(1), true, new Deferred() {
+                @Override
+                public Object create() throws IOException {
+                    return tree ? new TreeSet<Object>(comparatorAt(comparator)) : new PriorityQueue<Object>(
+                            comparatorAt(comparator));
+                }
+            });
+        } else {
+            throw new IOException("Unsupported collection " + c.getName());
+        }
+        addContainer(collection, readContent(1), false);
+        return collection;
+    }
+
+    private Object readSerialized() throws IOException {
+        final byte[] bytes = new byte[readVarInt()];
+        in.readFully(bytes);
+        return defer(null, false, new Deferred() {
+            @Override
+            public Object create() throws IOException {
+                ObjectInputStream serialized = new HandleResolvingStream(bytes);
+                try {
+                    return serialized.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Unknown serialized class", e);
+                } finally {
+                    serialized.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The handles of a container's content, each element a group of the given size.
+     */
+    private int[] readContent(int group) throws IOException {
+        int[] content = new int[readVarInt() * group];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = readVarInt();
+        }
+        return content;
+    }
+
+    private void addContainer(Object container, int[] content, boolean isSorted) {
+        containers.add(container);
+        contents.add(content);
+        sorted.add(isSorted);
+    }
+
+    /**
+     * Registers an object to create once all the records are read, and returns the placeholder of its record.
+     *
+     * @param content The content to fill the created container with, null if it is not a container.
+     */
+    private Object defer(final int[] content, final boolean isSorted, final Deferred creation) {
+        final int handle = objects.size() + 1;
+        deferred.put(handle, new Deferred() {
+            @Override
+            public Object create() throws IOException {
+                Object o = creation.create();
+                if (content != null) {
+                    addContainer(o, content, isSorted);
+                }
+                return o;
+            }
+        });
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Comparator<Object> comparatorAt(int handle) throws IOException {
+        Object comparator = objectAt(handle);
+        if (comparator != null && !(comparator instanceof Comparator)) {
+            throw new IOException("Object " + handle + " is not a comparator");
+        }
+        return (Comparator<Object>) comparator;
+    }
+
+    private void fill(boolean fillSorted) throws IOException {
+        for (int i = containers.size() - 1; i >= 0; i--) {
+            if (sorted.get(i) != fillSorted) {
+                continue;
+            }
+            Object container = containers.get(i);
+            int[] content = contents.get(i);
+            if (container instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<Object, Object> map = (Map<Object, Object>) container;
+                for (int j = 0; j < content.length; j += 2) {
+                    map.put(objectAt(content[j]), objectAt(content[j + 1]));
+                }
+            } else {
+                @SuppressWarnings("unchecked")
+                Collection<Object> collection = (Collection<Object>) container;
+                for (int j = 0; j < content.length; j++) {
+                    collection.add(objectAt(content[j]));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object readEnum() throws IOException {
+        Class c = readClass();
+        String name = in.readUTF();
+        try {
+            return Enum.valueOf(c, name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown constant " + c.getName() + "." + name, e);
+        }
+    }
+
+    private Object readExternal(int kind) {
+        if (externalStream == null) {
+            externalStream = new PrintStream(log, true);
+        }
+        if (kind == GraphFormat.EXTERNAL_WRITER) {
+            if (externalWriter == null) {
+                externalWriter = new PrintWriter(externalStream, true);
+            }
+            return externalWriter;
+        }
+        return externalStream;
+    }
+
+    private Class<?> readClass() throws IOException {
+        int id = readVarInt();
+        if (id == classes.size()) {
+            classes.add(classForName(in.readUTF()));
+        } else if (id > classes.size()) {
+            throw new IOException("Unknown class " + id);
+        }
+        return classes.get(id);
+    }
+
+    /**
+     * Reads the layout of a class if this is its first object, and matches the fields it names to the fields of the
+     * class in this JVM.
+     */
+    private Layout readLayout(Class<?> c) throws IOException {
+        if (!in.readBoolean()) {
+            Layout layout = layouts.get(c);
+            if (layout == null) {
+                throw new IOException("Missing layout of " + c.getName());
+            }
+            return layout;
+        }
+        Field[] fields = new Field[readVarInt()];
+        char[] kinds = new char[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            Class<?> declaring = readClass();
+            String name = in.readUTF();
+            kinds[i] = in.readChar();
+            try {
+                fields[i] = declaring.getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                throw new IOException("Field " + declaring.getName() + "." + name + " no longer exists", e);
+            }
+        }
+        Layout layout = new Layout(c, fields);
+        for (int i = 0; i < fields.length; i++) {
+            if (layout.kinds[i] != kinds[i]) {
+                throw new IOException("Field " + fields[i].getDeclaringClass().getName() + "." + fields[i].getName()
+                        + " changed type");
+            }
+        }
+        layouts.put(c, layout);
+        return layout;
+    }
+
+    private void fixup(Object holder, Field field, int index, int handle) {
+        if (handle == 0) {
+            return;
+        }
+        int i = fixupHolders.size();
+        if (i == fixupHandles.length) {
+            fixupIndexes = Arrays.copyOf(fixupIndexes, i * 2);
+            fixupHandles = Arrays.copyOf(fixupHandles, i * 2);
+        }
+        fixupHolders.add(holder);
+        fixupFields.add(field);
+        fixupIndexes[i] = index;
+        fixupHandles[i] = handle;
+    }
+
+    /**
+     * @return The object of the given handle, created first if it is deferred.
+     */
+    private Object objectAt(int handle) throws IOException {
+        if (handle == 0) {
+            return null;
+        } else if (handle > objects.size()) {
+            throw new IOException("Dangling reference to object " + handle);
+        }
+        Object o = objects.get(handle - 1);
+        if (o == null) {
+            Deferred creation = deferred.remove(handle);
+            if (creation == null) {
+                throw new IOException("Cyclic reference to object " + handle + " while creating it");
+            }
+            o = creation.create();
+            objects.set(handle - 1, o);
+        }
+        return o;
+    }
+
+    private static Class<?> classForName(String name) throws IOException {
+        try {
+            return GraphFormat.classForName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class " + name, e);
+        }
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * An object created once all the records are read.
+     */
+    private interface Deferred {
+        Object create() throws IOException;
+    }
+
+    /**
+     * Deserializes a JDK object written by the writer, replacing the {@link Ref}s with the objects they refer to.
+     * Only JDK classes are read.
+     */
+    private final class HandleResolvingStream extends ObjectInputStream {
+        HandleResolvingStream(byte[] bytes) throws IOException {
+            super(new ByteArrayInputStream(bytes));
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            return obj instanceof Ref ? objectAt(((Ref) obj).handle) : obj;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            Class<?> c = super.resolveClass(desc);
+            if (c != Ref.class && !GraphFormat.isJdkClass(c)) {
+                throw new InvalidClassException(desc.getName(), "not a JDK class");
+            }
+            return c;
+        }
+    }
+}
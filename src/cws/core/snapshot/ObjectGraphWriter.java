@@ -0,0 +1,497 @@
+package cws.core.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.Writer;
+import java.lang.ref.Reference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import cws.core.snapshot.GraphFormat.Layout;
+import cws.core.snapshot.GraphFormat.Ref;
+
+/**
+ * Writes every object reachable from a root as one record, in breadth first order so deep graphs (long chains of
+ * tasks, linked lists) cannot overflow the stack. Every object gets a handle, its position in the stream starting at
+ * 1 for the root, and references are written as handles, 0 for null.
+ *
+ * The JDK's maps and collections are written as their elements in iteration order, together with what the order of a
+ * copy depends on: the capacity of hashed ones, since the position of a key in the table depends on it, and the
+ * comparator of sorted ones. The tables of identity hashed maps depend on identity hash codes, which a copy does not
+ * keep. Output streams are written as external references, which the reader replaces with the stream it is given.
+ */
+class ObjectGraphWriter {
+    private final DataOutputStream out;
+
+    private final IdentityHashMap<Object, Integer> handles = new IdentityHashMap<Object, Integer>();
+
+    /** The objects by handle - 1, in the order they are written */
+    private final List<Object> objects = new ArrayList<Object>();
+
+    /** The handle of the object which first referenced every object, and through what, to report unsupported ones */
+    private final List<Integer> parents = new ArrayList<Integer>();
+    private final List<String> via = new ArrayList<String>();
+
+    private final IdentityHashMap<Object, Integer> constants = new IdentityHashMap<Object, Integer>();
+
+    private final Map<Class<?>, Integer> classIds = new HashMap<Class<?>, Integer>();
+    private final Map<Class<?>, Boolean> layoutsWritten = new HashMap<Class<?>, Boolean>();
+
+    /** The classes whose non-final static fields are written with the graph, and the ones checked so far */
+    private final Set<Class<?>> statefulClasses;
+    private final Set<Class<?>> staticsChecked = new HashSet<Class<?>>();
+
+    private CapacityProbe capacityProbe;
+
+    /**
+     * @param statefulClasses The classes whose non-final static fields are written with the graph. Other classes of
+     *            the graph must not have any.
+     */
+    ObjectGraphWriter(DataOutputStream out, Collection<Class<?>> statefulClasses) {
+        this.out = out;
+        this.statefulClasses = new HashSet<Class<?>>(statefulClasses);
+        for (int i = 0; i < GraphFormat.CONSTANTS.length; i++) {
+            constants.put(GraphFormat.CONSTANTS[i], i);
+        }
+    }
+
+    /**
+     * Writes the graph of the given root.
+     *
+     * @return The number of objects written.
+     */
+    int write(Object root) throws IOException {
+        if (root == null) {
+            throw new IllegalArgumentException("Cannot write a null root");
+        }
+        out.writeInt(GraphFormat.MAGIC);
+        handleOf(root, 0, "root");
+        for (int i = 0; i < objects.size(); i++) {
+            writeRecord(objects.get(i), i + 1);
+        }
+        out.writeByte(GraphFormat.END);
+        return objects.size();
+    }
+
+    private int handleOf(Object o, int parent, String field) {
+        if (o == null) {
+            return 0;
+        }
+        Integer handle = handles.get(o);
+        if (handle == null) {
+            objects.add(o);
+            parents.add(parent);
+            via.add(field);
+            handle = objects.size();
+            handles.put(o, handle);
+        }
+        return handle;
+    }
+
+    private void writeRecord(Object o, int handle) throws IOException {
+        Class<?> c = o.getClass();
+        Integer constant = constants.get(o);
+        if (constant != null) {
+            out.writeByte(GraphFormat.CONSTANT);
+            writeVarInt(constant);
+        } else if (c == String.class) {
+            out.writeByte(GraphFormat.STRING);
+            byte[] bytes = ((String) o).getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        } else if (c == Integer.class) {
+            out.writeByte(GraphFormat.INTEGER);
+            out.writeInt((Integer) o);
+        } else if (c == Long.class) {
+            out.writeByte(GraphFormat.LONG);
+            out.writeLong((Long) o);
+        } else if (c == Double.class) {
+            out.writeByte(GraphFormat.DOUBLE);
+            out.writeDouble((Double) o);
+        } else if (c == Boolean.class) {
+            out.writeByte(GraphFormat.BOOLEAN);
+            out.writeBoolean((Boolean) o);
+        } else if (c == Float.class) {
+            out.writeByte(GraphFormat.FLOAT);
+            out.writeFloat((Float) o);
+        } else if (c == Character.class) {
+            out.writeByte(GraphFormat.CHARACTER);
+            out.writeChar((Character) o);
+        } else if (c == Short.class) {
+            out.writeByte(GraphFormat.SHORT);
+            out.writeShort((Short) o);
+        } else if (c == Byte.class) {
+            out.writeByte(GraphFormat.BYTE);
+            out.writeByte((Byte) o);
+        } else if (o instanceof Enum) {
+            out.writeByte(GraphFormat.ENUM);
+            writeClass(((Enum<?>) o).getDeclaringClass(), false);
+            out.writeUTF(((Enum<?>) o).name());
+        } else if (o instanceof Class) {
+            out.writeByte(GraphFormat.CLASS);
+            out.writeUTF(((Class<?>) o).getName());
+        } else if (c.isArray()) {
+            writeArray(o, handle);
+        } else if (c == HashMap.class || c == LinkedHashMap.class || c == IdentityHashMap.class
+                || c == TreeMap.class) {
+            writeMap((Map<?, ?>) o, handle);
+        } else if (c == ArrayList.class || c == LinkedList.class || c == ArrayDeque.class || c == HashSet.class
+                || c == LinkedHashSet.class || c == TreeSet.class || c == PriorityQueue.class) {
+            writeCollection((Collection<?>) o, handle);
+        } else if (o instanceof OutputStream || o instanceof Writer) {
+            out.writeByte(GraphFormat.EXTERNAL);
+            writeVarInt(o instanceof Writer ? GraphFormat.EXTERNAL_WRITER : GraphFormat.EXTERNAL_STREAM);
+        } else {
+            checkSupported(c, handle);
+            if (GraphFormat.isJdkClass(c) && c != Object.class) {
+                writeSerialized(o, handle);
+            } else {
+                writePlain(o, c, handle);
+            }
+        }
+    }
+
+    private void writePlain(Object o, Class<?> c, int handle) throws IOException {
+        out.writeByte(GraphFormat.PLAIN);
+        Layout layout = writeClass(c, true);
+        try {
+            for (int i = 0; i < layout.fields.length; i++) {
+                Field field = layout.fields[i];
+                switch (layout.kinds[i]) {
+                case 'Z':
+                    out.writeBoolean(field.getBoolean(o));
+                    break;
+                case 'B':
+                    out.writeByte(field.getByte(o));
+                    break;
+                case 'C':
+                    out.writeChar(field.getChar(o));
+                    break;
+                case 'S':
+                    out.writeShort(field.getShort(o));
+                    break;
+                case 'I':
+                    out.writeInt(field.getInt(o));
+                    break;
+                case 'J':
+                    out.writeLong(field.getLong(o));
+                    break;
+                case 'F':
+                    out.writeFloat(field.getFloat(o));
+                    break;
+                case 'D':
+                    out.writeDouble(field.getDouble(o));
+                    break;
+                default:
+                    writeVarInt(handleOf(field.get(o), handle, field.getName()));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            // The layout's fields are accessible
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeArray(Object array, int handle) throws IOException {
+        out.writeByte(GraphFormat.ARRAY);
+        Class<?> component = array.getClass().getComponentType();
+        writeClass(array.getClass(), false);
+        int length = Array.getLength(array);
+        writeVarInt(length);
+        if (component == byte.class) {
+            out.write((byte[]) array);
+        } else if (component == boolean.class) {
+            for (boolean value : (boolean[]) array) {
+                out.writeBoolean(value);
+            }
+        } else if (component == char.class) {
+            for (char value : (char[]) array) {
+                out.writeChar(value);
+            }
+        } else if (component == short.class) {
+            for (short value : (short[]) array) {
+                out.writeShort(value);
+            }
+        } else if (component == int.class) {
+            for (int value : (int[]) array) {
+                out.writeInt(value);
+            }
+        } else if (component == long.class) {
+            for (long value : (long[]) array) {
+                out.writeLong(value);
+            }
+        } else if (component == float.class) {
+            for (float value : (float[]) array) {
+                out.writeFloat(value);
+            }
+        } else if (component == double.class) {
+            for (double value : (double[]) array) {
+                out.writeDouble(value);
+            }
+        } else {
+            Object[] elements = (Object[]) array;
+            for (int i = 0; i < length; i++) {
+                writeVarInt(handleOf(elements[i], handle, "[" + i + "]"));
+            }
+        }
+    }
+
+    /**
+     * Writes the map's class, what its iteration order depends on and its entries in iteration order. Putting them
+     * back in that order into a map with the same capacity rebuilds the same iteration order for keys which hash by
+     * value.
+     */
+    private void writeMap(Map<?, ?> map, int handle) throws IOException {
+        out.writeByte(GraphFormat.MAP);
+        Class<?> c = map.getClass();
+        writeClass(c, false);
+        if (c == HashMap.class) {
+            writeVarInt(capacityOf(map));
+        } else if (c == LinkedHashMap.class) {
+            out.writeBoolean(isAccessOrdered((LinkedHashMap<?, ?>) map));
+        } else if (c == TreeMap.class) {
+            writeVarInt(handleOf(((TreeMap<?, ?>) map).comparator(), handle, "comparator"));
+        }
+        writeVarInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeVarInt(handleOf(entry.getKey(), handle, "key"));
+            writeVarInt(handleOf(entry.getValue(), handle, "value"));
+        }
+    }
+
+    /**
+     * Writes the collection's class, what its order depends on and its elements in iteration order. The iteration
+     * order of a priority queue is the order of its heap, which adding the elements in that order rebuilds.
+     */
+    private void writeCollection(Collection<?> collection, int handle) throws IOException {
+        out.writeByte(GraphFormat.COLLECTION);
+        Class<?> c = collection.getClass();
+        writeClass(c, false);
+        if (c == HashSet.class) {
+            writeVarInt(capacityOf(collection));
+        } else if (c == TreeSet.class) {
+            writeVarInt(handleOf(((TreeSet<?>) collection).comparator(), handle, "comparator"));
+        } else if (c == PriorityQueue.class) {
+            writeVarInt(handleOf(((PriorityQueue<?>) collection).comparator(), handle, "comparator"));
+        }
+        writeVarInt(collection.size());
+        for (Object element : collection) {
+            writeVarInt(handleOf(element, handle, "element"));
+        }
+    }
+
+    /**
+     * Writes a JDK object through its own serialization, with the objects it references replaced by their handles.
+     */
+    private void writeSerialized(Object o, int handle) throws IOException {
+        out.writeByte(GraphFormat.SERIALIZED);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream serialized = new HandleReplacingStream(bytes, o, handle);
+        serialized.writeObject(o);
+        serialized.close();
+        writeVarInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    /**
+     * HashMap and HashSet do not tell their capacity, except to their serialization, see {@link CapacityProbe}.
+     */
+    private int capacityOf(Object hashed) throws IOException {
+        if (capacityProbe == null) {
+            capacityProbe = new CapacityProbe();
+        }
+        return capacityProbe.capacityOf(hashed);
+    }
+
+    /**
+     * LinkedHashMap does not tell whether it is in access order either, but a clone of it is in the same order and
+     * getting its first key moves the key last if it is.
+     */
+    private static boolean isAccessOrdered(LinkedHashMap<?, ?> map) {
+        @SuppressWarnings("unchecked")
+        LinkedHashMap<Object, Object> clone = (LinkedHashMap<Object, Object>) map.clone();
+        clone.clear();
+        Object first = new Object();
+        clone.put(first, null);
+        clone.put(new Object(), null);
+        clone.get(first);
+        return clone.keySet().iterator().next() != first;
+    }
+
+    private Layout writeClass(Class<?> c, boolean withLayout) throws IOException {
+        Integer id = classIds.get(c);
+        if (id == null) {
+            id = classIds.size();
+            classIds.put(c, id);
+            writeVarInt(id);
+            out.writeUTF(c.getName());
+        } else {
+            writeVarInt(id);
+        }
+        if (!withLayout) {
+            return null;
+        }
+        Layout layout = GraphFormat.layoutOf(c);
+        if (layoutsWritten.containsKey(c)) {
+            out.writeBoolean(false);
+        } else {
+            layoutsWritten.put(c, Boolean.TRUE);
+            out.writeBoolean(true);
+            writeVarInt(layout.fields.length);
+            for (int i = 0; i < layout.fields.length; i++) {
+                writeClass(layout.fields[i].getDeclaringClass(), false);
+                out.writeUTF(layout.fields[i].getName());
+                out.writeChar(layout.kinds[i]);
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Rejects the objects a copy would not behave like: readers of files, threads, class loaders, weak references,
+     * lambdas, the JDK's maps and collections other than the ones rebuilt through their API, and other JDK objects
+     * which cannot be serialized. Other objects need a no-arg constructor.
+     */
+    private void checkSupported(Class<?> c, int handle) {
+        boolean supported = !(InputStream.class.isAssignableFrom(c) || Reader.class.isAssignableFrom(c)
+                || Thread.class.isAssignableFrom(c) || ClassLoader.class.isAssignableFrom(c)
+                || Reference.class.isAssignableFrom(c) || c.isHidden() || c.isSynthetic());
+        String reason = "";
+        if (!supported) {
+            // Refused whatever its constructors
+        } else if (GraphFormat.isJdkClass(c) && c != Object.class) {
+            supported = Serializable.class.isAssignableFrom(c) && !Map.class.isAssignableFrom(c)
+                    && !Collection.class.isAssignableFrom(c);
+        } else if (!GraphFormat.isCopyable(c)) {
+            supported = false;
+            reason = GraphFormat.layoutOf(c).extendsJdkState ? ", it extends a JDK class with fields"
+                    : ", it has no no-arg constructor";
+        }
+        if (!supported) {
+            throw new IllegalStateException("Cannot snapshot a " + c.getName() + " reachable through " + path(handle)
+                    + reason);
+        }
+        checkStatics(c, handle);
+    }
+
+    /**
+     * Rejects the classes with non-final static fields which are not written with the graph, since a fork would keep
+     * whatever the simulation running before it left in them.
+     */
+    private void checkStatics(Class<?> c, int handle) {
+        for (Class<?> s = c; s != null && !GraphFormat.isJdkClass(s); s = s.getSuperclass()) {
+            if (!staticsChecked.add(s) || statefulClasses.contains(s)) {
+                continue;
+            }
+            for (Field field : s.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers) && !field.isSynthetic()) {
+                    throw new IllegalStateException("Cannot snapshot a " + c.getName() + " reachable through "
+                            + path(handle) + ", the static field " + s.getName() + "." + field.getName()
+                            + " is not part of the snapshot");
+                }
+            }
+        }
+    }
+
+    private String path(int handle) {
+        StringBuilder path = new StringBuilder();
+        for (int h = handle; h != 0; h = parents.get(h - 1)) {
+            path.insert(0, "." + via.get(h - 1) + "(" + objects.get(h - 1).getClass().getSimpleName() + ")");
+        }
+        return path.substring(1);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Serializes a JDK object, writing the objects it references, apart from strings, boxed primitives and enum
+     * constants, as {@link Ref}s to their handles.
+     */
+    private final class HandleReplacingStream extends ObjectOutputStream {
+        private final Object root;
+        private final int handle;
+
+        HandleReplacingStream(OutputStream out, Object root, int handle) throws IOException {
+            super(out);
+            this.root = root;
+            this.handle = handle;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            if (obj == root || obj instanceof String || obj instanceof Enum || GraphFormat.isBoxed(obj.getClass())) {
+                return obj;
+            }
+            return new Ref(handleOf(obj, handle, "serialized"));
+        }
+    }
+
+    /**
+     * The serialization of HashMap and HashSet writes their capacity as the first int after their fields. The probe
+     * keeps it and writes nulls instead of their elements.
+     */
+    private static final class CapacityProbe extends ObjectOutputStream {
+        private Object probed;
+        private int capacity;
+
+        CapacityProbe() throws IOException {
+            super(OutputStream.nullOutputStream());
+            enableReplaceObject(true);
+        }
+
+        int capacityOf(Object hashed) throws IOException {
+            probed = hashed;
+            capacity = -1;
+            reset();
+            writeObject(hashed);
+            if (capacity < 0) {
+                throw new IllegalStateException("No capacity written by a " + hashed.getClass().getName());
+            }
+            return capacity;
+        }
+
+        @Override
+        public void writeInt(int value) throws IOException {
+            if (capacity < 0) {
+                capacity = value;
+            }
+            super.writeInt(value);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            return obj == probed ? obj : null;
+        }
+    }
+}
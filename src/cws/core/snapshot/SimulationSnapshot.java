@@ -0,0 +1,227 @@
+package cws.core.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+
+import cws.core.VM;
+import cws.core.WorkflowEngine;
+import cws.core.WorkflowEngineCombinedRPSched;
+import cws.core.WorkflowEngineSeparateRPSched;
+import cws.core.algorithms.StaticAlgorithm;
+import cws.core.jobs.Job;
+import cws.core.provisioner.VMFactory;
+import cws.core.storage.global.GlobalStorageTransfer;
+import cws.core.transfer.Link;
+import cws.core.transfer.NetworkTopology;
+import cws.core.transfer.Port;
+import cws.core.transfer.Transfer;
+
+/**
+ * The complete state of a simulation at some simulated time: CloudSim's event queues and entities, the objects
+ * reachable from a root given by the caller (usually the {@link cws.core.algorithms.Algorithm}), and the static state
+ * of the simulator, e.g. the id counters. A snapshot is kept compressed in memory and can be written to and read from
+ * a file.
+ *
+ * Every {@link #fork(OutputStream)} restores the static state and returns an independent copy of the root, so a sweep
+ * can run the first part of a simulation once and then continue it under several variants, one after the other. A
+ * snapshot should be taken between two instants of simulated time, see
+ * {@link cws.core.cloudsim.CloudSimWrapper#setCheckpoint(double, cws.core.cloudsim.CheckpointListener)}.
+ *
+ * Objects are copied through reflection, so every class of the simulator reachable from the root needs a no-arg
+ * constructor, which may be private (by convention the ones marked "For snapshots"). Objects which depend on the world
+ * outside of the simulation cannot be copied: taking a snapshot of a simulation which holds open readers, e.g. of a
+ * streamed workload, fails. Output streams, such as the simulation log, are replaced with the stream given to the
+ * fork.
+ */
+public class SimulationSnapshot {
+    private static final int FILE_MAGIC = 0x43575346;
+
+    /**
+     * Classes whose non-final static fields are part of the simulation's state. Taking a snapshot fails if another
+     * class of an object reachable from the root has such fields.
+     */
+    private static final Class<?>[] STATEFUL_CLASSES = { CloudSim.class, VM.class, Job.class, WorkflowEngine.class,
+            WorkflowEngineCombinedRPSched.class, WorkflowEngineSeparateRPSched.class, GlobalStorageTransfer.class,
+            Transfer.class, Link.class, Port.class, StaticAlgorithm.class, VMFactory.class, NetworkTopology.class };
+
+    private static final Field[] STATIC_FIELDS = findStaticFields();
+
+    /** Simulated time at which the snapshot was taken */
+    private final double time;
+
+    /** The compressed object graph */
+    private final byte[] data;
+
+    private SimulationSnapshot(double time, byte[] data) {
+        this.time = time;
+        this.data = data;
+    }
+
+    /**
+     * Takes a snapshot of the current simulation and of all the objects reachable from the given root.
+     *
+     * @param time The simulated time the snapshot is taken at, e.g. the checkpoint time. CloudSim's clock is already
+     *            at the next instant with events when a checkpoint is reached.
+     * @throws IllegalStateException If the simulation holds objects which cannot be copied.
+     */
+    public static SimulationSnapshot take(Object root, double time) {
+        Object[] statics = new Object[STATIC_FIELDS.length];
+        String[] names = new String[STATIC_FIELDS.length];
+        try {
+            for (int i = 0; i < STATIC_FIELDS.length; i++) {
+                names[i] = nameOf(STATIC_FIELDS[i]);
+                statics[i] = STATIC_FIELDS[i].get(null);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(bytes)));
+            new ObjectGraphWriter(out, Arrays.asList(STATEFUL_CLASSES)).write(new Object[] { names, statics, root });
+            out.close();
+        } catch (IOException e) {
+            // Cannot happen, writing to memory
+            throw new IllegalStateException(e);
+        }
+        return new SimulationSnapshot(time, bytes.toByteArray());
+    }
+
+    /**
+     * Restores the static state of the simulator from this snapshot and returns a copy of its root. The simulation of
+     * the copy continues when CloudSim is started, which ends any simulation running in this JVM.
+     *
+     * @param log The stream which replaces the output streams of the snapshot.
+     */
+    public Object fork(OutputStream log) {
+        Object[] graph;
+        try {
+            useScratchEntityList();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+                    new ByteArrayInputStream(data))));
+            graph = (Object[]) new ObjectGraphReader(in, log).read();
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupted simulation snapshot", e);
+        }
+        String[] names = (String[]) graph[0];
+        Object[] statics = (Object[]) graph[1];
+        if (names.length != STATIC_FIELDS.length) {
+            throw new IllegalStateException("Snapshot of a different simulator version");
+        }
+        try {
+            for (int i = 0; i < names.length; i++) {
+                Field field = STATIC_FIELDS[i];
+                if (!names[i].equals(nameOf(field))) {
+                    throw new IllegalStateException("Snapshot of a different simulator version, " + names[i]
+                            + " found instead of " + nameOf(field));
+                }
+                field.set(null, statics[i]);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return graph[2];
+    }
+
+    /**
+     * CloudSim registers every entity when it is created, so the copies of the entities are registered in an empty list
+     * which the restored static state then replaces.
+     */
+    private static void useScratchEntityList() {
+        try {
+            for (Field field : STATIC_FIELDS) {
+                if (field.getDeclaringClass() != CloudSim.class) {
+                    continue;
+                } else if (field.getName().equals("running")) {
+                    field.setBoolean(null, false);
+                } else if (field.getName().equals("entities")) {
+                    field.set(null, new ArrayList<SimEntity>());
+                } else if (field.getName().equals("entitiesByName")) {
+                    field.set(null, new LinkedHashMap<String, SimEntity>());
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return Simulated time at which the snapshot was taken.
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return Size of the compressed snapshot in bytes.
+     */
+    public int getSize() {
+        return data.length;
+    }
+
+    public void write(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(FILE_MAGIC);
+            out.writeDouble(time);
+            out.writeInt(data.length);
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    public static SimulationSnapshot read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException(file + " is not a simulation snapshot");
+            }
+            double time = in.readDouble();
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return new SimulationSnapshot(time, data);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private static Field[] findStaticFields() {
+        List<Field> fields = new ArrayList<Field>();
+        for (Class<?> c : STATEFUL_CLASSES) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)) {
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+        }
+        return fields.toArray(new Field[fields.size()]);
+    }
+
+    private static String nameOf(Field field) {
+        return field.getDeclaringClass().getName() + "." + field.getName();
+    }
+}
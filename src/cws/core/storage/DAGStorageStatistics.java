@@ -0,0 +1,85 @@
+package cws.core.storage;
+
+/**
+ * Storage statistics of one DAG, updated by {@link StorageManagerStatistics} as its jobs' transfers are requested and
+ * completed.
+ */
+public class DAGStorageStatistics {
+    /** Bytes of the input files the jobs requested */
+    private long bytesToRead;
+    /** Bytes of the output files the jobs requested to write */
+    private long bytesToWrite;
+    /** Bytes actually read from the storage */
+    private long bytesRead;
+    /** Bytes of the requested input files found in the VMs' caches, which were not read */
+    private long cacheSavedBytes;
+    private int filesToRead;
+    private int filesToWrite;
+    private int filesRead;
+    /** Sum of the durations of the DAG's reads and writes */
+    private double transferTime;
+
+    void addBytesToRead(long bytes) {
+        bytesToRead += bytes;
+    }
+
+    void addBytesToWrite(long bytes) {
+        bytesToWrite += bytes;
+    }
+
+    void addBytesRead(long bytes) {
+        bytesRead += bytes;
+    }
+
+    void addCacheSavedBytes(long bytes) {
+        cacheSavedBytes += bytes;
+    }
+
+    void addFilesToRead(int files) {
+        filesToRead += files;
+    }
+
+    void addFilesToWrite(int files) {
+        filesToWrite += files;
+    }
+
+    void addFilesRead(int files) {
+        filesRead += files;
+    }
+
+    void addTransferTime(double time) {
+        transferTime += time;
+    }
+
+    public long getBytesToRead() {
+        return bytesToRead;
+    }
+
+    public long getBytesToWrite() {
+        return bytesToWrite;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getCacheSavedBytes() {
+        return cacheSavedBytes;
+    }
+
+    public int getFilesToRead() {
+        return filesToRead;
+    }
+
+    public int getFilesToWrite() {
+        return filesToWrite;
+    }
+
+    public int getFilesRead() {
+        return filesRead;
+    }
+
+    public double getTransferTime() {
+        return transferTime;
+    }
+}
@@ -5,10 +5,12 @@ import org.cloudbus.cloudsim.core.SimEvent;
 
 import cws.core.jobs.Job;
 import cws.core.storage.cache.VMCacheManager;
+import cws.core.VM;
 import cws.core.WorkflowEvent;
 import cws.core.cloudsim.CWSSimEntity;
 import cws.core.cloudsim.CWSSimEvent;
 import cws.core.cloudsim.CloudSimWrapper;
+import cws.core.core.VMType;
 import cws.core.dag.DAGFile;
 import cws.core.dag.Task;
 import cws.core.exception.UnknownWorkflowEventException;
@@ -18,12 +20,18 @@ import cws.core.exception.UnknownWorkflowEventException;
  * 
  * The basic idea behind every StorageManager is that receives STORAGE_BEFORE_TASK_START and
  * STORAGE_AFTER_TASK_COMPLETED events with a Job specified. After that it transfers all the files and eventually sends
- * back STORAGE_ALL_BEFORE_TRANSFERS_COMPLETED and STORAGE_ALL_AFTER_TRANSFERS_COMPLETED events.
+ * back STORAGE_ALL_BEFORE_TRANSFERS_COMPLETED and STORAGE_ALL_AFTER_TRANSFERS_COMPLETED events. If it wants them (see
+ * {@link #wantsPlacementEvents()}), VMs also tell it when they are given a job (STORAGE_JOB_PLACED) and when they are
+ * terminated (STORAGE_VM_TERMINATED).
  */
 public abstract class StorageManager extends CWSSimEntity implements WorkflowEvent {
     /** Statistics associated with this storage manager instance */
     protected StorageManagerStatistics statistics = new StorageManagerStatistics();
 
+    /** For snapshots */
+    protected StorageManager() {
+    }
+
     /**
      * Creates new object so that every StorageManager implementation will have the same name.
      */
@@ -37,12 +45,46 @@ public abstract class StorageManager extends CWSSimEntity implements WorkflowEve
      */
     public abstract double getTransferTimeEstimation(Task task);
 
+    /**
+     * Estimates the sum of all transfers for the given task on a VM of the given type. By default the type does not
+     * matter, managers whose transfers depend on the VMs' network override it.
+     */
+    public double getTransferTimeEstimation(Task task, VMType vmType) {
+        return getTransferTimeEstimation(task);
+    }
+
     /**
      * Called just before a VM starts a job. You should get here job's input files to the VM.
      * @param job - the job that owns the task that is going to start
      */
     protected abstract void onBeforeTaskStart(Job job);
 
+    /**
+     * Called when a job is submitted to a VM, before the VM starts it, so that a manager can prepare the job's input
+     * files while the job is queued. Does nothing by default.
+     * @param job - the job which has been submitted, its VM is set
+     */
+    protected void onJobPlaced(Job job) {
+        // do nothing
+    }
+
+    /**
+     * @return Whether VMs send STORAGE_JOB_PLACED and STORAGE_VM_TERMINATED to the manager. False by default, which
+     *         saves an event per job to managers which ignore them.
+     */
+    public boolean wantsPlacementEvents() {
+        return false;
+    }
+
+    /**
+     * Called when a VM has been terminated, so that a manager which keeps files on the VMs can handle their loss. Does
+     * nothing by default.
+     * @param vm - the VM which has been terminated, its jobs have failed
+     */
+    protected void onVMTerminated(VM vm) {
+        // do nothing
+    }
+
     /**
      * Called just after a job has finished. You should here transfer out job's output files somewhere or register their
      * names (it's up to the particular implementation).
@@ -62,24 +104,26 @@ public abstract class StorageManager extends CWSSimEntity implements WorkflowEve
     @Override
     public void processEvent(CWSSimEvent ev) {
         switch (ev.getTag()) {
+        case WorkflowEvent.STORAGE_JOB_PLACED:
+            onJobPlaced((Job) ev.getData());
+            break;
+        case WorkflowEvent.STORAGE_VM_TERMINATED:
+            onVMTerminated((VM) ev.getData());
+            break;
         case WorkflowEvent.STORAGE_BEFORE_TASK_START:
             Job job = (Job) ev.getData();
             for (DAGFile file : job.getTask().getInputFiles()) {
-                statistics.addBytesToRead(file.getSize());
-                statistics.addBytesToRead(job.getTask(), file.getSize());
+                statistics.addBytesToRead(job, file.getSize());
             }
-            statistics.addTotalFilesToRead(job.getTask().getInputFiles().size());
-            statistics.addTotalFilesToRead(job.getTask(), job.getTask().getInputFiles().size());
+            statistics.addTotalFilesToRead(job, job.getTask().getInputFiles().size());
             onBeforeTaskStart(job);
             break;
         case WorkflowEvent.STORAGE_AFTER_TASK_COMPLETED:
             Job jobAfter = (Job) ev.getData();
             for (DAGFile file : jobAfter.getTask().getOutputFiles()) {
-                statistics.addBytesToWrite(file.getSize());
-                statistics.addBytesToWrite(jobAfter.getTask(), file.getSize());
+                statistics.addBytesToWrite(jobAfter, file.getSize());
             }
-            statistics.addTotalFilesToWrite(jobAfter.getTask().getOutputFiles().size());
-            statistics.addTotalFilesToWrite(jobAfter.getTask(), jobAfter.getTask().getOutputFiles().size());
+            statistics.addTotalFilesToWrite(jobAfter, jobAfter.getTask().getOutputFiles().size());
             onAfterTaskCompleted(jobAfter);
             break;
         default:
@@ -135,4 +179,11 @@ public abstract class StorageManager extends CWSSimEntity implements WorkflowEve
      * @param task - the task to estimate transfers for
      */
     public abstract double getTransferTimeEstimationWithDegradation(Task task);
+
+    /**
+     * @see #getTransferTimeEstimation(Task, VMType)
+     */
+    public double getTransferTimeEstimationWithDegradation(Task task, VMType vmType) {
+        return getTransferTimeEstimationWithDegradation(task);
+    }
 }
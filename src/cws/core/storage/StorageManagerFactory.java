@@ -9,6 +9,7 @@ import cws.core.storage.cache.UnlimitedCacheManager;
 import cws.core.storage.cache.VMCacheManager;
 import cws.core.storage.cache.VoidCacheManager;
 import cws.core.storage.global.GlobalStorageManager;
+import cws.core.transfer.VM2VMTransferManager;
 
 public class StorageManagerFactory {
 
@@ -25,6 +26,8 @@ public class StorageManagerFactory {
         StorageManager storageManager;
         if (simulationParams.getStorageType() == StorageType.GLOBAL) {
             storageManager = new GlobalStorageManager(simulationParams.getStorageParams(), cacheManager, cloudsim);
+        } else if (simulationParams.getStorageType() == StorageType.VM2VM) {
+            storageManager = new VM2VMTransferManager(simulationParams.getStorageParams(), cacheManager, cloudsim);
         } else {
             storageManager = new VoidStorageManager(cloudsim);
         }
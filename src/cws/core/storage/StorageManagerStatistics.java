@@ -1,162 +1,157 @@
 package cws.core.storage;
 
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 
-import cws.core.dag.DAG;
 import cws.core.dag.DAGJob;
-import cws.core.dag.Task;
+import cws.core.jobs.Job;
 
 /**
- * Various statistics associated with storage managers.
+ * Various statistics associated with storage managers, in total and per DAG. Both are updated as transfers are
+ * requested and completed, so every query is O(1).
  * @see {@link StorageManager}
  */
 public class StorageManagerStatistics {
     /** Total bytes requested to read */
     private long totalBytesToRead;
-    private HashMap<Task, Long> taskTotalBytesToRead = new HashMap<Task, Long>();
     /** Total bytes requested to write */
     private long totalBytesToWrite;
-    private HashMap<Task, Long> taskTotalBytesToWrite = new HashMap<Task, Long>();
     /** Actual bytes read (may be lower than totalFilesToRead because of cache) */
     private long actualBytesRead;
-    private HashMap<Task, Long> taskActualBytesRead = new HashMap<Task, Long>();
+    /** Bytes requested to read which were found in the caches */
+    private long cacheSavedBytes;
     /** Total number of files requested to read */
     private int totalFilesToRead;
-    private HashMap<Task, Integer> taskTotalFilesToRead = new HashMap<Task, Integer>();
     /** Total number of files requested to write */
     private int totalFilesToWrite;
-    private HashMap<Task, Integer> taskTotalFilesToWrite = new HashMap<Task, Integer>();
     /** Actual number of files read (may be lower than totalFilesToRead because of cache) */
     private int actualFilesRead;
-    private HashMap<Task, Integer> taskActualFilesRead = new HashMap<Task, Integer>();
+    /** Sum of the durations of all the reads and writes */
+    private double totalTransferTime;
+
+    /** Statistics of the DAGs, until they are removed when the DAG finishes */
+    private IdentityHashMap<DAGJob, DAGStorageStatistics> dagStatistics =
+            new IdentityHashMap<DAGJob, DAGStorageStatistics>();
+
+    /**
+     * @return The statistics of the given DAG so far, empty if it has not requested any transfer.
+     */
+    public DAGStorageStatistics getDAGStatistics(DAGJob dagJob) {
+        DAGStorageStatistics statistics = dagStatistics.get(dagJob);
+        return statistics == null ? new DAGStorageStatistics() : statistics;
+    }
+
+    /**
+     * Stops keeping the statistics of the given DAG, e.g. once it finished and its results were recorded.
+     *
+     * @return The statistics of the DAG, empty if it has not requested any transfer.
+     */
+    public DAGStorageStatistics removeDAGStatistics(DAGJob dagJob) {
+        DAGStorageStatistics statistics = dagStatistics.remove(dagJob);
+        return statistics == null ? new DAGStorageStatistics() : statistics;
+    }
+
+    private DAGStorageStatistics statisticsOf(Job job) {
+        DAGStorageStatistics statistics = dagStatistics.get(job.getDAGJob());
+        if (statistics == null) {
+            statistics = new DAGStorageStatistics();
+            dagStatistics.put(job.getDAGJob(), statistics);
+        }
+        return statistics;
+    }
 
     public long getTotalBytesToRead() {
         return totalBytesToRead;
     }
-    
+
     public long getTotalBytesToRead(DAGJob dagJob){
-    	DAG dag = dagJob.getDAG();
-    	for (String tid : dag.getTasks()){
-    		Task t = dag.getTaskById(tid);
-    		totalBytesToRead += taskTotalBytesToRead.get(t);
-    	}
-    	return totalBytesToRead;
-    }
-    
-    public void addBytesToRead(long num) {
-        this.totalBytesToRead += num;
-    }
-    
-    public void addBytesToRead(Task task, long num){
-    	this.taskTotalBytesToRead.put(task, num);
-    }
-    
+    	return getDAGStatistics(dagJob).getBytesToRead();
+    }
+
+    public void addBytesToRead(Job job, long num){
+    	totalBytesToRead += num;
+    	statisticsOf(job).addBytesToRead(num);
+    }
+
     public long getTotalBytesToWrite() {
         return totalBytesToWrite;
     }
 
     public long getTotalBytesToWrite(DAGJob dagJob){
-    	DAG dag = dagJob.getDAG();
-    	for (String tid : dag.getTasks()){
-    		Task t = dag.getTaskById(tid);
-    		totalBytesToWrite += taskTotalBytesToWrite.get(t);
-    	}
-    	return totalBytesToWrite;
-    }
-    
-    public void addBytesToWrite(long num) {
-        this.totalBytesToWrite += num;
-    }
-    
-    public void addBytesToWrite(Task task, long num){
-    	this.taskTotalBytesToWrite.put(task, num);
-    }
-    
+    	return getDAGStatistics(dagJob).getBytesToWrite();
+    }
+
+    public void addBytesToWrite(Job job, long num){
+    	totalBytesToWrite += num;
+    	statisticsOf(job).addBytesToWrite(num);
+    }
+
     public long getActualBytesRead() {
         return actualBytesRead;
     }
-    
+
     public long getActualBytesRead(DAGJob dagJob){
-    	DAG dag = dagJob.getDAG();
-    	for (String tid : dag.getTasks()){
-    		Task t = dag.getTaskById(tid);
-    		if (taskActualBytesRead.containsKey(t)){
-    			actualBytesRead += taskActualBytesRead.get(t);
-    		}
-    	}
-    	return actualBytesRead;
-    }
-    
-    public void addActualBytesRead(long num) {
-        this.actualBytesRead += num;
-    }
-    
-    public void addActualBytesRead(Task task, long num) {
-        this.taskActualBytesRead.put(task, num);
-    } 
-    
+    	return getDAGStatistics(dagJob).getBytesRead();
+    }
+
+    public void addActualBytesRead(Job job, long num) {
+    	actualBytesRead += num;
+    	statisticsOf(job).addBytesRead(num);
+    }
+
+    public long getCacheSavedBytes() {
+        return cacheSavedBytes;
+    }
+
+    public void addCacheSavedBytes(Job job, long num) {
+        cacheSavedBytes += num;
+        statisticsOf(job).addCacheSavedBytes(num);
+    }
+
     public int getTotalFilesToRead() {
         return totalFilesToRead;
     }
 
     public long getTotalFilesToRead(DAGJob dagJob){
-    	DAG dag = dagJob.getDAG();
-    	for (String tid : dag.getTasks()){
-    		Task t = dag.getTaskById(tid);
-    		totalFilesToRead += taskTotalFilesToRead.get(t);
-    	}
-    	return totalFilesToRead;
-    }
-    
-    public void addTotalFilesToRead(int totalFilesToRead) {
-        this.totalFilesToRead += totalFilesToRead;
+    	return getDAGStatistics(dagJob).getFilesToRead();
     }
 
-    public void addTotalFilesToRead(Task task, int totalFilesToRead){
-    	this.taskTotalFilesToRead.put(task, totalFilesToRead);
+    public void addTotalFilesToRead(Job job, int totalFilesToRead){
+    	this.totalFilesToRead += totalFilesToRead;
+    	statisticsOf(job).addFilesToRead(totalFilesToRead);
     }
-    
+
     public int getTotalFilesToWrite() {
         return totalFilesToWrite;
     }
 
     public long getTotalFilesToWrite(DAGJob dagJob){
-    	DAG dag = dagJob.getDAG();
-    	for (String tid : dag.getTasks()){
-    		Task t = dag.getTaskById(tid);
-    		totalFilesToWrite += taskTotalFilesToWrite.get(t);
-    	}
-    	return totalFilesToWrite;
-    }
-    
-    public void addTotalFilesToWrite(int totalFilesToWrite) {
-        this.totalFilesToWrite += totalFilesToWrite;
+    	return getDAGStatistics(dagJob).getFilesToWrite();
     }
 
-    public void addTotalFilesToWrite(Task task, int totalFilesToWrite){
-    	this.taskTotalFilesToWrite.put(task, totalFilesToWrite);
+    public void addTotalFilesToWrite(Job job, int totalFilesToWrite){
+    	this.totalFilesToWrite += totalFilesToWrite;
+    	statisticsOf(job).addFilesToWrite(totalFilesToWrite);
     }
-    
+
     public int getActualFilesRead() {
         return actualFilesRead;
     }
 
     public int getActualFilesRead(DAGJob dagJob){
-    	DAG dag = dagJob.getDAG();
-    	for (String tid : dag.getTasks()){
-    		Task t = dag.getTaskById(tid);
-    		if(taskActualFilesRead.containsKey(t)){
-    			actualFilesRead += taskActualFilesRead.get(t);
-    		}
-    	}
-    	return actualFilesRead;
-    }
-    
-    public void addActualFilesRead(int actualFilesRead) {
-        this.actualFilesRead += actualFilesRead;
-    }
-    
-    public void addActualFilesRead(Task task, int actualFilesRead) {
-        this.taskActualFilesRead.put(task, actualFilesRead);
+    	return getDAGStatistics(dagJob).getFilesRead();
+    }
+
+    public void addActualFilesRead(Job job, int actualFilesRead) {
+    	this.actualFilesRead += actualFilesRead;
+    	statisticsOf(job).addFilesRead(actualFilesRead);
+    }
+
+    public double getTotalTransferTime() {
+        return totalTransferTime;
+    }
+
+    public void addTransferTime(Job job, double time) {
+        totalTransferTime += time;
+        statisticsOf(job).addTransferTime(time);
     }
 }
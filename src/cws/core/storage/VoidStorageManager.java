@@ -14,6 +14,10 @@ public class VoidStorageManager extends StorageManager {
     /** for generating unique transfer id */
     private int transferId = 0;
 
+    /** For snapshots */
+    private VoidStorageManager() {
+    }
+
     public VoidStorageManager(CloudSimWrapper cloudsim) {
         super(cloudsim);
     }
@@ -21,12 +25,10 @@ public class VoidStorageManager extends StorageManager {
     @Override
     public void onBeforeTaskStart(Job job) {
         for (DAGFile file : job.getTask().getInputFiles()) {
-            statistics.addActualBytesRead(file.getSize());
-            statistics.addActualBytesRead(job.getTask(), file.getSize());
+            statistics.addActualBytesRead(job, file.getSize());
             logInstantTransfer(job, file, "read");
         }
-        statistics.addActualFilesRead(job.getTask().getInputFiles().size());
-        statistics.addActualFilesRead(job.getTask(), job.getTask().getInputFiles().size());
+        statistics.addActualFilesRead(job, job.getTask().getInputFiles().size());
         notifyThatBeforeTransfersCompleted(job);
     }
 
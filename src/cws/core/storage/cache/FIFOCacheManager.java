@@ -15,6 +15,10 @@ import cws.core.jobs.Job;
  * Cache manager which uses FIFO cache strategy for all files.
  */
 public class FIFOCacheManager extends VMCacheManager {
+    /** For snapshots */
+    private FIFOCacheManager() {
+    }
+
     public FIFOCacheManager(CloudSimWrapper cloudsim) {
         super(cloudsim);
     }
@@ -24,13 +28,17 @@ public class FIFOCacheManager extends VMCacheManager {
     /**
      * Since we use per-VM cache this inner class is convenient.
      */
-    private class VMCache {
+    private static class VMCache {
         private long size = 0;
         private long remainingSize = 0;
         // didn't use LinkedHashSet because it doesn't have push/poll methods
         private LinkedList<DAGFile> filesList = new LinkedList<DAGFile>();
         private Set<DAGFile> filesSet = new HashSet<DAGFile>();
 
+        /** For snapshots */
+        private VMCache() {
+        }
+
         public VMCache(VM vm) {
             this.size = vm.getVmType().getCacheSize();
             this.remainingSize = this.size;
@@ -15,6 +15,10 @@ import cws.core.jobs.Job;
  * Cache manager which uses Unlimited cache strategy for all files.
  */
 public class UnlimitedCacheManager extends VMCacheManager {
+    /** For snapshots */
+    private UnlimitedCacheManager() {
+    }
+
     public UnlimitedCacheManager(CloudSimWrapper cloudsim) {
         super(cloudsim);
     }
@@ -24,11 +28,15 @@ public class UnlimitedCacheManager extends VMCacheManager {
     /**
      * Since we use per-VM cache this inner class is convenient.
      */
-    private class VMCache {
+    private static class VMCache {
         // didn't use LinkedHashSet because it doesn't have push/poll methods
         private LinkedList<DAGFile> filesList = new LinkedList<DAGFile>();
         private Set<DAGFile> filesSet = new HashSet<DAGFile>();
 
+        /** For snapshots */
+        private VMCache() {
+        }
+
         public VMCache(VM vm) {
            
         }
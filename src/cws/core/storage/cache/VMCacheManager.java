@@ -18,6 +18,10 @@ import cws.core.jobs.Job;
  * @see {@link cws.core.core.VMType#getCacheSize()}
  */
 public abstract class VMCacheManager extends CWSSimEntity {
+    /** For snapshots */
+    protected VMCacheManager() {
+    }
+
     public VMCacheManager(CloudSimWrapper cloudsim) {
         super("VMCacheManager", cloudsim);
     }
@@ -12,6 +12,10 @@ import cws.core.jobs.Job;
  * @see {@link VMCacheManager}
  */
 public class VoidCacheManager extends VMCacheManager {
+    /** For snapshots */
+    private VoidCacheManager() {
+    }
+
     public VoidCacheManager(CloudSimWrapper cloudsim) {
         super(cloudsim);
     }
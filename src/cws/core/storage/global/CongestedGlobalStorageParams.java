@@ -14,6 +14,10 @@ public class CongestedGlobalStorageParams {
     /** The number of active writes */
     private int numWrites;
 
+    /** For snapshots */
+    private CongestedGlobalStorageParams() {
+    }
+
     public CongestedGlobalStorageParams(GlobalStorageParams params) {
         this.readSpeed = params.getReadSpeed();
         this.writeSpeed = params.getWriteSpeed();
@@ -1,16 +1,20 @@
 package cws.core.storage.global;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
+import cws.core.RandomStream;
+import cws.core.RecordPool;
 import cws.core.WorkflowEvent;
 import cws.core.cloudsim.CWSSimEvent;
 import cws.core.cloudsim.CloudSimWrapper;
 import cws.core.dag.DAGFile;
 import cws.core.dag.Task;
+import cws.core.jfr.GlobalStorageTransferEvent;
 import cws.core.jobs.Job;
 import cws.core.storage.StorageManager;
 import cws.core.storage.cache.VMCacheManager;
@@ -40,6 +44,22 @@ public class GlobalStorageManager extends StorageManager {
     /** Cache manager used by this storage */
     private VMCacheManager cacheManager;
 
+    /** Random stream used to sample the storage performance variation */
+    private RandomStream random;
+
+    /** Finished transfers, reinitialized for the next ones */
+    private RecordPool<GlobalStorageTransfer> transferPool = new RecordPool<GlobalStorageTransfer>();
+
+    /** Emptied lists of the reads and writes maps, reused for the next jobs */
+    private ArrayDeque<List<GlobalStorageTransfer>> freeTransferLists = new ArrayDeque<List<GlobalStorageTransfer>>();
+
+    /** Scratch list of the input files a job has to read, only used during {@link #onBeforeTaskStart(Job)} */
+    private List<DAGFile> notCachedFiles = new ArrayList<DAGFile>();
+
+    /** For snapshots */
+    protected GlobalStorageManager() {
+    }
+
     /**
      * Initializes GlobalStorageManager with the appropriate parameters. Check their documentation for more information.
      */
@@ -48,6 +68,7 @@ public class GlobalStorageManager extends StorageManager {
         this.params = params;
         this.cacheManager = cacheManager;
         this.congestedParams = new CongestedGlobalStorageParams(params);
+        this.random = cloudsim.getRandomStreams().stream("global-storage-performance-variation", getId());
     }
 
     /**
@@ -58,10 +79,21 @@ public class GlobalStorageManager extends StorageManager {
      */
     @Override
     protected void onBeforeTaskStart(Job job) {
-        List<DAGFile> notCachedFiles = new ArrayList<DAGFile>();
-        for (DAGFile file : job.getTask().getInputFiles()) {
+        readFiles(job, job.getTask().getInputFiles());
+    }
+
+    /**
+     * Gets the given input files of the job to its VM, from the VM's cache or the storage, then notifies that the
+     * job's input transfers have completed. Subclasses which get only some of the files from the storage call it with
+     * those.
+     */
+    protected void readFiles(Job job, List<DAGFile> files) {
+        notCachedFiles.clear();
+        for (DAGFile file : files) {
             if (!cacheManager.getFileFromCache(file, job)) {
                 notCachedFiles.add(file);
+            } else {
+                statistics.addCacheSavedBytes(job, file.getSize());
             }
         }
         if (notCachedFiles.size() == 0) {
@@ -81,7 +113,14 @@ public class GlobalStorageManager extends StorageManager {
      */
     @Override
     protected void onAfterTaskCompleted(Job job) {
-        List<DAGFile> files = job.getTask().getOutputFiles();
+        writeFiles(job, job.getTask().getOutputFiles());
+    }
+
+    /**
+     * Writes the given output files of the job to the storage, then notifies that the job's output transfers have
+     * completed.
+     */
+    protected void writeFiles(Job job, List<DAGFile> files) {
         if (files.size() == 0) {
             notifyThatAfterTransfersCompleted(job);
         } else {
@@ -101,10 +140,11 @@ public class GlobalStorageManager extends StorageManager {
      */
     private void startTransfers(List<DAGFile> files, Job job, Map<Job, List<GlobalStorageTransfer>> transfers,
             int progressEvent, String transferType) {
-        List<GlobalStorageTransfer> jobTransfers = new ArrayList<GlobalStorageTransfer>();
+        List<GlobalStorageTransfer> jobTransfers = freeTransferLists.isEmpty() ? new ArrayList<GlobalStorageTransfer>()
+                : freeTransferLists.pop();
         transfers.put(job, jobTransfers);
         for (DAGFile file : files) {
-            GlobalStorageTransfer write = new GlobalStorageTransfer(job, file);
+            GlobalStorageTransfer write = GlobalStorageTransfer.obtain(transferPool, job, file);
             jobTransfers.add(write);
             String logMsg = String.format("Global %s transfer %s started: %s, size: %s, vm: %s, job_id: %d",
                     transferType, write.getId(), write.getFile().getName(), write.getFile().getSize(), job.getVM()
@@ -124,6 +164,8 @@ public class GlobalStorageManager extends StorageManager {
         cacheManager.putFileToCache(write.getFile(), write.getJob());
         congestedParams.removeWrites(1);
         updateSpeedCongestion();
+        statistics.addTransferTime(write.getJob(), write.getDuration());
+        transferPool.release(write);
     }
 
     /**
@@ -136,10 +178,10 @@ public class GlobalStorageManager extends StorageManager {
         cacheManager.putFileToCache(read.getFile(), read.getJob());
         congestedParams.removeReads(1);
         updateSpeedCongestion();
-        statistics.addActualBytesRead(read.getBytesTransferred());
-        statistics.addActualBytesRead(read.getJob().getTask(), read.getBytesTransferred());
-        statistics.addActualFilesRead(1);
-        statistics.addActualFilesRead(read.getJob().getTask(), 1);
+        statistics.addActualBytesRead(read.getJob(), read.getBytesTransferred());
+        statistics.addActualFilesRead(read.getJob(), 1);
+        statistics.addTransferTime(read.getJob(), read.getDuration());
+        transferPool.release(read);
     }
 
     /**
@@ -158,9 +200,16 @@ public class GlobalStorageManager extends StorageManager {
             getCloudsim().log(logMsg);
         }
         List<GlobalStorageTransfer> jobTransfers = transfers.get(transfer.getJob());
-        jobTransfers.remove(transfer);
+        // By identity, the transfers of a job are equal to each other and the finished one is reused
+        for (Iterator<GlobalStorageTransfer> it = jobTransfers.iterator(); it.hasNext();) {
+            if (it.next() == transfer) {
+                it.remove();
+                break;
+            }
+        }
         if (jobTransfers.isEmpty()) {
             transfers.remove(transfer.getJob());
+            freeTransferLists.push(jobTransfers);
             return true;
         } else {
             return false;
@@ -215,7 +264,7 @@ public class GlobalStorageManager extends StorageManager {
         if (write.isCompleted() || write.getJob().getVM().isTerminated()) {
             getCloudsim().sendNow(getId(), getId(), WorkflowEvent.GLOBAL_STORAGE_WRITE_FINISHED, write);
         } else {
-            progressTransfer(write, WorkflowEvent.GLOBAL_STORAGE_WRITE_PROGRESS, congestedParams.getWriteSpeed());
+            progressTransfer(write, WorkflowEvent.GLOBAL_STORAGE_WRITE_PROGRESS, congestedParams.getWriteSpeed(), "write");
         }
     }
 
@@ -224,7 +273,7 @@ public class GlobalStorageManager extends StorageManager {
         if (read.isCompleted() || read.getJob().getVM().isTerminated()) {
             getCloudsim().sendNow(getId(), getId(), WorkflowEvent.GLOBAL_STORAGE_READ_FINISHED, read);
         } else {
-            progressTransfer(read, WorkflowEvent.GLOBAL_STORAGE_READ_PROGRESS, congestedParams.getReadSpeed());
+            progressTransfer(read, WorkflowEvent.GLOBAL_STORAGE_READ_PROGRESS, congestedParams.getReadSpeed(), "read");
         }
     }
 
@@ -235,8 +284,12 @@ public class GlobalStorageManager extends StorageManager {
      * @param transfer the transfer to progress
      * @param progressEvent event sent after this progress
      * @param speed transfer speed
+     * @param transferType - the type of this transfer, e.g. "write".
      */
-    private void progressTransfer(GlobalStorageTransfer transfer, int progressEvent, double speed) {
+    private void progressTransfer(GlobalStorageTransfer transfer, int progressEvent, double speed,
+            String transferType) {
+        GlobalStorageTransferEvent event = new GlobalStorageTransferEvent();
+        event.begin();
         double bytesTransferred = speed * params.getChunkTransferTime();
         double time = 0.0;
         // There are less bytes to transfer that we want
@@ -249,6 +302,22 @@ public class GlobalStorageManager extends StorageManager {
         transfer.addDuration(time);
         transfer.addBytesTransferred(bytesTransferred);
         getCloudsim().sendToMyself(this, time, progressEvent, transfer);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.simTime = getCloudsim().clock();
+            event.storageId = getId();
+            event.transferId = transfer.getId();
+            event.vmId = transfer.getJob().getVM().getId();
+            event.direction = transferType;
+            event.fileSize = transfer.getFile().getSize();
+            event.chunkBytes = (long) bytesTransferred;
+            event.remainingBytes = (long) transfer.getRemainingBytesToTransfer();
+            event.chunkDuration = time;
+            event.concurrentTransfers = "read".equals(transferType) ? congestedParams.getNumReads()
+                    : congestedParams.getNumWrites();
+            event.commit();
+        }
     }
 
     /**
@@ -338,7 +407,6 @@ public class GlobalStorageManager extends StorageManager {
 		/*Jackson experienced up to 30% variability.
 		 * So, we will use 15% in average, 10% stddev
 		 */
-		Random random = new Random();
 		double performanceLoss = (random.nextGaussian()*0.10) + 0.15;
 		if(performanceLoss > 0.30) performanceLoss = 0.30;
 		else if (performanceLoss < 0.0) performanceLoss = 0.0;
@@ -1,12 +1,14 @@
 package cws.core.storage.global;
 
+import cws.core.RecordPool;
 import cws.core.dag.DAGFile;
 import cws.core.jobs.Job;
 
 /**
- * Describes global storage transfer. This can be either read or write.
+ * Describes global storage transfer. This can be either read or write. Transfers are pooled by the
+ * {@link GlobalStorageManager}, see {@link #obtain(RecordPool, Job, DAGFile)}.
  */
-public class GlobalStorageTransfer {
+public class GlobalStorageTransfer extends RecordPool.Record {
 
     /** The job this transfer transfers file from/to */
     private Job job;
@@ -34,25 +36,57 @@ public class GlobalStorageTransfer {
      */
     private boolean isTerminated;
 
+    /** For snapshots */
+    private GlobalStorageTransfer() {
+    }
+
+    /**
+     * Restarts the transfer ids at 0.
+     */
+    public static void resetStaticCounters() {
+        next_id = 0;
+    }
+
     /**
      * @param job - the job this transfer transfers file from/to
      * @param file - the transferred file
      */
     public GlobalStorageTransfer(Job job, DAGFile file) {
+        init(job, file);
+    }
+
+    /**
+     * @return A transfer from the pool reinitialized for the given job and file, or a new one if the pool is empty.
+     */
+    public static GlobalStorageTransfer obtain(RecordPool<GlobalStorageTransfer> pool, Job job, DAGFile file) {
+        GlobalStorageTransfer transfer = pool.acquire();
+        if (transfer == null) {
+            return new GlobalStorageTransfer(job, file);
+        }
+        transfer.init(job, file);
+        return transfer;
+    }
+
+    private void init(Job job, DAGFile file) {
         this.id = next_id++;
 
         this.job = job;
         this.file = file;
+        this.bytesTransferred = 0;
+        this.duration = 0;
+        this.isTerminated = false;
     }
 
     /**
      * @return is the transfer completed? I.e. all bytes are transferred?
      */
     public boolean isCompleted() {
+        checkLive();
         return bytesTransferred >= file.getSize();
     }
 
     public double getRemainingBytesToTransfer() {
+        checkLive();
         double bytes = file.getSize() - bytesTransferred;
         if (bytes < 0)
             return 0;
@@ -71,26 +105,32 @@ public class GlobalStorageTransfer {
     }
 
     public Job getJob() {
+        checkLive();
         return job;
     }
 
     public DAGFile getFile() {
+        checkLive();
         return file;
     }
 
     public double getDuration() {
+        checkLive();
         return duration;
     }
 
     public void addBytesTransferred(double amountBytes) {
+        checkLive();
         bytesTransferred += amountBytes;
     }
 
     public long getBytesTransferred() {
+        checkLive();
         return (long) bytesTransferred;
     }
 
     public void addDuration(double amount) {
+        checkLive();
         duration += amount;
     }
 
@@ -10,6 +10,10 @@ public class DAGFileTransfer extends Transfer {
 	private DAGFile dagFile;
 	private Job job;
 
+	/** For snapshots */
+	private DAGFileTransfer() {
+	}
+
 	public DAGFileTransfer(Port source, Port destination, Link link,
 			long dataSize, int owner, CloudSimWrapper cloudsim, boolean isInputTransfer, DAGFile dagFile, Job job) {
 		super(source, destination, link, dataSize, owner, cloudsim, null, null);
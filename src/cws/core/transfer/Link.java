@@ -42,6 +42,17 @@ public class Link {
     /** The MTU (maximum transmission unit) of the link in bytes */
     private int mtu;
 
+    /** For snapshots */
+    private Link() {
+    }
+
+    /**
+     * Restarts the link ids at 0.
+     */
+    public static void resetStaticCounters() {
+        next_id = 0;
+    }
+
     /**
      * @param bandwidth Bandwidth of link in Mbps
      * @param rtt Round-trip latency in ms
@@ -0,0 +1,279 @@
+package cws.core.transfer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import cws.core.VM;
+import cws.core.exception.IllegalCWSArgumentException;
+
+/**
+ * The network connecting the VMs, over which {@link TransferManager} simulates transfers between them.
+ *
+ * Every VM has a network interface with the bandwidth of its VM type, see {@link VM#getInputPort()} and
+ * {@link VM#getOutputPort()}. VMs are placed on racks and racks are grouped into zones. VMs on the same rack are
+ * connected by the rack's switch, which is non-blocking. Every rack has an uplink and a downlink to its zone, and every
+ * zone an uplink and a downlink to the core, a single link which carries all the traffic between zones.
+ *
+ * The links are created once, with the topology, and transfers get the links of their path from
+ * {@link #getPath(VM, VM)}, so the transfers crossing a link share its bandwidth and contention emerges from the
+ * placement of the VMs. VMs are placed in the order in which they first take part in a transfer, filling a rack before
+ * the next one. With the default parameters all the VMs are on a single rack, so only their interfaces limit transfers.
+ *
+ * The parameters are read from the CLI by {@link #readCliOptions(CommandLine)}, topologies created afterwards use them.
+ */
+public class NetworkTopology {
+    private static final int DEFAULT_VMS_PER_RACK = 0;
+    private static final int DEFAULT_RACKS_PER_ZONE = 0;
+    private static final double DEFAULT_RACK_BANDWIDTH = 10000.0;
+    private static final double DEFAULT_ZONE_BANDWIDTH = 40000.0;
+    private static final double DEFAULT_CORE_BANDWIDTH = 100000.0;
+    private static final double DEFAULT_RACK_RTT = TransferManager.DEFAULT_RTT;
+    private static final double DEFAULT_ZONE_RTT = 10.0;
+    private static final double DEFAULT_CORE_RTT = 20.0;
+
+    /** Links which do not limit the bandwidth, e.g. non-blocking switches */
+    public static final double UNLIMITED_BANDWIDTH = Double.MAX_VALUE;
+
+    private static int configuredVmsPerRack = DEFAULT_VMS_PER_RACK;
+    private static int configuredRacksPerZone = DEFAULT_RACKS_PER_ZONE;
+    private static double configuredRackBandwidth = DEFAULT_RACK_BANDWIDTH;
+    private static double configuredZoneBandwidth = DEFAULT_ZONE_BANDWIDTH;
+    private static double configuredCoreBandwidth = DEFAULT_CORE_BANDWIDTH;
+    private static double configuredRackRtt = DEFAULT_RACK_RTT;
+    private static double configuredZoneRtt = DEFAULT_ZONE_RTT;
+    private static double configuredCoreRtt = DEFAULT_CORE_RTT;
+
+    private static class Zone {
+        private final Link uplink;
+        private final Link downlink;
+
+        /** For snapshots */
+        private Zone() {
+            this(null, null);
+        }
+
+        Zone(Link uplink, Link downlink) {
+            this.uplink = uplink;
+            this.downlink = downlink;
+        }
+    }
+
+    private static class Rack {
+        private final int index;
+        private final Zone zone;
+        private final Link uplink;
+        private final Link downlink;
+        /** The path between two VMs of this rack, through its switch */
+        private final Link[] localPath;
+        private int vms = 0;
+
+        /** For snapshots */
+        private Rack() {
+            this(0, null, null, null, null);
+        }
+
+        Rack(int index, Zone zone, Link uplink, Link downlink, Link switchLink) {
+            this.index = index;
+            this.zone = zone;
+            this.uplink = uplink;
+            this.downlink = downlink;
+            this.localPath = new Link[] { switchLink };
+        }
+    }
+
+    /** 0 for a single rack */
+    private final int vmsPerRack;
+    /** 0 for a single zone */
+    private final int racksPerZone;
+    private final double rackBandwidth;
+    private final double zoneBandwidth;
+    private final double rackRtt;
+    private final double zoneRtt;
+
+    private final Link core;
+
+    /** The path of transfers within a VM, which do not use the network */
+    private final Link[] loopbackPath = new Link[] { new Link(UNLIMITED_BANDWIDTH, 0.0) };
+
+    private final List<Rack> racks = new ArrayList<Rack>();
+    private final List<Zone> zones = new ArrayList<Zone>();
+    private final Map<VM, Rack> placement = new HashMap<VM, Rack>();
+
+    /** Paths between racks, keyed by the indexes of the source and destination rack */
+    private final Map<Long, Link[]> paths = new HashMap<Long, Link[]>();
+
+    /**
+     * Creates a topology with the parameters read from the CLI, or the defaults.
+     */
+    public NetworkTopology() {
+        this(configuredVmsPerRack, configuredRacksPerZone, configuredRackBandwidth, configuredZoneBandwidth,
+                configuredCoreBandwidth, configuredRackRtt, configuredZoneRtt, configuredCoreRtt);
+    }
+
+    /**
+     * @param vmsPerRack Number of VMs on a rack, 0 for a single rack
+     * @param racksPerZone Number of racks in a zone, 0 for a single zone
+     * @param rackBandwidth Bandwidth of the links between the racks and their zone in Mbps
+     * @param zoneBandwidth Bandwidth of the links between the zones and the core in Mbps
+     * @param coreBandwidth Bandwidth of the core in Mbps
+     * @param rackRtt Round-trip time between VMs on the same rack in ms
+     * @param zoneRtt Round-trip time between VMs on different racks of the same zone in ms
+     * @param coreRtt Round-trip time between VMs in different zones in ms
+     */
+    public NetworkTopology(int vmsPerRack, int racksPerZone, double rackBandwidth, double zoneBandwidth,
+            double coreBandwidth, double rackRtt, double zoneRtt, double coreRtt) {
+        validate(vmsPerRack, racksPerZone, rackBandwidth, zoneBandwidth, coreBandwidth, rackRtt, zoneRtt, coreRtt);
+        this.vmsPerRack = vmsPerRack;
+        this.racksPerZone = racksPerZone;
+        this.rackBandwidth = rackBandwidth;
+        this.zoneBandwidth = zoneBandwidth;
+        this.rackRtt = rackRtt;
+        this.zoneRtt = zoneRtt;
+        // The zone round-trip time is spent on the racks' links, the rest of the core one on the core
+        this.core = new Link(coreBandwidth, coreRtt - zoneRtt);
+    }
+
+    private static void validate(int vmsPerRack, int racksPerZone, double rackBandwidth, double zoneBandwidth,
+            double coreBandwidth, double rackRtt, double zoneRtt, double coreRtt) {
+        if (vmsPerRack < 0 || racksPerZone < 0) {
+            throw new IllegalCWSArgumentException("Number of VMs per rack and racks per zone cannot be negative");
+        }
+        if (rackBandwidth <= 0.0 || zoneBandwidth <= 0.0 || coreBandwidth <= 0.0) {
+            throw new IllegalCWSArgumentException("Network bandwidths should be greater than zero");
+        }
+        if (rackRtt < 0.0 || zoneRtt < 0.0 || coreRtt < zoneRtt) {
+            throw new IllegalCWSArgumentException(
+                    "Network round-trip times cannot be negative, nor the core one lower than the zone one");
+        }
+    }
+
+    /**
+     * @return Round-trip time between VMs on the same rack in ms, the shortest one between two VMs.
+     */
+    public double getRackRtt() {
+        return rackRtt;
+    }
+
+    /**
+     * @return The links between the interfaces of the given VMs, in order. The same array for all the transfers taking
+     *         the same path, which must not be modified.
+     */
+    public Link[] getPath(VM from, VM to) {
+        if (from == to) {
+            return loopbackPath;
+        }
+        Rack source = rackOf(from);
+        Rack destination = rackOf(to);
+        if (source == destination) {
+            return source.localPath;
+        }
+        Long key = ((long) source.index << 32) | destination.index;
+        Link[] path = paths.get(key);
+        if (path == null) {
+            if (source.zone == destination.zone) {
+                path = new Link[] { source.uplink, destination.downlink };
+            } else {
+                path = new Link[] { source.uplink, source.zone.uplink, core, destination.zone.downlink,
+                        destination.downlink };
+            }
+            paths.put(key, path);
+        }
+        return path;
+    }
+
+    private Rack rackOf(VM vm) {
+        Rack rack = placement.get(vm);
+        if (rack == null) {
+            rack = racks.isEmpty() ? null : racks.get(racks.size() - 1);
+            if (rack == null || (vmsPerRack > 0 && rack.vms == vmsPerRack)) {
+                rack = newRack();
+            }
+            rack.vms++;
+            placement.put(vm, rack);
+        }
+        return rack;
+    }
+
+    private Rack newRack() {
+        Zone zone = zones.isEmpty() ? null : zones.get(zones.size() - 1);
+        if (zone == null || (racksPerZone > 0 && racks.size() % racksPerZone == 0)) {
+            zone = new Zone(new Link(zoneBandwidth, 0.0), new Link(zoneBandwidth, 0.0));
+            zones.add(zone);
+        }
+        Rack rack = new Rack(racks.size(), zone, new Link(rackBandwidth, zoneRtt / 2),
+                new Link(rackBandwidth, zoneRtt / 2), new Link(UNLIMITED_BANDWIDTH, rackRtt));
+        racks.add(rack);
+        return rack;
+    }
+
+    public static void buildCliOptions(Options options) {
+        Option vmsPerRack = new Option("nvr", "network-vms-per-rack", true,
+                "Number of VMs on a network rack, defaults to " + DEFAULT_VMS_PER_RACK + " (a single rack)");
+        vmsPerRack.setArgName("NUM");
+        options.addOption(vmsPerRack);
+
+        Option racksPerZone = new Option("nrz", "network-racks-per-zone", true,
+                "Number of racks in a network zone, defaults to " + DEFAULT_RACKS_PER_ZONE + " (a single zone)");
+        racksPerZone.setArgName("NUM");
+        options.addOption(racksPerZone);
+
+        Option rackBandwidth = new Option("nrb", "network-rack-bandwidth", true,
+                "Bandwidth of the links between racks and zones in Mbps, defaults to " + DEFAULT_RACK_BANDWIDTH);
+        rackBandwidth.setArgName("MBPS");
+        options.addOption(rackBandwidth);
+
+        Option zoneBandwidth = new Option("nzb", "network-zone-bandwidth", true,
+                "Bandwidth of the links between zones and the core in Mbps, defaults to " + DEFAULT_ZONE_BANDWIDTH);
+        zoneBandwidth.setArgName("MBPS");
+        options.addOption(zoneBandwidth);
+
+        Option coreBandwidth = new Option("ncb", "network-core-bandwidth", true,
+                "Bandwidth of the network core in Mbps, defaults to " + DEFAULT_CORE_BANDWIDTH);
+        coreBandwidth.setArgName("MBPS");
+        options.addOption(coreBandwidth);
+
+        Option rackRtt = new Option("nrr", "network-rack-rtt", true,
+                "Round-trip time between VMs on the same rack in ms, defaults to " + DEFAULT_RACK_RTT);
+        rackRtt.setArgName("MS");
+        options.addOption(rackRtt);
+
+        Option zoneRtt = new Option("nzr", "network-zone-rtt", true,
+                "Round-trip time between VMs in the same zone in ms, defaults to " + DEFAULT_ZONE_RTT);
+        zoneRtt.setArgName("MS");
+        options.addOption(zoneRtt);
+
+        Option coreRtt = new Option("ncr", "network-core-rtt", true,
+                "Round-trip time between VMs in different zones in ms, defaults to " + DEFAULT_CORE_RTT);
+        coreRtt.setArgName("MS");
+        options.addOption(coreRtt);
+    }
+
+    public static void readCliOptions(CommandLine args) {
+        try {
+            configuredVmsPerRack = Integer.parseInt(args.getOptionValue("network-vms-per-rack",
+                    DEFAULT_VMS_PER_RACK + ""));
+            configuredRacksPerZone = Integer.parseInt(args.getOptionValue("network-racks-per-zone",
+                    DEFAULT_RACKS_PER_ZONE + ""));
+            configuredRackBandwidth = Double.parseDouble(args.getOptionValue("network-rack-bandwidth",
+                    DEFAULT_RACK_BANDWIDTH + ""));
+            configuredZoneBandwidth = Double.parseDouble(args.getOptionValue("network-zone-bandwidth",
+                    DEFAULT_ZONE_BANDWIDTH + ""));
+            configuredCoreBandwidth = Double.parseDouble(args.getOptionValue("network-core-bandwidth",
+                    DEFAULT_CORE_BANDWIDTH + ""));
+            configuredRackRtt = Double.parseDouble(args.getOptionValue("network-rack-rtt", DEFAULT_RACK_RTT + ""));
+            configuredZoneRtt = Double.parseDouble(args.getOptionValue("network-zone-rtt", DEFAULT_ZONE_RTT + ""));
+            configuredCoreRtt = Double.parseDouble(args.getOptionValue("network-core-rtt", DEFAULT_CORE_RTT + ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalCWSArgumentException("Invalid network topology option: " + e.getMessage());
+        }
+        // Fails early rather than when the first topology is created
+        validate(configuredVmsPerRack, configuredRacksPerZone, configuredRackBandwidth, configuredZoneBandwidth,
+                configuredCoreBandwidth, configuredRackRtt, configuredZoneRtt, configuredCoreRtt);
+    }
+}
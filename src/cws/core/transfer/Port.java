@@ -20,6 +20,17 @@ public class Port {
     /** Available bandwidth in Mbps */
     private double bandwidth;
 
+    /** For snapshots */
+    private Port() {
+    }
+
+    /**
+     * Restarts the port ids at 0.
+     */
+    public static void resetStaticCounters() {
+        next_id = 0;
+    }
+
     public Port(double bandwidth) {
         this.id = next_id++;
         this.bandwidth = bandwidth;
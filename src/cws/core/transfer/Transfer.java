@@ -1,21 +1,26 @@
 package cws.core.transfer;
 
+import cws.core.RecordPool;
 import cws.core.cloudsim.CloudSimWrapper;
 import cws.core.jobs.Job;
 
 /**
  * Simulates a data/file transfer from one network port to another over
- * a link. The source and destination ports have a fixed available bandwidth
- * and the link has a fixed available bandwidth, latency, and MTU.
+ * a path of links. The source and destination ports have a fixed available
+ * bandwidth and each link has a fixed available bandwidth, latency, and MTU.
+ * The links of a path usually come from a {@link NetworkTopology}, so
+ * transfers crossing the same link share it.
  * 
  * The goal is to efficiently simulate contention at end points and over
  * congested links.
  * 
  * This adds overheads to the transfer size to account for the packet headers.
  * 
+ * Transfers can be pooled, see {@link #obtain(RecordPool, Port, Port, Link[], long, int, CloudSimWrapper, Job, Job)}.
+ * 
  * @author Gideon Juve <juve@usc.edu>
  */
-public class Transfer {
+public class Transfer extends RecordPool.Record {
     private static long next_id = 0;
 
     /** Conversion constant for Mbps to bps */
@@ -36,8 +41,11 @@ public class Transfer {
     /** The destination port of the transfer */
     private Port dest;
 
-    /** The link over which the transfer occurs */
-    private Link link;
+    /** The links over which the transfer occurs, in order */
+    private Link[] path;
+
+    /** Round-trip time of the path in ms */
+    private double rtt;
 
     /** Data size of transfer in bytes */
     private long dataSize;
@@ -72,27 +80,77 @@ public class Transfer {
 
     private CloudSimWrapper cloudsim;
 
+    /** For snapshots */
+    protected Transfer() {
+    }
+
+    /**
+     * Restarts the transfer ids at 0.
+     */
+    public static void resetStaticCounters() {
+        next_id = 0;
+    }
+
     /**
-     * Every transfer has a source port, a destination port, a link that the data travels
-     * over, and an owner.
+     * Every transfer has a source port, a destination port, a path of links that the data
+     * travels over, and an owner.
      * 
      * @param source Source Port of transfer
      * @param destination Destination Port of transfer
-     * @param link The link over which the transfer occurs
+     * @param path The links over which the transfer occurs, at least one. Not copied, so it can be
+     *            shared with the other transfers over the same path, see {@link NetworkTopology#getPath}
      * @param dataSize Size of data transfer in bytes
      * @param owner The entity that owns this transfer
      */
+    public Transfer(Port source, Port destination, Link[] path, long dataSize, int owner, CloudSimWrapper cloudsim, Job toJob, Job fromJob) {
+        init(source, destination, path, dataSize, owner, cloudsim, toJob, fromJob);
+    }
+
+    /**
+     * A transfer over a single link.
+     * @see #Transfer(Port, Port, Link[], long, int, CloudSimWrapper, Job, Job)
+     */
     public Transfer(Port source, Port destination, Link link, long dataSize, int owner, CloudSimWrapper cloudsim, Job toJob, Job fromJob) {
+        this(source, destination, new Link[] { link }, dataSize, owner, cloudsim, toJob, fromJob);
+    }
+
+    /**
+     * @return A transfer from the pool reinitialized with the given arguments, or a new one if the pool is empty.
+     * @see #Transfer(Port, Port, Link[], long, int, CloudSimWrapper, Job, Job)
+     */
+    public static Transfer obtain(RecordPool<Transfer> pool, Port source, Port destination, Link[] path, long dataSize,
+            int owner, CloudSimWrapper cloudsim, Job toJob, Job fromJob) {
+        Transfer transfer = pool.acquire();
+        if (transfer == null) {
+            return new Transfer(source, destination, path, dataSize, owner, cloudsim, toJob, fromJob);
+        }
+        transfer.init(source, destination, path, dataSize, owner, cloudsim, toJob, fromJob);
+        return transfer;
+    }
+
+    private void init(Port source, Port destination, Link[] path, long dataSize, int owner, CloudSimWrapper cloudsim,
+            Job toJob, Job fromJob) {
+        if (path.length == 0) {
+            throw new IllegalArgumentException("A transfer needs at least one link");
+        }
+        // A new id also for reused transfers, which keeps the order of hashed transfers as if they were new
         this.id = next_id++;
         this.src = source;
         this.dest = destination;
-        this.link = link;
+        this.path = path;
         this.dataSize = dataSize;
         this.owner = owner;
         this.cloudsim = cloudsim;
 
+        // Packets are sized for the smallest MTU and delayed by every link of the path
+        int mtu = Integer.MAX_VALUE;
+        this.rtt = 0.0;
+        for (Link link : path) {
+            mtu = Math.min(mtu, link.getMTU());
+            this.rtt += link.getRTT();
+        }
+
         // Compute how much we are actually going to transfer
-        int mtu = link.getMTU();
         int mss = mtu - PACKET_OVERHEAD;
         long packets = (long) Math.ceil((1.0 * dataSize) / mss);
         long overhead = packets * PACKET_OVERHEAD;
@@ -112,10 +170,12 @@ public class Transfer {
     }
 
     public long getDataSize() {
+        checkLive();
         return dataSize;
     }
 
     public long getTransferSize() {
+        checkLive();
         return transferSize;
     }
 
@@ -126,18 +186,25 @@ public class Transfer {
     }
 
     public Port getSourcePort() {
+        checkLive();
         return src;
     }
 
     public Port getDestinationPort() {
+        checkLive();
         return dest;
     }
 
-    public Link getLink() {
-        return link;
+    /**
+     * @return The links over which the transfer occurs, in order. Must not be modified.
+     */
+    public Link[] getPath() {
+        checkLive();
+        return path;
     }
 
     public int getOwner() {
+        checkLive();
         return owner;
     }
 
@@ -147,6 +214,7 @@ public class Transfer {
 
     /** Set the new bandwidth for the transfer */
     public void updateBandwidth(double newBandwidth) {
+        checkLive();
         // Set the current bandwidth
         this.currentBandwidth = newBandwidth;
 
@@ -154,9 +222,9 @@ public class Transfer {
         this.lastUpdate = cloudsim.clock();
     }
 
-    /** Get the RTT for this transfer in ms */
+    /** Get the RTT for this transfer in ms, the sum of the RTTs of its links */
     public double getRTT() {
-        return link.getRTT();
+        return rtt;
     }
 
     public double getStartTime() {
@@ -169,11 +237,13 @@ public class Transfer {
 
     /** Start the transfer */
     protected void start() {
+        checkLive();
         this.startTime = cloudsim.clock();
     }
 
     /** Finish the transfer */
     protected void finish() {
+        checkLive();
         this.finishTime = cloudsim.clock();
     }
 
@@ -196,6 +266,7 @@ public class Transfer {
 
     /** Update the progress of the transfer */
     public void updateProgress() {
+        checkLive();
         // No need to update if no bandwidth is used
         if (currentBandwidth <= 0) {
             return;
@@ -268,10 +339,12 @@ public class Transfer {
     }
     
     public Job getToJob() {
+    	checkLive();
     	return toJob;
     }
     
     public Job getFromJob() {
+    	checkLive();
     	return fromJob;
     }
 }
@@ -1,6 +1,8 @@
 package cws.core.transfer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -10,12 +12,15 @@ import cws.core.cloudsim.CWSSimEntity;
 import cws.core.cloudsim.CWSSimEvent;
 import cws.core.cloudsim.CloudSimWrapper;
 import cws.core.exception.UnknownWorkflowEventException;
+import cws.core.jfr.TransferProgressEvent;
 
 /**
  * This entity simulates data transfers between potentially shared network
  * ports over potentially shared network links.
  * 
- * Each transfer has a source port, a destination port, and a link.
+ * Each transfer has a source port, a destination port, and a path of links
+ * given by the {@link NetworkTopology} of the manager, which is built once,
+ * so the links of the network are shared by the transfers crossing them.
  * 
  * Ports have fixed bandwidth that is shared between all the transfers that
  * are occurring simultaneously on the port.
@@ -39,7 +44,11 @@ import cws.core.exception.UnknownWorkflowEventException;
  * time a new transfer is started, or an existing transfer completes, we
  * recompute the bandwidth assigned to every transfer in the simulation. The
  * algorithm used to compute the bandwidth ensures max-min fairness between
- * streams sharing constrained ports and links.
+ * streams sharing constrained ports and links. Only the ports and links which
+ * several transfers use are shared, the others just cap the bandwidth of
+ * their transfer, and links with unlimited bandwidth are not considered at
+ * all, so the cost of the computation grows with the contention rather than
+ * with the size of the network.
  * 
  * @author Gideon Juve <juve@usc.edu>
  */
@@ -50,17 +59,44 @@ public class TransferManager extends CWSSimEntity {
     /** All the incomplete transfers */
     private HashSet<Transfer> activeTransfers;
 
+    /** Transfers cancelled during their handshake, dropped once it completes */
+    private HashSet<Transfer> cancelledTransfers;
+
     /** Listeners for transfer events */
     private HashSet<TransferListener> listeners;
+
+    /** The network over which the transfers occur */
+    private final NetworkTopology topology;
     
     //Default Bandwith is 10 Gbps
     public static final double DEFAULT_BANDWIDTH = 10000.0; //in Mbps
     public static final int DEFAULT_RTT = 5; //in ms
 
+    /** For snapshots */
+    private TransferManager() {
+        this.topology = null;
+    }
+
+    /**
+     * A manager of transfers over a network with the topology configured from the CLI.
+     */
     public TransferManager(CloudSimWrapper cloudsim) {
+        this(cloudsim, new NetworkTopology());
+    }
+
+    public TransferManager(CloudSimWrapper cloudsim, NetworkTopology topology) {
         super("TransferManager", cloudsim);
         activeTransfers = new HashSet<Transfer>();
+        cancelledTransfers = new HashSet<Transfer>();
         listeners = new HashSet<TransferListener>();
+        this.topology = topology;
+    }
+
+    /**
+     * @return The network over which the transfers occur, to get the paths of new transfers from.
+     */
+    public NetworkTopology getTopology() {
+        return topology;
     }
 
     public void addListener(TransferListener tl) {
@@ -122,8 +158,32 @@ public class TransferManager extends CWSSimEntity {
         
     }
 
+    /**
+     * Cancels a transfer, e.g. because its source has been terminated, and frees its bandwidth. Its owner gets
+     * TRANSFER_COMPLETE all the same, once the transfer is no longer used, to release it.
+     *
+     * @return Whether the transfer has been cancelled, false if all its data had already been sent.
+     */
+    public boolean cancelTransfer(Transfer t) {
+        if (activeTransfers.remove(t)) {
+            // The others share its bandwidth from now on
+            updateProgress();
+            sendNow(t.getOwner(), WorkflowEvent.TRANSFER_COMPLETE, t);
+            return true;
+        } else if (t.isComplete()) {
+            return false;
+        } else {
+            cancelledTransfers.add(t);
+            return true;
+        }
+    }
+
     /** Called when the initial handshake for a transfer is complete */
     private void handshakeComplete(Transfer t) {
+        if (cancelledTransfers.remove(t)) {
+            sendNow(t.getOwner(), WorkflowEvent.TRANSFER_COMPLETE, t);
+            return;
+        }
 
         // Set the initial bandwidth to 0
         t.updateBandwidth(0.0);
@@ -139,6 +199,9 @@ public class TransferManager extends CWSSimEntity {
     private void updateProgress() {
         // Log.printLine(CloudSim.clock() + " Transfer manager: updating progress, active transfers: " +
         // activeTransfers.size());
+        TransferProgressEvent event = new TransferProgressEvent();
+        event.begin();
+        int bandwidthChanges = 0;
 
         LinkedList<Transfer> completedTransfers = new LinkedList<Transfer>();
 
@@ -180,9 +243,10 @@ public class TransferManager extends CWSSimEntity {
 
                 // If bandwidth changed, notify listeners
                 if (changed) {
-                	String logMsg = String.format("Bandwidth changed. Transfer link: %s, from: %s, to: %s",
-       	                 transfers[i].getLink().getID(), oldBandwidth, transfers[i].getCurrentBandwidth());
-                	//getCloudsim().log(logMsg);
+                    bandwidthChanges++;
+                	//getCloudsim().log(String.format("Bandwidth changed. Transfer ports: %s -> %s, from: %s, to: %s",
+                	//        transfers[i].getSourcePort().getID(), transfers[i].getDestinationPort().getID(),
+                	//        oldBandwidth, transfers[i].getCurrentBandwidth()));
                     for (TransferListener tl : listeners) {
                         tl.bandwidthChanged(transfers[i]);
                     }
@@ -196,9 +260,24 @@ public class TransferManager extends CWSSimEntity {
             }
             getCloudsim().send(getId(), getId(), nextUpdate, WorkflowEvent.UPDATE_TRANSFER_PROGRESS);
         }
+
+        event.end();
+        if (event.shouldCommit()) {
+            long remainingBytes = 0;
+            for (Transfer t : activeTransfers) {
+                remainingBytes += t.getBytesRemaining();
+            }
+            event.simTime = getCloudsim().clock();
+            event.managerId = getId();
+            event.activeTransfers = activeTransfers.size();
+            event.completedTransfers = completedTransfers.size();
+            event.bandwidthChanges = bandwidthChanges;
+            event.remainingBytes = remainingBytes;
+            event.commit();
+        }
     }
 
-    /** A node is a network element with a bandwidth capacity */
+    /** A node is a network element with a bandwidth capacity shared by several flows */
     private static class Node {
         public HashSet<Flow> flows = new HashSet<Flow>();
         public double capacity = 0.0;
@@ -206,13 +285,22 @@ public class TransferManager extends CWSSimEntity {
 
     /** A flow is the bandwidth allocated to a transfer */
     private static class Flow {
-        public Node[] path = new Node[3];
+        /** The shared nodes of the flow */
+        public Node[] path;
+        /** Capacity of the elements no other flow uses */
+        public double capacity = Double.MAX_VALUE;
         public double allocation = 0.0;
+        public boolean allocated = false;
     }
 
     /**
      * Called when we need to compute the bandwidth assigned to each
      * transfer. This uses the progressive filling algorithm.
+     * 
+     * Only elements used by several transfers are nodes of the algorithm.
+     * An element used by a single transfer cannot be shared, so it only caps
+     * the bandwidth of its transfer, and elements with unlimited bandwidth
+     * never constrain any transfer.
      */
     public static double[] allocateBandwidth(Transfer[] transfers) {
 
@@ -223,79 +311,116 @@ public class TransferManager extends CWSSimEntity {
         HashMap<Port, Node> ports = new HashMap<Port, Node>();
         HashMap<Link, Node> links = new HashMap<Link, Node>();
 
+        // The elements of the flows, shared or not
+        Node[][] elements = new Node[transfers.length][];
+
         // This loop just sets up the data structures
 
         for (int i = 0; i < transfers.length; i++) {
-            Node n;
-
             // Create a flow for each transfer
             Transfer t = transfers[i];
-            Flow f = flows[i] = new Flow();
-
-            // Add the source port
-            Port src = t.getSourcePort();
-            if (ports.containsKey(src)) {
-                n = ports.get(src);
-            } else {
-                n = new Node();
-                nodes.add(n);
-                n.capacity = src.getBandwidth();
-                ports.put(src, n);
+            flows[i] = new Flow();
+            Link[] path = t.getPath();
+            Node[] flowElements = elements[i] = new Node[path.length + 2];
+            int n = 0;
+
+            // Add the source and destination ports
+            for (Port port : new Port[] { t.getSourcePort(), t.getDestinationPort() }) {
+                Node node = ports.get(port);
+                if (node == null) {
+                    node = new Node();
+                    node.capacity = port.getBandwidth();
+                    ports.put(port, node);
+                }
+                node.flows.add(flows[i]);
+                flowElements[n++] = node;
             }
-            n.flows.add(f);
-            f.path[0] = n;
 
-            // Add the destination port
-            Port dest = t.getDestinationPort();
-            if (ports.containsKey(dest)) {
-                n = ports.get(dest);
-            } else {
-                n = new Node();
-                nodes.add(n);
-                n.capacity = dest.getBandwidth();
-                ports.put(dest, n);
+            // Add the links
+            for (Link link : path) {
+                if (link.getBandwidth() == NetworkTopology.UNLIMITED_BANDWIDTH) {
+                    continue;
+                }
+                Node node = links.get(link);
+                if (node == null) {
+                    node = new Node();
+                    node.capacity = link.getBandwidth();
+                    links.put(link, node);
+                }
+                node.flows.add(flows[i]);
+                flowElements[n++] = node;
+            }
+            if (n < flowElements.length) {
+                elements[i] = flowElements = Arrays.copyOf(flowElements, n);
             }
-            n.flows.add(f);
-            f.path[1] = n;
+        }
 
-            // Add the link
-            Link link = t.getLink();
-            if (links.containsKey(link)) {
-                n = links.get(link);
-            } else {
-                n = new Node();
-                nodes.add(n);
-                n.capacity = link.getBandwidth();
-                links.put(link, n);
+        // Keep the shared elements as nodes and fold the others into the capacity of their flow
+        HashSet<Node> sharedNodes = new HashSet<Node>();
+        for (int i = 0; i < transfers.length; i++) {
+            Flow f = flows[i];
+            int shared = 0;
+            for (Node node : elements[i]) {
+                if (node.flows.size() > 1) {
+                    shared++;
+                } else {
+                    f.capacity = Math.min(f.capacity, node.capacity);
+                }
+            }
+            f.path = new Node[shared];
+            shared = 0;
+            for (Node node : elements[i]) {
+                if (node.flows.size() > 1) {
+                    f.path[shared++] = node;
+                    if (sharedNodes.add(node)) {
+                        nodes.add(node);
+                    }
+                }
             }
-            n.flows.add(f);
-            f.path[2] = n;
         }
 
-        // As long as there are nodes remaining that have flows
-        int nnodes = nodes.size();
-        while (nnodes > 0) {
-        	//System.out.println(nodes.size());
-        	//System.out.println("!!!!" + nnodes);
+        // The flows in the order in which their own capacity runs out
+        Flow[] byCapacity = flows.clone();
+        Arrays.sort(byCapacity, new Comparator<Flow>() {
+            @Override
+            public int compare(Flow a, Flow b) {
+                return Double.compare(a.capacity, b.capacity);
+            }
+        });
+        int nextByCapacity = 0;
+
+        // As long as there are flows without an allocation
+        int remaining = flows.length;
+        while (remaining > 0) {
             // Find the node with the smallest remaining fair share
             Node minNode = null;
             double minShare = Double.MAX_VALUE;
             for (Node n : nodes) {
-            	//System.out.println(nodes.size());
-            	//System.out.println(n.flows.size());
-            	double share = n.capacity / n.flows.size(); //0
-            	
+                double share = n.capacity / n.flows.size();
                 if (share <= minShare) {
                     minShare = share;
                     minNode = n;
-                    //System.out.println("min node " + n.flows.size());
                 }
             }
 
-            // Allocate the min share to each flow that uses the min node
-            Flow[] myflows = minNode.flows.toArray(new Flow[0]);
+            // A flow whose own capacity is even smaller is limited by it
+            while (byCapacity[nextByCapacity].allocated) {
+                nextByCapacity++;
+            }
+            Flow minFlow = byCapacity[nextByCapacity];
+            Flow[] myflows;
+            if (minNode == null || minFlow.capacity < minShare) {
+                minShare = minFlow.capacity;
+                myflows = new Flow[] { minFlow };
+            } else {
+                myflows = minNode.flows.toArray(new Flow[0]);
+            }
+
+            // Allocate the min share to each of the flows
             for (Flow f : myflows) {
                 f.allocation += minShare;
+                f.allocated = true;
+                remaining--;
                 for (Node n : f.path) {
                     n.capacity -= minShare;
                     n.flows.remove(f);
@@ -304,20 +429,14 @@ public class TransferManager extends CWSSimEntity {
 
             // Remove all nodes with no remaining flows
             int i = 0;
-            while (i < nnodes) {
-                Node n = nodes.get(i);
-                //System.out.println(n.flows.size() + " i " + i);
-                if (n.flows.size() == 0) {
+            while (i < nodes.size()) {
+                if (nodes.get(i).flows.size() == 0) {
                     // Swap with the last node
-                    nnodes--;
-                    nodes.remove(i);
-                    //nodes.set(i, nodes.get(nnodes));	
-                    //nodes.remove(nnodes);
-                    //System.out.println("removed node");
+                    int last = nodes.size() - 1;
+                    nodes.set(i, nodes.get(last));
+                    nodes.remove(last);
                 } else {
-                	//System.out.println(nnodes);
                     i++;
-                    //System.out.println("didn't");
                 }
             }
         }
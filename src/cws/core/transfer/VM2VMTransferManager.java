@@ -1,251 +1,624 @@
 package cws.core.transfer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import cws.core.RecordPool;
 import cws.core.VM;
 import cws.core.WorkflowEvent;
-import cws.core.cloudsim.CWSSimEntity;
 import cws.core.cloudsim.CWSSimEvent;
 import cws.core.cloudsim.CloudSimWrapper;
+import cws.core.core.VMType;
+import cws.core.dag.DAG;
 import cws.core.dag.DAGFile;
 import cws.core.dag.DAGJob;
 import cws.core.dag.Task;
-import cws.core.exception.UnknownWorkflowEventException;
 import cws.core.jobs.Job;
 import cws.core.storage.StorageManager;
+import cws.core.storage.cache.VMCacheManager;
+import cws.core.storage.global.GlobalStorageManager;
+import cws.core.storage.global.GlobalStorageParams;
 
-public class VM2VMTransferManager extends CWSSimEntity implements TransferListener{
+/**
+ * Storage manager which passes the files between the tasks of a workflow from VM to VM, over the network simulated by
+ * its {@link TransferManager}, instead of through the global storage.
+ *
+ * The outputs of a task which are inputs of its children stay on the VM of the task, which finishes as soon as it has
+ * written the workflow's final outputs, if any, to the global storage. Children are released once all their parents
+ * have finished, so when a child is submitted to a VM the files it needs are all somewhere; they are pushed to its VM
+ * right away, while the child waits in the queue of the VM and the VMs compute other tasks. The child starts once the
+ * pushed files have arrived and the files of the workflow's inputs have been read from the global storage.
+ *
+ * A file is pushed to a VM once, however many of its consumers run there, and the VMs which have received it serve it
+ * too, in turns with the VM of its producer. The outputs of tasks whose pushes, all through the interface of the
+ * producer's VM, would take longer than writing them to the global storage and reading them back, such as CyberShake's
+ * SGTs, are written to the global storage like the final outputs, and read from there.
+ *
+ * When a VM is terminated its jobs fail and the files kept on it are lost. Pushes from it are sent again from another
+ * VM which has the file. A file whose VMs have all been terminated while some of its consumers still need it is saved
+ * to the global storage, as if the last VM had written it there when it was terminated, and the consumers read it from
+ * there once the write has finished.
+ */
+public class VM2VMTransferManager extends GlobalStorageManager {
+
+	/** Input files of a placed job and the state of their transfers */
+	private static class JobInputs {
+		/** Pushes to the VM of the job and reads of saved files which have not finished yet */
+		private int pendingTransfers;
+		/** Bytes of the inputs produced on the VM of the job */
+		private long localBytes;
+		/** Inputs to read from the global storage, when the job starts */
+		private List<DAGFile> storageFiles = Collections.emptyList();
+		private boolean started;
+		private boolean storageReadsDone;
+	}
+
+	/** Copies of an intermediate file on the VMs, kept while some of its consumers have not been placed */
+	private static class PeerFile {
+		private final DAGJob dagJob;
+		private final DAGFile file;
+		/** The job which has produced the file */
+		private final Job producerJob;
+		/** VMs which have the file, first the one of its producer */
+		private final List<VM> holders = new ArrayList<VM>(2);
+		/** VMs the file is being pushed to, with the jobs waiting there for it */
+		private final Map<VM, List<Job>> arriving = new IdentityHashMap<VM, List<Job>>();
+		private int unplacedConsumers;
+		private int nextSource;
+		/** When the file has been, or will be, written to the global storage, negative if it is not written there */
+		private double storedTime = -1.0;
+
+		/** For snapshots */
+		private PeerFile() {
+			this(null, null, null);
+		}
+
+		private PeerFile(DAGJob dagJob, DAGFile file, Job producerJob) {
+			this.dagJob = dagJob;
+			this.file = file;
+			this.producerJob = producerJob;
+		}
+
+		private boolean isStored() {
+			return storedTime >= 0.0;
+		}
+
+		/**
+		 * @return Whether all the VMs which have the file have been terminated.
+		 */
+		private boolean isLost() {
+			for (VM holder : holders) {
+				if (!holder.isTerminated()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @return The next running VM which has the file, in turns, or null if they have all been terminated.
+		 */
+		private VM nextSource() {
+			for (int i = 0; i < holders.size(); i++) {
+				VM vm = holders.get((nextSource + i) % holders.size());
+				if (!vm.isTerminated()) {
+					nextSource = (nextSource + i + 1) % holders.size();
+					return vm;
+				}
+			}
+			return null;
+		}
+	}
 
 	private TransferManager transferManager;
-	
-	 /** Map of jobs' active input transfers - the ones that progress at any given moment */
-    private Map<Job, List<Transfer>> inputTransfers = new HashMap<Job, List<Transfer>>();
-    
-    /** Map of output transfers finished for a given job */
-    private Map<Job, List<Transfer>> outputTransfers = new HashMap<Job, List<Transfer>>();
-	
-	public VM2VMTransferManager(CloudSimWrapper cloudsim){
-		super("VM2VMTransferManager", cloudsim);
+
+	/** Copies of the intermediate files of the running DAGs */
+	private Map<DAGJob, Map<DAGFile, PeerFile>> peerFiles = new IdentityHashMap<DAGJob, Map<DAGFile, PeerFile>>();
+
+	/** Files being pushed */
+	private Map<Transfer, PeerFile> pushes = new IdentityHashMap<Transfer, PeerFile>();
+
+	/** Inputs of the jobs which have been placed and have not got all their inputs yet */
+	private Map<Job, JobInputs> jobInputs = new IdentityHashMap<Job, JobInputs>();
+
+	/** A read of a file which was being saved to the global storage when the job needed it */
+	private static class Fetch {
+		private final Job job;
+		private final DAGFile file;
+
+		/** For snapshots */
+		private Fetch() {
+			this(null, null);
+		}
+
+		private Fetch(Job job, DAGFile file) {
+			this.job = job;
+			this.file = file;
+		}
+	}
+
+	/** Finished transfers, reinitialized for the next ones */
+	private RecordPool<Transfer> transferPool = new RecordPool<Transfer>();
+
+	/** Scratch list of the outputs a job writes to the global storage, only used during {@link #onAfterTaskCompleted} */
+	private List<DAGFile> finalOutputs = new ArrayList<DAGFile>();
+
+	/** For snapshots */
+	private VM2VMTransferManager() {
+	}
+
+	public VM2VMTransferManager(GlobalStorageParams params, VMCacheManager cacheManager, CloudSimWrapper cloudsim) {
+		super(params, cacheManager, cloudsim);
 		transferManager = new TransferManager(cloudsim);
-		transferManager.addListener(this);
-	}
-	
-	public void processEvent(CWSSimEvent ev) {
-        switch (ev.getTag()) {
-        case WorkflowEvent.VM2VM_BEFORE_TASK_START:
-        	Job job = (Job) ev.getData();
-            /*for (DAGFile file : job.getTask().getInputFiles()) {
-                statistics.addBytesToRead(file.getSize());
-            }
-            statistics.addTotalFilesToRead(job.getTask().getInputFiles().size());*/
-            onBeforeTaskStart(job);
-            break;
-        case WorkflowEvent.VM2VM_AFTER_TASK_COMPLETED:
-        	Job jobAfter = (Job) ev.getData();
-            /*for (DAGFile file : jobAfter.getTask().getOutputFiles()) {
-                statistics.addBytesToWrite(file.getSize());
-            }
-            statistics.addTotalFilesToWrite(jobAfter.getTask().getOutputFiles().size());*/
-            onAfterTaskCompleted(jobAfter);
-            break;
-        case WorkflowEvent.TRANSFER_COMPLETE:
-        	finishTransfer((Transfer)ev.getData());
-        	break;
-        default:
-            throw new UnknownWorkflowEventException("Unknown event in VM2VMTransferManager: " + ev);
-        }
-    }
-	
-	/**
-     * 1. If the job has no output files the method finishes immediately.
-     * 2. Else it creates transfer for each output file. The transfers are then handled by the event system.
-     * 
-     * @see StorageManager#onAfterTaskCompleted(Task)
-     */
-    private void onAfterTaskCompleted(Job job) {
-        List<DAGFile> files = job.getTask().getOutputFiles();
-       // if (files.size() == 0) {
-        //	notifyOutputTransfersCompleted(job);
-        //} else {
-        	notifyWaitingforOutputTransmission(job);
-        //}
-        
-        /*else {
-            startTransfers(files, job, writes, WorkflowEvent.GLOBAL_STORAGE_WRITE_PROGRESS, "write");
-            congestedParams.addWrites(files.size());
-            updateSpeedCongestion();
-        }*/
-    }
-
-	/**
-     * 1. If the job has no input files the method finishes immediately.
-     * 2. Else it creates transfer for each input file. The transfers are then handled by the event system.
-     * 
-     * @see StorageManager#onBeforeTaskStart(Task)
-     */
-    private void onBeforeTaskStart(Job job) {
-    	List<DAGFile> inputFiles = job.getTask().getInputFiles();
-    	if(inputFiles.isEmpty()) {
-    		notifyInputTransfersCompleted(job);
-    	} else {
-    		//Find who has the input files
-    		List<Task> parents = job.getTask().getParents();
-    		
-    		//if its an entry task, retrieve from global storage
-    		if(parents.isEmpty()) {
-    		getCloudsim().send(getId(), getCloudsim().getEntityId("StorageManager"), 0.0,
-                    WorkflowEvent.STORAGE_BEFORE_TASK_START, job);
-    		} else {
-    		DAGJob dagJob = job.getDAGJob();
-    		int numTransfers = 0;
-    		List<Transfer> transferList = new ArrayList<Transfer>();
-    		for (Task parent : parents) {
-				if(dagJob.isComplete(parent)) {
-					//Find the VM in which the job ran
-					Job fromJob = dagJob.getJob(parent);
-					VM vm = fromJob.getVM();
-					//Find the input file this parent is responsible for
-					for (DAGFile input : inputFiles) {
-						for (DAGFile parentOutput : parent.getOutputFiles()) {
-							if(input.equals(parentOutput)) {
-								DAGFile transfer = input;
-								//Transfer the file
-								Transfer t = startTransfer(fromJob, job, vm, job.getVM(), transfer);
-								transferList.add(t);
-								numTransfers++;
-								break;
-							}
-						}
-					}
+	}
+
+	/**
+	 * The inputs of a job are pushed as soon as it is placed and the files kept on a terminated VM are lost.
+	 *
+	 * @see StorageManager#wantsPlacementEvents()
+	 */
+	@Override
+	public boolean wantsPlacementEvents() {
+		return true;
+	}
+
+	/**
+	 * Starts pushing the inputs of the job produced by its parents to its VM.
+	 *
+	 * @see StorageManager#onJobPlaced(Job)
+	 */
+	@Override
+	protected void onJobPlaced(Job job) {
+		if (jobInputs.containsKey(job)) {
+			return;
+		}
+		// The jobs of a terminated VM have failed, they are only counted as placed
+		JobInputs inputs = job.getVM().isTerminated() ? null : new JobInputs();
+		if (inputs != null) {
+			jobInputs.put(job, inputs);
+		}
+		DAGJob dagJob = job.getDAGJob();
+		for (DAGFile file : job.getTask().getInputFiles()) {
+			Task producer = findProducer(dagJob.getDAG(), job.getTask(), file);
+			Job fromJob = producer == null ? null : dagJob.getJob(producer);
+			PeerFile copies = fromJob == null ? null : getPeerFile(dagJob, file, producer, fromJob, job.isRetry());
+			if (inputs != null) {
+				getInput(job, inputs, file, copies);
+			}
+			if (copies != null) {
+				// Retried consumers have been counted when they were placed the first time
+				if (!job.isRetry()) {
+					copies.unplacedConsumers--;
 				}
-				else {
-					//TODO what do we do here??
-					getCloudsim().log("Parent task not completed before child taks attempt to run");
+				forgetIfDone(copies);
+			}
+		}
+	}
+
+	/**
+	 * Gets the file to the VM of the job: it is there already, being pushed there, pushed from a VM which has it or
+	 * read from the global storage.
+	 */
+	private void getInput(Job job, JobInputs inputs, DAGFile file, PeerFile copies) {
+		VM vm = job.getVM();
+		List<Job> waiting = copies == null ? null : copies.arriving.get(vm);
+		if (copies != null && copies.holders.contains(vm)) {
+			inputs.localBytes += file.getSize();
+		} else if (waiting != null) {
+			waiting.add(job);
+			inputs.pendingTransfers++;
+		} else {
+			VM source = copies == null || copies.isStored() ? null : copies.nextSource();
+			if (source != null) {
+				List<Job> jobs = new ArrayList<Job>(2);
+				jobs.add(job);
+				startTransfer(copies, source, jobs);
+				inputs.pendingTransfers++;
+			} else if (copies != null && !isInStorage(copies)) {
+				inputs.pendingTransfers++;
+				fetch(job, copies);
+			} else {
+				if (inputs.storageFiles.isEmpty()) {
+					inputs.storageFiles = new ArrayList<DAGFile>();
 				}
+				inputs.storageFiles.add(file);
+			}
+		}
+	}
+
+	/**
+	 * @param retry Whether the consumer getting the file is a retried one, the others have been placed already if the
+	 *            copies have been forgotten.
+	 */
+	private PeerFile getPeerFile(DAGJob dagJob, DAGFile file, Task producer, Job producerJob, boolean retry) {
+		Map<DAGFile, PeerFile> files = peerFiles.get(dagJob);
+		if (files == null) {
+			files = new HashMap<DAGFile, PeerFile>();
+			peerFiles.put(dagJob, files);
+		}
+		PeerFile copies = files.get(file);
+		if (copies == null) {
+			copies = new PeerFile(dagJob, file, producerJob);
+			copies.holders.add(producerJob.getVM());
+			int consumers = countConsumers(producer, file);
+			copies.unplacedConsumers = retry ? 0 : consumers;
+			if (!isPushed(producer, producerJob.getVM().getBandwidth())) {
+				// Its producer has written it, see onAfterTaskCompleted
+				copies.storedTime = 0.0;
+			}
+			files.put(file, copies);
+		}
+		return copies;
+	}
+
+	/**
+	 * @return Whether the consumers of the file may read it from the global storage, else some VM has it or it is being
+	 *         saved.
+	 */
+	private boolean isInStorage(PeerFile copies) {
+		if (!copies.isStored()) {
+			save(copies);
+			return false;
+		}
+		return copies.storedTime <= getCloudsim().clock();
+	}
+
+	/**
+	 * Saves the file, which all the VMs which had it have lost, to the global storage, as if the last one had written it
+	 * there when it was terminated. The write time is charged to the file's producer and to the consumers which wait
+	 * for it.
+	 */
+	private void save(PeerFile copies) {
+		if (!copies.isLost()) {
+			throw new IllegalStateException("Saving a file kept on a running VM: " + copies.file.getName());
+		}
+		GlobalStorageParams params = getParams();
+		double writeTime = params.getLatency() + copies.file.getSize() / params.getWriteSpeed();
+		copies.storedTime = getCloudsim().clock() + writeTime;
+		statistics.addTransferTime(copies.producerJob, writeTime);
+		getCloudsim().log(String.format("Saving file %s, size: %s, of terminated VMs to the global storage",
+				copies.file.getName(), copies.file.getSize()));
+	}
+
+	/**
+	 * Reads the file, once it has been saved to the global storage, to the VM of the job. The job counts it as a pending
+	 * transfer.
+	 */
+	private void fetch(Job job, PeerFile copies) {
+		GlobalStorageParams params = getParams();
+		double readTime = params.getLatency() + copies.file.getSize() / params.getReadSpeed();
+		double delay = Math.max(0.0, copies.storedTime - getCloudsim().clock()) + readTime;
+		statistics.addTransferTime(job, readTime);
+		getCloudsim().send(getId(), getId(), delay, WorkflowEvent.PEER_FILE_FETCHED, new Fetch(job, copies.file));
+	}
+
+	private void onFetchFinished(Fetch fetch) {
+		JobInputs inputs = jobInputs.get(fetch.job);
+		if (inputs == null) {
+			// Its VM has been terminated
+			return;
+		}
+		statistics.addActualBytesRead(fetch.job, fetch.file.getSize());
+		statistics.addActualFilesRead(fetch.job, 1);
+		inputs.pendingTransfers--;
+		notifyIfAllInputsArrived(fetch.job, inputs);
+	}
+
+	/**
+	 * Forgets the copies of the file once all its consumers have been placed and have got it. Consumers placed again
+	 * later, i.e. retried ones, get it from its producer's VM or from the global storage.
+	 */
+	private void forgetIfDone(PeerFile copies) {
+		if (copies.unplacedConsumers <= 0 && copies.arriving.isEmpty()) {
+			Map<DAGFile, PeerFile> files = peerFiles.get(copies.dagJob);
+			files.remove(copies.file);
+			if (files.isEmpty()) {
+				peerFiles.remove(copies.dagJob);
 			}
+		}
+	}
 
-            inputTransfers.put(job, transferList);
-    		
-    		
-    		if(numTransfers < inputFiles.size()) {
-    			//TODO what do we do here??
-				getCloudsim().log("Number of transferred input files doesn't match input file list");
-    		}
-    	}
-    	}
-    }
-
-	private Transfer startTransfer(Job fromJob, Job toJob, VM from, VM to, DAGFile transferFile) {
-		//TODO may be one link per transfer is not a good idea...
-		Link link = new Link(from.getBandwidth(), 5);
-		long dataSize = transferFile.getSize();
-		if(from.equals(to)) { //transfers within the same VM are not considered
-			dataSize = 0;
-		}
-		Transfer transfer = new Transfer(from.getOutputPort(), to.getInputPort(), link, 
-				dataSize, getId(), getCloudsim(), toJob, fromJob);
-		String logMsg = String.format("VM 2 VM transfer started. File: %s, size: %s, from vm: %s, to vm: %s",
-                 transferFile.getName(), transferFile.getSize(), from.getId(), to.getId());
-        getCloudsim().log(logMsg);
-        getCloudsim().send(getId(), transferManager.getId(), 0, WorkflowEvent.NEW_TRANSFER, transfer);
-        return transfer;
-        
-	}
-
-	public double getTransferTimeEstimation(Transfer t){
-		return 0.0;
-	}
-	
-	/**
-     * Cleans up after transfer's finish.
-     * @param transfer - the transfer that has finished.
-     * @param transfers - the map with active transfers this transfer belongs to (e.g. writes or reads).
-     * @param transferType - the type of this transfer, e.g. "write".
-     * @return true if this was the last transfer in the job, false otherwise.
-     */
-    private boolean onTransferFinished(Transfer transfer) {
-		String logMsg = String
-				.format("VM 2 VM transfer finished. Bytes transferred: %d, duration: %f",
-						transfer.getTransferSize(), transfer.getTransferTime());
-		getCloudsim().log(logMsg);
-     
-        List<Transfer> jobTransfers = inputTransfers.get(transfer.getToJob());
-        jobTransfers.remove(transfer);
-        if (jobTransfers.isEmpty()) {
-            inputTransfers.remove(transfer.getToJob());
-            return true;
-        } else {
-            return false;
-        }
-    }
-	
-	/**
-     * Notifies parent VM that all input transfers have completed and thus the job can be started.
-     * 
-     * @param job - the job for which all input transfers have completed
-     */
-    protected void notifyInputTransfersCompleted(Job job) {
-        getCloudsim().send(getId(), job.getVM().getId(), 0, WorkflowEvent.VM2VM_INPUT_TRANSFERS_COMPLETED, job);
-    }
-    
-    /**
-     * Notifies parent VM that all output transfers have completed and thus the job can be finished.
-     * 
-     * @param job - the job for which all output transfers have completed
-     */
-    protected void notifyOutputTransfersCompleted(Job job) {
-        getCloudsim().send(getId(), job.getVM().getId(), 0, WorkflowEvent.VM2VM_OUTPUT_TRANSFERS_COMPLETED, job);
-    }
-    
-
-	
-	private void notifyWaitingforOutputTransmission(Job job) {
-		getCloudsim().send(getId(), job.getVM().getId(), 0, WorkflowEvent.VM2VM_OUTPUT_TRANSFERS_WAITING, job);
-	}
-	
+	/**
+	 * Pushes the file to the VM of the given jobs, which wait for it there.
+	 */
+	private void startTransfer(PeerFile copies, VM from, List<Job> waiting) {
+		Job toJob = waiting.get(0);
+		VM to = toJob.getVM();
+		DAGFile file = copies.file;
+		Transfer transfer = Transfer.obtain(transferPool, from.getOutputPort(), to.getInputPort(), transferManager
+				.getTopology().getPath(from, to), file.getSize(), getId(), getCloudsim(), toJob, copies.producerJob);
+		copies.arriving.put(to, waiting);
+		pushes.put(transfer, copies);
+		getCloudsim().log(String.format("VM 2 VM transfer started. File: %s, size: %s, from vm: %s, to vm: %s",
+				file.getName(), file.getSize(), from.getId(), to.getId()));
+		getCloudsim().send(getId(), transferManager.getId(), 0.0, WorkflowEvent.NEW_TRANSFER, transfer);
+	}
+
+	/**
+	 * Waits for the pushes of the job's inputs and reads the others from the global storage.
+	 *
+	 * @see StorageManager#onBeforeTaskStart(Job)
+	 */
+	@Override
+	protected void onBeforeTaskStart(Job job) {
+		if (job.getVM().isTerminated()) {
+			return;
+		}
+		// Jobs started without being placed, if any, only start their pushes now
+		onJobPlaced(job);
+		JobInputs inputs = jobInputs.get(job);
+		inputs.started = true;
+		if (inputs.localBytes > 0) {
+			statistics.addCacheSavedBytes(job, inputs.localBytes);
+		}
+		readFiles(job, inputs.storageFiles);
+	}
+
+	/**
+	 * Writes the outputs which are not pushed to the children, the others stay on the VM.
+	 *
+	 * @see StorageManager#onAfterTaskCompleted(Job)
+	 */
+	@Override
+	protected void onAfterTaskCompleted(Job job) {
+		Task task = job.getTask();
+		finalOutputs.clear();
+		// The consumers of the outputs know they are stored from the same rule, see getPeerFile
+		boolean pushed = isPushed(task, job.getVM().getBandwidth());
+		for (DAGFile file : task.getOutputFiles()) {
+			if (!pushed || countConsumers(task, file) == 0) {
+				finalOutputs.add(file);
+			}
+		}
+		writeFiles(job, finalOutputs);
+	}
+
+	/**
+	 * Called when the reads of the job from the global storage have completed, the job still waits for its pushes.
+	 */
+	@Override
+	protected void notifyThatBeforeTransfersCompleted(Job job) {
+		JobInputs inputs = jobInputs.get(job);
+		if (inputs == null) {
+			// Its VM has been terminated
+			return;
+		}
+		inputs.storageReadsDone = true;
+		notifyIfAllInputsArrived(job, inputs);
+	}
+
+	private void notifyIfAllInputsArrived(Job job, JobInputs inputs) {
+		if (inputs.started && inputs.storageReadsDone && inputs.pendingTransfers == 0) {
+			jobInputs.remove(job);
+			super.notifyThatBeforeTransfersCompleted(job);
+		}
+	}
+
+	private void onTransferFinished(Transfer transfer) {
+		PeerFile copies = pushes.remove(transfer);
+		if (copies == null) {
+			// It has been cancelled, see onVMTerminated
+			transferPool.release(transfer);
+			return;
+		}
+		Job toJob = transfer.getToJob();
+		VM vm = toJob.getVM();
+		getCloudsim().log(String.format("VM 2 VM transfer finished. Bytes transferred: %d, duration: %f",
+				transfer.getTransferSize(), transfer.getTransferTime()));
+		statistics.addActualBytesRead(toJob, transfer.getDataSize());
+		statistics.addActualFilesRead(toJob, 1);
+		statistics.addTransferTime(toJob, transfer.getTransferTime());
+		transferPool.release(transfer);
+
+		List<Job> waiting = copies.arriving.remove(vm);
+		copies.holders.add(vm);
+		for (Job job : waiting) {
+			JobInputs inputs = jobInputs.get(job);
+			if (inputs == null) {
+				// The VM has been terminated since
+				continue;
+			}
+			if (job != toJob) {
+				// It came with the push of another consumer on the VM
+				statistics.addCacheSavedBytes(job, copies.file.getSize());
+			}
+			inputs.pendingTransfers--;
+			notifyIfAllInputsArrived(job, inputs);
+		}
+		forgetIfDone(copies);
+	}
+
+	/**
+	 * Fails the inputs of the VM's jobs, saves the files it was the last to keep to the global storage and sends the
+	 * files it was pushing again from elsewhere.
+	 *
+	 * @see StorageManager#onVMTerminated(VM)
+	 */
 	@Override
-	public void transferStarted(Transfer t) {
-		// TODO Auto-generated method stub
-		
+	protected void onVMTerminated(VM vm) {
+		for (Iterator<Job> it = jobInputs.keySet().iterator(); it.hasNext();) {
+			if (it.next().getVM() == vm) {
+				it.remove();
+			}
+		}
+		for (Map<DAGFile, PeerFile> files : peerFiles.values()) {
+			for (PeerFile copies : files.values()) {
+				if (copies.unplacedConsumers > 0 && !copies.isStored() && copies.holders.contains(vm)
+						&& copies.isLost()) {
+					save(copies);
+				}
+			}
+		}
+		List<Transfer> cut = new ArrayList<Transfer>();
+		for (Transfer transfer : pushes.keySet()) {
+			if (transfer.getSourcePort() == vm.getOutputPort() || transfer.getDestinationPort() == vm.getInputPort()) {
+				cut.add(transfer);
+			}
+		}
+		for (Transfer transfer : cut) {
+			// Transfers which have sent all their data complete as usual
+			if (transferManager.cancelTransfer(transfer)) {
+				PeerFile copies = pushes.remove(transfer);
+				VM to = transfer.getToJob().getVM();
+				List<Job> waiting = copies.arriving.remove(to);
+				if (to != vm) {
+					resend(copies, waiting);
+				}
+				forgetIfDone(copies);
+			}
+		}
+	}
+
+	/**
+	 * Gets the file, whose push to the VM of the waiting jobs has been cut, from another VM or the global storage.
+	 */
+	private void resend(PeerFile copies, List<Job> waiting) {
+		VM source = copies.isStored() ? null : copies.nextSource();
+		if (source != null) {
+			startTransfer(copies, source, waiting);
+			return;
+		}
+		if (!copies.isStored()) {
+			save(copies);
+		}
+		for (Job job : waiting) {
+			// Fetched rather than read with the job's other files, which it may be reading already
+			if (jobInputs.containsKey(job)) {
+				fetch(job, copies);
+			}
+		}
 	}
 
 	@Override
-	public void bandwidthChanged(Transfer t) {
-		// TODO Auto-generated method stub
-		
-	}
-
-	public void finishTransfer(Transfer t) {
-		if (onTransferFinished(t)) {
-			notifyInputTransfersCompleted(t.getToJob());
-        }
-		
-		//Register the finished transfer as a complete output transfer
-		Job fromJob = t.getFromJob();
-		int totalOutputs = fromJob.getTask().getOutputFiles().size();
-		if(outputTransfers.containsKey(fromJob)) {
-			outputTransfers.get(fromJob).add(t);	
+	protected void onUnknownSimEvent(CWSSimEvent ev) {
+		if (ev.getTag() == WorkflowEvent.TRANSFER_COMPLETE) {
+			onTransferFinished((Transfer) ev.getData());
+		} else if (ev.getTag() == WorkflowEvent.PEER_FILE_FETCHED) {
+			onFetchFinished((Fetch) ev.getData());
 		} else {
-			List<Transfer> transfers = new ArrayList<Transfer>();
-			transfers.add(t);
-			outputTransfers.put(fromJob, transfers);
+			super.onUnknownSimEvent(ev);
+		}
+	}
+
+	/**
+	 * @return Number of the children of the task which read the file, 0 for the workflow's final outputs.
+	 */
+	private static int countConsumers(Task task, DAGFile file) {
+		int consumers = 0;
+		for (Task child : task.getChildren()) {
+			if (child.getInputFiles().contains(file)) {
+				consumers++;
+			}
+		}
+		return consumers;
+	}
+
+	/**
+	 * Like {@link #findProducer(Task, DAGFile)}, but looks the producer up in the DAG's index first.
+	 */
+	private static Task findProducer(DAG dag, Task task, DAGFile file) {
+		Task producer = dag.getProducer(file);
+		if (producer == null || task.getParents().contains(producer)) {
+			return producer;
+		}
+		// The index only knows the first of the tasks which write the file
+		return findProducer(task, file);
+	}
+
+	/**
+	 * Only parents count: the copies of a file are kept for the children of its producer, which read it, so a task
+	 * which reads the output of another ancestor reads it from the global storage, like a workflow input. DAGs whose
+	 * edges follow their files have no such reads.
+	 *
+	 * @return The parent of the task which writes the file, or null if it is an input of the workflow or not written by
+	 *         a parent.
+	 */
+	private static Task findProducer(Task task, DAGFile file) {
+		for (Task parent : task.getParents()) {
+			if (parent.getOutputFiles().contains(file)) {
+				return parent;
+			}
 		}
-		
-		//Check if any of the parent tasks has finished transferring all outputs and notify.
-		if(outputTransfers.get(fromJob).size() == totalOutputs) {
-			notifyOutputTransfersCompleted(fromJob);
-			outputTransfers.remove(fromJob);
+		return null;
+	}
+
+	/**
+	 * The outputs of a task which its children read are pushed to them unless sending each of them to each of its
+	 * consumers, all through the interface of the task's VM, takes longer than writing them to the global storage and
+	 * reading them back. The global storage transfers all the files of a task at once, each at full speed, so the
+	 * largest file determines the time of the storage, while the interface carries all the pushes.
+	 *
+	 * @param bandwidth Bandwidth of the producer's VM, in Mbps.
+	 * @return Whether the outputs of the task which have consumers are pushed, the others are always written.
+	 */
+	private boolean isPushed(Task producer, double bandwidth) {
+		GlobalStorageParams params = getParams();
+		double pushedBytes = 0.0;
+		long largestFile = 0;
+		for (DAGFile file : producer.getOutputFiles()) {
+			int consumers = countConsumers(producer, file);
+			if (consumers > 0) {
+				pushedBytes += (double) consumers * file.getSize();
+				largestFile = Math.max(largestFile, file.getSize());
+			}
 		}
-		
+		double pushTime = pushedBytes * 8 / (bandwidth * Transfer.MBPS_TO_BPS);
+		return pushTime <= largestFile / params.getWriteSpeed() + largestFile / params.getReadSpeed();
 	}
 
+	/**
+	 * Like the global storage's estimation, but the pushed inputs come over the network and the pushed outputs are not
+	 * written. Pushes are estimated between VMs on the same rack, limited by the interface of the given VM type, which
+	 * stands for the producers' too, and with the RTT of the handshake and of the final ACK.
+	 *
+	 * @see StorageManager#getTransferTimeEstimation(Task, VMType)
+	 */
 	@Override
-	public void transferFinished(Transfer t) {
-		// TODO Auto-generated method stub
-		
+	public double getTransferTimeEstimation(Task task, VMType vmType) {
+		return estimateTransferTime(task, vmType.getBandwidth(), 1.0);
 	}
 
+	@Override
+	public double getTransferTimeEstimationWithDegradation(Task task, VMType vmType) {
+		return estimateTransferTime(task, vmType.getBandwidth(), getPerformanceVariation());
+	}
+
+	private double estimateTransferTime(Task task, double peerBandwidth, double performanceVariation) {
+		GlobalStorageParams params = getParams();
+		double bandwidth = TransferManager.DEFAULT_BANDWIDTH * performanceVariation;
+		double peerRttSec = 2 * transferManager.getTopology().getRackRtt() * TransferManager.MSEC_TO_SEC;
+		double time = 0.0;
+		for (DAGFile file : task.getInputFiles()) {
+			Task producer = findProducer(task, file);
+			if (producer != null && isPushed(producer, peerBandwidth)) {
+				time += ((file.getSize() + Transfer.PACKET_OVERHEAD) * 8)
+						/ (peerBandwidth * performanceVariation * Transfer.MBPS_TO_BPS);
+				time += peerRttSec;
+			} else {
+				time += file.getSize() / params.getReadSpeed();
+				time += params.getLatency();
+				time += (((file.getSize() + Transfer.PACKET_OVERHEAD) * 8) / (bandwidth * Transfer.MBPS_TO_BPS));
+				time += (TransferManager.DEFAULT_RTT * TransferManager.MSEC_TO_SEC);
+			}
+		}
+		boolean pushed = isPushed(task, peerBandwidth);
+		for (DAGFile file : task.getOutputFiles()) {
+			if (!pushed || countConsumers(task, file) == 0) {
+				time += file.getSize() / params.getWriteSpeed();
+				time += params.getLatency();
+				time += (((file.getSize() + Transfer.PACKET_OVERHEAD) * 8) / (bandwidth * Transfer.MBPS_TO_BPS));
+				time += (TransferManager.DEFAULT_RTT * TransferManager.MSEC_TO_SEC);
+			}
+		}
+		return time;
+	}
+
+	public TransferManager getTransferManager() {
+		return transferManager;
+	}
 }
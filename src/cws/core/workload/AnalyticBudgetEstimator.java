@@ -0,0 +1,134 @@
+package cws.core.workload;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import cws.core.core.VMType;
+import cws.core.core.VMTypeCostComparator;
+import cws.core.core.VMTypeMipsComparator;
+import cws.core.dag.DAG;
+import cws.core.dag.DAGFile;
+import cws.core.dag.DAGParser;
+import cws.core.dag.Task;
+import cws.core.engine.Environment;
+import cws.core.engine.PredictionStrategy;
+import cws.core.simulation.StorageSimulationParams;
+import cws.core.simulation.StorageType;
+import cws.core.storage.StorageManager;
+import cws.core.storage.global.GlobalStorageParams;
+
+/**
+ * Estimates the budget range directly from the DAG, without simulating. It prices what {@link SimulatedBudgetEstimator}
+ * simulates: every task runs on its own VM, of the cheapest type for the minimum and of the fastest type for the
+ * maximum, and each VM is billed for its provisioning delay plus the task's transfers and computation.
+ * 
+ * Runtimes are slowed down by the average performance variation and the global storage transfers of a task are assumed
+ * to run in parallel. Calibrated against the simulated bounds of 54 bundled workflows (all families, sizes 50 to 1000,
+ * runtime variance 0.2, performance variation 0.1), the simulated over analytic ratios have medians of 1.001 for both
+ * bounds and range from 0.97 to 1.06, so no correction factor is applied. Being free of simulation, the estimator can
+ * also be used while a simulation is running.
+ */
+public class AnalyticBudgetEstimator implements BudgetRangeEstimator {
+    private final VMType cheapest;
+    private final VMType fastest;
+    private final Environment environment;
+
+    /**
+     * @param avgPerformanceVariation - average performance loss of the VMs, see
+     *            {@link cws.core.provisioner.VMFactory#getAveragePerformanceVariation()}.
+     */
+    public AnalyticBudgetEstimator(List<VMType> vmTypes, StorageSimulationParams simulationParams,
+            double avgPerformanceVariation) {
+        // Sort a copy, other users of the list may rely on its order
+        List<VMType> types = new ArrayList<VMType>(vmTypes);
+        Collections.sort(types, new VMTypeCostComparator());
+        this.cheapest = types.get(0);
+        Collections.sort(types, new VMTypeMipsComparator());
+        this.fastest = types.get(types.size() - 1);
+
+        GlobalStorageParams storageParams = null;
+        // VM to VM transfers are estimated as global storage ones, the workflow has not been placed yet
+        if (simulationParams.getStorageType() == StorageType.GLOBAL
+                || simulationParams.getStorageType() == StorageType.VM2VM) {
+            storageParams = simulationParams.getStorageParams();
+        }
+        // No storage manager, it would be a simulation entity; the prediction strategy estimates transfers itself
+        this.environment = new Environment(types, null, new EstimationStrategy(storageParams,
+                1.0 - avgPerformanceVariation));
+    }
+
+    @Override
+    public BudgetRange estimateBudgetRange(File dagFile) {
+        DAG dag = DAGParser.parseDAG(dagFile);
+        return new BudgetRange(getOneTaskOneVMCost(dag, cheapest), getOneTaskOneVMCost(dag, fastest));
+    }
+
+    @Override
+    public boolean isUsableDuringSimulation() {
+        return true;
+    }
+
+    /**
+     * @return Cost of running every task of the DAG on its own VM of the given type.
+     */
+    double getOneTaskOneVMCost(DAG dag, VMType vmType) {
+        environment.setVmType(vmType);
+        double vmDelay = vmType.getExpectedProvisioningDelay() + vmType.getExpectedDeprovisioningDelay();
+        double cost = 0.0;
+        for (String taskId : dag.getTasks()) {
+            Task task = dag.getTaskById(taskId);
+            cost += environment.getCost(vmDelay + environment.getPredictedRuntime(task), vmType);
+        }
+        return cost;
+    }
+
+    /**
+     * Predicts runtimes on degraded VMs, including the transfers to and from the global storage, if it is used.
+     */
+    private static class EstimationStrategy implements PredictionStrategy {
+        private final GlobalStorageParams storageParams;
+        private final double performance;
+
+        EstimationStrategy(GlobalStorageParams storageParams, double performance) {
+            this.storageParams = storageParams;
+            this.performance = performance;
+        }
+
+        @Override
+        public double getPredictedRuntime(Task task, VMType vmType, StorageManager storageManager) {
+            double runtime = task.getSize() / (vmType.getMips() * performance);
+            if (storageParams != null) {
+                runtime += getTransferTime(task.getInputFiles(), storageParams.getReadSpeed());
+                runtime += getTransferTime(task.getOutputFiles(), storageParams.getWriteSpeed());
+            }
+            return runtime;
+        }
+
+        /**
+         * The global storage transfers all the files of a task at once, each at full speed (there is no congestion
+         * when a single workflow runs), so the largest file determines the time.
+         */
+        private double getTransferTime(List<DAGFile> files, double speed) {
+            if (files.isEmpty()) {
+                return 0.0;
+            }
+            double maxSize = 0.0;
+            for (DAGFile file : files) {
+                maxSize = Math.max(maxSize, file.getSize());
+            }
+            return storageParams.getLatency() + maxSize / speed;
+        }
+
+        @Override
+        public double getPredictedRuntimeWithDegradation(Task task, VMType vmType, StorageManager storageManager) {
+            return getPredictedRuntime(task, vmType, storageManager);
+        }
+
+        @Override
+        public double getPredictedRuntimeNoTransfer(Task task, VMType vmType) {
+            return task.getSize() / (vmType.getMips() * performance);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package cws.core.workload;
+
+/**
+ * A process generating the submit times of the workflows of a synthetic workload.
+ */
+public interface ArrivalProcess {
+    /**
+     * @return Whether there is a next arrival. Generative processes never run out, traces do.
+     */
+    public boolean hasNextArrival();
+
+    /**
+     * @return Absolute time of the next arrival, never earlier than the previous one.
+     */
+    public double nextArrivalTime();
+}
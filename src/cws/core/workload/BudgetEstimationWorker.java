@@ -0,0 +1,53 @@
+package cws.core.workload;
+
+import java.io.File;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.cloudbus.cloudsim.Log;
+
+import cws.core.RandomStreams;
+import cws.core.config.GlobalStorageParamsLoader;
+import cws.core.core.VMTypeLoader;
+import cws.core.exception.IllegalCWSArgumentException;
+import cws.core.provisioner.VMFactory;
+import cws.core.simulation.SimulationMultipleWorkflow;
+import cws.core.simulation.StorageSimulationParams;
+
+/**
+ * Runs simulated budget estimations inside an isolated class loader, see {@link IsolatedBudgetEstimator}. It only
+ * exchanges JDK types with its creator, because no other class is shared with the creator's class loader.
+ */
+public class BudgetEstimationWorker {
+    private final CommandLine args;
+    private final StorageSimulationParams simulationParams;
+    private final VMTypeLoader vmTypeLoader = new VMTypeLoader();
+    private final RandomStreams randomStreams;
+
+    /**
+     * Configures this class loader's copy of the simulator like the experiment with the given CLI args and seed.
+     */
+    public BudgetEstimationWorker(String[] args, long seed) {
+        try {
+            this.args = new PosixParser().parse(SimulationMultipleWorkflow.buildOptions(), args);
+        } catch (ParseException e) {
+            throw new IllegalCWSArgumentException("Cannot parse the experiment args: " + e.getMessage());
+        }
+        Log.disable();
+        this.randomStreams = new RandomStreams(seed);
+        VMFactory.readCliOptions(this.args, seed);
+        this.simulationParams = SimulationMultipleWorkflow.createStorageSimulationParams(this.args,
+                new GlobalStorageParamsLoader());
+    }
+
+    /**
+     * @return The minimum and the maximum budget of the workflow.
+     */
+    public double[] estimate(String dagFile) {
+        SimulatedBudgetEstimator estimator = new SimulatedBudgetEstimator(vmTypeLoader.determineVMType(args),
+                simulationParams, randomStreams);
+        BudgetRange range = estimator.estimateBudgetRange(new File(dagFile));
+        return new double[] { range.getMin(), range.getMax() };
+    }
+}
@@ -0,0 +1,31 @@
+package cws.core.workload;
+
+/**
+ * Range a workflow's budget is drawn from: from the cost of running it on the cheapest resources to the cost of
+ * running it on the fastest ones.
+ */
+public class BudgetRange {
+    private final double min;
+    private final double max;
+
+    /**
+     * The bounds may be given in any order.
+     */
+    public BudgetRange(double min, double max) {
+        this.min = Math.min(min, max);
+        this.max = Math.max(min, max);
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + min + ", " + max + "]";
+    }
+}
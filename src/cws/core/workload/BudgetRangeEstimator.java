@@ -0,0 +1,19 @@
+package cws.core.workload;
+
+import java.io.File;
+
+/**
+ * Estimates the range of sensible budgets of a workflow.
+ */
+public interface BudgetRangeEstimator {
+    /**
+     * @param dagFile - DAG file of the workflow.
+     */
+    public BudgetRange estimateBudgetRange(File dagFile);
+
+    /**
+     * @return Whether the estimator can be used while a simulation is running, i.e. it does not run one itself. Only
+     *         such estimators can feed arrivals straight into a simulation.
+     */
+    public boolean isUsableDuringSimulation();
+}
@@ -0,0 +1,63 @@
+package cws.core.workload;
+
+import cws.core.RandomStream;
+import cws.core.exception.IllegalCWSArgumentException;
+
+/**
+ * Non-homogeneous Poisson process with a sinusoidal daily pattern, rate(t) = rate * (1 + amplitude * sin(2 pi t /
+ * period)). It is sampled by thinning a homogeneous process running at the peak rate.
+ */
+public class DiurnalArrivalProcess implements ArrivalProcess {
+    private final double rate;
+    private final double amplitude;
+    private final double period;
+    private final RandomStream random;
+    private double time = 0.0;
+
+    /** For snapshots */
+    private DiurnalArrivalProcess() {
+        this.rate = 0.0;
+        this.amplitude = 0.0;
+        this.period = 0.0;
+        this.random = null;
+    }
+
+    /**
+     * @param rate - mean number of arrivals per second over a whole period.
+     * @param amplitude - relative swing of the rate around the mean, in [0, 1].
+     * @param period - length of a period (day) in seconds.
+     */
+    public DiurnalArrivalProcess(double rate, double amplitude, double period, RandomStream random) {
+        if (rate <= 0.0 || period <= 0.0) {
+            throw new IllegalCWSArgumentException("Diurnal rate and period must be positive");
+        }
+        if (amplitude < 0.0 || amplitude > 1.0) {
+            throw new IllegalCWSArgumentException("Diurnal amplitude must be in [0, 1]: " + amplitude);
+        }
+        this.rate = rate;
+        this.amplitude = amplitude;
+        this.period = period;
+        this.random = random;
+    }
+
+    @Override
+    public boolean hasNextArrival() {
+        return true;
+    }
+
+    @Override
+    public double nextArrivalTime() {
+        double peakRate = rate * (1.0 + amplitude);
+        do {
+            time += PoissonArrivalProcess.exponential(random, peakRate);
+        } while (random.nextDouble() * peakRate > getRate(time));
+        return time;
+    }
+
+    /**
+     * @return The arrival rate at the given time.
+     */
+    public double getRate(double time) {
+        return rate * (1.0 + amplitude * Math.sin(2.0 * Math.PI * time / period));
+    }
+}
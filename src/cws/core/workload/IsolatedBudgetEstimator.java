@@ -0,0 +1,211 @@
+package cws.core.workload;
+
+import java.io.Closeable;
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Simulated budget estimation on isolated simulators. CloudSim and the simulator keep their state in statics, so each
+ * {@link BudgetEstimationWorker} runs in its own class loader with private copies of all the classes. This allows
+ * estimating many workflows in parallel and, since the main simulator is not touched, estimating during an experiment.
+ * 
+ * Each estimation starts from the same configuration and seed, so a workflow's range does not depend on which worker
+ * estimates it or in which order; parallel and serial runs produce identical workloads. Ranges are memoized per
+ * workflow file.
+ * 
+ * The worker estimating workflows which were not estimated up front keeps its class loader, and so its copy of every
+ * class, until the estimator is closed.
+ */
+public class IsolatedBudgetEstimator implements BudgetRangeEstimator, Closeable {
+    private final String[] args;
+    private final long seed;
+    private final int threads;
+    private final Map<String, BudgetRange> ranges = new HashMap<String, BudgetRange>();
+
+    /** Worker for workflows which were not estimated up front, created when first needed */
+    private Worker worker;
+
+    /**
+     * @param args - CLI args of the experiment, they configure the VM types, the storage and the VM variations.
+     * @param threads - maximum number of concurrent estimations.
+     */
+    public IsolatedBudgetEstimator(String[] args, long seed, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least 1 thread is needed, " + threads + " is not allowed");
+        }
+        this.args = args.clone();
+        this.seed = seed;
+        this.threads = threads;
+    }
+
+    @Override
+    public synchronized BudgetRange estimateBudgetRange(File dagFile) {
+        String key = dagFile.getAbsolutePath();
+        BudgetRange range = ranges.get(key);
+        if (range == null) {
+            if (worker == null) {
+                worker = new Worker();
+            }
+            range = worker.estimate(key);
+            ranges.put(key, range);
+        }
+        return range;
+    }
+
+    @Override
+    public boolean isUsableDuringSimulation() {
+        return true;
+    }
+
+    /**
+     * Releases the worker of the workflows which were not estimated up front, if any. Estimating another workflow
+     * afterwards creates a new one.
+     */
+    @Override
+    public synchronized void close() {
+        if (worker != null) {
+            worker.close();
+            worker = null;
+        }
+    }
+
+    /**
+     * Estimates all the given workflows which were not estimated yet, on up to threads workers at once.
+     */
+    public void estimateAll(List<File> dagFiles) {
+        final List<String> pending = new ArrayList<String>();
+        synchronized (this) {
+            Set<String> distinct = new LinkedHashSet<String>();
+            for (File dagFile : dagFiles) {
+                distinct.add(dagFile.getAbsolutePath());
+            }
+            for (String key : distinct) {
+                if (!ranges.containsKey(key)) {
+                    pending.add(key);
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        final BudgetRange[] results = new BudgetRange[pending.size()];
+        final AtomicInteger next = new AtomicInteger();
+        int numWorkers = Math.min(threads, pending.size());
+        ExecutorService pool = Executors.newFixedThreadPool(numWorkers);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < numWorkers; i++) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        Worker worker = new Worker();
+                        try {
+                            for (int j = next.getAndIncrement(); j < results.length; j = next.getAndIncrement()) {
+                                results[j] = worker.estimate(pending.get(j));
+                            }
+                        } finally {
+                            worker.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < results.length; i++) {
+                ranges.put(pending.get(i), results[i]);
+            }
+        }
+    }
+
+    /**
+     * A {@link BudgetEstimationWorker} in a class loader of its own, which loads every class from the application
+     * class path itself instead of delegating to the application class loader.
+     */
+    private class Worker {
+        private final URLClassLoader loader;
+        private final Object worker;
+        private final Method estimate;
+
+        Worker() {
+            loader = newIsolatedClassLoader();
+            try {
+                Class<?> workerClass = loader.loadClass(BudgetEstimationWorker.class.getName());
+                worker = workerClass.getConstructor(String[].class, long.class).newInstance(args, seed);
+                estimate = workerClass.getMethod("estimate", String.class);
+            } catch (InvocationTargetException e) {
+                close();
+                throw new RuntimeException(e.getCause());
+            } catch (ReflectiveOperationException e) {
+                close();
+                throw new RuntimeException(e);
+            }
+        }
+
+        BudgetRange estimate(String dagFile) {
+            try {
+                double[] range = (double[]) estimate.invoke(worker, dagFile);
+                return new BudgetRange(range[0], range[1]);
+            } catch (InvocationTargetException e) {
+                throw new RuntimeException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        void close() {
+            IOUtils.closeQuietly(loader);
+        }
+    }
+
+    /**
+     * @return A class loader which loads every class from the application class path itself, so the simulator classes
+     *         it loads have statics of their own. Only JDK classes are shared with the rest of the application.
+     */
+    public static URLClassLoader newIsolatedClassLoader() {
+        return new URLClassLoader(getClassPath(), ClassLoader.getPlatformClassLoader());
+    }
+
+    private static URL[] getClassPath() {
+        String[] entries = System.getProperty("java.class.path").split(File.pathSeparator);
+        URL[] urls = new URL[entries.length];
+        try {
+            for (int i = 0; i < entries.length; i++) {
+                urls[i] = new File(entries[i]).toURI().toURL();
+            }
+        } catch (MalformedURLException e) {
+            throw new RuntimeException(e);
+        }
+        return urls;
+    }
+}
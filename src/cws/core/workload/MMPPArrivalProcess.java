@@ -0,0 +1,67 @@
+package cws.core.workload;
+
+import cws.core.RandomStream;
+import cws.core.exception.IllegalCWSArgumentException;
+
+/**
+ * Markov-modulated Poisson process for bursty workloads. The process cycles through its states: in state i workflows
+ * arrive as a Poisson process with rate rates[i] and the process leaves the state after an exponentially distributed
+ * time with rate switchRates[i]. E.g. rates {0.05, 1.0} with switch rates {0.002, 0.02} alternate quiet periods of
+ * about 500s with bursts of about 50s.
+ */
+public class MMPPArrivalProcess implements ArrivalProcess {
+    private final double[] rates;
+    private final double[] switchRates;
+    private final RandomStream random;
+    private int state = 0;
+    private double time = 0.0;
+
+    /** For snapshots */
+    private MMPPArrivalProcess() {
+        this.rates = null;
+        this.switchRates = null;
+        this.random = null;
+    }
+
+    public MMPPArrivalProcess(double[] rates, double[] switchRates, RandomStream random) {
+        if (rates.length == 0 || rates.length != switchRates.length) {
+            throw new IllegalCWSArgumentException("MMPP needs one switch rate per arrival rate");
+        }
+        boolean arrives = false;
+        for (int i = 0; i < rates.length; i++) {
+            if (rates[i] < 0.0 || switchRates[i] < 0.0) {
+                throw new IllegalCWSArgumentException("MMPP rates cannot be negative");
+            }
+            if (rates[i] == 0.0 && switchRates[i] == 0.0) {
+                throw new IllegalCWSArgumentException("MMPP state " + i + " would never be left");
+            }
+            arrives |= rates[i] > 0.0;
+        }
+        if (!arrives) {
+            throw new IllegalCWSArgumentException("MMPP needs a state with a positive arrival rate");
+        }
+        this.rates = rates.clone();
+        this.switchRates = switchRates.clone();
+        this.random = random;
+    }
+
+    @Override
+    public boolean hasNextArrival() {
+        return true;
+    }
+
+    @Override
+    public double nextArrivalTime() {
+        while (true) {
+            double arrival = PoissonArrivalProcess.exponential(random, rates[state]);
+            double leave = PoissonArrivalProcess.exponential(random, switchRates[state]);
+            if (arrival <= leave) {
+                time += arrival;
+                return time;
+            }
+            // Both clocks are memoryless, so they are simply sampled again in the next state
+            time += leave;
+            state = (state + 1) % rates.length;
+        }
+    }
+}
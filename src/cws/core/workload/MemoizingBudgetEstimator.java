@@ -0,0 +1,34 @@
+package cws.core.workload;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the budget range of every workflow file, so workloads drawing the same workflow many times estimate it
+ * only once.
+ */
+public class MemoizingBudgetEstimator implements BudgetRangeEstimator {
+    private final BudgetRangeEstimator estimator;
+    private final Map<String, BudgetRange> ranges = new HashMap<String, BudgetRange>();
+
+    public MemoizingBudgetEstimator(BudgetRangeEstimator estimator) {
+        this.estimator = estimator;
+    }
+
+    @Override
+    public BudgetRange estimateBudgetRange(File dagFile) {
+        String key = dagFile.getAbsolutePath();
+        BudgetRange range = ranges.get(key);
+        if (range == null) {
+            range = estimator.estimateBudgetRange(dagFile);
+            ranges.put(key, range);
+        }
+        return range;
+    }
+
+    @Override
+    public boolean isUsableDuringSimulation() {
+        return estimator.isUsableDuringSimulation();
+    }
+}
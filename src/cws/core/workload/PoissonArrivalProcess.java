@@ -0,0 +1,52 @@
+package cws.core.workload;
+
+import cws.core.RandomStream;
+import cws.core.exception.IllegalCWSArgumentException;
+
+/**
+ * Homogeneous Poisson process, i.e. exponentially distributed inter-arrival times with the given mean rate.
+ */
+public class PoissonArrivalProcess implements ArrivalProcess {
+    private final double rate;
+    private final RandomStream random;
+    private double time = 0.0;
+
+    /** For snapshots */
+    private PoissonArrivalProcess() {
+        this.rate = 0.0;
+        this.random = null;
+    }
+
+    /**
+     * @param rate - mean number of arrivals per second.
+     */
+    public PoissonArrivalProcess(double rate, RandomStream random) {
+        if (rate <= 0.0) {
+            throw new IllegalCWSArgumentException("Arrival rate must be positive: " + rate);
+        }
+        this.rate = rate;
+        this.random = random;
+    }
+
+    @Override
+    public boolean hasNextArrival() {
+        return true;
+    }
+
+    @Override
+    public double nextArrivalTime() {
+        time += exponential(random, rate);
+        return time;
+    }
+
+    /**
+     * @return A sample of the exponential distribution with the given rate, infinity when the rate is 0.
+     */
+    static double exponential(RandomStream random, double rate) {
+        if (rate == 0.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // 1 - u is in (0, 1], so the logarithm is finite
+        return -Math.log(1.0 - random.nextDouble()) / rate;
+    }
+}
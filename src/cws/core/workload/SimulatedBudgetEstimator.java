@@ -0,0 +1,97 @@
+package cws.core.workload;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import cws.core.RandomStreams;
+import cws.core.algorithms.Algorithm;
+import cws.core.algorithms.AlgorithmStatistics;
+import cws.core.algorithms.Fastest;
+import cws.core.algorithms.Slowest;
+import cws.core.cloudsim.CloudSimWrapper;
+import cws.core.core.VMType;
+import cws.core.dag.DAG;
+import cws.core.dag.DAGParser;
+import cws.core.engine.Environment;
+import cws.core.engine.EnvironmentFactory;
+import cws.core.exception.IllegalCWSArgumentException;
+import cws.core.simulation.StorageSimulationParams;
+
+/**
+ * Estimates the budget range by simulating the workflow alone twice, once with the {@link Slowest} and once with the
+ * {@link Fastest} algorithm. Each estimate runs the static CloudSim kernel, so it must not be used while another
+ * simulation is running.
+ */
+public class SimulatedBudgetEstimator implements BudgetRangeEstimator {
+    private final List<VMType> vmTypes;
+    private final StorageSimulationParams simulationParams;
+    private final RandomStreams randomStreams;
+    private int workflowId = 0;
+
+    /**
+     * @param randomStreams Random streams of the estimations' simulations.
+     */
+    public SimulatedBudgetEstimator(List<VMType> vmTypes, StorageSimulationParams simulationParams,
+            RandomStreams randomStreams) {
+        this.vmTypes = vmTypes;
+        this.simulationParams = simulationParams;
+        this.randomStreams = randomStreams;
+    }
+
+    @Override
+    public BudgetRange estimateBudgetRange(File dagFile) {
+        double minBudget = getSimulatedBudget("slowest", dagFile);
+        double maxBudget = getSimulatedBudget("fastest", dagFile);
+        return new BudgetRange(minBudget, maxBudget);
+    }
+
+    @Override
+    public boolean isUsableDuringSimulation() {
+        return false;
+    }
+
+    private double getSimulatedBudget(String algorithmName, File dagFile) {
+        CloudSimWrapper cloudsim = new CloudSimWrapper();
+        cloudsim.setRandomStreams(randomStreams);
+        cloudsim.init();
+        cloudsim.setLogsEnabled(false);
+
+        Environment environment = EnvironmentFactory.createEnvironment(cloudsim, simulationParams, vmTypes, false);
+
+        String wfName = dagFile.getName().replaceFirst("\\.dag$", "");
+        List<DAG> dags = new ArrayList<DAG>();
+        DAG dag = DAGParser.parseDAG(dagFile);
+        dag.setId(Integer.toString(workflowId));
+        dag.setName(wfName);
+        System.out.println(String.format("Workflow %d, filename = %s", workflowId, wfName));
+        workflowId++;
+        dags.add(dag);
+        Algorithm algorithm = createAlgorithm(algorithmName, cloudsim, dags, environment);
+        algorithm.setEnvironment(environment);
+        algorithm.simulate();
+        AlgorithmStatistics algorithmStatistics = algorithm.getAlgorithmStatistics();
+
+        double budget = algorithmStatistics.getActualCost();
+
+        if (budget == 0.0) {
+            budget = Math.ceil(algorithmStatistics.getActualDagFinishTime()
+                    / environment.getCheapestVM().getBillingTimeInSeconds()
+                    * environment.getCheapestVM().getPriceForBillingUnit());
+        }
+        return budget;
+    }
+
+    private static Algorithm createAlgorithm(String algorithmName, CloudSimWrapper cloudsim, List<DAG> dags,
+            Environment env) {
+        AlgorithmStatistics ensembleStatistics = new AlgorithmStatistics(dags, cloudsim, env);
+
+        if ("fastest".equals(algorithmName)) {
+            return new Fastest(0.0, 0.0, dags, ensembleStatistics, cloudsim, false);
+        } else if ("slowest".equals(algorithmName)) {
+            return new Slowest(0.0, 0.0, dags, ensembleStatistics, cloudsim, false);
+        } else {
+            throw new IllegalCWSArgumentException("Unknown algorithm: " + algorithmName);
+        }
+    }
+}
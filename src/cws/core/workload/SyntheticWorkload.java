@@ -0,0 +1,82 @@
+package cws.core.workload;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import cws.core.RandomStream;
+import cws.core.dag.DAGArrival;
+
+/**
+ * A synthetic workload generated lazily, one arrival at a time: submit times come from an {@link ArrivalProcess},
+ * workflows are drawn from a {@link WorkflowMix} and each budget is drawn uniformly from the workflow's estimated
+ * {@link BudgetRange}. Deadlines are not used and set to the submit time, like in generated workload files.
+ */
+public class SyntheticWorkload implements Iterator<DAGArrival> {
+    private final int numWorkflows;
+    private final ArrivalProcess arrivalProcess;
+    private final WorkflowMix mix;
+    private final File dagInputDir;
+    private final BudgetRangeEstimator budgetEstimator;
+    private final RandomStream mixRandom;
+    private final RandomStream budgetRandom;
+    private int generated = 0;
+
+    /** For snapshots */
+    private SyntheticWorkload() {
+        this.numWorkflows = 0;
+        this.arrivalProcess = null;
+        this.mix = null;
+        this.dagInputDir = null;
+        this.budgetEstimator = null;
+        this.mixRandom = null;
+        this.budgetRandom = null;
+    }
+
+    /**
+     * @param numWorkflows - maximum number of arrivals, fewer when the arrival process runs out first.
+     * @param budgetEstimator - estimator of the budget ranges, or null to leave all budgets 0, e.g. to only find out
+     *            which workflows the workload consists of.
+     */
+    public SyntheticWorkload(int numWorkflows, ArrivalProcess arrivalProcess, WorkflowMix mix, File dagInputDir,
+            BudgetRangeEstimator budgetEstimator, RandomStream mixRandom, RandomStream budgetRandom) {
+        this.numWorkflows = numWorkflows;
+        this.arrivalProcess = arrivalProcess;
+        this.mix = mix;
+        this.dagInputDir = dagInputDir;
+        this.budgetEstimator = budgetEstimator;
+        this.mixRandom = mixRandom;
+        this.budgetRandom = budgetRandom;
+    }
+
+    public BudgetRangeEstimator getBudgetEstimator() {
+        return budgetEstimator;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return generated < numWorkflows && arrivalProcess.hasNextArrival();
+    }
+
+    @Override
+    public DAGArrival next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        double submitTime = arrivalProcess.nextArrivalTime();
+        String workflow = mix.pickWorkflow(mixRandom);
+        File dagFile = WorkflowMix.getDagFile(workflow, dagInputDir);
+        double budget = 0.0;
+        if (budgetEstimator != null) {
+            BudgetRange range = budgetEstimator.estimateBudgetRange(dagFile);
+            budget = Math.round(range.getMin() + (range.getMax() - range.getMin()) * budgetRandom.nextDouble());
+        }
+        String id = Integer.toString(generated++);
+        return new DAGArrival(id, workflow, dagFile, budget, submitTime, submitTime);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
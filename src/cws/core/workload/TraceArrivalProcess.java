@@ -0,0 +1,81 @@
+package cws.core.workload;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+
+import org.apache.commons.io.IOUtils;
+
+import cws.core.exception.IllegalCWSArgumentException;
+
+/**
+ * Replays arrival times from a trace file, read lazily. Each non-empty line holds a submit time as its last comma
+ * separated field, so both plain lists of times and workload files can be replayed. Lines starting with # are skipped.
+ */
+public class TraceArrivalProcess implements ArrivalProcess, Closeable {
+    private final BufferedReader reader;
+    private final double timeScale;
+    private double next = Double.NaN;
+    private double last = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param timeScale - factor applied to every time of the trace, e.g. 0.5 to replay it twice as fast.
+     */
+    public TraceArrivalProcess(File trace, double timeScale) {
+        if (timeScale <= 0.0) {
+            throw new IllegalCWSArgumentException("Trace time scale must be positive: " + timeScale);
+        }
+        try {
+            this.reader = new BufferedReader(new FileReader(trace));
+        } catch (FileNotFoundException e) {
+            throw new IllegalCWSArgumentException("Cannot read arrival trace: " + e.getMessage());
+        }
+        this.timeScale = timeScale;
+        advance();
+    }
+
+    private void advance() {
+        next = Double.NaN;
+        try {
+            String line = null;
+            while (Double.isNaN(next) && (line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                next = Double.parseDouble(fields[fields.length - 1].trim()) * timeScale;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (Double.isNaN(next)) {
+            close();
+        } else if (next < last) {
+            throw new IllegalCWSArgumentException("Arrival trace is not sorted by time at " + next);
+        }
+    }
+
+    @Override
+    public boolean hasNextArrival() {
+        return !Double.isNaN(next);
+    }
+
+    @Override
+    public double nextArrivalTime() {
+        if (Double.isNaN(next)) {
+            throw new IllegalStateException("Arrival trace is exhausted");
+        }
+        last = next;
+        advance();
+        return last;
+    }
+
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(reader);
+    }
+}
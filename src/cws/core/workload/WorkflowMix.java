@@ -0,0 +1,96 @@
+package cws.core.workload;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import cws.core.RandomStream;
+import cws.core.exception.IllegalCWSArgumentException;
+
+/**
+ * Weighted mix of workflow families and sizes a synthetic workload is drawn from. Workflow files are named
+ * FAMILY.n.SIZE.INSTANCE.dag, with instances numbered from 0.
+ */
+public class WorkflowMix {
+    private final List<String> families = new ArrayList<String>();
+    private final List<Double> familyWeights = new ArrayList<Double>();
+    private final List<String> sizes = new ArrayList<String>();
+    private final List<Double> sizeWeights = new ArrayList<Double>();
+    private final int instances;
+
+    /** For snapshots */
+    private WorkflowMix() {
+        this.instances = 0;
+    }
+
+    /**
+     * @param families - comma separated families with optional weights, e.g. "LIGO:2,MONTAGE:1,SIPHT".
+     * @param sizes - comma separated sizes with optional weights, e.g. "50:3,100:1".
+     * @param instances - number of instances of each family and size.
+     */
+    public WorkflowMix(String families, String sizes, int instances) {
+        if (instances < 1) {
+            throw new IllegalCWSArgumentException("Workflow instances must be at least 1: " + instances);
+        }
+        parseWeights(families, this.families, this.familyWeights);
+        parseWeights(sizes, this.sizes, this.sizeWeights);
+        this.instances = instances;
+    }
+
+    private static void parseWeights(String spec, List<String> names, List<Double> weights) {
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            String[] parts = entry.split(":");
+            double weight = parts.length > 1 ? Double.parseDouble(parts[1].trim()) : 1.0;
+            if (parts.length > 2 || weight < 0.0) {
+                throw new IllegalCWSArgumentException("Wrong workflow mix entry: " + entry);
+            }
+            names.add(parts[0].trim());
+            weights.add(weight);
+        }
+        if (names.isEmpty() || total(weights) <= 0.0) {
+            throw new IllegalCWSArgumentException("Workflow mix needs an entry with a positive weight: " + spec);
+        }
+    }
+
+    private static double total(List<Double> weights) {
+        double total = 0.0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        return total;
+    }
+
+    private static String pick(List<String> names, List<Double> weights, RandomStream random) {
+        double r = random.nextDouble() * total(weights);
+        for (int i = 0; i < names.size(); i++) {
+            r -= weights.get(i);
+            if (r < 0.0) {
+                return names.get(i);
+            }
+        }
+        // Only reachable through rounding, return the last entry with a positive weight
+        for (int i = names.size() - 1;; i--) {
+            if (weights.get(i) > 0.0) {
+                return names.get(i);
+            }
+        }
+    }
+
+    /**
+     * @return Name of a randomly drawn workflow, e.g. LIGO.n.100.6.
+     */
+    public String pickWorkflow(RandomStream random) {
+        String family = pick(families, familyWeights, random);
+        String size = pick(sizes, sizeWeights, random);
+        int instance = random.nextInt(instances);
+        return family + ".n." + size + "." + instance;
+    }
+
+    public static File getDagFile(String workflow, File dagInputDir) {
+        return new File(dagInputDir.getAbsolutePath() + "/" + workflow + ".dag");
+    }
+}